@@ -0,0 +1,66 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.results.QueryInfo;
+
+/**
+ * The synthetic index that benchmarks run on (shared by all threads).
+ *
+ * The index is generated the first time and reused after that. Set system property
+ * blacklab.benchmarks.dir to control where the generated indexes are kept
+ * (default: target/benchmark-indexes).
+ */
+@State(Scope.Benchmark)
+public class BenchmarkIndex {
+
+    /** Where to keep generated indexes */
+    private static final String DIR_PROPERTY = "blacklab.benchmarks.dir";
+
+    /** Size of the synthetic corpus (documents of 1000-3000 tokens each) */
+    @Param({ "1000" })
+    public int numberOfDocs;
+
+    private BlackLabIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        File dir = new File(System.getProperty(DIR_PROPERTY, "target/benchmark-indexes"));
+        index = new SyntheticCorpus().openIndex(dir, BlackLabIndex.IndexType.INTEGRATED, numberOfDocs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        index.close();
+    }
+
+    public BlackLabIndex index() {
+        return index;
+    }
+
+    /**
+     * Parse a Corpus Query Language query.
+     *
+     * @param cql query
+     * @return the query
+     */
+    public BLSpanQuery query(String cql) {
+        try {
+            return CorpusQueryLanguageParser.parse(cql).toQuery(QueryInfo.create(index));
+        } catch (InvalidQuery e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+}
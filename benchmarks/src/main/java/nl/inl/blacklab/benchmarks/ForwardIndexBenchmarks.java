@@ -0,0 +1,87 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
+import nl.inl.blacklab.forwardindex.TermsIntegrated;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.blacklab.search.results.Hit;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.SearchSettings;
+
+/**
+ * Forward index access: reading snippets (SegmentForwardIndex) and opening the terms (TermsIntegrated).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ForwardIndexBenchmarks {
+
+    /** How many snippets to read per invocation */
+    private static final int NUMBER_OF_SNIPPETS = 1000;
+
+    /** Tokens before and after each hit to read */
+    private static final int SNIPPET_CONTEXT = 5;
+
+    private AnnotationForwardIndex forwardIndex;
+
+    private String luceneField;
+
+    private int[] docs;
+
+    private int[][] starts;
+
+    private int[][] ends;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkIndex benchmarkIndex) {
+        BlackLabIndex index = benchmarkIndex.index();
+        Annotation word = index.mainAnnotatedField().mainAnnotation();
+        forwardIndex = index.annotationForwardIndex(word);
+        luceneField = word.sensitivity(MatchSensitivity.SENSITIVE).luceneField();
+
+        // Read snippets around random hits of a common word (like we do for KWICs)
+        Hits hits = index.find(benchmarkIndex.query("[pos=\"NOU\"]"), SearchSettings.defaults());
+        Random random = new Random(SyntheticCorpus.DEFAULT_SEED);
+        docs = new int[NUMBER_OF_SNIPPETS];
+        starts = new int[NUMBER_OF_SNIPPETS][1];
+        ends = new int[NUMBER_OF_SNIPPETS][1];
+        for (int i = 0; i < NUMBER_OF_SNIPPETS; i++) {
+            Hit hit = hits.get(random.nextInt((int) Math.min(hits.size(), Integer.MAX_VALUE)));
+            docs[i] = hit.doc();
+            starts[i][0] = Math.max(0, hit.start() - SNIPPET_CONTEXT);
+            ends[i][0] = Math.min(forwardIndex.docLength(hit.doc()), hit.end() + SNIPPET_CONTEXT);
+        }
+    }
+
+    @Benchmark
+    public void readSnippets(Blackhole blackhole) {
+        for (int i = 0; i < NUMBER_OF_SNIPPETS; i++) {
+            blackhole.consume(forwardIndex.retrievePartsInt(docs[i], starts[i], ends[i]));
+        }
+    }
+
+    @Benchmark
+    public TermsIntegrated openTerms(BenchmarkIndex benchmarkIndex) throws InterruptedException {
+        return new TermsIntegrated(forwardIndex.collators(), benchmarkIndex.index().reader(), luceneField);
+    }
+}
@@ -0,0 +1,113 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.inl.blacklab.resultproperty.HitPropertyHitText;
+import nl.inl.blacklab.search.Kwic;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.results.ContextSize;
+import nl.inl.blacklab.search.results.Contexts;
+import nl.inl.blacklab.search.results.Hit;
+import nl.inl.blacklab.search.results.HitGroups;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.Kwics;
+import nl.inl.blacklab.search.results.Results;
+import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.server.datastream.DataFormat;
+import nl.inl.blacklab.server.datastream.DataStream;
+import nl.inl.blacklab.server.datastream.DataStreamAbstract;
+
+/**
+ * Operations on hits we already have: grouping, contexts, KWICs and serialization.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultsBenchmarks {
+
+    /** Query for the hits to operate on (words following a frequent word) */
+    private static final String QUERY = "\"ka\" []";
+
+    /** Size of a page of hits (for KWICs and serialization) */
+    private static final int PAGE_SIZE = 1000;
+
+    private static final ContextSize CONTEXT_SIZE = ContextSize.get(5);
+
+    private Hits hits;
+
+    private Hits page;
+
+    private Kwics kwics;
+
+    private Annotation word;
+
+    private List<Annotation> annotations;
+
+    private HitPropertyHitText groupBy;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkIndex index) {
+        hits = index.index().find(index.query(QUERY), SearchSettings.defaults());
+        hits.size(); // fetch all hits
+        page = hits.window(0, PAGE_SIZE);
+        kwics = page.kwics(CONTEXT_SIZE);
+        word = index.index().mainAnnotatedField().mainAnnotation();
+        annotations = index.index().mainAnnotatedField().annotations().stream().collect(Collectors.toList());
+        groupBy = new HitPropertyHitText(index.index());
+    }
+
+    @Benchmark
+    public HitGroups groupByHitText() {
+        return HitGroups.fromHits(hits, groupBy, Results.NO_LIMIT);
+    }
+
+    @Benchmark
+    public Contexts contexts() {
+        return new Contexts(hits, List.of(word), CONTEXT_SIZE);
+    }
+
+    @Benchmark
+    public Kwics kwics() {
+        return page.kwics(CONTEXT_SIZE);
+    }
+
+    /** Serialize a page of KWICs the way BLS does (see ResponseStreamer.listOfHits()) */
+    @Benchmark
+    public int serializeJson() {
+        StringWriter buf = new StringWriter();
+        DataStream ds = DataStreamAbstract.create(DataFormat.JSON, new PrintWriter(buf), false);
+        ds.startMap().startEntry("hits").startList();
+        for (Hit hit: page) {
+            Kwic kwic = kwics.get(hit);
+            ds.startItem("hit").startMap()
+                    .entry("docPid", hit.doc())
+                    .entry("start", hit.start())
+                    .entry("end", hit.end())
+                    .startEntry("left").contextList(kwic.annotations(), annotations, kwic.left()).endEntry()
+                    .startEntry("match").contextList(kwic.annotations(), annotations, kwic.match()).endEntry()
+                    .startEntry("right").contextList(kwic.annotations(), annotations, kwic.right()).endEntry()
+                    .endMap().endItem();
+        }
+        ds.endList().endEntry().endMap();
+        return buf.getBuffer().length();
+    }
+}
@@ -0,0 +1,52 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.results.SearchSettings;
+
+/**
+ * Finding hits (HitsFromQuery / SpansReader).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmarks {
+
+    /** Queries to run (see SyntheticCorpus for the vocabulary: "ka" is the most frequent word, etc.) */
+    @Param({ "\"ka\"", "\"ka\" [pos=\"NOU\"]", "[lemma=\"to\"]", "<entity/>", "<s/> containing \"kas\"" })
+    public String query;
+
+    private BLSpanQuery spanQuery;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkIndex index) {
+        spanQuery = index.query(query);
+    }
+
+    @Benchmark
+    public long findAllHits(BenchmarkIndex index) {
+        return index.index().find(spanQuery, SearchSettings.defaults()).size();
+    }
+
+    @Benchmark
+    public long countHits(BenchmarkIndex index) {
+        return index.index().find(spanQuery, SearchSettings.defaults()).hitsStats().countedTotal();
+    }
+}
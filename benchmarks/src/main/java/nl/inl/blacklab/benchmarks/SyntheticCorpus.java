@@ -0,0 +1,251 @@
+package nl.inl.blacklab.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.FileUtils;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.DocumentFormatNotFound;
+import nl.inl.blacklab.index.DocumentFormats;
+import nl.inl.blacklab.index.IndexListener;
+import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.search.BlackLab;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.BlackLabIndexWriter;
+
+/**
+ * Generates a deterministic synthetic corpus for benchmarking.
+ *
+ * Words are drawn from a Zipfian distribution, like in natural language, so we get a realistic
+ * mix of very frequent and very rare terms. Each word has a fixed lemma and part of speech.
+ * Documents contain sentences (inline tag s), named entities (inline tag entity) and
+ * some metadata (pid, title, year, genre).
+ *
+ * The same seed and number of documents always produce the same corpus, so benchmark
+ * results are comparable between runs and BlackLab versions.
+ */
+public class SyntheticCorpus {
+
+    /** Name of our input format (see formats/synthetic.blf.yaml) */
+    public static final String FORMAT_NAME = "synthetic";
+
+    /** Default random seed */
+    public static final long DEFAULT_SEED = 42;
+
+    /** Number of different words */
+    private static final int VOCABULARY_SIZE = 50_000;
+
+    /** Zipf exponent; roughly 1 for natural language */
+    private static final double ZIPF_EXPONENT = 1.0;
+
+    /** Average document length in tokens */
+    private static final int AVERAGE_DOC_LENGTH = 2000;
+
+    private static final String[] SYLLABLES = { "ka", "to", "mi", "ne", "ru", "sa", "lo", "vi", "de", "po",
+            "an", "el", "is", "or", "un", "ba", "fe", "gi", "ho", "ju" };
+
+    private static final String[] SUFFIXES = { "", "s", "ed", "ing" };
+
+    private static final String[] POS = { "NOU", "VRB", "ADJ", "ADV", "PRE", "ART", "PRO", "CON" };
+
+    private static final String[] GENRES = { "fiction", "news", "science", "legal", "poetry" };
+
+    /** File that indicates the index was generated completely */
+    private static final String INDEX_COMPLETE_MARKER = "benchmark-index-complete";
+
+    /** Cumulative probability per word rank */
+    private final double[] cumulative;
+
+    private final long seed;
+
+    public SyntheticCorpus() {
+        this(DEFAULT_SEED);
+    }
+
+    public SyntheticCorpus(long seed) {
+        this.seed = seed;
+        cumulative = new double[VOCABULARY_SIZE];
+        double total = 0;
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            total += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < VOCABULARY_SIZE; i++)
+            cumulative[i] /= total;
+    }
+
+    /**
+     * Get the word with the specified frequency rank.
+     *
+     * Rank 0 is the most frequent word. Useful for constructing queries with a known
+     * number of hits.
+     *
+     * @param rank frequency rank
+     * @return the word
+     */
+    public static String word(int rank) {
+        return lemma(rank) + SUFFIXES[rank % SUFFIXES.length];
+    }
+
+    /**
+     * Get the lemma of the word with the specified frequency rank.
+     *
+     * Different words share lemmas (they only differ in their suffix).
+     *
+     * @param rank frequency rank
+     * @return the lemma
+     */
+    public static String lemma(int rank) {
+        StringBuilder b = new StringBuilder();
+        int n = rank / SUFFIXES.length;
+        do {
+            b.append(SYLLABLES[n % SYLLABLES.length]);
+            n /= SYLLABLES.length;
+        } while (n > 0);
+        return b.toString();
+    }
+
+    /**
+     * Get the part of speech of the word with the specified frequency rank.
+     *
+     * @param rank frequency rank
+     * @return the part of speech
+     */
+    public static String pos(int rank) {
+        // Frequent words are often function words
+        return rank < 50 ? POS[4 + rank % 4] : POS[rank % 4];
+    }
+
+    private int randomRank(Random random) {
+        int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(i < 0 ? -i - 1 : i, VOCABULARY_SIZE - 1);
+    }
+
+    /**
+     * Generate a document.
+     *
+     * @param docNumber document number
+     * @return the document XML
+     */
+    public String document(int docNumber) {
+        Random random = new Random(seed * 31 + docNumber);
+        int length = AVERAGE_DOC_LENGTH / 2 + random.nextInt(AVERAGE_DOC_LENGTH);
+        StringBuilder doc = new StringBuilder(length * 40);
+        doc.append("<doc pid='").append(docNumber)
+                .append("' title='Document ").append(docNumber)
+                .append("' year='").append(1800 + random.nextInt(221))
+                .append("' genre='").append(GENRES[random.nextInt(GENRES.length)]).append("'>");
+        int sentenceLeft = 0;
+        int entityLeft = 0;
+        for (int i = 0; i < length; i++) {
+            if (sentenceLeft == 0) {
+                if (i > 0)
+                    doc.append(".</s>");
+                doc.append("<s>");
+                sentenceLeft = 5 + random.nextInt(25);
+            }
+            if (entityLeft == 0 && random.nextInt(20) == 0) {
+                doc.append("<entity>");
+                entityLeft = Math.min(1 + random.nextInt(3), sentenceLeft);
+            }
+            int rank = randomRank(random);
+            doc.append("<w l='").append(lemma(rank)).append("' p='").append(pos(rank)).append("'>")
+                    .append(word(rank)).append("</w> ");
+            sentenceLeft--;
+            if (entityLeft > 0 && --entityLeft == 0)
+                doc.append("</entity>");
+        }
+        if (entityLeft > 0)
+            doc.append("</entity>");
+        doc.append(".</s></doc>");
+        return doc.toString();
+    }
+
+    /**
+     * Open the benchmark index, generating it first if necessary.
+     *
+     * Indexes are kept between runs, as generating them takes a while.
+     *
+     * @param dir directory to keep the generated indexes in
+     * @param indexType index type to generate
+     * @param numberOfDocs number of documents
+     * @return the index
+     */
+    public BlackLabIndex openIndex(File dir, BlackLabIndex.IndexType indexType, int numberOfDocs) {
+        return BlackLab.open(generateIndex(dir, indexType, numberOfDocs));
+    }
+
+    /**
+     * Generate the benchmark index, unless it already exists.
+     *
+     * @param dir directory to keep the generated indexes in
+     * @param indexType index type to generate
+     * @param numberOfDocs number of documents
+     * @return the index directory
+     */
+    public File generateIndex(File dir, BlackLabIndex.IndexType indexType, int numberOfDocs) {
+        File indexDir = new File(dir, indexType.toString().toLowerCase() + "-" + numberOfDocs + "-" + seed);
+        try {
+            registerFormat(dir);
+            if (!new File(indexDir, INDEX_COMPLETE_MARKER).exists()) {
+                if (indexDir.exists())
+                    FileUtils.deleteDirectory(indexDir); // incomplete, start over
+                createIndex(indexDir, indexType, numberOfDocs);
+            }
+            return indexDir;
+        } catch (IOException | DocumentFormatNotFound e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    private void createIndex(File indexDir, BlackLabIndex.IndexType indexType, int numberOfDocs)
+            throws DocumentFormatNotFound, IOException {
+        System.err.println("Generating synthetic index with " + numberOfDocs + " docs in " + indexDir + "...");
+        BlackLabIndexWriter indexWriter = BlackLab.openForWriting(indexDir, true, FORMAT_NAME, null, indexType);
+        Indexer indexer = Indexer.create(indexWriter);
+        AtomicBoolean errorOccurred = new AtomicBoolean();
+        indexer.setListener(new IndexListener() {
+            @Override
+            public boolean errorOccurred(Throwable e, String path, File f) {
+                errorOccurred.set(true);
+                return false; // don't continue
+            }
+        });
+        try {
+            for (int i = 0; i < numberOfDocs; i++) {
+                indexer.index("doc" + i, document(i).getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            indexer.close();
+        }
+        if (errorOccurred.get())
+            throw new BlackLabRuntimeException("Error generating synthetic index");
+        Files.createFile(new File(indexDir, INDEX_COMPLETE_MARKER).toPath());
+    }
+
+    /** Make sure our input format is known. */
+    private static synchronized void registerFormat(File dir) throws IOException {
+        if (DocumentFormats.isSupported(FORMAT_NAME))
+            return;
+        File formatsDir = new File(dir, "formats");
+        if (!formatsDir.exists() && !formatsDir.mkdirs())
+            throw new IOException("Could not create directory " + formatsDir);
+        String fileName = FORMAT_NAME + ".blf.yaml";
+        try (InputStream is = SyntheticCorpus.class.getResourceAsStream("/formats/" + fileName)) {
+            if (is == null)
+                throw new IOException("Format resource not found: " + fileName);
+            Files.copy(is, new File(formatsDir, fileName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        DocumentFormats.registerFormatsInDirectories(List.of(formatsDir));
+    }
+
+}
@@ -0,0 +1,100 @@
+package nl.inl.blacklab.benchmarks.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import nl.inl.blacklab.searches.SearchCache;
+import nl.inl.blacklab.server.BlackLabServer;
+import nl.inl.blacklab.server.search.BlsCache;
+
+/**
+ * BlackLab Server running in-process in an embedded Jetty, serving a single corpus.
+ *
+ * BlackLab Server looks for its configuration file in the parent directory of the webapp,
+ * so we create a work directory with a blacklab-server.yaml and an (empty) webapp directory.
+ */
+class EmbeddedServer implements AutoCloseable {
+
+    private static final String CONTEXT_PATH = "/blacklab-server";
+
+    private final Server server;
+
+    private final BlackLabServer servlet;
+
+    private final URI corpusUri;
+
+    /**
+     * Start the server.
+     *
+     * @param workDir directory for the configuration file and webapp directory
+     * @param indexDir corpus to serve (the corpus name is the directory name)
+     */
+    EmbeddedServer(File workDir, File indexDir) throws Exception {
+        File webappDir = new File(workDir, "webapp");
+        if (!webappDir.exists() && !webappDir.mkdirs())
+            throw new IOException("Could not create directory " + webappDir);
+        writeConfig(workDir, indexDir);
+
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setHost("localhost");
+        connector.setPort(0); // any free port
+        server.addConnector(connector);
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath(CONTEXT_PATH);
+        context.setResourceBase(webappDir.getAbsolutePath());
+        servlet = new BlackLabServer();
+        ServletHolder holder = new ServletHolder(servlet);
+        holder.setAsyncSupported(true); // (as in web.xml)
+        context.addServlet(holder, "/*");
+        server.setHandler(context);
+        server.start();
+
+        corpusUri = URI.create("http://localhost:" + connector.getLocalPort() + CONTEXT_PATH + "/" +
+                indexDir.getName() + "/");
+    }
+
+    private static void writeConfig(File workDir, File indexDir) throws IOException {
+        String config = "configVersion: 2\n" +
+                "indexLocations:\n" +
+                "- " + indexDir.getAbsoluteFile().getParentFile().getCanonicalPath() + "\n" +
+                "protocol:\n" +
+                "  defaultOutputType: json\n";
+        FileUtils.writeStringToFile(new File(workDir, "blacklab-server.yaml"), config, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the URI of the corpus we're serving.
+     *
+     * @return corpus URI, ending in a slash
+     */
+    URI corpusUri() {
+        return corpusUri;
+    }
+
+    /**
+     * Get the number of cache hits and misses per type of search so far.
+     *
+     * @return map of search type to hits and misses (empty if the cache is disabled)
+     */
+    Map<String, Map<String, Long>> cacheHitsAndMisses() {
+        if (servlet.getSearchManager() == null)
+            return Map.of(); // no requests handled yet
+        SearchCache cache = servlet.getSearchManager().getBlackLabCache();
+        return cache instanceof BlsCache ? ((BlsCache) cache).getHitsAndMissesPerType() : Map.of();
+    }
+
+    @Override
+    public void close() throws Exception {
+        server.stop();
+    }
+}
@@ -0,0 +1,106 @@
+package nl.inl.blacklab.benchmarks.loadtest;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import nl.inl.blacklab.benchmarks.SyntheticCorpus;
+
+/**
+ * Types of requests the load test sends, and how to construct them.
+ *
+ * Query terms are taken from the most frequent words in the synthetic corpus.
+ * There are only a limited number of different requests per type, so
+ * (like with real users) some requests will be answered from the cache.
+ */
+enum Endpoint {
+    HITS("hits") {
+        @Override
+        String pathAndQuery(Random random) {
+            return "hits?number=20&patt=" + encode(pattern(random));
+        }
+    },
+    GROUPED_HITS("grouped") {
+        @Override
+        String pathAndQuery(Random random) {
+            return "hits?number=20&group=hit:lemma:i&patt=" + encode(pattern(random));
+        }
+    },
+    DOCS("docs") {
+        @Override
+        String pathAndQuery(Random random) {
+            return "docs?number=20&patt=" + encode(pattern(random));
+        }
+    },
+    COLLOCATIONS("colloc") {
+        @Override
+        String pathAndQuery(Random random) {
+            return "hits?calc=colloc&patt=" + encode(pattern(random));
+        }
+    },
+    TERMFREQ("termfreq") {
+        @Override
+        String pathAndQuery(Random random) {
+            String annotation = random.nextBoolean() ? "word" : "lemma";
+            return "termfreq?number=50&annotation=" + annotation;
+        }
+    },
+    AUTOCOMPLETE("autocomplete") {
+        @Override
+        String pathAndQuery(Random random) {
+            String word = SyntheticCorpus.word(random.nextInt(NUMBER_OF_QUERY_TERMS));
+            String prefix = word.substring(0, Math.min(word.length(), 1 + random.nextInt(3)));
+            return "autocomplete/contents/word?term=" + encode(prefix);
+        }
+    };
+
+    /** How many different words to use in queries */
+    private static final int NUMBER_OF_QUERY_TERMS = 200;
+
+    private final String code;
+
+    Endpoint(String code) {
+        this.code = code;
+    }
+
+    /**
+     * Get the code for this endpoint, used in the mix option and the report.
+     *
+     * @return the code
+     */
+    String code() {
+        return code;
+    }
+
+    /**
+     * Construct a request path and query string (relative to the corpus URL).
+     *
+     * @param random random generator to choose the query with
+     * @return path and query string
+     */
+    abstract String pathAndQuery(Random random);
+
+    static Endpoint fromCode(String code) {
+        for (Endpoint endpoint: values()) {
+            if (endpoint.code.equals(code))
+                return endpoint;
+        }
+        throw new IllegalArgumentException("Unknown endpoint: " + code);
+    }
+
+    private static String pattern(Random random) {
+        int rank = random.nextInt(NUMBER_OF_QUERY_TERMS);
+        switch (random.nextInt(3)) {
+        case 0:
+            return "\"" + SyntheticCorpus.word(rank) + "\"";
+        case 1:
+            return "[lemma=\"" + SyntheticCorpus.lemma(rank) + "\"]";
+        default:
+            return "\"" + SyntheticCorpus.word(rank) + "\" [pos=\"NOU\"]";
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,250 @@
+package nl.inl.blacklab.benchmarks.loadtest;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.commons.io.FileUtils;
+
+import nl.inl.blacklab.benchmarks.SyntheticCorpus;
+import nl.inl.blacklab.search.BlackLabIndex;
+
+/**
+ * End-to-end load test for BlackLab Server.
+ *
+ * Starts BlackLab Server in-process on a synthetic corpus (see {@link SyntheticCorpus}) and
+ * sends it a mix of requests at a fixed rate, recording the latency per type of request in
+ * an HdrHistogram. Also reports how many searches were answered from the cache.
+ *
+ * The load is open-loop: requests are sent at their scheduled time, whether or not earlier
+ * requests have completed, and latency is measured from the scheduled time. This way, a
+ * server that falls behind shows up as higher latency instead of a lower request rate
+ * (no "coordinated omission").
+ *
+ * Results are written to a JSON file. If a baseline results file is given, the run fails
+ * (exit code 1) if the 99th percentile latency or the throughput of any request type
+ * is worse than the baseline by more than the tolerance, or if more requests failed.
+ *
+ * Options (all optional): --docs=N --rate=REQ_PER_SEC --duration=SEC --warmup=SEC
+ * --mix=hits:30,grouped:15,... --seed=N --dir=INDEX_DIR --out=FILE --baseline=FILE --tolerance=FRACTION
+ */
+public class LoadTest {
+
+    /** Default weights of the different request types */
+    private static final String DEFAULT_MIX = "hits:30,grouped:15,docs:20,colloc:5,termfreq:10,autocomplete:20";
+
+    /** Highest latency we can record (microseconds) */
+    private static final long MAX_LATENCY_US = TimeUnit.MINUTES.toMicros(10);
+
+    /** How long to wait for outstanding requests at the end of a phase */
+    private static final long OUTSTANDING_REQUESTS_TIMEOUT_SEC = 600;
+
+    private final int numberOfDocs;
+
+    private final double requestsPerSecond;
+
+    private final int durationSec;
+
+    private final int warmupSec;
+
+    private final Map<Endpoint, Integer> mix;
+
+    private final long seed;
+
+    private final File dir;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+    LoadTest(Map<String, String> options) {
+        numberOfDocs = Integer.parseInt(options.getOrDefault("docs", "1000"));
+        requestsPerSecond = Double.parseDouble(options.getOrDefault("rate", "50"));
+        durationSec = Integer.parseInt(options.getOrDefault("duration", "60"));
+        warmupSec = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        mix = parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+        seed = Long.parseLong(options.getOrDefault("seed", Long.toString(SyntheticCorpus.DEFAULT_SEED)));
+        dir = new File(options.getOrDefault("dir", System.getProperty("blacklab.benchmarks.dir", "target/benchmark-indexes")));
+        if (requestsPerSecond <= 0 || durationSec <= 0)
+            throw new IllegalArgumentException("rate and duration must be positive");
+    }
+
+    private static Map<Endpoint, Integer> parseMix(String value) {
+        Map<Endpoint, Integer> result = new EnumMap<>(Endpoint.class);
+        for (String part: value.split(",")) {
+            String[] codeAndWeight = part.trim().split(":", 2);
+            int weight = codeAndWeight.length > 1 ? Integer.parseInt(codeAndWeight[1]) : 1;
+            if (weight > 0)
+                result.put(Endpoint.fromCode(codeAndWeight[0]), weight);
+        }
+        if (result.isEmpty())
+            throw new IllegalArgumentException("Request mix is empty");
+        return result;
+    }
+
+    /**
+     * Latencies and errors per request type during one phase of the test.
+     */
+    private static class Phase {
+        final Map<Endpoint, Histogram> latencies = new EnumMap<>(Endpoint.class);
+
+        final Map<Endpoint, LongAdder> errors = new EnumMap<>(Endpoint.class);
+
+        long durationNanos;
+
+        Phase(Iterable<Endpoint> endpoints) {
+            for (Endpoint endpoint: endpoints) {
+                latencies.put(endpoint, new ConcurrentHistogram(MAX_LATENCY_US, 3));
+                errors.put(endpoint, new LongAdder());
+            }
+        }
+
+        void record(Endpoint endpoint, long scheduledNanos, HttpResponse<?> response, Throwable exception) {
+            if (exception != null || response.statusCode() != 200) {
+                errors.get(endpoint).increment();
+            } else {
+                long latencyUs = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledNanos);
+                latencies.get(endpoint).recordValue(Math.min(latencyUs, MAX_LATENCY_US));
+            }
+        }
+    }
+
+    /**
+     * Send requests at the target rate for the specified time.
+     *
+     * @param server server to send requests to
+     * @param random random generator for choosing requests
+     * @param seconds how long to send requests
+     * @return latencies and errors
+     */
+    private Phase run(EmbeddedServer server, Random random, int seconds) {
+        Phase phase = new Phase(mix.keySet());
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        long numberOfRequests = (long) (seconds * requestsPerSecond);
+        List<CompletableFuture<?>> outstanding = new ArrayList<>();
+        long start = System.nanoTime();
+        for (long i = 0; i < numberOfRequests; i++) {
+            long scheduled = start + i * intervalNanos;
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0)
+                LockSupport.parkNanos(wait);
+
+            Endpoint endpoint = choose(random, totalWeight);
+            URI uri = server.corpusUri().resolve(endpoint.pathAndQuery(random));
+            HttpRequest request = HttpRequest.newBuilder(uri).header("Accept", "application/json").build();
+            outstanding.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> phase.record(endpoint, scheduled, response, e)));
+        }
+        try {
+            CompletableFuture.allOf(outstanding.toArray(new CompletableFuture[0]))
+                    .handle((v, e) -> null) // errors were recorded per request
+                    .get(OUTSTANDING_REQUESTS_TIMEOUT_SEC, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new RuntimeException("Error waiting for outstanding requests", e);
+        }
+        phase.durationNanos = System.nanoTime() - start;
+        return phase;
+    }
+
+    private Endpoint choose(Random random, int totalWeight) {
+        int n = random.nextInt(totalWeight);
+        for (Map.Entry<Endpoint, Integer> entry: mix.entrySet()) {
+            n -= entry.getValue();
+            if (n < 0)
+                return entry.getKey();
+        }
+        throw new IllegalStateException(); // can't happen
+    }
+
+    /**
+     * Run the load test.
+     *
+     * @return the results report
+     */
+    LoadTestReport run() throws Exception {
+        File indexDir = new SyntheticCorpus(seed).generateIndex(dir, BlackLabIndex.IndexType.INTEGRATED, numberOfDocs);
+        File workDir = Files.createTempDirectory("blacklab-loadtest").toFile();
+        try (EmbeddedServer server = new EmbeddedServer(workDir, indexDir)) {
+            Random random = new Random(seed);
+            if (warmupSec > 0) {
+                System.err.println("Warming up for " + warmupSec + "s...");
+                run(server, random, warmupSec);
+            }
+            Map<String, Map<String, Long>> cacheBefore = server.cacheHitsAndMisses();
+            System.err.println("Sending " + requestsPerSecond + " requests/s for " + durationSec + "s...");
+            Phase phase = run(server, random, durationSec);
+            Map<String, Map<String, Long>> cacheAfter = server.cacheHitsAndMisses();
+
+            LoadTestReport report = new LoadTestReport();
+            report.settings(numberOfDocs, requestsPerSecond, durationSec, warmupSec, mixCodes(), seed);
+            double seconds = phase.durationNanos / 1e9;
+            Histogram total = new Histogram(MAX_LATENCY_US, 3);
+            long totalErrors = 0;
+            for (Endpoint endpoint: mix.keySet()) {
+                Histogram latencies = phase.latencies.get(endpoint);
+                long errors = phase.errors.get(endpoint).sum();
+                report.endpoint(endpoint.code(), latencies, errors, seconds);
+                total.add(latencies);
+                totalErrors += errors;
+            }
+            report.total(total, totalErrors, seconds);
+            report.cache(cacheBefore, cacheAfter);
+            return report;
+        } finally {
+            FileUtils.deleteQuietly(workDir);
+        }
+    }
+
+    private Map<String, Integer> mixCodes() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        mix.forEach((endpoint, weight) -> result.put(endpoint.code(), weight));
+        return result;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg: args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("Options must be of the form --name=value: " + arg);
+            String[] nameValue = arg.substring(2).split("=", 2);
+            options.put(nameValue[0], nameValue[1]);
+        }
+        return options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        LoadTestReport report = new LoadTest(options).run();
+        System.out.println(report.summary());
+        File outputFile = new File(options.getOrDefault("out", "loadtest-results.json"));
+        report.write(outputFile);
+        System.err.println("Results written to " + outputFile);
+
+        if (options.containsKey("baseline")) {
+            double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "0.1"));
+            List<String> regressions = report.compareTo(LoadTestReport.read(new File(options.get("baseline"))), tolerance);
+            if (!regressions.isEmpty()) {
+                System.err.println("REGRESSION compared to baseline:");
+                regressions.forEach(r -> System.err.println("  " + r));
+                System.exit(1);
+            }
+            System.err.println("No regressions compared to baseline.");
+        }
+        System.exit(0); // don't wait for non-daemon threads
+    }
+}
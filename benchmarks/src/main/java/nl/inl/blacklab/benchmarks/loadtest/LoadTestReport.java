@@ -0,0 +1,168 @@
+package nl.inl.blacklab.benchmarks.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import nl.inl.util.Json;
+
+/**
+ * Results of a load test, as JSON, and comparison with a baseline.
+ *
+ * Structure: settings, total and per endpoint (requests, errors, throughput in
+ * requests/s, latency percentiles in ms), and cache hits and misses per type of search.
+ */
+class LoadTestReport {
+
+    /** Latency percentiles to report */
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private static final ObjectMapper MAPPER = Json.getJsonObjectMapper();
+
+    private final ObjectNode root;
+
+    LoadTestReport() {
+        this(MAPPER.createObjectNode());
+    }
+
+    private LoadTestReport(ObjectNode root) {
+        this.root = root;
+    }
+
+    static LoadTestReport read(File file) throws IOException {
+        return new LoadTestReport((ObjectNode) MAPPER.readTree(file));
+    }
+
+    void write(File file) throws IOException {
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(file, root);
+    }
+
+    void settings(int numberOfDocs, double requestsPerSecond, int durationSec, int warmupSec,
+            Map<String, Integer> mix, long seed) {
+        ObjectNode settings = root.putObject("settings");
+        settings.put("docs", numberOfDocs);
+        settings.put("rate", requestsPerSecond);
+        settings.put("durationSec", durationSec);
+        settings.put("warmupSec", warmupSec);
+        settings.put("seed", seed);
+        ObjectNode mixNode = settings.putObject("mix");
+        mix.forEach(mixNode::put);
+    }
+
+    void endpoint(String code, Histogram latencies, long errors, double seconds) {
+        stats(root.with("endpoints").putObject(code), latencies, errors, seconds);
+    }
+
+    void total(Histogram latencies, long errors, double seconds) {
+        stats(root.putObject("total"), latencies, errors, seconds);
+    }
+
+    private static void stats(ObjectNode node, Histogram latencies, long errors, double seconds) {
+        node.put("requests", latencies.getTotalCount() + errors);
+        node.put("errors", errors);
+        node.put("throughput", latencies.getTotalCount() / seconds);
+        ObjectNode ms = node.putObject("latencyMs");
+        ms.put("mean", latencies.getMean() / 1000);
+        for (double percentile: PERCENTILES)
+            ms.put("p" + (percentile == (int) percentile ? Integer.toString((int) percentile) : Double.toString(percentile)),
+                    latencies.getValueAtPercentile(percentile) / 1000.0);
+        ms.put("max", latencies.getMaxValue() / 1000.0);
+    }
+
+    /**
+     * Record cache hits and misses during the test.
+     *
+     * @param before counts per search type before the test
+     * @param after counts per search type after the test
+     */
+    void cache(Map<String, Map<String, Long>> before, Map<String, Map<String, Long>> after) {
+        ObjectNode cache = root.putObject("cache");
+        after.forEach((type, counts) -> {
+            Map<String, Long> countsBefore = before.getOrDefault(type, Map.of());
+            long hits = counts.get("hits") - countsBefore.getOrDefault("hits", 0L);
+            long misses = counts.get("misses") - countsBefore.getOrDefault("misses", 0L);
+            if (hits + misses == 0)
+                return;
+            ObjectNode node = cache.putObject(type);
+            node.put("hits", hits);
+            node.put("misses", misses);
+            node.put("hitRatio", (double) hits / (hits + misses));
+        });
+    }
+
+    /**
+     * Compare with a baseline run.
+     *
+     * @param baseline baseline results
+     * @param tolerance how much worse (fraction) p99 latency or throughput may get
+     *                  (any increase in the fraction of failed requests is a regression)
+     * @return descriptions of regressions found (empty if none)
+     */
+    List<String> compareTo(LoadTestReport baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        compare("total", root.path("total"), baseline.root.path("total"), tolerance, regressions);
+        Iterator<Map.Entry<String, JsonNode>> it = root.path("endpoints").fields();
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            JsonNode base = baseline.root.path("endpoints").path(entry.getKey());
+            if (!base.isMissingNode())
+                compare(entry.getKey(), entry.getValue(), base, tolerance, regressions);
+        }
+        return regressions;
+    }
+
+    private static void compare(String name, JsonNode current, JsonNode base, double tolerance, List<String> regressions) {
+        double p99 = current.path("latencyMs").path("p99").asDouble();
+        double baseP99 = base.path("latencyMs").path("p99").asDouble();
+        if (baseP99 > 0 && p99 > baseP99 * (1 + tolerance))
+            regressions.add(String.format("%s: p99 latency %.1f ms, baseline %.1f ms", name, p99, baseP99));
+        double throughput = current.path("throughput").asDouble();
+        double baseThroughput = base.path("throughput").asDouble();
+        if (throughput < baseThroughput * (1 - tolerance))
+            regressions.add(String.format("%s: throughput %.1f req/s, baseline %.1f req/s", name, throughput, baseThroughput));
+        double errorRate = errorRate(current);
+        double baseErrorRate = errorRate(base);
+        if (errorRate > baseErrorRate)
+            regressions.add(String.format("%s: %.1f%% errors, baseline %.1f%%", name, errorRate * 100, baseErrorRate * 100));
+    }
+
+    private static double errorRate(JsonNode node) {
+        long requests = node.path("requests").asLong();
+        return requests == 0 ? 0 : (double) node.path("errors").asLong() / requests;
+    }
+
+    /**
+     * Get a human-readable summary of the results.
+     *
+     * @return summary table
+     */
+    String summary() {
+        StringBuilder b = new StringBuilder();
+        b.append(String.format("%-14s %9s %7s %10s %9s %9s %9s %9s%n", "endpoint", "requests", "errors",
+                "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        root.path("endpoints").fields().forEachRemaining(e -> summaryLine(b, e.getKey(), e.getValue()));
+        summaryLine(b, "TOTAL", root.path("total"));
+        b.append(String.format("%ncache hit ratio per search type:%n"));
+        root.path("cache").fields().forEachRemaining(e -> b.append(String.format("  %-24s %5.1f%% (%d/%d)%n",
+                e.getKey(), e.getValue().path("hitRatio").asDouble() * 100, e.getValue().path("hits").asLong(),
+                e.getValue().path("hits").asLong() + e.getValue().path("misses").asLong())));
+        return b.toString();
+    }
+
+    private static void summaryLine(StringBuilder b, String name, JsonNode node) {
+        JsonNode ms = node.path("latencyMs");
+        b.append(String.format("%-14s %9d %7d %10.1f %9.1f %9.1f %9.1f %9.1f%n", name,
+                node.path("requests").asLong(), node.path("errors").asLong(), node.path("throughput").asDouble(),
+                ms.path("p50").asDouble(), ms.path("p90").asDouble(), ms.path("p99").asDouble(),
+                ms.path("max").asDouble()));
+    }
+}
@@ -0,0 +1,64 @@
+package nl.inl.blacklab.codec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import nl.inl.blacklab.benchmarks.SyntheticCorpus;
+
+/**
+ * Decoding content store blocks (in this package because the codec interface is package-private).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentStoreCodecBenchmarks {
+
+    /** How many documents to encode */
+    private static final int NUMBER_OF_DOCS = 20;
+
+    private final ContentStoreBlockCodec codec = ContentStoreBlockCodecZlib.INSTANCE;
+
+    private final List<byte[]> blocks = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Encode blocks of document content, as the content store does
+        SyntheticCorpus corpus = new SyntheticCorpus();
+        int blockSize = BlackLab40StoredFieldsFormat.DEFAULT_BLOCK_SIZE_CHARS;
+        try (ContentStoreBlockCodec.Encoder encoder = codec.getEncoder()) {
+            for (int i = 0; i < NUMBER_OF_DOCS; i++) {
+                String doc = corpus.document(i);
+                for (int offset = 0; offset < doc.length(); offset += blockSize) {
+                    blocks.add(encoder.encode(doc, offset, Math.min(blockSize, doc.length() - offset)));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void decodeBlocks(Blackhole blackhole) throws IOException {
+        try (ContentStoreBlockCodec.Decoder decoder = codec.getDecoder()) {
+            for (byte[] block: blocks) {
+                blackhole.consume(decoder.decode(block, 0, block.length));
+            }
+        }
+    }
+}
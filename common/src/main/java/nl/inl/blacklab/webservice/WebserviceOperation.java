@@ -18,6 +18,7 @@ public enum WebserviceOperation {
 
     HITS("hits", "hits"),
     HITS_CSV("hits-csv", "hits"), // TODO: shouldn't be separate operations
+    HITS_BINARY("hits-binary", "hits"),
     HITS_GROUPED("hits-grouped", "hits"),  // should -grouped be separate? (triggered by group/viewgroup params)
     DOCS("docs", "docs"),
     DOCS_CSV("docs-csv", "docs"), // TODO: shouldn't be separate operations
@@ -68,6 +68,7 @@ public enum WebserviceParameter {
     // How to process results
     INCLUDE_FACETS("facets"), // include facet information?
     INCLUDE_TOKEN_COUNT("includetokencount"), // count tokens in all matched documents?
+    INCLUDE_SORT_KEYS("includesortkeys"), // include keys to merge sorted results from several nodes? (used by proxy)
     MAX_HITS_TO_RETRIEVE("maxretrieve"),
     MAX_HITS_TO_COUNT("maxcount"), // limits to numbers of hits to process
 
@@ -132,6 +133,7 @@ public enum WebserviceParameter {
         defaultValues.put(HIT_START, "0");
         defaultValues.put(INCLUDE_GROUP_CONTENTS, "no");
         defaultValues.put(INCLUDE_TOKEN_COUNT, "no");
+        defaultValues.put(INCLUDE_SORT_KEYS, "no");
         defaultValues.put(MAX_HITS_TO_COUNT, "10000000");
         defaultValues.put(MAX_HITS_TO_RETRIEVE, "1000000");
         defaultValues.put(NUMBER_OF_RESULTS, "50");
@@ -41,6 +41,23 @@ public interface ContentStore {
      */
     String[] retrieveParts(int id, int[] start, int[] end);
 
+    /**
+     * Retrieve substrings from several documents.
+     *
+     * Implementations may retrieve the documents in parallel.
+     *
+     * @param ids   document ids
+     * @param start for each document, the starts of the substrings
+     * @param end   for each document, the ends of the substrings
+     * @return for each document, the substrings
+     */
+    default String[][] retrieveParts(int[] ids, int[][] start, int[][] end) {
+        String[][] parts = new String[ids.length][];
+        for (int i = 0; i < ids.length; i++)
+            parts[i] = retrieveParts(ids[i], start[i], end[i]);
+        return parts;
+    }
+
     /**
      * Close the content store
      */
@@ -43,6 +43,9 @@ public interface ContentStoreSegmentReader {
     /**
      * Get several parts of the field value.
      *
+     * More efficient than getting the parts separately, as each block of the value
+     * is only read and decoded once, even if parts overlap.
+     *
      * @param docId document id
      * @param luceneField field to get
      * @param start positions of the first character to get. Must all be zero or greater.
@@ -0,0 +1,103 @@
+package nl.inl.blacklab.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.LeafReaderContext;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.exceptions.InvalidInputFormatConfig;
+import nl.inl.blacklab.index.DocumentFormats;
+import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.indexers.config.ConfigInputFormat;
+import nl.inl.blacklab.indexers.config.InputFormatReader;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
+import nl.inl.blacklab.testutil.TestIndex;
+import nl.inl.util.UtilsForTesting;
+
+/**
+ * Test that the content store block codec can be chosen per field in the input format config.
+ */
+public class TestContentStoreCodec {
+
+    private static final String LZ4_FORMAT = "testformat-lz4";
+
+    private static UtilsForTesting.TestDir dirLz4;
+
+    private static BlackLabIndex indexLz4;
+
+    private static BlackLabIndex indexDefault;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        DocumentFormats.registerFormat(formatWithCodec("lz4"));
+        dirLz4 = UtilsForTesting.createBlackLabTestDir("TestContentStoreCodec");
+        BlackLabIndexWriter indexWriter = BlackLab.openForWriting(dirLz4.file(), true, LZ4_FORMAT, null,
+                BlackLabIndex.IndexType.INTEGRATED);
+        Indexer indexer = Indexer.create(indexWriter);
+        try {
+            for (int i = 0; i < TestIndex.TEST_DATA.length; i++) {
+                indexer.index("test" + (i + 1), TestIndex.TEST_DATA[i].getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            indexer.close();
+        }
+        indexLz4 = BlackLab.open(dirLz4.file());
+        indexDefault = TestIndex.get(BlackLabIndex.IndexType.INTEGRATED).index();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        indexLz4.close();
+        dirLz4.close();
+    }
+
+    /** The test format, with the specified content store codec for the contents field */
+    private static ConfigInputFormat formatWithCodec(String codecName) throws IOException {
+        String yaml;
+        try (InputStream is = TestContentStoreCodec.class.getResourceAsStream("/formats/testformat.blf.yaml")) {
+            yaml = IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+        ConfigInputFormat config = new ConfigInputFormat(LZ4_FORMAT);
+        InputFormatReader.read(new StringReader(yaml), false, config, null);
+        config.getAnnotatedField("contents").setContentStoreCodec(codecName);
+        return config;
+    }
+
+    @Test
+    public void testCodecAttribute() {
+        String luceneField = AnnotatedFieldNameUtil.contentStoreField("contents");
+        for (LeafReaderContext lrc: indexLz4.reader().leaves()) {
+            FieldInfo fieldInfo = lrc.reader().getFieldInfos().fieldInfo(luceneField);
+            Assert.assertEquals("lz4", BlackLabIndexIntegrated.contentStoreCodec(fieldInfo));
+        }
+    }
+
+    private static Map<String, String> contentsByPid(BlackLabIndex index) {
+        Map<String, String> contents = new HashMap<>();
+        index.forEachDocument((i, docId) -> contents.put(i.luceneDoc(docId).get("pid"), DocUtil.contents(i, docId, null)));
+        return contents;
+    }
+
+    @Test
+    public void testSameContents() {
+        Map<String, String> expected = contentsByPid(indexDefault);
+        Assert.assertEquals(TestIndex.TEST_DATA.length, expected.size());
+        Assert.assertEquals(expected, contentsByPid(indexLz4));
+    }
+
+    @Test
+    public void testInvalidCodec() throws IOException {
+        ConfigInputFormat config = formatWithCodec("nonexistent");
+        Assert.assertThrows(InvalidInputFormatConfig.class, () -> config.getAnnotatedField("contents").validate());
+    }
+}
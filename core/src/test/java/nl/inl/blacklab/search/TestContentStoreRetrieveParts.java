@@ -0,0 +1,77 @@
+package nl.inl.blacklab.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.testutil.TestIndex;
+import nl.inl.util.UtilsForTesting;
+
+/**
+ * Test retrieving substrings from several documents at once, from an index with several segments.
+ */
+public class TestContentStoreRetrieveParts {
+
+    private static UtilsForTesting.TestDir testDir;
+
+    private static BlackLabIndex index;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        testDir = UtilsForTesting.createBlackLabTestDir("TestContentStoreRetrieveParts");
+        // Index each document separately, so each ends up in its own segment
+        for (int i = 0; i < TestIndex.TEST_DATA.length; i++) {
+            BlackLabIndexWriter indexWriter = BlackLab.openForWriting(testDir.file(), i == 0, "testformat", null,
+                    BlackLabIndex.IndexType.INTEGRATED);
+            Indexer indexer = Indexer.create(indexWriter);
+            try {
+                indexer.index("test" + (i + 1), TestIndex.TEST_DATA[i].getBytes(StandardCharsets.UTF_8));
+            } finally {
+                indexer.close();
+            }
+        }
+        index = BlackLab.open(testDir.file());
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (index != null)
+            index.close();
+        if (testDir != null)
+            testDir.close();
+    }
+
+    @Test
+    public void testBatchSpanningSegments() {
+        Assert.assertTrue(index.reader().leaves().size() > 1);
+        ContentAccessor contentAccessor = index.contentAccessor(index.mainAnnotatedField());
+        List<Integer> docsInIndexOrder = new ArrayList<>();
+        index.forEachDocument((i, docId) -> docsInIndexOrder.add(docId));
+        int numberOfDocs = docsInIndexOrder.size();
+        Assert.assertEquals(TestIndex.TEST_DATA.length, numberOfDocs);
+        int[] docIds = new int[numberOfDocs];
+        int[][] start = new int[numberOfDocs][];
+        int[][] end = new int[numberOfDocs][];
+        for (int i = 0; i < numberOfDocs; i++) {
+            docIds[i] = docsInIndexOrder.get(numberOfDocs - 1 - i); // (not in segment order)
+            start[i] = new int[] { -1, 5 };
+            end[i] = new int[] { 10, 20 };
+        }
+        String[][] parts = contentAccessor.getSubstringsFromDocuments(docIds, null, start, end);
+        Assert.assertEquals(numberOfDocs, parts.length);
+        for (int i = 0; i < numberOfDocs; i++) {
+            String[] expected = contentAccessor.getSubstringsFromDocument(docIds[i], null,
+                    new int[] { 0, 5 }, new int[] { 10, 20 });
+            Assert.assertArrayEquals(expected, parts[i]);
+            Assert.assertEquals(10, parts[i][0].length());
+            // The caller's offsets should not have been modified
+            Assert.assertEquals(-1, start[i][0]);
+        }
+    }
+}
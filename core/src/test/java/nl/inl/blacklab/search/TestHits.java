@@ -32,6 +32,20 @@ public class TestHits {
         }
     }
 
+    @Test
+    public void testHitsRamBytesUsed() {
+        int[] aDoc = { 1, 2, 2, 3 };
+        int[] aStart = { 1, 2, 5, 1 };
+        int[] aEnd = { 2, 3, 7, 4 };
+        try (MockBlackLabIndex index = new MockBlackLabIndex()) {
+            Hits hits = Hits.list(index.createDefaultQueryInfo(), aDoc, aStart, aEnd);
+            Hits window = hits.window(0, 1);
+            // Should at least account for doc, start and end of each hit
+            Assert.assertTrue(hits.ramBytesUsed() >= aDoc.length * 3L * Integer.BYTES);
+            Assert.assertTrue(window.ramBytesUsed() < hits.ramBytesUsed());
+        }
+    }
+
     @Test
     public void testMockSpans() throws IOException {
         int[] aDoc = { 1, 2 };
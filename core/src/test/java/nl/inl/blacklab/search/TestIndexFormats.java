@@ -222,4 +222,32 @@ public class TestIndexFormats {
         }
     }
 
+    @Test
+    public void testContentStoreRetrieveMultipleDocuments() {
+        AnnotatedField fieldsContents = index.mainAnnotatedField();
+        ContentAccessor ca = index.contentAccessor(fieldsContents);
+        int n = TestIndex.TEST_DATA.length;
+        int[] docIds = new int[n];
+        Document[] documents = new Document[n];
+        int[][] starts = new int[n][];
+        int[][] ends = new int[n][];
+        for (int i = 0; i < n; i++) {
+            docIds[i] = testIndex.getDocIdForDocNumber(n - 1 - i); // (not in docId order)
+            documents[i] = index.luceneDoc(docIds[i]);
+            starts[i] = new int[] { 5, 0, 10, 0 }; // (overlapping parts)
+            ends[i] = new int[] { 15, 10, 12, -1 };
+        }
+        String[][] substrings = ca.getSubstringsFromDocuments(docIds, documents, starts, ends);
+        Assert.assertEquals(n, substrings.length);
+        for (int i = 0; i < n; i++) {
+            String docContents = TestIndex.TEST_DATA[n - 1 - i];
+            Assert.assertArrayEquals(new String[] {
+                    docContents.substring(5, 15),
+                    docContents.substring(0, 10),
+                    docContents.substring(10, 12),
+                    docContents
+            }, substrings[i]);
+        }
+    }
+
 }
@@ -0,0 +1,191 @@
+package nl.inl.blacklab.search;
+
+import java.io.File;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.DocumentFormatNotFound;
+import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
+import nl.inl.blacklab.forwardindex.Terms;
+import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.blacklab.search.results.Concordances;
+import nl.inl.blacklab.search.results.ContextSize;
+import nl.inl.blacklab.search.results.Hit;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.Kwics;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.testutil.TestIndex;
+import nl.inl.util.UtilsForTesting;
+
+/**
+ * Test reopening an integrated index after documents were added.
+ */
+public class TestIndexReopen {
+
+    private UtilsForTesting.TestDir testDir;
+
+    private BlackLabIndex index;
+
+    @Before
+    public void setUp() {
+        testDir = UtilsForTesting.createBlackLabTestDir("TestIndexReopen");
+        addDocs(true, 0, 2);
+        try {
+            index = BlackLab.open(testDir.file());
+        } catch (ErrorOpeningIndex e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+        testDir.close();
+    }
+
+    private void addDocs(boolean create, int from, int to) {
+        File dir = testDir.file();
+        try {
+            BlackLabIndexWriter indexWriter = BlackLab.openForWriting(dir, create, create ? "testformat" : null,
+                    null, BlackLabIndex.IndexType.INTEGRATED);
+            Indexer indexer = Indexer.create(indexWriter);
+            try {
+                for (int i = from; i < to; i++) {
+                    indexer.index("test" + (i + 1), TestIndex.TEST_DATA[i].getBytes());
+                }
+            } finally {
+                indexer.close();
+            }
+        } catch (DocumentFormatNotFound | ErrorOpeningIndex e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    private Hits find(String pattern) {
+        try {
+            return index.find(CorpusQueryLanguageParser.parse(pattern).toQuery(QueryInfo.create(index)), null);
+        } catch (InvalidQuery e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    private long count(String pattern) {
+        return find(pattern).size();
+    }
+
+    private Map<String, Integer> termIds(Terms terms) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < terms.numberOfTerms(); i++)
+            ids.put(terms.get(i), i);
+        return ids;
+    }
+
+    @Test
+    public void testReopen() {
+        Annotation word = index.mainAnnotatedField().annotation("word");
+        Assert.assertEquals(2, count("'the'"));
+        Assert.assertEquals(0, count("'question'"));
+        Assert.assertFalse(index.reopenIfChanged());
+        Map<String, Integer> idsBefore = termIds(index.annotationForwardIndex(word).terms());
+
+        addDocs(false, 2, 4);
+        Assert.assertEquals(0, count("'question'")); // not visible until we reopen
+        Assert.assertTrue(index.reopenIfChanged());
+        Assert.assertEquals(1, index.readerGeneration());
+
+        // New documents are found
+        Assert.assertEquals(4, count("'the'"));
+        Assert.assertEquals(1, count("'question'"));
+        Assert.assertEquals(4, index.metadata().documentCount());
+
+        // Existing term ids didn't change
+        AnnotationForwardIndex afi = index.annotationForwardIndex(word);
+        Terms terms = afi.terms();
+        Map<String, Integer> idsAfter = termIds(terms);
+        for (Map.Entry<String, Integer> e: idsBefore.entrySet()) {
+            Assert.assertEquals(e.getValue(), idsAfter.get(e.getKey()));
+        }
+        Assert.assertTrue(idsAfter.containsKey("question"));
+
+        // Sort positions are consistent with the collator
+        for (MatchSensitivity sensitivity: List.of(MatchSensitivity.SENSITIVE, MatchSensitivity.INSENSITIVE)) {
+            Collator collator = afi.collators().get(sensitivity);
+            List<Integer> ids = new ArrayList<>(idsAfter.values());
+            for (int a: ids) {
+                for (int b: ids) {
+                    int expected = Integer.signum(collator.compare(terms.get(a), terms.get(b)));
+                    int actual = Integer.signum(Integer.compare(terms.idToSortPosition(a, sensitivity),
+                            terms.idToSortPosition(b, sensitivity)));
+                    Assert.assertEquals(terms.get(a) + " vs. " + terms.get(b), expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAcquiredReaderStaysOpen() {
+        IndexReader acquired = index.acquireReader();
+        addDocs(false, 2, 3);
+        Assert.assertTrue(index.reopenIfChanged());
+        addDocs(false, 3, 4);
+        Assert.assertTrue(index.reopenIfChanged());
+
+        // Two reopens later, a search that acquired the first reader can still use it
+        Assert.assertNotSame(acquired, index.reader());
+        Assert.assertEquals(2, acquired.numDocs() - 1); // (minus the index metadata document)
+        index.releaseReader(acquired);
+        Assert.assertEquals(0, acquired.getRefCount()); // closed by the last release
+        Assert.assertEquals(4, count("'the'"));
+    }
+
+    @Test
+    public void testLazyHitsSurviveReopen() {
+        ContextSize contextSize = ContextSize.get(2);
+        Hits expected = find("[]");
+        Kwics expectedKwics = expected.kwics(contextSize);
+        Concordances expectedConcs = expected.concordances(contextSize, ConcordanceType.CONTENT_STORE);
+
+        // Start reading hits, and hold on to the reader they use, like the search cache does
+        Hits hits = find("[]");
+        hits.get(0);
+        Assert.assertFalse(hits.hitsStats().done());
+        IndexReader reader = hits.queryInfo().reader();
+        Assert.assertTrue(reader.tryIncRef());
+        try {
+            addDocs(false, 2, 3);
+            Assert.assertTrue(index.reopenIfChanged());
+            addDocs(false, 3, 4);
+            Assert.assertTrue(index.reopenIfChanged());
+
+            // The hits are still read from the index as it was when the search started,
+            // using the forward index and content store for that reader
+            Assert.assertEquals(expected.size(), hits.size());
+            Kwics kwics = hits.kwics(contextSize);
+            Concordances concs = hits.concordances(contextSize, ConcordanceType.CONTENT_STORE);
+            for (long i = 0; i < hits.size(); i++) {
+                Hit hit = hits.get(i);
+                Assert.assertEquals(expected.get(i), hit);
+                Assert.assertEquals(expectedKwics.get(hit).toString(), kwics.get(hit).toString());
+                Assert.assertEquals(expectedConcs.get(hit).toString(), concs.get(hit).toString());
+            }
+        } finally {
+            index.releaseReader(reader);
+        }
+        Assert.assertEquals(0, reader.getRefCount()); // closed by the last release
+    }
+}
@@ -0,0 +1,65 @@
+package nl.inl.blacklab.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import nl.inl.blacklab.search.lucene.QueryRewriteCache;
+import nl.inl.blacklab.testutil.TestIndex;
+
+/**
+ * Test that optimized and rewritten queries are reused, and give the same results.
+ */
+@RunWith(Parameterized.class)
+public class TestQueryRewriteCache {
+
+    @Parameterized.Parameters(name = "index type {0}")
+    public static Collection<TestIndex> typeToUse() {
+        return TestIndex.typesForTests();
+    }
+
+    @Parameterized.Parameter
+    public TestIndex testIndex;
+
+    @After
+    public void tearDown() {
+        QueryRewriteCache.get().setMaxSize(QueryRewriteCache.DEFAULT_MAX_SIZE);
+    }
+
+    @Test
+    public void testRepeatedQuery() {
+        QueryRewriteCache cache = QueryRewriteCache.get();
+        cache.clear();
+        List<String> expected = Arrays.asList(
+                "brown [fox] jumps",
+                "the [Force] be");
+        long hitsBefore = cache.stats().hitCount();
+        Assert.assertEquals(expected, testIndex.findConc(" 'fo.*' "));
+        Assert.assertEquals(hitsBefore, cache.stats().hitCount());
+
+        // Same query, differently formatted: should be found in the cache
+        Assert.assertEquals(expected, testIndex.findConc("  \"fo.*\""));
+        Assert.assertEquals(hitsBefore + 1, cache.stats().hitCount());
+
+        // Different sensitivity: should not be found in the cache
+        Assert.assertEquals(List.of("brown [fox] jumps"), testIndex.findConc(" '(?-i)fo.*' "));
+        Assert.assertEquals(hitsBefore + 1, cache.stats().hitCount());
+    }
+
+    @Test
+    public void testDisabled() {
+        QueryRewriteCache cache = QueryRewriteCache.get();
+        cache.setMaxSize(0);
+        long hitsBefore = cache.stats().hitCount();
+        List<String> expected = testIndex.findConc(" 'the' ");
+        Assert.assertEquals(expected, testIndex.findConc(" 'the' "));
+        Assert.assertEquals(hitsBefore, cache.stats().hitCount());
+        Assert.assertEquals(0, cache.cache().estimatedSize());
+    }
+}
@@ -0,0 +1,90 @@
+package nl.inl.blacklab.search;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.DocumentFormatNotFound;
+import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.util.UtilsForTesting;
+
+/**
+ * Test indexing a large input file on multiple threads by splitting it at document boundaries.
+ */
+public class TestSplitFileIndexing {
+
+    private static final int NUMBER_OF_DOCS = 5000;
+
+    private static final int TOKENS_PER_DOC = 20;
+
+    private UtilsForTesting.TestDir testDir;
+
+    private int prevSplitFilesLargerThanMegs;
+
+    @Before
+    public void setUp() {
+        testDir = UtilsForTesting.createBlackLabTestDir("TestSplitFileIndexing");
+        prevSplitFilesLargerThanMegs = BlackLab.config().getIndexing().getSplitFilesLargerThanMegs();
+        BlackLab.config().getIndexing().setSplitFilesLargerThanMegs(1);
+    }
+
+    @After
+    public void tearDown() {
+        BlackLab.config().getIndexing().setSplitFilesLargerThanMegs(prevSplitFilesLargerThanMegs);
+        testDir.close();
+    }
+
+    /** Generate a word-per-line file with many documents */
+    private static byte[] generateInput() {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < NUMBER_OF_DOCS; i++) {
+            b.append("<doc id=\"").append(i).append("\">\n<s>\n");
+            for (int j = 0; j < TOKENS_PER_DOC; j++) {
+                String word = j == 0 ? "doc" + i : "word" + j;
+                b.append(word).append("\tNOU\t").append(word).append("\n");
+            }
+            b.append("</s>\n</doc>\n");
+        }
+        return b.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long count(BlackLabIndex index, String pattern) {
+        try {
+            return index.find(CorpusQueryLanguageParser.parse(pattern).toQuery(QueryInfo.create(index)), null).size();
+        } catch (InvalidQuery e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    @Test
+    public void testSplitFileIndexing() throws ErrorOpeningIndex, DocumentFormatNotFound {
+        byte[] input = generateInput();
+        Assert.assertTrue(input.length > 1_000_000);
+
+        BlackLabIndexWriter indexWriter = BlackLab.openForWriting(testDir.file(), true, "sketch-wpl", null,
+                BlackLabIndex.IndexType.INTEGRATED);
+        Indexer indexer = Indexer.create(indexWriter);
+        try {
+            indexer.setNumberOfThreadsToUse(4);
+            indexer.index("corpus.wpl", input);
+        } finally {
+            indexer.close();
+        }
+
+        try (BlackLabIndex index = BlackLab.open(testDir.file())) {
+            Assert.assertEquals(NUMBER_OF_DOCS, index.metadata().documentCount());
+            Assert.assertEquals(NUMBER_OF_DOCS, count(index, "'word1'"));
+            Assert.assertEquals(1, count(index, "'doc0' 'word1'"));
+            Assert.assertEquals(1, count(index, "'doc" + (NUMBER_OF_DOCS - 1) + "' 'word1'"));
+            Assert.assertEquals(NUMBER_OF_DOCS, count(index, "<s/> containing 'word5'"));
+        }
+    }
+}
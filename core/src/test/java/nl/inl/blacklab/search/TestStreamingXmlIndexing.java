@@ -0,0 +1,162 @@
+package nl.inl.blacklab.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InvalidInputFormatConfig;
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.index.DocumentFormats;
+import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.indexers.config.ConfigInputFormat;
+import nl.inl.blacklab.indexers.config.DocIndexerConfig;
+import nl.inl.blacklab.indexers.config.DocIndexerXmlStreaming;
+import nl.inl.blacklab.indexers.config.InputFormatReader;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.search.results.Concordances;
+import nl.inl.blacklab.search.results.ContextSize;
+import nl.inl.blacklab.search.results.Hit;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.testutil.TestIndex;
+import nl.inl.util.UtilsForTesting;
+
+/**
+ * Test that streaming XML processing indexes the test data the same way VTD-XML does.
+ */
+public class TestStreamingXmlIndexing {
+
+    private static final String STREAMING_FORMAT = "testformat-streaming";
+
+    private static final String[] QUERIES = {
+        "'the'",
+        "'zzz'",
+        "[lemma='be']",
+        "[pos='adj'] [pos='nou']",
+        "<s/> containing 'the'",
+        "<entity/>",
+        "'mier' 'aap'",
+        "[word='.']",
+        "[punct='.']"
+    };
+
+    private static UtilsForTesting.TestDir dirVtd;
+
+    private static UtilsForTesting.TestDir dirStreaming;
+
+    private static BlackLabIndex indexVtd;
+
+    private static BlackLabIndex indexStreaming;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        DocumentFormats.registerFormat(streamingFormat(""));
+        dirVtd = UtilsForTesting.createBlackLabTestDir("TestStreamingXmlIndexing-vtd");
+        dirStreaming = UtilsForTesting.createBlackLabTestDir("TestStreamingXmlIndexing-streaming");
+        indexVtd = createIndex(dirVtd, "testformat");
+        indexStreaming = createIndex(dirStreaming, STREAMING_FORMAT);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        indexVtd.close();
+        indexStreaming.close();
+        dirVtd.close();
+        dirStreaming.close();
+    }
+
+    /** The test format, with streaming processing and optionally some extra config */
+    private static ConfigInputFormat streamingFormat(String extraYaml) throws IOException {
+        String yaml;
+        try (InputStream is = TestStreamingXmlIndexing.class.getResourceAsStream("/formats/testformat.blf.yaml")) {
+            yaml = IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+        yaml += "\nfileTypeOptions:\n  processing: streaming\n" + extraYaml;
+        ConfigInputFormat config = new ConfigInputFormat(STREAMING_FORMAT);
+        InputFormatReader.read(new StringReader(yaml), false, config, null);
+        return config;
+    }
+
+    private static BlackLabIndex createIndex(UtilsForTesting.TestDir dir, String format) throws Exception {
+        BlackLabIndexWriter indexWriter = BlackLab.openForWriting(dir.file(), true, format, null,
+                BlackLabIndex.IndexType.INTEGRATED);
+        Indexer indexer = Indexer.create(indexWriter);
+        try {
+            for (int i = 0; i < TestIndex.TEST_DATA.length; i++) {
+                indexer.index("test" + (i + 1), TestIndex.TEST_DATA[i].getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            indexer.close();
+        }
+        return BlackLab.open(dir.file());
+    }
+
+    private static Hits find(BlackLabIndex index, String pattern) {
+        try {
+            return index.find(CorpusQueryLanguageParser.parse(pattern).toQuery(QueryInfo.create(index)), null);
+        } catch (InvalidQuery e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    private static List<String> describeHits(BlackLabIndex index, String pattern) {
+        Hits hits = find(index, pattern);
+        // Concordances from the content store rely on the character positions we recorded
+        Concordances concs = hits.concordances(index.defaultContextSize(), ConcordanceType.CONTENT_STORE);
+        List<String> result = new ArrayList<>();
+        for (Hit hit: hits) {
+            String pid = index.luceneDoc(hit.doc()).get("pid");
+            result.add(pid + ":" + hit.start() + "-" + hit.end() + " " + concs.get(hit).partsNoXml()[1]);
+        }
+        return result;
+    }
+
+    @Test
+    public void testSameHits() {
+        for (String query: QUERIES) {
+            List<String> expected = describeHits(indexVtd, query);
+            Assert.assertEquals(query, expected, describeHits(indexStreaming, query));
+        }
+        Assert.assertFalse(describeHits(indexStreaming, "'the'").isEmpty());
+    }
+
+    @Test
+    public void testConcordance() {
+        Hits hits = find(indexStreaming, "'lazy'");
+        Assert.assertEquals(1, hits.size());
+        Concordance conc = hits.concordances(ContextSize.get(2), ConcordanceType.CONTENT_STORE).get(hits.get(0));
+        Assert.assertArrayEquals(new String[] { "over the ", "lazy", " dog." }, conc.partsNoXml());
+        Assert.assertTrue(conc.match().contains("<w l=\"lazy\" p=\"adj\">lazy</w>"));
+    }
+
+    @Test
+    public void testMetadata() {
+        Assert.assertEquals(indexVtd.metadata().documentCount(), indexStreaming.metadata().documentCount());
+        List<String> titles = new ArrayList<>();
+        indexStreaming.forEachDocument((index, docId) -> titles.add(index.luceneDoc(docId).get("title")));
+        Assert.assertTrue(titles.contains("Star Wars"));
+        Assert.assertTrue(titles.contains("Bastardized Shakespeare"));
+    }
+
+    @Test
+    public void testUnsupportedXPath() throws IOException {
+        ConfigInputFormat config = streamingFormat("");
+        config.getAnnotatedField("contents").setWordPath(".//w[position() > 1]");
+        Assert.assertThrows(InvalidInputFormatConfig.class, () -> DocIndexerConfig.fromConfig(config));
+    }
+
+    @Test
+    public void testStreamingIndexerIsUsed() throws IOException {
+        Assert.assertTrue(DocIndexerConfig.fromConfig(streamingFormat("")) instanceof DocIndexerXmlStreaming);
+    }
+}
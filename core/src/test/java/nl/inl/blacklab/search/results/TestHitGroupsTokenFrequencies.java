@@ -0,0 +1,82 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.resultproperty.HitProperty;
+import nl.inl.blacklab.resultproperty.HitPropertyDocumentStoredField;
+import nl.inl.blacklab.resultproperty.HitPropertyHitText;
+import nl.inl.blacklab.resultproperty.HitPropertyMultiple;
+import nl.inl.blacklab.resultproperty.PropertyValue;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.searches.SearchHits;
+import nl.inl.blacklab.testutil.TestIndex;
+
+/**
+ * Test that the fast token frequencies path gives the same groups as finding and grouping all hits.
+ */
+@RunWith(Parameterized.class)
+public class TestHitGroupsTokenFrequencies {
+
+    @Parameterized.Parameters(name = "index type {0}")
+    public static Collection<TestIndex> typeToUse() {
+        return TestIndex.typesForTests();
+    }
+
+    @Parameterized.Parameter
+    public TestIndex testIndex;
+
+    /** Hits and docs per group */
+    private static Map<PropertyValue, String> groupSizes(HitGroups groups) {
+        Map<PropertyValue, String> sizes = new HashMap<>();
+        for (HitGroup group: groups) {
+            // (groups from the fast path only know the number of docs, other groups only the hits)
+            long docs = group instanceof HitGroupWithoutResults ? group.storedResults().docsStats().countedTotal() :
+                    group.storedResults().stream().mapToInt(Hit::doc).distinct().count();
+            sizes.put(group.identity(), group.size() + " hits in " + docs + " docs");
+        }
+        return sizes;
+    }
+
+    private void assertSameAsGroupingHits(HitProperty groupBy) throws InvalidQuery {
+        BlackLabIndex index = testIndex.index();
+        BLSpanQuery query = CorpusQueryLanguageParser.parse("[]").toQuery(QueryInfo.create(index), null);
+        SearchHits search = index.search().find(query);
+        Assert.assertTrue(HitGroupsTokenFrequencies.canUse(false, search, groupBy));
+
+        HitGroups expected = HitGroups.fromHits(index.find(query, null), groupBy, Results.NO_LIMIT);
+        HitGroups actual = HitGroupsTokenFrequencies.get(search, groupBy);
+        Assert.assertEquals(groupSizes(expected), groupSizes(actual));
+    }
+
+    @Test
+    public void testGroupByWord() throws InvalidQuery {
+        BlackLabIndex index = testIndex.index();
+        assertSameAsGroupingHits(new HitPropertyHitText(index, MatchSensitivity.SENSITIVE));
+        assertSameAsGroupingHits(new HitPropertyHitText(index, MatchSensitivity.INSENSITIVE));
+    }
+
+    @Test
+    public void testGroupByMetadata() throws InvalidQuery {
+        assertSameAsGroupingHits(new HitPropertyDocumentStoredField(testIndex.index(), "title"));
+    }
+
+    @Test
+    public void testGroupByWordAndMetadata() throws InvalidQuery {
+        BlackLabIndex index = testIndex.index();
+        assertSameAsGroupingHits(new HitPropertyMultiple(
+                new HitPropertyHitText(index, index.mainAnnotatedField().annotation("lemma"), MatchSensitivity.INSENSITIVE),
+                new HitPropertyDocumentStoredField(index, "title"),
+                new HitPropertyHitText(index, MatchSensitivity.INSENSITIVE)));
+    }
+}
@@ -0,0 +1,113 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.inl.blacklab.resultproperty.HitProperty;
+import nl.inl.blacklab.resultproperty.HitPropertyDocumentId;
+import nl.inl.blacklab.resultproperty.HitPropertyHitPosition;
+import nl.inl.blacklab.resultproperty.HitPropertyHitText;
+import nl.inl.blacklab.resultproperty.HitPropertyLeftContext;
+import nl.inl.blacklab.resultproperty.HitPropertyMultiple;
+import nl.inl.blacklab.resultproperty.HitPropertyRightContext;
+import nl.inl.blacklab.resultproperty.HitPropertyWordLeft;
+import nl.inl.blacklab.resultproperty.HitPropertyWordRight;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.BlackLabIndex.IndexType;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.blacklab.testutil.TestIndex;
+
+/**
+ * Test that sorting hits using sort keys gives the same order as sorting with the comparator,
+ * and that selecting the first hits gives the same hits as a full sort.
+ */
+public class TestHitsSorter {
+
+    private final TestIndex testIndex = TestIndex.get(IndexType.INTEGRATED);
+
+    private void assertSortedCorrectly(String pattern, HitProperty prop) {
+        Hits hits = testIndex.find(pattern);
+        int size = (int) hits.size(); // (reads all hits)
+        HitProperty p = prop.copyWith(hits);
+        Assert.assertTrue(p.sortKeyLength() > 0);
+
+        int[] indices = HitsSorter.sortedIndicesUsingKeys(p, size);
+
+        // Must be a permutation of all hits...
+        int[] copy = indices.clone();
+        Arrays.sort(copy);
+        for (int i = 0; i < size; i++)
+            Assert.assertEquals(i, copy[i]);
+        // ...in the order the comparator specifies
+        for (int i = 1; i < size; i++) {
+            Assert.assertTrue(prop.serialize() + " at " + i, p.compare(indices[i - 1], indices[i]) <= 0);
+        }
+    }
+
+    private void assertTopIsPrefixOfSort(String pattern, HitProperty prop) {
+        Hits hits = testIndex.find(pattern);
+        int size = (int) hits.size(); // (reads all hits)
+        HitProperty p = prop.copyWith(hits);
+
+        // Equal hits are ordered by index, so sorting with or without keys gives the same order...
+        int[] sorted = HitsSorter.sortedIndices(p, size);
+        if (p.sortKeyLength() > 0)
+            Assert.assertArrayEquals(prop.serialize(), sorted, HitsSorter.sortedIndicesUsingKeys(p, size));
+
+        // ...and selecting the first hits gives the start of that order
+        for (int number: List.of(0, 1, 5, size - 1, size, size + 1)) {
+            int[] top = HitsSorter.topIndices(p, size, number);
+            Assert.assertArrayEquals(prop.serialize() + " top " + number,
+                    Arrays.copyOf(sorted, Math.min(number, size)), top);
+        }
+    }
+
+    @Test
+    public void testTopIndices() {
+        BlackLabIndex index = testIndex.index();
+        List<HitProperty> props = List.of(
+                new HitPropertyLeftContext(index, MatchSensitivity.INSENSITIVE),
+                new HitPropertyHitText(index, MatchSensitivity.SENSITIVE).reverse(),
+                new HitPropertyWordRight(index),
+                new HitPropertyDocumentId());
+        for (HitProperty prop: props) {
+            assertTopIsPrefixOfSort("[]", prop);
+            assertTopIsPrefixOfSort("'the' []{0,4}", prop);
+        }
+    }
+
+    @Test
+    public void testContextProperties() {
+        BlackLabIndex index = testIndex.index();
+        List<HitProperty> props = List.of(
+                new HitPropertyLeftContext(index, MatchSensitivity.INSENSITIVE),
+                new HitPropertyLeftContext(index, MatchSensitivity.SENSITIVE).reverse(),
+                new HitPropertyRightContext(index, MatchSensitivity.INSENSITIVE),
+                new HitPropertyHitText(index, MatchSensitivity.SENSITIVE),
+                new HitPropertyWordLeft(index),
+                new HitPropertyWordRight(index).reverse());
+        for (HitProperty prop: props) {
+            assertSortedCorrectly("[]", prop);
+            assertSortedCorrectly("'the' []{0,4}", prop);
+        }
+    }
+
+    @Test
+    public void testPositionProperties() {
+        assertSortedCorrectly("[]", new HitPropertyDocumentId().reverse());
+        assertSortedCorrectly("[]{1,3}", new HitPropertyHitPosition());
+    }
+
+    @Test
+    public void testMultiple() {
+        BlackLabIndex index = testIndex.index();
+        HitProperty left = new HitPropertyLeftContext(index, MatchSensitivity.INSENSITIVE);
+        HitProperty docId = new HitPropertyDocumentId();
+        assertSortedCorrectly("[]", new HitPropertyMultiple(docId, left));
+        assertSortedCorrectly("[]", new HitPropertyMultiple(true, left, docId));
+        assertSortedCorrectly("[]{1,2}", new HitPropertyMultiple(docId, new HitPropertyHitPosition()));
+    }
+}
@@ -29,7 +29,7 @@ public class TestSearchBehavior {
 
         // Replace SpansReader workers in HitsFromQueryParallel with a mock that awaits an interrupt and then lets main thread know when it received it.
         h.spansReaders.clear();
-        h.spansReaders.add(new SpansReader(null, null, null, null, null, null, null, null, null, null, null) {
+        h.spansReaders.add(new SpansReader(null, null, null, null, null, null, null, null, null, null, null, null) {
             public synchronized void run() {
                 try {
                     // signal main thread we have started, so it can send the interrupt()
@@ -80,7 +80,7 @@ public class TestSearchBehavior {
         // Replace SpansReader workers in HitsFromQueryParallel with a mock that will just throw an exception.
         RuntimeException exceptionToThrow = new RuntimeException("TEST_SPANSREADER_CRASHED");
         h.spansReaders.clear();
-        h.spansReaders.add(new SpansReader(null, null, null, null, null, null, null, null, null, null, null) {
+        h.spansReaders.add(new SpansReader(null, null, null, null, null, null, null, null, null, null, null, null) {
             public synchronized void run() { throw exceptionToThrow; }
             void initialize() {}
         });
@@ -0,0 +1,103 @@
+package nl.inl.blacklab.searches;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import nl.inl.blacklab.resultproperty.HitProperty;
+import nl.inl.blacklab.resultproperty.HitPropertyDocumentId;
+import nl.inl.blacklab.resultproperty.HitPropertyHitText;
+import nl.inl.blacklab.resultproperty.HitPropertyMultiple;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.results.Hit;
+import nl.inl.blacklab.search.results.HitGroup;
+import nl.inl.blacklab.search.results.HitGroups;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.Results;
+import nl.inl.blacklab.search.results.SearchSettings;
+import nl.inl.blacklab.testutil.TestIndex;
+
+@RunWith(Parameterized.class)
+public class TestSupersetResults {
+
+    @Parameterized.Parameters(name = "index type {0}")
+    public static Collection<TestIndex> typeToUse() {
+        return TestIndex.typesForTests();
+    }
+
+    @Parameterized.Parameter
+    public TestIndex testIndex;
+
+    private static List<String> hitList(Hits hits) {
+        List<String> result = new ArrayList<>();
+        for (Hit hit: hits)
+            result.add(hit.doc() + ":" + hit.start() + "-" + hit.end());
+        return result;
+    }
+
+    @Test
+    public void testDeriveFilteredHits() {
+        BlackLabIndex index = testIndex.index();
+        Query filter = new TermQuery(new Term("title", "star"));
+        Hits superset = testIndex.find(" 'the' ");
+        superset.hitsStats().countedTotal(); // make sure all hits have been read
+        Assert.assertTrue(SupersetResults.canDeriveHits(superset, SearchSettings.defaults(),
+                SearchSettings.defaults(), true));
+
+        Hits hits = SupersetResults.deriveHits(superset.queryInfo(), superset,
+                SupersetResults.docsMatching(index, filter), SearchSettings.defaults());
+        Hits expected = testIndex.find(" 'the' ", filter);
+        Assert.assertEquals(hitList(expected), hitList(hits));
+        Assert.assertEquals(expected.hitsStats().countedTotal(), hits.hitsStats().countedTotal());
+        Assert.assertEquals(expected.docsStats().countedTotal(), hits.docsStats().countedTotal());
+        Assert.assertFalse(hits.maxStats().hitsProcessedExceededMaximum());
+    }
+
+    @Test
+    public void testDeriveFewerHits() {
+        Hits superset = testIndex.find(" 'the' ");
+        superset.hitsStats().countedTotal(); // make sure all hits have been read
+        SearchSettings settings = SearchSettings.get(2, Results.NO_LIMIT);
+        Assert.assertTrue(SupersetResults.canDeriveHits(superset, SearchSettings.defaults(), settings, false));
+
+        Hits hits = SupersetResults.deriveHits(superset.queryInfo(), superset, null, settings);
+        Assert.assertEquals(hitList(superset).subList(0, 2), hitList(hits));
+        Assert.assertEquals(4, hits.hitsStats().countedTotal());
+        Assert.assertTrue(hits.maxStats().hitsProcessedExceededMaximum());
+        Assert.assertFalse(hits.maxStats().hitsCountedExceededMaximum());
+
+        // We can't derive more hits from these hits, because they are incomplete
+        Assert.assertFalse(SupersetResults.canDeriveHits(hits, settings, SearchSettings.defaults(), false));
+    }
+
+    @Test
+    public void testRollUpGroups() {
+        BlackLabIndex index = testIndex.index();
+        Hits hits = testIndex.find(" [] ");
+        HitProperty hitText = new HitPropertyHitText(index);
+        HitProperty detailedCriteria = new HitPropertyMultiple(hitText, new HitPropertyDocumentId());
+        HitGroups detailed = HitGroups.fromHits(hits, detailedCriteria, Results.NO_LIMIT);
+        Assert.assertTrue(SupersetResults.canRollUp(detailed, hitText));
+        Assert.assertFalse(SupersetResults.canRollUp(detailed, new HitPropertyDocumentId()));
+
+        HitGroups groups = SupersetResults.rollUp(detailed, hitText, Results.NO_LIMIT);
+        HitGroups expected = HitGroups.fromHits(hits, hitText, Results.NO_LIMIT);
+        Assert.assertEquals(expected.size(), groups.size());
+        Assert.assertEquals(hitText, groups.groupCriteria());
+        for (HitGroup group: expected) {
+            HitGroup rolledUp = groups.get(group.identity());
+            Assert.assertNotNull(rolledUp);
+            Assert.assertEquals(group.size(), rolledUp.size());
+            Assert.assertEquals(group.storedResults().docsStats().countedTotal(),
+                    rolledUp.storedResults().docsStats().countedTotal());
+        }
+    }
+}
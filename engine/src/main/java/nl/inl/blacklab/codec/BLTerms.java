@@ -23,11 +23,26 @@ public class BLTerms extends Terms implements TermsSegmentReader {
     /** The Lucene terms object we're wrapping */
     private final Terms terms;
 
-    /** The global terms object, which we use to implement get() and termsEqual() */
-    private nl.inl.blacklab.forwardindex.Terms termsIntegrated;
+    /** The global terms object and our segment number in the corresponding index reader */
+    private static class GlobalTerms {
+        /** The global terms object, which we use to implement get() and termsEqual() */
+        final nl.inl.blacklab.forwardindex.Terms termsIntegrated;
 
-    /** Our segment number */
-    private int ord;
+        /** Our segment number */
+        final int ord;
+
+        GlobalTerms(nl.inl.blacklab.forwardindex.Terms termsIntegrated, int ord) {
+            this.termsIntegrated = termsIntegrated;
+            this.ord = ord;
+        }
+    }
+
+    /** The global terms object and our segment number.
+     *
+     * Segments are shared between index readers when an index is reopened, so this may be
+     * replaced while other threads are using it. That's why we keep both values together.
+     */
+    private volatile GlobalTerms globalTerms;
 
     public BLTerms(Terms terms, BlackLab40PostingsReader fieldsProducer) {
         this.terms = terms;
@@ -109,18 +124,19 @@ public class BLTerms extends Terms implements TermsSegmentReader {
 
     @Override
     public String get(int id) {
-        return termsIntegrated.get(termsIntegrated.segmentIdToGlobalId(ord, id));
+        GlobalTerms g = globalTerms;
+        return g.termsIntegrated.get(g.termsIntegrated.segmentIdToGlobalId(g.ord, id));
     }
 
     @Override
     public boolean termsEqual(int[] termIds, MatchSensitivity sensitivity) {
-        int[] globalTermIds = termsIntegrated.segmentIdsToGlobalIds(ord, termIds);
-        return termsIntegrated.termsEqual(globalTermIds, sensitivity);
+        GlobalTerms g = globalTerms;
+        int[] globalTermIds = g.termsIntegrated.segmentIdsToGlobalIds(g.ord, termIds);
+        return g.termsIntegrated.termsEqual(globalTermIds, sensitivity);
     }
 
     public void setTermsIntegrated(nl.inl.blacklab.forwardindex.Terms termsIntegrated, int ord) {
-        this.termsIntegrated = termsIntegrated;
-        this.ord = ord;
+        globalTerms = new GlobalTerms(termsIntegrated, ord);
     }
 
 }
@@ -5,14 +5,12 @@ import java.text.CollationKey;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.logging.log4j.LogManager;
@@ -34,6 +32,8 @@ import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
@@ -209,6 +209,9 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
      *
      * Finally, everything is written to the final objects file in the correct order.
      *
+     * Reading the postings has to happen sequentially, but sorting the terms and reconstructing
+     * the documents from the temporary file is done for all fields in parallel.
+     *
      * This method also records metadata about fields in the FieldInfo attributes.
      */
     private void write(FieldInfos fieldInfos, Fields fields) {
@@ -224,9 +227,10 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
 
             // Write our postings extension information
 
+            int maxDoc = state.segmentInfo.maxDoc();
 
             // We'll keep track of doc lengths so we can preallocate our forward index structure.
-            Map<Integer, Integer> docLengths = new HashMap<>();
+            int[] docLengths = new int[maxDoc];
 
             // First we write a temporary dump of the term vector, and keep track of
             // where we can find term occurrences per document so we can reverse this
@@ -236,7 +240,10 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
             //  (we're trying to reconstruct the document), so we will do that below.
             //   we use temporary files because this might take a huge amount of memory)
             // (use a LinkedHashMap to maintain the same field order when we write the tokens below)
-            Map<String/*field*/, SortedMap<Integer/*lucene doc id*/, Map<Integer/*termID*/, Long/*filePointer*/>>> field2docTermVecFileOffsets = new LinkedHashMap<>();
+            Map<String/*field*/, TermVecFileOffsets> field2docTermVecFileOffsets = new LinkedHashMap<>();
+
+            // Terms for each field, so we can determine the sort orders below
+            Map<String/*field*/, String[]> field2Terms = new LinkedHashMap<>();
             try (IndexOutput outTempTermVectorFile = createOutput(BlackLab40PostingsFormat.TERMVEC_TMP_EXT)) {
 
                 // Process fields
@@ -259,11 +266,10 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
 
                     // Keep track of where to find term positions for each document
                     // (for reversing index)
-                    // The map is keyed by docId and stores a list of offsets into the
-                    // temporary termvector file where the occurrences for each term can be
-                    // found.
-                    Map<Integer, Map<Integer, Long>> docId2TermVecFileOffsets =
-                            field2docTermVecFileOffsets.computeIfAbsent(luceneField, k -> new TreeMap<>());
+                    // For each docId, this stores offsets into the temporary termvector file
+                    // where the occurrences for each term can be found.
+                    TermVecFileOffsets docId2TermVecFileOffsets =
+                            field2docTermVecFileOffsets.computeIfAbsent(luceneField, k -> new TermVecFileOffsets(maxDoc));
 
                     // For each term in this field...
                     PostingsEnum postingsEnum = null; // we'll reuse this for efficiency
@@ -273,6 +279,7 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
 
                     int termId = 0;
                     List<String> termsList = new ArrayList<>();
+                    byte[] bytesPositions = new byte[0]; // reused for each doc, grown if needed
 
                     while (true) {
                         BytesRef term = termsEnum.next();
@@ -288,22 +295,21 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
                         // For each document containing this term...
                         postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.POSITIONS | PostingsEnum.PAYLOADS);
                         while (true) {
-                            Integer docId = postingsEnum.nextDoc();
-                            if (docId.equals(DocIdSetIterator.NO_MORE_DOCS))
+                            int docId = postingsEnum.nextDoc();
+                            if (docId == DocIdSetIterator.NO_MORE_DOCS)
                                 break;
 
                             // Keep track of term positions offsets in term vector file
-                            Map<Integer, Long> vecFileOffsetsPerTermId =
-                                    docId2TermVecFileOffsets.computeIfAbsent(docId, k -> new HashMap<>());
-                            vecFileOffsetsPerTermId.put(termId, outTempTermVectorFile.getFilePointer());
+                            docId2TermVecFileOffsets.add(docId, termId, outTempTermVectorFile.getFilePointer());
 
                             // Go through each occurrence of term in this doc,
                             // gathering the positions where this term occurs as a "primary value"
                             // (the first value at this token position, which we will store in the
                             //  forward index). Also determine docLength.
                             int nOccurrences = postingsEnum.freq();
-                            int docLength = docLengths.getOrDefault(docId, 0);
-                            byte[] bytesPositions = new byte[nOccurrences * Integer.BYTES];
+                            int docLength = docLengths[docId];
+                            if (bytesPositions.length < nOccurrences * Integer.BYTES)
+                                bytesPositions = new byte[nOccurrences * Integer.BYTES];
                             DataOutput positions = new ByteArrayDataOutput(bytesPositions);
                             int numOccurrencesWritten = 0;
                             for (int i = 0; i < nOccurrences; i++) {
@@ -323,7 +329,7 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
                                     numOccurrencesWritten++;
                                 }
                             }
-                            docLengths.put(docId, docLength);
+                            docLengths[docId] = docLength;
 
                             // Write the positions where this term occurs as primary value
                             // (will be reversed below to get the forward index)
@@ -336,44 +342,72 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
 
                         termId++;
                     }
-
-                    // begin writing term IDs and sort orders
-                    Collators collators = Collators.defaultCollator();
-                    int[] sensitivePos2TermID = getTermSortOrder(termsList, collators.get(MatchSensitivity.SENSITIVE));
-                    int[] insensitivePos2TermID = getTermSortOrder(termsList, collators.get(MatchSensitivity.INSENSITIVE));
-                    int[] termID2SensitivePos = invert(termsList, sensitivePos2TermID, collators.get(MatchSensitivity.SENSITIVE));
-                    int[] termID2InsensitivePos = invert(termsList, insensitivePos2TermID, collators.get(MatchSensitivity.INSENSITIVE));
-
-                    int numTerms = termsList.size();
-                    fiFields.get(luceneField).setNumberOfTerms(numTerms);
-                    fiFields.get(luceneField).setTermOrderOffset(termsOrderFile.getFilePointer());
-                    // write out, specific order.
-                    for (int i : termID2InsensitivePos) termsOrderFile.writeInt(i);
-                    for (int i : insensitivePos2TermID) termsOrderFile.writeInt(i);
-                    for (int i : termID2SensitivePos) termsOrderFile.writeInt(i);
-                    for (int i : sensitivePos2TermID) termsOrderFile.writeInt(i);
+                    field2Terms.put(luceneField, termsList.toArray(new String[0]));
                 }
                 CodecUtil.writeFooter(outTempTermVectorFile);
             }
 
+            // Determine the term sort orders for all fields in parallel, then write them in field order
+            Collators collators = Collators.defaultCollator();
+            List<TermSortOrders> sortOrders = field2Terms.values().parallelStream()
+                    .map(terms -> new TermSortOrders(terms, collators))
+                    .collect(Collectors.toList());
+            int fieldIndex = 0;
+            for (String luceneField: field2Terms.keySet()) {
+                TermSortOrders termSortOrders = sortOrders.get(fieldIndex);
+                fiFields.get(luceneField).setNumberOfTerms(termSortOrders.numberOfTerms());
+                fiFields.get(luceneField).setTermOrderOffset(termsOrderFile.getFilePointer());
+                termSortOrders.write(termsOrderFile);
+                fieldIndex++;
+            }
+
             // Reverse the reverse index to create forward index
             // (this time we iterate per field and per document first, then reconstruct the document by
             //  looking at each term's occurrences. This produces our forward index)
             try (IndexInput inTermVectorFile = openInput(BlackLab40PostingsFormat.TERMVEC_TMP_EXT)) {
+                List<TermVecFileOffsets> docPosOffsetsPerField = new ArrayList<>(field2docTermVecFileOffsets.values());
+                int numberOfFields = docPosOffsetsPerField.size();
+
+                // Tokens index entries per field. The tokens themselves may be appended to the tokens
+                // file in any order, but each field's entries in the tokens index file must be contiguous.
+                List<ByteBuffersDataOutput> tokensIndexPerField = new ArrayList<>();
+                for (int i = 0; i < numberOfFields; i++)
+                    tokensIndexPerField.add(new ByteBuffersDataOutput());
+
+                // Reconstruct the documents in batches, all fields in parallel. Only this thread writes
+                // to the output files (Lucene requires that when merging).
+                int batchStart = 0;
+                while (batchStart < maxDoc) {
+                    int batchEnd = batchStart;
+                    long tokensInBatch = 0;
+                    while (batchEnd < maxDoc && (batchEnd == batchStart || tokensInBatch < TOKENS_PER_BATCH)) {
+                        tokensInBatch += docLengths[batchEnd];
+                        batchEnd++;
+                    }
+                    int fromDoc = batchStart, toDoc = batchEnd;
+                    List<TokensBatch> batches = IntStream.range(0, numberOfFields).parallel()
+                            .mapToObj(i -> {
+                                try {
+                                    // (IndexInput clones can be used from another thread)
+                                    return getTokensBatch(fromDoc, toDoc, docLengths, inTermVectorFile.clone(),
+                                            docPosOffsetsPerField.get(i));
+                                } catch (IOException e) {
+                                    throw new BlackLabRuntimeException(e);
+                                }
+                            })
+                            .collect(Collectors.toList());
+                    for (int i = 0; i < numberOfFields; i++)
+                        batches.get(i).appendTo(outTokensFile, tokensIndexPerField.get(i));
+                    batchStart = batchEnd;
+                }
 
                 // For each field...
-                for (Entry<String, SortedMap<Integer, Map<Integer, Long>>> fieldEntry: field2docTermVecFileOffsets.entrySet()) {
-                    String luceneField = fieldEntry.getKey();
-                    SortedMap<Integer/*docID*/, Map<Integer/*termID*/, Long/*file offset*/>> docPosOffsets = fieldEntry.getValue();
-
+                int i = 0;
+                for (String luceneField: field2docTermVecFileOffsets.keySet()) {
                     // Record starting offset of field in tokensindex file (written to fields file later)
                     fiFields.get(luceneField).setTokensIndexOffset(outTokensIndexFile.getFilePointer());
-
-                    // For each document...
-                    for (int docId = 0; docId < state.segmentInfo.maxDoc(); docId++) {
-                        int[] termIds = getDocumentContents(docId, docLengths, inTermVectorFile, docPosOffsets);
-                        writeTokensInDoc(outTokensIndexFile, outTokensFile, termIds);
-                    }
+                    tokensIndexPerField.get(i).copyTo(outTokensIndexFile);
+                    i++;
                 }
             } finally {
                 // Clean up after ourselves
@@ -400,12 +434,32 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
         }
     }
 
-    private int[] getDocumentContents(int docId, Map<Integer, Integer> docLengths,
-            IndexInput inTermVectorFile, SortedMap<Integer, Map<Integer, Long>> docPosOffsets)
+    /**
+     * Reconstruct a range of documents for one field and encode their tokens.
+     *
+     * @param fromDoc first document
+     * @param toDoc document after the last one
+     * @param docLengths length of each document
+     * @param inTermVectorFile temporary term vector file (a clone for use by this thread)
+     * @param docPosOffsets where to find term occurrences for each document
+     * @return encoded tokens and tokens index entries for the documents
+     * @throws IOException when failing to read
+     */
+    private static TokensBatch getTokensBatch(int fromDoc, int toDoc, int[] docLengths, IndexInput inTermVectorFile,
+            TermVecFileOffsets docPosOffsets) throws IOException {
+        TokensBatch batch = new TokensBatch(toDoc - fromDoc);
+        for (int docId = fromDoc; docId < toDoc; docId++) {
+            int[] termIds = getDocumentContents(docId, docLengths, inTermVectorFile, docPosOffsets);
+            writeTokensInDoc(batch.tokensIndex, batch.tokens, termIds);
+        }
+        return batch;
+    }
+
+    private static int[] getDocumentContents(int docId, int[] docLengths,
+            IndexInput inTermVectorFile, TermVecFileOffsets docPosOffsets)
             throws IOException {
 
-        final Map<Integer/*term ID*/, Long/*file offset*/> termPosOffsets = docPosOffsets.getOrDefault(docId, Collections.emptyMap());
-        final int docLength = docLengths.getOrDefault(docId, 0);
+        final int docLength = docLengths[docId];
         final int[] tokensInDoc = new int[docLength]; // reconstruct the document here
 
         // NOTE: sometimes docs won't have any values for a field, but we'll
@@ -415,9 +469,9 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
         Arrays.fill(tokensInDoc, NO_TERM);
 
         // For each term...
-        for (Entry<Integer/*term ID*/, Long/*file offset*/> e: termPosOffsets.entrySet()) {
-            int termId = e.getKey();
-            inTermVectorFile.seek(e.getValue());
+        for (int entry = docPosOffsets.first(docId); entry >= 0; entry = docPosOffsets.next(entry)) {
+            int termId = docPosOffsets.termId(entry);
+            inTermVectorFile.seek(docPosOffsets.fileOffset(entry));
             int nOccurrences = inTermVectorFile.readInt();
             // For each occurrence...
             for (int i = 0; i < nOccurrences; i++) {
@@ -437,12 +491,13 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
      * Chooses the most appropriate encoding for the tokens and records this choice in
      * the tokens index file.
      *
-     * @param outTokensIndexFile token index file
-     * @param outTokensFile      tokens file
+     * @param outTokensIndex     where to write the token index entry
+     * @param outTokens          where to write the tokens (offsets are relative to the start of this)
      * @param tokensInDoc        tokens to write
      * @throws IOException       When failing to write
      */
-    private void writeTokensInDoc(IndexOutput outTokensIndexFile, IndexOutput outTokensFile, int[] tokensInDoc) throws IOException {
+    private static void writeTokensInDoc(DataOutput outTokensIndex, ByteBuffersDataOutput outTokens,
+            int[] tokensInDoc) throws IOException {
         int max = 0, min = 0;
         boolean allTheSame = tokensInDoc.length > 0; // if no tokens, then not all the same.
         int last = -1;
@@ -473,10 +528,10 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
         }
 
         // Write offset in the tokens file, doc length in tokens and tokens codec used
-        outTokensIndexFile.writeLong(outTokensFile.getFilePointer());
-        outTokensIndexFile.writeInt(tokensInDoc.length);
-        outTokensIndexFile.writeByte(tokensCodec.code);
-        outTokensIndexFile.writeByte(tokensCodecParameter);
+        outTokensIndex.writeLong(outTokens.size());
+        outTokensIndex.writeInt(tokensInDoc.length);
+        outTokensIndex.writeByte(tokensCodec.code);
+        outTokensIndex.writeByte(tokensCodecParameter);
 
         if (tokensInDoc.length == 0) {
             return; // done.
@@ -488,29 +543,29 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
             switch (VALUE_PER_TOKEN_PARAMETER.fromCode(tokensCodecParameter)) {
                 case BYTE: 
                     for (int token: tokensInDoc) {
-                        outTokensFile.writeByte((byte) token);
+                        outTokens.writeByte((byte) token);
                     }
                     break;
                 case SHORT: 
                     for (int token: tokensInDoc) {
-                        outTokensFile.writeShort((short) token);
+                        outTokens.writeShort((short) token);
                     }
                     break;
                 case THREE_BYTES:
                     for (int token : tokensInDoc) {
-                        ThreeByteInt.write((b) -> outTokensFile.writeByte(b), token);
+                        ThreeByteInt.write((b) -> outTokens.writeByte(b), token);
                     }
                     break;
                 case INT:
                     for (int token: tokensInDoc) {
-                        outTokensFile.writeInt((int) token);
+                        outTokens.writeInt((int) token);
                     }
                     break;
                     default: throw new NotImplementedException("Handling for tokens codec " + tokensCodec + " with parameter " + tokensCodecParameter + " not implemented.");
                 }
                 break;
         case ALL_TOKENS_THE_SAME:
-            outTokensFile.writeInt(tokensInDoc[0]);
+            outTokens.writeInt(tokensInDoc[0]);
             break;
         }
     }
@@ -556,19 +611,158 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
     public void close() throws IOException {
         delegateFieldsConsumer.close();
     }
+
     /**
-     * Given a list of terms, return the indices to sort them.
-     * E.G: getTermSortOrder(['b','c','a']) --> [2, 0, 1]
+     * Where to find the term occurrences of each document in the temporary term vector file.
+     *
+     * Stored as a linked list of (term id, file offset) entries per document, in primitive
+     * arrays, so we don't need a boxed map entry for every term in every document.
      */
-    private static int[] getTermSortOrder(List<String> terms, Collator coll) {
-        int[] ret = new int[terms.size()];
-        for (int i = 0; i < ret.length; ++i) ret[i] = i;
+    private static class TermVecFileOffsets {
+
+        /** First entry for each document, or -1 if none */
+        private final int[] firstEntry;
+
+        /** Next entry for the same document, or -1 if none */
+        private int[] nextEntry = new int[1024];
+
+        /** Term id for each entry */
+        private int[] termIds = new int[1024];
+
+        /** Offset in the term vector file for each entry */
+        private long[] fileOffsets = new long[1024];
+
+        /** Number of entries */
+        private int size = 0;
+
+        TermVecFileOffsets(int maxDoc) {
+            firstEntry = new int[maxDoc];
+            Arrays.fill(firstEntry, -1);
+        }
+
+        void add(int docId, int termId, long fileOffset) {
+            if (size == termIds.length) {
+                int newLength = size * 2;
+                nextEntry = Arrays.copyOf(nextEntry, newLength);
+                termIds = Arrays.copyOf(termIds, newLength);
+                fileOffsets = Arrays.copyOf(fileOffsets, newLength);
+            }
+            nextEntry[size] = firstEntry[docId];
+            termIds[size] = termId;
+            fileOffsets[size] = fileOffset;
+            firstEntry[docId] = size;
+            size++;
+        }
+
+        int first(int docId) { return firstEntry[docId]; }
+        int next(int entry) { return nextEntry[entry]; }
+        int termId(int entry) { return termIds[entry]; }
+        long fileOffset(int entry) { return fileOffsets[entry]; }
+    }
+
+    /** Reconstruct documents in batches of (at least) this many tokens */
+    private static final int TOKENS_PER_BATCH = 1_000_000;
+
+    /**
+     * Encoded tokens for a batch of documents in one field.
+     */
+    private static class TokensBatch {
+
+        /** Tokens index entries, with offsets relative to the start of tokens */
+        final ByteBuffersDataOutput tokensIndex = new ByteBuffersDataOutput();
+
+        /** Encoded tokens */
+        final ByteBuffersDataOutput tokens = new ByteBuffersDataOutput();
+
+        /** Number of documents in the batch */
+        private final int numberOfDocs;
+
+        TokensBatch(int numberOfDocs) {
+            this.numberOfDocs = numberOfDocs;
+        }
+
+        /**
+         * Append the tokens to the tokens file, and the index entries for them to the field's tokens index.
+         *
+         * @param outTokensFile tokens file
+         * @param fieldTokensIndex tokens index entries for the field so far
+         */
+        void appendTo(IndexOutput outTokensFile, DataOutput fieldTokensIndex) throws IOException {
+            long base = outTokensFile.getFilePointer();
+            DataInput entries = tokensIndex.toDataInput();
+            for (int i = 0; i < numberOfDocs; i++) {
+                fieldTokensIndex.writeLong(base + entries.readLong()); // offset in tokens file
+                fieldTokensIndex.writeInt(entries.readInt());          // doc length
+                fieldTokensIndex.writeByte(entries.readByte());        // tokens codec
+                fieldTokensIndex.writeByte(entries.readByte());        // tokens codec parameter
+            }
+            tokens.copyTo(outTokensFile);
+        }
+    }
+
+    /**
+     * Sensitive and insensitive sort orders for the terms of a field.
+     */
+    private static class TermSortOrders {
+
+        private final int[] sensitivePos2TermID;
+
+        private final int[] termID2SensitivePos;
+
+        private final int[] insensitivePos2TermID;
 
-        // Collator.compare() is synchronized, so precomputing the collation keys speeds things up
-        CollationKey[] ck = new CollationKey[terms.size()];
-        for (int i = 0; i < ck.length; ++i)
-            ck[i] = coll.getCollationKey(terms.get(i));
+        private final int[] termID2InsensitivePos;
 
+        TermSortOrders(String[] terms, Collators collators) {
+            CollationKey[] sensitiveKeys = getCollationKeys(terms, collators.get(MatchSensitivity.SENSITIVE));
+            CollationKey[] insensitiveKeys = getCollationKeys(terms, collators.get(MatchSensitivity.INSENSITIVE));
+            sensitivePos2TermID = getTermSortOrder(sensitiveKeys);
+            insensitivePos2TermID = getTermSortOrder(insensitiveKeys);
+            termID2SensitivePos = invert(sensitiveKeys, sensitivePos2TermID);
+            termID2InsensitivePos = invert(insensitiveKeys, insensitivePos2TermID);
+        }
+
+        int numberOfTerms() {
+            return sensitivePos2TermID.length;
+        }
+
+        void write(IndexOutput termsOrderFile) throws IOException {
+            // write out, specific order.
+            for (int i : termID2InsensitivePos) termsOrderFile.writeInt(i);
+            for (int i : insensitivePos2TermID) termsOrderFile.writeInt(i);
+            for (int i : termID2SensitivePos) termsOrderFile.writeInt(i);
+            for (int i : sensitivePos2TermID) termsOrderFile.writeInt(i);
+        }
+    }
+
+    /** How many collation keys to compute per task */
+    private static final int COLLATION_KEYS_PER_TASK = 10_000;
+
+    /**
+     * Compute the collation key for each term, in parallel.
+     *
+     * Collator.compare() is synchronized, so precomputing the collation keys speeds up sorting.
+     * Collators aren't thread-safe, so each task uses its own clone.
+     */
+    private static CollationKey[] getCollationKeys(String[] terms, Collator coll) {
+        CollationKey[] ck = new CollationKey[terms.length];
+        int numberOfTasks = (terms.length + COLLATION_KEYS_PER_TASK - 1) / COLLATION_KEYS_PER_TASK;
+        IntStream.range(0, numberOfTasks).parallel().forEach(task -> {
+            Collator taskCollator = (Collator) coll.clone();
+            int end = Math.min(terms.length, (task + 1) * COLLATION_KEYS_PER_TASK);
+            for (int i = task * COLLATION_KEYS_PER_TASK; i < end; ++i)
+                ck[i] = taskCollator.getCollationKey(terms[i]);
+        });
+        return ck;
+    }
+
+    /**
+     * Given the collation keys of a list of terms, return the indices to sort them.
+     * E.G: getTermSortOrder(keys(['b','c','a'])) --> [2, 0, 1]
+     */
+    private static int[] getTermSortOrder(CollationKey[] ck) {
+        int[] ret = new int[ck.length];
+        for (int i = 0; i < ret.length; ++i) ret[i] = i;
         IntArrays.parallelQuickSort(ret, (a, b) -> ck[a].compareTo(ck[b]));
         return ret;
     }
@@ -576,17 +770,20 @@ public class BlackLab40PostingsWriter extends FieldsConsumer {
     /**
      * Invert the given array so the values become the indexes and vice versa.
      *
+     * Terms that the collator considers equal get the same sort position.
+     *
+     * @param ck collation keys of the terms
      * @param array array to invert
      * @return inverted array
      */
-    private static int[] invert(List<String> terms, int[] array, Collator collator) {
+    private static int[] invert(CollationKey[] ck, int[] array) {
         int[] result = new int[array.length];
         int prevSortPosition = -1;
         int prevTermId = -1;
         for (int i = 0; i < array.length; i++) {
             int termId = array[i];
             int sortPosition = i;
-            if (prevTermId >= 0 && collator.equals(terms.get(prevTermId), terms.get(termId))) {
+            if (prevTermId >= 0 && ck[prevTermId].compareTo(ck[termId]) == 0) {
                 // Keep the same sort position because the terms are the same
                 sortPosition = prevSortPosition;
             } else {
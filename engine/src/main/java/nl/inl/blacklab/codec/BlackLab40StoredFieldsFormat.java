@@ -51,6 +51,23 @@ public class BlackLab40StoredFieldsFormat extends StoredFieldsFormat {
      */
     public static final int DEFAULT_BLOCK_SIZE_CHARS = 8 * 1024;
 
+    /**
+     * Is this a valid content store block codec name?
+     *
+     * Valid names are "uncompressed", "zlib" (the default) and "lz4".
+     *
+     * @param name codec name, e.g. from the input format config
+     * @return true if it's a known codec
+     */
+    public static boolean isValidBlockCodecName(String name) {
+        try {
+            ContentStoreBlockCodec.fromName(name);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     /** Standard Lucene StoredFieldsFormat we delegate to for regular (non-content-store) stored fields. */
     private final StoredFieldsFormat delegate;
 
@@ -2,6 +2,7 @@ package nl.inl.blacklab.codec;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -20,6 +21,7 @@ import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.StringHelper;
 
 import nl.inl.blacklab.contentstore.ContentStoreSegmentReader;
 import nl.inl.blacklab.search.BlackLabIndexIntegrated;
@@ -84,6 +86,12 @@ public class BlackLab40StoredFieldsReader extends StoredFieldsReader {
     /** How many characters from the document do we encode into a data block? */
     private final int blockSizeChars;
 
+    /** Identifies our segment in the block cache */
+    private final String segmentId;
+
+    /** Cache of decoded blocks (shared with other segments) */
+    private final ContentStoreBlockCache blockCache = ContentStoreBlockCache.get();
+
     /** Name of the StoredFieldsFormat we delegate to.
      *  We check the index files to make sure this matches. */
     private String delegateFormatName;
@@ -114,6 +122,7 @@ public class BlackLab40StoredFieldsReader extends StoredFieldsReader {
         this.fieldInfos = fieldInfos;
         this.delegate = delegate;
         this.delegateFormatName = delegateFormatName; // check that this matches what was written
+        segmentId = StringHelper.idToString(segmentInfo.getId());
 
         IndexInput fieldsFile = openInput(BlackLab40StoredFieldsFormat.FIELDS_EXT, directory, segmentInfo, ioContext);
         blockSizeChars = fieldsFile.readInt();
@@ -293,6 +302,12 @@ public class BlackLab40StoredFieldsReader extends StoredFieldsReader {
             // Buffer for decoding blocks. Automatically reallocated if needed.
             byte[] decodedValue;
 
+            // Buffers for reading encoded blocks and decoding single blocks, reused while this reader
+            // is used. (not thread-local: they would stay allocated for the lifetime of every
+            // search thread, and some can grow quite large)
+            private byte[] encodedBlock = new byte[0];
+            private byte[] decodedBlock = new byte[0];
+
             // Clones of the various file handles, so we can reposition them without
             // causing problems. Cloned IndexInputs don't need to be closed.
             private final IndexInput docIndexFile = _docIndexFile.clone();
@@ -447,26 +462,20 @@ public class BlackLab40StoredFieldsReader extends StoredFieldsReader {
                     // to start reading subsequent after-block positions
                     int blockStartOffset = findBlockStartOffset(blockIndexOffset, blocksOffset, firstBlockNeeded);
 
+                    int fieldId = contentStoreFieldIndexes.get(luceneField);
                     int currentBlockCharOffset = firstBlockNeeded * blockSizeChars;
                     int blocksRead = 0;
                     StringBuilder result = new StringBuilder();
-                    byte[] decodedBlock = new byte[blockSizeChars * UTF8_MAX_BYTES_PER_CHAR + ESTIMATED_DECODE_OVERHEAD];
                     try (ContentStoreBlockCodec.Decoder decoder = blockCodec.getDecoder()) {
                         while (blocksRead < numBlocksNeeded) {
 
-                            // Read a block and decompress it.
+                            // Get the decoded block from the cache, or read and decode it.
                             int blockEndOffset = blockIndexFile.readInt();
-                            int blockSizeBytes = blockEndOffset - blockStartOffset;
-                            int decodedSize = -1;
-                            while (decodedSize < 0) {
-                                decodedSize = readAndDecodeBlock(blockSizeBytes, decoder, decodedBlock, 0);
-                                if (decodedSize < 0) {
-                                    if (decodedBlock.length > MAX_DECODE_BUFFER_LENGTH)
-                                        throw new IOException("Insufficient buffer space for decoding block, even at max (" + MAX_DECODE_BUFFER_LENGTH + ")");
-                                    decodedBlock = new byte[decodedBlock.length * 2];
-                                }
-                            }
-                            String blockDecompressed = new String(decodedBlock, 0, decodedSize, StandardCharsets.UTF_8);
+                            int blockStart = blockStartOffset;
+                            ContentStoreBlockCache.Key key = new ContentStoreBlockCache.Key(segmentId, fieldId, docId,
+                                    firstBlockNeeded + blocksRead);
+                            String blockDecompressed = blockCache.get(key,
+                                    () -> decodeBlock(decoder, blocksOffset, blockStart, blockEndOffset));
 
                             // Append the content we need to the result.
                             if (blocksRead == 0) {
@@ -500,15 +509,46 @@ public class BlackLab40StoredFieldsReader extends StoredFieldsReader {
                 }
             }
 
+            /**
+             * Read and decode a single block.
+             *
+             * @param decoder decoder to use
+             * @param blocksOffset where this value's blocks start in the blocks file
+             * @param blockStartOffset start of the block, relative to blocksOffset
+             * @param blockEndOffset end of the block, relative to blocksOffset
+             * @return the decoded block
+             */
+            private String decodeBlock(ContentStoreBlockCodec.Decoder decoder, long blocksOffset, int blockStartOffset,
+                    int blockEndOffset) throws IOException {
+                int blockSizeBytes = blockEndOffset - blockStartOffset;
+                int minLength = blockSizeChars * UTF8_MAX_BYTES_PER_CHAR + ESTIMATED_DECODE_OVERHEAD;
+                if (decodedBlock.length < minLength)
+                    decodedBlock = new byte[minLength];
+                int decodedSize = -1;
+                while (decodedSize < 0) {
+                    // (position the file every time, as previous blocks may have come from the cache,
+                    //  and a failed attempt to decode has already read the block)
+                    blocksFile.seek(blocksOffset + blockStartOffset);
+                    decodedSize = readAndDecodeBlock(blockSizeBytes, decoder, decodedBlock, 0);
+                    if (decodedSize < 0) {
+                        if (decodedBlock.length > MAX_DECODE_BUFFER_LENGTH)
+                            throw new IOException("Insufficient buffer space for decoding block, even at max (" + MAX_DECODE_BUFFER_LENGTH + ")");
+                        decodedBlock = new byte[decodedBlock.length * 2];
+                    }
+                }
+                return new String(decodedBlock, 0, decodedSize, StandardCharsets.UTF_8);
+            }
+
             int readAndDecodeBlock(int blockSizeBytes, ContentStoreBlockCodec.Decoder decoder, byte[] buffer, int offset)
                     throws IOException {
                 // Read block (file is already positioned)
-                byte[] block = new byte[blockSizeBytes];
-                blocksFile.readBytes(block, 0, blockSizeBytes);
+                if (encodedBlock.length < blockSizeBytes)
+                    encodedBlock = new byte[blockSizeBytes];
+                blocksFile.readBytes(encodedBlock, 0, blockSizeBytes);
 
                 // Decode block into buffer
                 int maxLength = buffer.length - offset;
-                return decoder.decode(block, 0, blockSizeBytes, buffer, offset, maxLength);
+                return decoder.decode(encodedBlock, 0, blockSizeBytes, buffer, offset, maxLength);
             }
 
             /**
@@ -574,15 +614,61 @@ public class BlackLab40StoredFieldsReader extends StoredFieldsReader {
             public String[] getValueSubstrings(int docId, String luceneField, int[] start, int[] end) {
                 if (start.length != end.length)
                     throw new IllegalArgumentException("Different numbers of starts and ends provided: " + start.length + ", " + end.length);
-                // OPT: we could optimize this to avoid reading blocks twice!
-                //   easiest is to determine the lowest start and highest end, read the entire document part,
-                //   then cut the snippets from that. More efficient is to figure out exactly which blocks we
-                //   need, retrieve those, then cut the snippets.
-                String[] results = new String[start.length];
+                if (start.length == 1)
+                    return new String[] { getValueSubstring(docId, luceneField, start[0], end[0]) };
                 for (int i = 0; i < start.length; i++) {
-                    results[i] = getValueSubstring(docId, luceneField, start[i], end[i]);
+                    if (start[i] < 0)
+                        throw new IllegalArgumentException("Illegal startChar value, must be >= 0: " + start[i]);
+                    if (end[i] < -1)
+                        throw new IllegalArgumentException("Illegal endChar value, must be >= -1: " + end[i]);
+                    if (end[i] != -1 && start[i] > end[i])
+                        throw new IllegalArgumentException("Illegal startChar/endChar values, startChar > endChar: " +
+                                start[i] + "-" + end[i]);
+                }
+
+                try {
+                    String[] results = new String[start.length];
+                    int valueLengthChar = findValueLengthChar(docId, luceneField);
+                    if (valueLengthChar == 0) {
+                        Arrays.fill(results, ""); // no value stored for this document
+                        return results;
+                    }
+                    ContentStoreBlockCodec blockCodec = ContentStoreBlockCodec.fromCode(valueIndexFile.readByte());
+                    long blockIndexOffset = valueIndexFile.readLong();
+                    long blocksOffset = valueIndexFile.readLong();
+                    int fieldId = contentStoreFieldIndexes.get(luceneField);
+
+                    // Decode each block we need only once, even if the parts overlap.
+                    int numberOfBlocks = (valueLengthChar + blockSizeChars - 1) / blockSizeChars;
+                    String[] blocks = new String[numberOfBlocks];
+                    try (ContentStoreBlockCodec.Decoder decoder = blockCodec.getDecoder()) {
+                        for (int i = 0; i < start.length; i++) {
+                            int startChar = Math.min(start[i], valueLengthChar);
+                            int endChar = end[i] == -1 ? valueLengthChar : Math.min(end[i], valueLengthChar);
+                            StringBuilder result = new StringBuilder(endChar - startChar);
+                            int firstBlockNeeded = startChar / blockSizeChars;
+                            for (int blockNumber = firstBlockNeeded; blockNumber * blockSizeChars < endChar; blockNumber++) {
+                                if (blocks[blockNumber] == null) {
+                                    int blockStart = findBlockStartOffset(blockIndexOffset, blocksOffset, blockNumber);
+                                    int blockEnd = blockIndexFile.readInt();
+                                    ContentStoreBlockCache.Key key = new ContentStoreBlockCache.Key(segmentId, fieldId,
+                                            docId, blockNumber);
+                                    blocks[blockNumber] = blockCache.get(key,
+                                            () -> decodeBlock(decoder, blocksOffset, blockStart, blockEnd));
+                                }
+                                // Append the part of this block that we need
+                                int blockCharOffset = blockNumber * blockSizeChars;
+                                String block = blocks[blockNumber];
+                                result.append(block, Math.max(0, startChar - blockCharOffset),
+                                        Math.min(block.length(), endChar - blockCharOffset));
+                            }
+                            results[i] = result.toString();
+                        }
+                    }
+                    return results;
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
                 }
-                return results;
             }
         };
     }
@@ -50,9 +50,6 @@ public class BlackLab40StoredFieldsWriter extends StoredFieldsWriter {
     /** Fields with a content store and their field index. */
     private final Map<String, Integer> contentStoreFieldIndexes = new HashMap<>();
 
-    /** How we (de)compress our blocks. */
-    private final ContentStoreBlockCodec blockCodec = ContentStoreBlockCodecZlib.INSTANCE;
-
     /** Lucene's default stored fields writer, for regular stored fields. */
     private final StoredFieldsWriter delegate;
 
@@ -134,6 +131,10 @@ public class BlackLab40StoredFieldsWriter extends StoredFieldsWriter {
      * @param value string value for the field
      */
     private void writeContentStoreField(FieldInfo fieldInfo, String value) throws IOException {
+        // How we compress the blocks is configured per field (default zlib)
+        ContentStoreBlockCodec blockCodec = ContentStoreBlockCodec.fromName(
+                BlackLabIndexIntegrated.contentStoreCodec(fieldInfo));
+
         // Write some info about this value
         valueIndexFile.writeByte(getFieldIndex(fieldInfo)); // which field is this?
         int lengthChars = value.length();
@@ -0,0 +1,180 @@
+package nl.inl.blacklab.codec;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Cache of decoded content store blocks.
+ *
+ * Shared by all segments of all indexes. Snippets and concordances from the content
+ * store often need the same blocks from popular documents, so this saves us from
+ * reading and decoding them again and again.
+ *
+ * Blocks are identified by segment id, field, document and block number. Segment
+ * files never change, so entries never become stale; entries for segments that
+ * are merged away are simply evicted eventually.
+ *
+ * The cache is bounded by the (estimated) memory used by the decoded blocks.
+ * Setting the maximum size to 0 disables it.
+ */
+public final class ContentStoreBlockCache {
+
+    /** Default maximum size of all cached blocks together */
+    public static final long DEFAULT_MAX_SIZE_BYTES = 64_000_000L;
+
+    /** Estimated memory used per entry besides the characters: key, String object, cache node */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    /** The cache used by all content stores */
+    private static final ContentStoreBlockCache instance = new ContentStoreBlockCache(DEFAULT_MAX_SIZE_BYTES);
+
+    /**
+     * Get the block cache used by all content stores.
+     *
+     * @return the shared block cache
+     */
+    public static ContentStoreBlockCache get() {
+        return instance;
+    }
+
+    /** Identifies a block in a segment's content store. */
+    static final class Key {
+
+        private final String segmentId;
+
+        private final int fieldId;
+
+        private final int docId;
+
+        private final int blockNumber;
+
+        Key(String segmentId, int fieldId, int docId, int blockNumber) {
+            this.segmentId = segmentId;
+            this.fieldId = fieldId;
+            this.docId = docId;
+            this.blockNumber = blockNumber;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            Key key = (Key) o;
+            return fieldId == key.fieldId && docId == key.docId && blockNumber == key.blockNumber &&
+                    segmentId.equals(key.segmentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(segmentId, fieldId, docId, blockNumber);
+        }
+
+        @Override
+        public String toString() {
+            return "Key(" + segmentId + ", " + fieldId + ", " + docId + ", " + blockNumber + ")";
+        }
+    }
+
+    /** Reads and decodes a block that's not in the cache. */
+    @FunctionalInterface
+    interface BlockLoader {
+        String load() throws IOException;
+    }
+
+    /** Decoded blocks */
+    private final Cache<Key, String> cache;
+
+    /** Are we caching at all? (false if max. size is 0) */
+    private volatile boolean enabled;
+
+    ContentStoreBlockCache(long maxSizeBytes) {
+        cache = Caffeine.newBuilder()
+                .recordStats()
+                .maximumWeight(Math.max(0, maxSizeBytes))
+                .weigher((Key key, String block) -> ENTRY_OVERHEAD_BYTES + block.length() * Character.BYTES)
+                .build();
+        enabled = maxSizeBytes > 0;
+    }
+
+    /**
+     * Set the maximum (estimated) size of all cached blocks together.
+     *
+     * @param maxSizeBytes maximum size in bytes, or 0 to disable the cache
+     */
+    public void setMaxSizeBytes(long maxSizeBytes) {
+        enabled = maxSizeBytes > 0;
+        cache.policy().eviction().ifPresent(eviction -> eviction.setMaximum(Math.max(0, maxSizeBytes)));
+        if (!enabled)
+            cache.invalidateAll();
+    }
+
+    /**
+     * Get a decoded block, loading it if it's not in the cache.
+     *
+     * Two threads that need the same uncached block at the same time may both load it.
+     * That's fine, and better than making one of them wait while holding a lock.
+     *
+     * @param key block to get
+     * @param loader reads and decodes the block if it's not in the cache
+     * @return the decoded block
+     */
+    String get(Key key, BlockLoader loader) throws IOException {
+        if (!enabled)
+            return loader.load();
+        String block = cache.getIfPresent(key);
+        if (block == null) {
+            block = loader.load();
+            cache.put(key, block);
+        }
+        return block;
+    }
+
+    /**
+     * Get statistics about cache use, such as the hit ratio.
+     *
+     * @return cache statistics
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Get the underlying cache, e.g. to register it with a metrics registry.
+     *
+     * @return the underlying cache
+     */
+    public Cache<?, ?> cache() {
+        return cache;
+    }
+
+    /**
+     * Get information about the cache, for the cache-info response.
+     *
+     * @return cache status
+     */
+    public Map<String, Object> getStatus() {
+        CacheStats stats = cache.stats();
+        return Map.of(
+                "maxSizeBytes", cache.policy().eviction().map(Policy.Eviction::getMaximum).orElse(0L),
+                "sizeBytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L),
+                "numberOfEntries", cache.estimatedSize(),
+                "hits", stats.hitCount(),
+                "misses", stats.missCount(),
+                "hitRatio", stats.hitRate(),
+                "evictions", stats.evictionCount()
+        );
+    }
+
+    /** Remove all blocks from the cache. */
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
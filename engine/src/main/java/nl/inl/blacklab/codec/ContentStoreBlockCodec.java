@@ -64,11 +64,34 @@ interface ContentStoreBlockCodec {
             return ContentStoreBlockCodecUncompressed.INSTANCE;
         case 1:
             return ContentStoreBlockCodecZlib.INSTANCE;
+        case 2:
+            return ContentStoreBlockCodecLZ4.INSTANCE;
         default:
             throw new IllegalArgumentException("Unknown block codec with code " + code);
         }
     }
 
+    /**
+     * Get a block codec by name, as specified in the input format config.
+     *
+     * @param name codec name: "uncompressed", "zlib" or "lz4"; null or empty for the default (zlib)
+     * @return the block codec
+     */
+    static ContentStoreBlockCodec fromName(String name) {
+        if (name == null || name.isEmpty())
+            return ContentStoreBlockCodecZlib.INSTANCE;
+        switch (name.toLowerCase()) {
+        case "uncompressed":
+            return ContentStoreBlockCodecUncompressed.INSTANCE;
+        case "zlib":
+            return ContentStoreBlockCodecZlib.INSTANCE;
+        case "lz4":
+            return ContentStoreBlockCodecLZ4.INSTANCE;
+        default:
+            throw new IllegalArgumentException("Unknown block codec " + name);
+        }
+    }
+
     Encoder getEncoder();
 
     Decoder getDecoder();
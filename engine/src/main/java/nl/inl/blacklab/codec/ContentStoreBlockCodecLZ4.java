@@ -0,0 +1,145 @@
+package nl.inl.blacklab.codec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.util.compress.LZ4;
+
+import nl.inl.util.SimpleResourcePool;
+
+/**
+ * A codec for blocks in the content store that uses LZ4 compression.
+ *
+ * Compresses less well than zlib, but decompresses several times faster, which
+ * matters when retrieving documents and snippets from the content store.
+ *
+ * Uses Lucene's (pure Java) LZ4 implementation. An encoded block consists of the
+ * length of the UTF-8 data as a vInt, followed by the LZ4-compressed data.
+ */
+public class ContentStoreBlockCodecLZ4 implements ContentStoreBlockCodec {
+
+    /** Our singleton instance. */
+    public static final ContentStoreBlockCodec INSTANCE = new ContentStoreBlockCodecLZ4();
+
+    /** How many encoders to keep in the pool? */
+    private static final int MAX_FREE_POOL_SIZE = 20;
+
+    /** Maximum number of bytes a vInt can take up. */
+    private static final int MAX_VINT_LENGTH = 5;
+
+    /** An empty input encodes to this. */
+    public static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
+
+    /** Decompression needs no state, so we can use a single decoder for everything. */
+    private static final Decoder DECODER = new Decoder() {
+        @Override
+        public void close() {
+            // nothing to do, this is a reusable singleton.
+        }
+
+        @Override
+        public String decode(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0)
+                return "";
+            ByteArrayDataInput in = new ByteArrayDataInput(buffer, offset, length);
+            int decodedLength = in.readVInt();
+            byte[] decoded = new byte[decodedLength];
+            LZ4.decompress(in, decodedLength, decoded, 0);
+            return new String(decoded, 0, decodedLength, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int decode(byte[] buffer, int offset, int length, byte[] decoded, int decodedOffset,
+                int decodedMaxLength) throws IOException {
+            if (length == 0)
+                return 0;
+            ByteArrayDataInput in = new ByteArrayDataInput(buffer, offset, length);
+            int decodedLength = in.readVInt();
+            if (decodedLength > decodedMaxLength)
+                return -1;
+            LZ4.decompress(in, decodedLength, decoded, decodedOffset);
+            return decodedLength;
+        }
+    };
+
+    /** Our pool of encoders (each has its own hash table). */
+    private final SimpleResourcePool<Encoder> encoderPool;
+
+    private ContentStoreBlockCodecLZ4() {
+        encoderPool = new SimpleResourcePool<>(MAX_FREE_POOL_SIZE) {
+            @Override
+            public Encoder createResource() {
+                return createEncoder();
+            }
+        };
+    }
+
+    /**
+     * Maximum size of an encoded block.
+     *
+     * LZ4's worst case for incompressible data, plus the length prefix.
+     *
+     * @param inputLength length of the UTF-8 input in bytes
+     * @return maximum encoded size in bytes
+     */
+    static int maxEncodedLength(int inputLength) {
+        return MAX_VINT_LENGTH + inputLength + inputLength / 255 + 16;
+    }
+
+    @Override
+    public Encoder getEncoder() {
+        return encoderPool.acquire();
+    }
+
+    @Override
+    public Decoder getDecoder() {
+        return DECODER;
+    }
+
+    public Encoder createEncoder() {
+        return new Encoder() {
+
+            final LZ4.FastCompressionHashTable hashTable = new LZ4.FastCompressionHashTable();
+
+            final ByteArrayDataOutput out = new ByteArrayDataOutput();
+
+            @Override
+            public void close() {
+                encoderPool.release(this);
+            }
+
+            @Override
+            public int encode(String input, int offset, int length, byte[] encoded, int encodedOffset,
+                    int encodedMaxLength) throws IOException {
+                if (length == 0)
+                    return 0;
+                byte[] inputBytes = input.substring(offset, offset + length).getBytes(StandardCharsets.UTF_8);
+                if (maxEncodedLength(inputBytes.length) > encodedMaxLength) {
+                    // Might not fit (ByteArrayDataOutput doesn't check bounds)
+                    return -1;
+                }
+                out.reset(encoded, encodedOffset, encodedMaxLength);
+                out.writeVInt(inputBytes.length);
+                LZ4.compress(inputBytes, 0, inputBytes.length, out, hashTable);
+                return out.getPosition() - encodedOffset;
+            }
+
+            @Override
+            public byte[] encode(String input, int offset, int length) throws IOException {
+                if (length == 0)
+                    return EMPTY_BYTE_ARRAY;
+                byte[] buffer = new byte[maxEncodedLength(length * 3)]; // (max. 3 UTF-8 bytes per char)
+                int encodedLength = encode(input, offset, length, buffer, 0, buffer.length);
+                byte[] result = new byte[encodedLength];
+                System.arraycopy(buffer, 0, result, 0, encodedLength);
+                return result;
+            }
+        };
+    }
+
+    public byte getCode() {
+        return 2;
+    }
+}
@@ -22,6 +22,8 @@ public class BLConfigIndexing {
     
     int numberOfThreads = 2;
 
+    int splitFilesLargerThanMegs = 16;
+
     int maxNumberOfIndicesPerUser = 10;
 
     public DownloadCache.Config downloadCacheConfig() {
@@ -112,6 +114,15 @@ public class BLConfigIndexing {
         this.numberOfThreads = numberOfThreads;
     }
 
+    public int getSplitFilesLargerThanMegs() {
+        return splitFilesLargerThanMegs;
+    }
+
+    @SuppressWarnings("unused")
+    public void setSplitFilesLargerThanMegs(int splitFilesLargerThanMegs) {
+        this.splitFilesLargerThanMegs = splitFilesLargerThanMegs;
+    }
+
     public int getMaxNumberOfIndicesPerUser() {
         return maxNumberOfIndicesPerUser;
     }
@@ -1,6 +1,9 @@
 package nl.inl.blacklab.config;
 
+import nl.inl.blacklab.codec.ContentStoreBlockCache;
 import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.FilterCache;
+import nl.inl.blacklab.search.lucene.QueryRewriteCache;
 import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.SearchSettings;
@@ -22,6 +25,15 @@ public class BLConfigSearch {
      */
     private boolean enableHugeResultSets = true;
 
+    /** How much memory may be used to cache the documents matching filter queries (0 disables the cache) */
+    private long filterCacheSizeMegs = FilterCache.DEFAULT_MAX_SIZE_BYTES / 1_000_000;
+
+    /** How much memory may be used to cache decoded content store blocks (0 disables the cache) */
+    private long contentStoreBlockCacheSizeMegs = ContentStoreBlockCache.DEFAULT_MAX_SIZE_BYTES / 1_000_000;
+
+    /** How many optimized and rewritten queries to remember (0 disables the cache) */
+    private long queryRewriteCacheSize = QueryRewriteCache.DEFAULT_MAX_SIZE;
+
     public BLConfigCollator getCollator() {
         return collator;
     }
@@ -75,6 +87,33 @@ public class BLConfigSearch {
         this.enableHugeResultSets = enableHugeResultSets;
     }
 
+    public long getFilterCacheSizeMegs() {
+        return filterCacheSizeMegs;
+    }
+
+    @SuppressWarnings("unused")
+    public void setFilterCacheSizeMegs(long filterCacheSizeMegs) {
+        this.filterCacheSizeMegs = filterCacheSizeMegs;
+    }
+
+    public long getContentStoreBlockCacheSizeMegs() {
+        return contentStoreBlockCacheSizeMegs;
+    }
+
+    @SuppressWarnings("unused")
+    public void setContentStoreBlockCacheSizeMegs(long contentStoreBlockCacheSizeMegs) {
+        this.contentStoreBlockCacheSizeMegs = contentStoreBlockCacheSizeMegs;
+    }
+
+    public long getQueryRewriteCacheSize() {
+        return queryRewriteCacheSize;
+    }
+
+    @SuppressWarnings("unused")
+    public void setQueryRewriteCacheSize(long queryRewriteCacheSize) {
+        this.queryRewriteCacheSize = queryRewriteCacheSize;
+    }
+
     /**
      * Apply the search configuration settings to an opened index.
      *
@@ -89,5 +128,8 @@ public class BLConfigSearch {
         SearchSettings sett = SearchSettings.get(maxHitsToProcess, maxHitsToCount, fiMatchFactor);
         ClauseCombinerNfa.setNfaThreshold(fiMatchFactor);
         index.setSearchSettings(sett);
+        index.filterCache().setMaxSizeBytes(getFilterCacheSizeMegs() * 1_000_000);
+        ContentStoreBlockCache.get().setMaxSizeBytes(getContentStoreBlockCacheSizeMegs() * 1_000_000);
+        QueryRewriteCache.get().setMaxSize(getQueryRewriteCacheSize());
     }
 }
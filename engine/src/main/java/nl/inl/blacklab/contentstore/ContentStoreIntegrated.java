@@ -1,9 +1,22 @@
 package nl.inl.blacklab.contentstore;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
 
 import nl.inl.blacklab.codec.LeafReaderLookup;
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.search.BlackLabEngine;
 import nl.inl.blacklab.search.BlackLabIndexIntegrated;
 
 /**
@@ -13,8 +26,8 @@ import nl.inl.blacklab.search.BlackLabIndexIntegrated;
  */
 public class ContentStoreIntegrated implements ContentStore {
 
-    public static ContentStore open(IndexReader reader, String luceneField) {
-        return new ContentStoreIntegrated(reader, luceneField);
+    public static ContentStore open(IndexReader reader, String luceneField, BlackLabEngine blackLab) {
+        return new ContentStoreIntegrated(reader, luceneField, blackLab);
     }
 
     /** Quickly look up the segment a document is stored in */
@@ -23,9 +36,13 @@ public class ContentStoreIntegrated implements ContentStore {
     /** Field we're accessing */
     private final String luceneField;
 
-    public ContentStoreIntegrated(IndexReader reader, String luceneField) {
+    /** Our BlackLab instance (for the worker threads and the number of threads per search) */
+    private final BlackLabEngine blackLab;
+
+    public ContentStoreIntegrated(IndexReader reader, String luceneField, BlackLabEngine blackLab) {
         leafReaderLookup = new LeafReaderLookup(reader);
         this.luceneField = luceneField;
+        this.blackLab = blackLab;
     }
 
     @Override
@@ -45,11 +62,89 @@ public class ContentStoreIntegrated implements ContentStore {
 
     @Override
     public String[] retrieveParts(int docId, int[] start, int[] end) {
-        for (int i = 0; i < start.length; i++)
-            if (start[i] == -1)  start[i] = 0; // fix legacy quirk
         LeafReaderContext lrc = leafReaderLookup.forId(docId);
         ContentStoreSegmentReader cs = BlackLabIndexIntegrated.contentStore(lrc);
-        return cs.getValueSubstrings(docId - lrc.docBase, luceneField, start, end);
+        return cs.getValueSubstrings(docId - lrc.docBase, luceneField, fixStarts(start), end);
+    }
+
+    /**
+     * Replace start offsets of -1 with 0 (legacy quirk).
+     *
+     * Doesn't modify the caller's array.
+     *
+     * @param start start offsets
+     * @return fixed start offsets (a copy if anything had to be changed)
+     */
+    private static int[] fixStarts(int[] start) {
+        int[] result = start;
+        for (int i = 0; i < start.length; i++) {
+            if (start[i] == -1) {
+                if (result == start)
+                    result = start.clone();
+                result[i] = 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieve substrings from several documents.
+     *
+     * Documents are grouped by segment, and the segments are processed in parallel on
+     * BlackLab's worker threads (up to maxThreadsPerSearch threads, including the calling
+     * thread). Each task uses its own segment reader, as those should only be used from one
+     * thread.
+     *
+     * @param docIds document ids
+     * @param start for each document, the starts of the substrings
+     * @param end for each document, the ends of the substrings
+     * @return for each document, the substrings
+     */
+    @Override
+    public String[][] retrieveParts(int[] docIds, int[][] start, int[][] end) {
+        // Group the documents by segment
+        Map<LeafReaderContext, IntArrayList> docsPerSegment = new LinkedHashMap<>();
+        for (int i = 0; i < docIds.length; i++) {
+            LeafReaderContext lrc = leafReaderLookup.forId(docIds[i]);
+            docsPerSegment.computeIfAbsent(lrc, __ -> new IntArrayList()).add(i);
+        }
+
+        // Retrieve the substrings for each segment (in parallel)
+        String[][] parts = new String[docIds.length][];
+        List<Map.Entry<LeafReaderContext, IntArrayList>> segments = new ArrayList<>(docsPerSegment.entrySet());
+        AtomicInteger nextSegment = new AtomicInteger();
+        Runnable retrieveSegments = () -> {
+            int segment;
+            while ((segment = nextSegment.getAndIncrement()) < segments.size()) {
+                LeafReaderContext lrc = segments.get(segment).getKey();
+                ContentStoreSegmentReader cs = BlackLabIndexIntegrated.contentStore(lrc);
+                segments.get(segment).getValue().forEach(i -> parts[i] = cs.getValueSubstrings(
+                        docIds[i] - lrc.docBase, luceneField, fixStarts(start[i]), end[i]));
+            }
+        };
+        int numThreads = Math.min(segments.size(), Math.max(blackLab.maxThreadsPerSearch(), 1));
+        List<FutureTask<Void>> tasks = new ArrayList<>();
+        ExecutorService executorService = blackLab.workerExecutorService();
+        for (int i = 1; i < numThreads; i++) {
+            FutureTask<Void> task = new FutureTask<>(retrieveSegments, null);
+            tasks.add(task);
+            executorService.execute(task);
+        }
+        retrieveSegments.run();
+        try {
+            for (FutureTask<Void> task: tasks) {
+                // (if a worker thread hasn't picked up the task yet, it has nothing left to do,
+                //  so we run it here instead of waiting for a thread to become available)
+                task.run();
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            tasks.forEach(task -> task.cancel(true));
+            throw new InterruptedSearch(e);
+        } catch (ExecutionException e) {
+            throw BlackLabRuntimeException.wrap(e.getCause());
+        }
+        return parts;
     }
 
     @Override
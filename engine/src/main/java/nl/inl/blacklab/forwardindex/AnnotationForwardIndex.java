@@ -1,5 +1,6 @@
 package nl.inl.blacklab.forwardindex;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import net.jcip.annotations.ThreadSafe;
@@ -62,6 +63,22 @@ public interface AnnotationForwardIndex {
         return retrievePartsInt(docId, fullDoc, fullDoc).get(0);
     }
 
+    /**
+     * Retrieve token ids for several entire documents.
+     *
+     * Faster than calling {@link #getDocument(int)} for each document if the implementation
+     * can reuse resources between documents, e.g. when the documents are in the same segment.
+     *
+     * @param docIds forward index ids
+     * @return token ids for each document, in the same order
+     */
+    default List<int[]> getDocuments(int[] docIds) {
+        List<int[]> results = new ArrayList<>(docIds.length);
+        for (int docId: docIds)
+            results.add(getDocument(docId));
+        return results;
+    }
+
     /**
      * Get the Terms object in order to translate ids to token strings
      *
@@ -1,6 +1,7 @@
 package nl.inl.blacklab.forwardindex;
 
 import java.text.Collator;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.lucene.index.IndexReader;
@@ -53,6 +54,9 @@ public class AnnotationForwardIndexIntegrated implements AnnotationForwardIndex
 
     private boolean initialized = false;
 
+    /** Forward index for the previous index reader, if we were reopened (until we're initialized) */
+    private AnnotationForwardIndexIntegrated previous;
+
     /** Index of segments by their doc base (the number to add to get global docId) */
     private final LeafReaderLookup leafReaderLookup;
 
@@ -71,6 +75,24 @@ public class AnnotationForwardIndexIntegrated implements AnnotationForwardIndex
         leafReaderLookup = new LeafReaderLookup(indexReader);
     }
 
+    private AnnotationForwardIndexIntegrated(IndexReader indexReader, AnnotationForwardIndexIntegrated previous) {
+        this(indexReader, previous.annotation, previous.collators);
+        this.previous = previous;
+    }
+
+    /**
+     * Get a forward index for a reopened index reader.
+     *
+     * When initialized, the new forward index will reuse the terms information from
+     * this one, so only new segments have to be read.
+     *
+     * @param newReader the reopened index reader
+     * @return forward index for the new reader
+     */
+    public AnnotationForwardIndexIntegrated reopen(IndexReader newReader) {
+        return new AnnotationForwardIndexIntegrated(newReader, this);
+    }
+
     @Override
     public synchronized void initialize() {
         if (initialized) {
@@ -78,7 +100,20 @@ public class AnnotationForwardIndexIntegrated implements AnnotationForwardIndex
         }
 
         try {
-            this.terms = new TermsIntegrated(collators, indexReader, luceneField);
+            TermsIntegrated newTerms;
+            if (previous != null) {
+                // Update the terms from the previous index reader instead of starting over
+                newTerms = new TermsIntegrated(collators, indexReader, luceneField, (TermsIntegrated) previous.terms());
+                previous = null;
+            } else {
+                newTerms = new TermsIntegrated(collators, indexReader, luceneField);
+            }
+            // Free the off-heap term data when the index reader is closed (i.e. when the index
+            // is closed, or when it was reopened and the last search using this reader finished)
+            IndexReader.CacheHelper cacheHelper = indexReader.getReaderCacheHelper();
+            if (cacheHelper != null)
+                cacheHelper.addClosedListener(key -> newTerms.release());
+            this.terms = newTerms;
             this.initialized = true;
         } catch (InterruptedException e) {
             throw new InterruptedSearch("Intialization of Forward Index was interrupted", e);
@@ -100,6 +135,24 @@ public class AnnotationForwardIndexIntegrated implements AnnotationForwardIndex
         return terms.segmentIdsToGlobalIds(lrc.ord, segmentResults);
     }
 
+    @Override
+    public List<int[]> getDocuments(int[] docIds) {
+        initialize();
+        List<int[]> results = new ArrayList<>(docIds.length);
+        LeafReaderContext lrc = null;
+        ForwardIndexSegmentReader fi = null;
+        for (int docId: docIds) {
+            if (lrc == null || docId < lrc.docBase || docId >= lrc.docBase + lrc.reader().maxDoc()) {
+                // Different segment (usually all documents are in the same one)
+                lrc = leafReaderLookup.forId(docId);
+                fi = BlackLabIndexIntegrated.forwardIndex(lrc);
+            }
+            int[] segmentResult = fi.retrievePart(luceneField, docId - lrc.docBase, -1, -1);
+            results.add(terms.segmentIdsToGlobalIds(lrc.ord, segmentResult));
+        }
+        return results;
+    }
+
     @Override
     public int docLength(int docId) {
         LeafReaderContext lrc = leafReaderLookup.forId(docId);
@@ -82,6 +82,23 @@ public abstract class ForwardIndexAbstract implements ForwardIndex {
         initialized = true;
     }
 
+    /**
+     * Construct a forward index from annotation forward indexes that were already opened.
+     *
+     * The annotation forward indexes are not automatically initialized.
+     *
+     * @param index our index
+     * @param field our annotated field
+     * @param fis forward index per annotation
+     */
+    protected ForwardIndexAbstract(BlackLabIndex index, AnnotatedField field, Map<Annotation, AnnotationForwardIndex> fis) {
+        this.index = index;
+        this.field = field;
+        this.fis.putAll(fis);
+        canDoNfaMatching = fis.values().stream().allMatch(fi -> fi.canDoNfaMatching());
+        initialized = true;
+    }
+
     @Override
     public boolean canDoNfaMatching() {
         return canDoNfaMatching;
@@ -109,6 +126,10 @@ public abstract class ForwardIndexAbstract implements ForwardIndex {
         return get(annotation).terms();
     }
 
+    protected BlackLabIndex index() {
+        return index;
+    }
+
     @Override
     public AnnotatedField field() {
         return field;
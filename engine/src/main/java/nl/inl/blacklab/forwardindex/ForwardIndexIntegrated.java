@@ -1,6 +1,9 @@
 package nl.inl.blacklab.forwardindex;
 
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
 
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
@@ -20,6 +23,54 @@ public class ForwardIndexIntegrated extends ForwardIndexAbstract {
         super(index, field);
     }
 
+    /**
+     * Open the forward index for a specific index reader.
+     *
+     * Used for a reader we've since replaced by reopening, if a search that is still using it
+     * needs a forward index we hadn't opened yet. The annotation forward indexes are initialized
+     * when first used.
+     *
+     * @param index our index
+     * @param field our annotated field
+     * @param reader index reader to use
+     */
+    public ForwardIndexIntegrated(BlackLabIndex index, AnnotatedField field, IndexReader reader) {
+        this(index, field, openAll(field, reader, index));
+    }
+
+    private ForwardIndexIntegrated(BlackLabIndex index, AnnotatedField field, Map<Annotation, AnnotationForwardIndex> fis) {
+        super(index, field, fis);
+    }
+
+    private static Map<Annotation, AnnotationForwardIndex> openAll(AnnotatedField field, IndexReader reader,
+            BlackLabIndex index) {
+        Map<Annotation, AnnotationForwardIndex> fis = new HashMap<>();
+        for (Annotation annotation: field.annotations()) {
+            if (annotation.hasForwardIndex())
+                fis.put(annotation, AnnotationForwardIndexIntegrated.open(reader, annotation, index.collator()));
+        }
+        return fis;
+    }
+
+    /**
+     * Get a forward index for a reopened index reader.
+     *
+     * Terms information is reused from this forward index, so only new segments have to be read.
+     * The new forward index is fully initialized when this method returns, so it can be used
+     * immediately without delaying searches.
+     *
+     * @param newReader the reopened index reader
+     * @return forward index for the new reader
+     */
+    public ForwardIndexIntegrated reopen(IndexReader newReader) {
+        Map<Annotation, AnnotationForwardIndex> fis = new HashMap<>();
+        for (AnnotationForwardIndex afi: this) {
+            fis.put(afi.annotation(), ((AnnotationForwardIndexIntegrated) afi).reopen(newReader));
+        }
+        fis.values().parallelStream().forEach(AnnotationForwardIndex::initialize);
+        return new ForwardIndexIntegrated(index(), field(), fis);
+    }
+
     protected AnnotationForwardIndex openAnnotationForwardIndex(Annotation annotation, BlackLabIndex index) {
         AnnotationForwardIndex afi = AnnotationForwardIndexIntegrated.open(index.reader(), annotation, index.collator());
         add(annotation, afi);
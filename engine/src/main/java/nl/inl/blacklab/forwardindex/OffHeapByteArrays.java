@@ -0,0 +1,398 @@
+package nl.inl.blacklab.forwardindex;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * A list of byte arrays, stored outside the Java heap.
+ *
+ * Used for the term strings (as UTF-8) and their collation keys, which can take up a lot
+ * of memory for large vocabularies. Keeping them off-heap means the garbage collector
+ * doesn't have to deal with them.
+ *
+ * Each array is stored as its length (variable-length encoded) followed by its bytes.
+ * Arrays never straddle two buffers. Immutable after building; all reads use absolute
+ * positions, so instances can be used by multiple threads.
+ *
+ * Direct buffers are normally only freed when the garbage collector notices they're
+ * unreachable, which may take a long time because they're so small on the heap. So
+ * instances are reference counted (they may be shared between the terms of successive
+ * index readers) and the memory is freed explicitly when the last reference is released.
+ */
+@ThreadSafe
+class OffHeapByteArrays {
+
+    /** Buffers are at most 2^BUFFER_BITS bytes */
+    private static final int BUFFER_BITS = 30;
+
+    private static final int MAX_BUFFER_SIZE = 1 << BUFFER_BITS;
+
+    private static final long POSITION_MASK = MAX_BUFFER_SIZE - 1;
+
+    /** Offset buffers contain at most 2^OFFSETS_BITS offsets */
+    private static final int OFFSETS_BITS = 24;
+
+    private static final int OFFSETS_MASK = (1 << OFFSETS_BITS) - 1;
+
+    /** Frees a direct buffer (Unsafe.invokeCleaner), or null if that's not available */
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; // we'll leave it to the garbage collector
+        }
+    }
+
+    /**
+     * Free a direct buffer now instead of waiting for the garbage collector.
+     *
+     * The buffer must not be used afterwards.
+     *
+     * @param buffer buffer to free
+     */
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null)
+            return;
+        try {
+            INVOKE_CLEANER.invokeExact(buffer);
+        } catch (Throwable e) {
+            // Couldn't free it; the garbage collector will
+        }
+    }
+
+    /** Our data (null after the memory has been freed) */
+    private volatile ByteBuffer[] buffers;
+
+    /** Start of each array (as longs): buffer number in the high bits, position in the low BUFFER_BITS bits */
+    private final ByteBuffer[] offsets;
+
+    /** Number of arrays */
+    private final int size;
+
+    /** Number of references to this instance; when it reaches 0, the memory is freed */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    private OffHeapByteArrays(ByteBuffer[] buffers, ByteBuffer[] offsets, int size) {
+        this.buffers = buffers;
+        this.offsets = offsets;
+        this.size = size;
+    }
+
+    /**
+     * Add a reference to this instance.
+     *
+     * Every call (and the builder that created the instance) must be matched by a call
+     * to {@link #release()}.
+     *
+     * @return this instance
+     */
+    public OffHeapByteArrays retain() {
+        if (refCount.getAndIncrement() <= 0)
+            throw new IllegalStateException("Off-heap arrays were already freed");
+        return this;
+    }
+
+    /**
+     * Release a reference to this instance. Frees the memory if this was the last one.
+     */
+    public void release() {
+        if (refCount.decrementAndGet() == 0) {
+            ByteBuffer[] toFree = buffers;
+            buffers = null;
+            for (ByteBuffer buffer: toFree)
+                free(buffer);
+            for (ByteBuffer buffer: offsets)
+                free(buffer);
+        }
+    }
+
+    private ByteBuffer buffer(long offset) {
+        ByteBuffer[] current = buffers;
+        if (current == null)
+            throw new IllegalStateException("Off-heap arrays were already freed");
+        return current[(int) (offset >>> BUFFER_BITS)];
+    }
+
+    /**
+     * Get the number of arrays.
+     *
+     * @return number of arrays
+     */
+    public int size() {
+        return size;
+    }
+
+    private long offset(int index) {
+        return offsets[index >>> OFFSETS_BITS].getLong((index & OFFSETS_MASK) * Long.BYTES);
+    }
+
+    /**
+     * Get the length of an array.
+     *
+     * @param index array index
+     * @return length in bytes
+     */
+    public int length(int index) {
+        long offset = offset(index);
+        return readLength(buffer(offset), (int) (offset & POSITION_MASK));
+    }
+
+    /**
+     * Get a copy of an array.
+     *
+     * @param index array index
+     * @return the bytes
+     */
+    public byte[] get(int index) {
+        BytesRef bytesRef = new BytesRef(length(index));
+        get(index, bytesRef);
+        return bytesRef.bytes;
+    }
+
+    /**
+     * Decode an array as an UTF-8 string.
+     *
+     * @param index array index
+     * @return the string
+     */
+    public String getString(int index) {
+        return new String(get(index), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copy an array into a BytesRef.
+     *
+     * The BytesRef's array is reused if it is large enough, so no allocation is needed
+     * when copying many arrays.
+     *
+     * @param index array index
+     * @param result where to copy the bytes
+     */
+    public void get(int index, BytesRef result) {
+        long offset = offset(index);
+        ByteBuffer buffer = buffer(offset);
+        int pos = (int) (offset & POSITION_MASK);
+        int length = readLength(buffer, pos);
+        pos += lengthOfLength(length);
+        result.bytes = ArrayUtil.grow(result.bytes, length);
+        for (int i = 0; i < length; i++)
+            result.bytes[i] = buffer.get(pos + i);
+        result.offset = 0;
+        result.length = length;
+    }
+
+    /**
+     * Compare an array to a key, treating bytes as unsigned.
+     *
+     * @param index array index
+     * @param key key to compare to
+     * @return negative, zero or positive if the array is smaller than, equal to or larger than the key
+     */
+    public int compare(int index, byte[] key) {
+        long offset = offset(index);
+        ByteBuffer buffer = buffer(offset);
+        int pos = (int) (offset & POSITION_MASK);
+        int length = readLength(buffer, pos);
+        pos += lengthOfLength(length);
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(buffer.get(pos + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0)
+                return cmp;
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    /**
+     * Check if an array is equal to a key.
+     *
+     * @param index array index
+     * @param key key to compare to
+     * @return true if the array contains the same bytes as the key
+     */
+    public boolean equals(int index, byte[] key) {
+        return length(index) == key.length && compare(index, key) == 0;
+    }
+
+    /**
+     * Calculate the hash code of an array.
+     *
+     * Equal to Arrays.hashCode() of the array.
+     *
+     * @param index array index
+     * @return hash code
+     */
+    public int hashCode(int index) {
+        long offset = offset(index);
+        ByteBuffer buffer = buffer(offset);
+        int pos = (int) (offset & POSITION_MASK);
+        int length = readLength(buffer, pos);
+        pos += lengthOfLength(length);
+        int h = 1;
+        for (int i = 0; i < length; i++)
+            h = 31 * h + buffer.get(pos + i);
+        return h;
+    }
+
+    /**
+     * Get the total number of bytes used off-heap.
+     *
+     * @return bytes used
+     */
+    public long sizeBytes() {
+        ByteBuffer[] current = buffers;
+        long total = 0;
+        if (current != null) {
+            for (ByteBuffer buffer: current)
+                total += buffer.capacity();
+        }
+        for (ByteBuffer buffer: offsets)
+            total += buffer.capacity();
+        return total;
+    }
+
+    private static int readLength(ByteBuffer buffer, int pos) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(pos++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return length;
+    }
+
+    private static int lengthOfLength(int length) {
+        int n = 1;
+        while ((length >>>= 7) != 0)
+            n++;
+        return n;
+    }
+
+    /**
+     * Builds an OffHeapByteArrays by adding arrays one at a time.
+     */
+    public static class Builder {
+
+        private final int size;
+
+        private final ByteBuffer[] offsets;
+
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+
+        private ByteBuffer current;
+
+        private int numberAdded = 0;
+
+        /**
+         * Create a builder.
+         *
+         * @param size number of arrays that will be added
+         * @param estimatedBytes estimated total number of bytes (used for the initial buffer size;
+         *                       the buffer grows if necessary)
+         */
+        public Builder(int size, long estimatedBytes) {
+            this.size = size;
+            offsets = new ByteBuffer[(size >>> OFFSETS_BITS) + 1];
+            for (int i = 0; i < offsets.length; i++) {
+                int n = i < offsets.length - 1 ? OFFSETS_MASK + 1 : size & OFFSETS_MASK;
+                offsets[i] = ByteBuffer.allocateDirect(Math.max(1, n * Long.BYTES));
+            }
+            current = ByteBuffer.allocateDirect((int) Math.max(16, Math.min(estimatedBytes, MAX_BUFFER_SIZE)));
+        }
+
+        /**
+         * Add the next array.
+         *
+         * @param bytes array to add
+         */
+        public void add(byte[] bytes) {
+            add(bytes, bytes.length);
+        }
+
+        /**
+         * Add all arrays from another instance, without decoding them.
+         *
+         * @param other arrays to add
+         */
+        public void addAll(OffHeapByteArrays other) {
+            BytesRef bytesRef = new BytesRef();
+            for (int i = 0; i < other.size(); i++) {
+                other.get(i, bytesRef);
+                add(bytesRef.bytes, bytesRef.length);
+            }
+        }
+
+        private void add(byte[] bytes, int length) {
+            int needed = lengthOfLength(length) + length;
+            if (current.remaining() < needed) {
+                if (current.capacity() < MAX_BUFFER_SIZE) {
+                    // Grow the current buffer
+                    long newCapacity = Math.max((long) current.capacity() * 2, (long) current.position() + needed);
+                    ByteBuffer grown = ByteBuffer.allocateDirect((int) Math.min(newCapacity, MAX_BUFFER_SIZE));
+                    current.flip();
+                    grown.put(current);
+                    free(current);
+                    current = grown;
+                }
+                if (current.remaining() < needed) {
+                    // Current buffer is as large as it gets; start a new one
+                    current.flip();
+                    buffers.add(current);
+                    current = ByteBuffer.allocateDirect(MAX_BUFFER_SIZE);
+                }
+            }
+            long offset = ((long) buffers.size() << BUFFER_BITS) | current.position();
+            offsets[numberAdded >>> OFFSETS_BITS].putLong((numberAdded & OFFSETS_MASK) * Long.BYTES, offset);
+            numberAdded++;
+            int n = length;
+            while ((n & ~0x7F) != 0) {
+                current.put((byte) ((n & 0x7F) | 0x80));
+                n >>>= 7;
+            }
+            current.put((byte) n);
+            current.put(bytes, 0, length);
+        }
+
+        /**
+         * Build the OffHeapByteArrays.
+         *
+         * @return the arrays
+         */
+        public OffHeapByteArrays build() {
+            if (numberAdded != size)
+                throw new IllegalStateException("Expected " + size + " arrays, got " + numberAdded);
+            current.flip();
+            if (current.remaining() < current.capacity() - current.capacity() / 4) {
+                // More than a quarter of the last buffer is unused; copy it to one of the exact size
+                ByteBuffer last = ByteBuffer.allocateDirect(Math.max(1, current.remaining()));
+                last.put(current);
+                free(current);
+                current = last;
+            }
+            buffers.add(current);
+            current = null;
+            return new OffHeapByteArrays(buffers.toArray(new ByteBuffer[0]), offsets, size);
+        }
+    }
+}
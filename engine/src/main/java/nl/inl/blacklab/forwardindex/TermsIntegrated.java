@@ -2,6 +2,8 @@ package nl.inl.blacklab.forwardindex;
 
 import java.io.IOException;
 import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -9,6 +11,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
@@ -18,6 +21,7 @@ import org.apache.lucene.index.LeafReaderContext;
 import it.unimi.dsi.fastutil.ints.IntArrays;
 import nl.inl.blacklab.codec.BLTerms;
 import nl.inl.blacklab.codec.BlackLab40PostingsReader;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.util.BlockTimer;
 
 /** Keeps a list of unique terms and their sort positions.
@@ -79,6 +83,15 @@ public class TermsIntegrated extends TermsReaderAbstract {
      */
     private final Map<Integer, int[]> segmentToGlobalTermIds = new HashMap<>();
 
+    /** Per segment (by core cache key): the translation of that segment's term ids to
+     *  global term ids. Used to reuse the translation for unchanged segments when the index
+     *  is reopened.
+     */
+    private final Map<IndexReader.CacheKey, int[]> segmentKeyToGlobalTermIds = new HashMap<>();
+
+    /** Segment terms objects to point to us when we're done initializing, with their segment number */
+    private final List<Pair<BLTerms, Integer>> segmentTermsToUpdate = new ArrayList<>();
+
     public TermsIntegrated(Collators collators, IndexReader indexReader, String luceneField)
             throws InterruptedException {
         super(collators);
@@ -125,7 +138,177 @@ public class TermsIntegrated extends TermsReaderAbstract {
 
             // clear temporary variables
             this.indexReader = null;
+            updateSegmentTerms();
+        }
+    }
+
+    /**
+     * Determine the terms for a reopened index, reusing the terms from before.
+     *
+     * Term ids stay the same, and new terms are added at the end. Only segments that weren't
+     * in the previous index reader are read, and only new terms are sorted and then merged into
+     * the existing sort order. This is much faster than determining the terms from scratch,
+     * especially if only a few documents were added.
+     *
+     * Note that terms that no longer occur in the index (e.g. because documents were deleted)
+     * are kept.
+     *
+     * @param collators collators to use (same as for the previous terms)
+     * @param indexReader reopened index reader
+     * @param luceneField field to determine the terms for
+     * @param previous terms for the previous index reader
+     */
+    public TermsIntegrated(Collators collators, IndexReader indexReader, String luceneField, TermsIntegrated previous)
+            throws InterruptedException {
+        super(collators);
+
+        try (BlockTimer bt = BlockTimer.create(LOG_TIMINGS, "Update " + luceneField + " terms list")) {
+            this.luceneField = luceneField;
+
+            // Reuse the term id translation for segments we've seen before; read the others
+            int numberOfPreviousTerms = previous.numberOfTerms();
+            Map<String, Integer> newTerms = new LinkedHashMap<>();
+            ToIntFunction<String> previousTermIds = null; // only created if we need it
+            for (LeafReaderContext lrc: indexReader.leaves()) {
+                BLTerms segmentTerms = segmentTerms(lrc);
+                if (segmentTerms == null)
+                    continue; // can happen if segment only contains index metadata doc
+                IndexReader.CacheKey key = segmentKey(lrc);
+                int[] segmentToGlobal = key == null ? null : previous.segmentKeyToGlobalTermIds.get(key);
+                if (segmentToGlobal == null) {
+                    if (previousTermIds == null)
+                        previousTermIds = previous.exactTermLookup();
+                    ToIntFunction<String> lookup = previousTermIds;
+                    segmentToGlobal = readTermsFromSegment(lrc, term -> {
+                        int id = lookup.applyAsInt(term);
+                        return id >= 0 ? id : newTerms.computeIfAbsent(term, __ -> numberOfPreviousTerms + newTerms.size());
+                    });
+                }
+                addSegment(lrc, segmentTerms, segmentToGlobal);
+            }
+
+            if (newTerms.isEmpty()) {
+                // Nothing new (e.g. only deletions or merged segments). Use the same term data.
+                shareTermData(previous);
+            } else {
+                String[] newTermStrings = newTerms.keySet().toArray(String[]::new);
+                List<int[]> positions;
+                try (BlockTimer bt2 = BlockTimer.create(LOG_TIMINGS, luceneField + ": merge sort positions")) {
+                    positions = List.of(MatchSensitivity.SENSITIVE, MatchSensitivity.INSENSITIVE).parallelStream()
+                            .map(sensitivity -> mergeSortPositions(previous, newTermStrings, sensitivity))
+                            .collect(Collectors.toList());
+                }
+                try (BlockTimer bt2 = BlockTimer.create(LOG_TIMINGS, luceneField + ": finishInitialization")) {
+                    // (the previous terms are copied as bytes, not decoded)
+                    finishInitialization(luceneField, previous, newTermStrings, positions.get(0), positions.get(1));
+                }
+            }
+            updateSegmentTerms();
+        }
+    }
+
+    /**
+     * Determine sort positions for all terms, after adding new terms to the previous terms.
+     *
+     * We sort the new terms and find where they go in the existing sort order, so
+     * we don't have to compare all the existing terms again.
+     *
+     * @param previous previous terms
+     * @param newTerms new terms (ids continue after the previous terms)
+     * @param sensitivity sort order to determine
+     * @return sort position per term id; terms that are considered equal get the same position
+     */
+    private int[] mergeSortPositions(TermsIntegrated previous, String[] newTerms, MatchSensitivity sensitivity) {
+        Collator coll = sensitivity.isCaseSensitive() ? collator : collatorInsensitive;
+        int numberOfPreviousTerms = previous.numberOfTerms();
+
+        // Sort the new terms
+        CollationKey[] keys = Arrays.stream(newTerms).map(coll::getCollationKey).toArray(CollationKey[]::new);
+        int[] newSorted = new int[newTerms.length];
+        for (int i = 0; i < newSorted.length; i++)
+            newSorted[i] = i;
+        IntArrays.quickSort(newSorted, (a, b) -> keys[a].compareTo(keys[b]));
+
+        // Merge them into the existing sort order
+        int[] previousSorted = previous.termIdsInSortOrder(sensitivity);
+        int[] merged = new int[numberOfPreviousTerms + newTerms.length];
+        int from = 0, mergedLength = 0;
+        for (int newIndex: newSorted) {
+            // Find the first previous term that is not smaller than the new term
+            int lo = from, hi = numberOfPreviousTerms;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (coll.compare(previous.get(previousSorted[mid]), newTerms[newIndex]) < 0)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            System.arraycopy(previousSorted, from, merged, mergedLength, lo - from);
+            mergedLength += lo - from;
+            merged[mergedLength++] = numberOfPreviousTerms + newIndex;
+            from = lo;
+        }
+        System.arraycopy(previousSorted, from, merged, mergedLength, numberOfPreviousTerms - from);
+
+        // Determine the sort positions. Equal terms get the same sort position (see invertSortedTermsArray)
+        int[] result = new int[merged.length];
+        int prevSortPosition = -1;
+        for (int i = 0; i < merged.length; i++) {
+            int termId = merged[i];
+            int sortPosition = i;
+            if (i > 0) {
+                int prevTermId = merged[i - 1];
+                boolean prevIsNew = prevTermId >= numberOfPreviousTerms, isNew = termId >= numberOfPreviousTerms;
+                boolean equal;
+                if (!prevIsNew && !isNew) {
+                    equal = previous.idToSortPosition(prevTermId, sensitivity) == previous.idToSortPosition(termId, sensitivity);
+                } else if (prevIsNew && isNew) {
+                    equal = keys[prevTermId - numberOfPreviousTerms].compareTo(keys[termId - numberOfPreviousTerms]) == 0;
+                } else {
+                    String a = prevIsNew ? newTerms[prevTermId - numberOfPreviousTerms] : previous.get(prevTermId);
+                    String b = isNew ? newTerms[termId - numberOfPreviousTerms] : previous.get(termId);
+                    equal = coll.compare(a, b) == 0;
+                }
+                if (equal)
+                    sortPosition = prevSortPosition;
+            }
+            result[termId] = sortPosition;
+            prevSortPosition = sortPosition;
         }
+        return result;
+    }
+
+    private BLTerms segmentTerms(LeafReaderContext lrc) {
+        try {
+            return (BLTerms) lrc.reader().terms(luceneField);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static IndexReader.CacheKey segmentKey(LeafReaderContext lrc) {
+        IndexReader.CacheHelper cacheHelper = lrc.reader().getCoreCacheHelper();
+        return cacheHelper == null ? null : cacheHelper.getKey();
+    }
+
+    private void addSegment(LeafReaderContext lrc, BLTerms segmentTerms, int[] segmentToGlobal) {
+        segmentToGlobalTermIds.put(lrc.ord, segmentToGlobal);
+        IndexReader.CacheKey key = segmentKey(lrc);
+        if (key != null)
+            segmentKeyToGlobalTermIds.put(key, segmentToGlobal);
+        segmentTermsToUpdate.add(Pair.of(segmentTerms, lrc.ord));
+    }
+
+    /**
+     * Make the segment terms objects use us to look up terms.
+     *
+     * We do this when we're done initializing because segments can be shared with a
+     * previous index reader (that may still be in use).
+     */
+    private void updateSegmentTerms() {
+        for (Pair<BLTerms, Integer> segmentTermsAndOrd: segmentTermsToUpdate)
+            segmentTermsAndOrd.getLeft().setTermsIntegrated(this, segmentTermsAndOrd.getRight());
+        segmentTermsToUpdate.clear();
     }
 
     private Pair<TermInIndex[], String[]> readTermsFromIndex() throws InterruptedException {
@@ -146,22 +329,30 @@ public class TermsIntegrated extends TermsReaderAbstract {
 
     private void readTermsFromSegment(Map<String, TermInIndex> globalTermIds, LeafReaderContext lrc)
             throws InterruptedException {
-        BLTerms segmentTerms;
-        try {
-            segmentTerms = (BLTerms) lrc.reader().terms(luceneField);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        BLTerms segmentTerms = segmentTerms(lrc);
         if (segmentTerms == null) {
             // can happen if segment only contains index metadata doc
             return;
         }
-        segmentTerms.setTermsIntegrated(this, lrc.ord);
+        int[] segmentToGlobal = readTermsFromSegment(lrc, term -> globalTermIds.computeIfAbsent(term,
+                __ -> new TermInIndex(term, globalTermIds.size())).globalTermId);
+        addSegment(lrc, segmentTerms, segmentToGlobal);
+    }
+
+    /**
+     * Read the terms from a segment and determine their global term ids.
+     *
+     * @param lrc segment to read
+     * @param globalTermId determines the global term id for a term
+     * @return translation of segment term ids to global term ids
+     */
+    private int[] readTermsFromSegment(LeafReaderContext lrc, ToIntFunction<String> globalTermId)
+            throws InterruptedException {
         BlackLab40PostingsReader r = BlackLab40PostingsReader.get(lrc);
         TermsIntegratedSegment s = new TermsIntegratedSegment(r, luceneField, lrc.ord);
 
         Iterator<TermsIntegratedSegment.TermInSegment> it = s.iterator();
-        int[] segmentToGlobal = segmentToGlobalTermIds.computeIfAbsent(s.ord(), __ -> new int[s.size()]);
+        int[] segmentToGlobal = new int[s.size()];
         while (it.hasNext()) {
             // Make sure this can be interrupted if e.g. a commandline utility completes
             // before this initialization is finished.
@@ -169,12 +360,12 @@ public class TermsIntegrated extends TermsReaderAbstract {
                 throw new InterruptedException();
 
             TermsIntegratedSegment.TermInSegment t = it.next();
-            TermInIndex tii = globalTermIds.computeIfAbsent(t.term, __ -> new TermInIndex(t.term, globalTermIds.size()));
             // Remember the mapping from segment id to global id
-            segmentToGlobal[t.id] = tii.globalTermId;
+            segmentToGlobal[t.id] = globalTermId.applyAsInt(t.term);
         }
 
         s.close();
+        return segmentToGlobal;
     }
 
     private int[] determineSort(TermInIndex[] terms, Comparator<TermInIndex> cmp) {
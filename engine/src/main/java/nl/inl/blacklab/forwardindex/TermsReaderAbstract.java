@@ -1,14 +1,15 @@
 package nl.inl.blacklab.forwardindex;
 
 import java.text.Collator;
+import java.text.RuleBasedCollator;
 import java.util.Arrays;
+import java.util.function.ToIntFunction;
 
+import org.apache.lucene.util.BytesRef;
 import org.eclipse.collections.api.set.primitive.MutableIntSet;
 
 import gnu.trove.iterator.TIntObjectIterator;
 import gnu.trove.map.hash.TIntObjectHashMap;
-import it.unimi.dsi.fastutil.BigArrays;
-import it.unimi.dsi.fastutil.bytes.ByteBigArrayBigList;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.util.BlockTimer;
@@ -18,6 +19,21 @@ public abstract class TermsReaderAbstract implements Terms {
     /** Log the timing of different initialization tasks? */
     protected static final boolean LOG_TIMINGS = false;
 
+    /** How many decoded terms to keep (must be a power of two) */
+    private static final int HOT_TERMS_CACHE_SIZE = 1 << 14;
+
+    /** A recently decoded term */
+    private static final class HotTerm {
+        final int id;
+
+        final String term;
+
+        HotTerm(int id, String term) {
+            this.id = id;
+            this.term = term;
+        }
+    }
+
     /** How many terms total are there? (always valid) */
     private int numberOfTerms;
 
@@ -51,14 +67,26 @@ public abstract class TermsReaderAbstract implements Terms {
      */
     private int[] groupId2TermIds;
 
-    /** The character data for all terms. */
-    private ByteBigArrayBigList termCharData;
+    /** The character data (UTF-8) for all terms, by term id. Stored off-heap. */
+    private OffHeapByteArrays termCharData;
+
+    /**
+     * Recently decoded terms, so frequent terms (e.g. in KWICs or when grouping)
+     * don't have to be decoded every time. Indexed by term id modulo cache size.
+     *
+     * Updated without synchronization; entries are immutable, so at worst we decode a term again.
+     */
+    private HotTerm[] hotTerms;
 
     /**
-     * Contains the start position in termCharData array for each term id.
-     * The length of the term must be computed by using the start position of the next term.
+     * Collation keys by sensitive sort position, for looking up terms.
+     * Only used with a RuleBasedCollator (which produces keys we can compare bytewise).
+     * Created on first use.
      */
-    private long[] termId2CharDataOffset;
+    private volatile OffHeapByteArrays sensitiveCollationKeys;
+
+    /** Collation keys by insensitive sort position. See {@link #sensitiveCollationKeys}. */
+    private volatile OffHeapByteArrays insensitiveCollationKeys;
 
     public TermsReaderAbstract(Collators collators) {
         this.collator = collators.get(MatchSensitivity.SENSITIVE);
@@ -67,8 +95,25 @@ public abstract class TermsReaderAbstract implements Terms {
 
     protected void finishInitialization(String name, String[] terms, int[] termId2SensitivePosition,
             int[] termId2InsensitivePosition) {
+        finishInitialization(name, null, terms, termId2SensitivePosition, termId2InsensitivePosition);
+    }
+
+    /**
+     * Finish initialization, continuing the term ids of another instance.
+     *
+     * The term data of the other instance is copied as-is (without decoding the terms),
+     * which is much faster if there are only a few new terms.
+     *
+     * @param name name for logging timings
+     * @param previous instance whose terms get the first term ids (or null if none)
+     * @param terms terms that come after those of previous
+     * @param termId2SensitivePosition sensitive sort position for all terms
+     * @param termId2InsensitivePosition insensitive sort position for all terms
+     */
+    protected void finishInitialization(String name, TermsReaderAbstract previous, String[] terms,
+            int[] termId2SensitivePosition, int[] termId2InsensitivePosition) {
 
-        numberOfTerms = terms.length;
+        numberOfTerms = (previous == null ? 0 : previous.numberOfTerms) + terms.length;
 
         TIntObjectHashMap<IntArrayList> insensitivePosition2TermIds = new TIntObjectHashMap<>(numberOfTerms);
         int numGroupsThatAreNotSizeOne = 0;
@@ -90,14 +135,121 @@ public abstract class TermsReaderAbstract implements Terms {
         }
 
         try (BlockTimer ignored = BlockTimer.create(LOG_TIMINGS, name + ": finish > fillTermDataGroups")) {
-            fillTermDataGroups(terms.length, termId2SensitivePosition, termId2InsensitivePosition,
+            fillTermDataGroups(numberOfTerms, termId2SensitivePosition, termId2InsensitivePosition,
                     insensitivePosition2TermIds, numGroupsThatAreNotSizeOne);
         }
         try (BlockTimer ignored = BlockTimer.create(LOG_TIMINGS, name + ": finish > fillTermCharData")) {
-            fillTermCharData(terms);
+            fillTermCharData(previous, terms);
         }
     }
 
+    /**
+     * Share the term data of another instance.
+     *
+     * Used when determining the terms for a reopened index where no new terms were added.
+     * This is safe because the term data is never modified after initialization. The off-heap
+     * data is reference counted, so it is only freed when both instances have been released.
+     *
+     * @param other instance to share the term data of
+     */
+    protected void shareTermData(TermsReaderAbstract other) {
+        numberOfTerms = other.numberOfTerms;
+        insensitivePosition2GroupId = other.insensitivePosition2GroupId;
+        sensitivePosition2GroupId = other.sensitivePosition2GroupId;
+        termId2SensitivePosition = other.termId2SensitivePosition;
+        termId2InsensitivePosition = other.termId2InsensitivePosition;
+        groupId2TermIds = other.groupId2TermIds;
+        termCharData = other.termCharData.retain();
+        hotTerms = other.hotTerms;
+        synchronized (other) {
+            // (collation keys are created on first use; make sure we don't see a half-initialized state)
+            sensitiveCollationKeys = retain(other.sensitiveCollationKeys);
+            insensitiveCollationKeys = retain(other.insensitiveCollationKeys);
+        }
+    }
+
+    private static OffHeapByteArrays retain(OffHeapByteArrays arrays) {
+        return arrays == null ? null : arrays.retain();
+    }
+
+    /**
+     * Release the off-heap term data.
+     *
+     * Call this when the index reader these terms belong to has been closed.
+     * The terms must not be used afterwards.
+     */
+    public synchronized void release() {
+        if (termCharData == null)
+            return; // not initialized, or already released
+        termCharData.release();
+        termCharData = null;
+        if (sensitiveCollationKeys != null)
+            sensitiveCollationKeys.release();
+        sensitiveCollationKeys = null;
+        if (insensitiveCollationKeys != null)
+            insensitiveCollationKeys.release();
+        insensitiveCollationKeys = null;
+    }
+
+    /**
+     * Get all term ids, ordered by sort position.
+     *
+     * Terms with the same sort position (i.e. that are considered equal) are ordered by term id.
+     *
+     * @param sensitivity sort order to use
+     * @return term ids in sort order
+     */
+    protected int[] termIdsInSortOrder(MatchSensitivity sensitivity) {
+        int[] termId2Position = sensitivity.isCaseSensitive() ? termId2SensitivePosition : termId2InsensitivePosition;
+        // Counting sort, as sort positions are in the range [0, numberOfTerms)
+        int[] start = new int[numberOfTerms + 1];
+        for (int termId = 0; termId < numberOfTerms; termId++)
+            start[termId2Position[termId] + 1]++;
+        for (int i = 1; i < start.length; i++)
+            start[i] += start[i - 1];
+        int[] result = new int[numberOfTerms];
+        for (int termId = 0; termId < numberOfTerms; termId++)
+            result[start[termId2Position[termId]]++] = termId;
+        return result;
+    }
+
+    /**
+     * Create a function to look up term ids by exact term string.
+     *
+     * Unlike {@link #indexOf(String)}, this doesn't use the collator, so terms that the collator
+     * considers equal are still distinguished. Used to map terms from new segments to existing
+     * term ids when the index is reopened.
+     *
+     * Builds a hash table of all terms, so only use this if you need to look up many terms.
+     *
+     * @return function that returns the term id for a term string, or -1 if not found
+     */
+    protected ToIntFunction<String> exactTermLookup() {
+        // Open addressing with linear probing, at most 3/4 full; empty slots contain -1
+        int tableSize = Integer.highestOneBit((int) Math.max(numberOfTerms * 4L / 3, 1)) << 1;
+        int mask = tableSize - 1;
+        int[] table = new int[tableSize];
+        Arrays.fill(table, -1);
+        for (int termId = 0; termId < numberOfTerms; termId++) {
+            int slot = mix(termCharData.hashCode(termId)) & mask;
+            while (table[slot] >= 0)
+                slot = (slot + 1) & mask;
+            table[slot] = termId;
+        }
+        return term -> {
+            byte[] bytes = term.getBytes(DEFAULT_CHARSET);
+            for (int slot = mix(Arrays.hashCode(bytes)) & mask; ; slot = (slot + 1) & mask) {
+                int termId = table[slot];
+                if (termId < 0 || termCharData.equals(termId, bytes))
+                    return termId;
+            }
+        };
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+
     // OPT: optimize by removing the 1 at groupId < terms.length
     //   Since we know it's always there (no collisions in this section - length is always 1)
     /**
@@ -185,26 +337,80 @@ public abstract class TermsReaderAbstract implements Terms {
     }
 
     /**
-     * Converts terms string array to byte data and stored offsets.
+     * Converts terms string array to off-heap byte data.
      *
      * Initializes
      * - {@link #termCharData}
-     * - {@link #termId2CharDataOffset}
+     * - {@link #hotTerms}
      */
     protected void fillTermCharData(String[] terms) {
-        // convert all to byte[] and tally total number of bytes
-        // free the String instances while doing this so memory usage doesn't spike so much
-        this.termCharData = new ByteBigArrayBigList();
-        long bytesWritten = 0;
-        this.termId2CharDataOffset = new long[numberOfTerms];
-        for (int i = 0; i < numberOfTerms; ++i) {
-            this.termId2CharDataOffset[i] = bytesWritten;
-            byte[] bytes = terms[i].getBytes(DEFAULT_CHARSET);
-            byte[][] bb = BigArrays.wrap(bytes);
-            termCharData.addElements(bytesWritten, bb);
-            bytesWritten += bytes.length;
+        fillTermCharData(null, terms);
+    }
+
+    /**
+     * Converts terms string array to off-heap byte data, after copying the data of a previous instance.
+     *
+     * @param previous instance whose term data comes first (or null if none)
+     * @param terms terms that come after those of previous
+     */
+    private void fillTermCharData(TermsReaderAbstract previous, String[] terms) {
+        long estimatedBytes = previous == null ? numberOfTerms * 8L :
+                previous.termCharData.sizeBytes() + terms.length * 8L;
+        OffHeapByteArrays.Builder builder = new OffHeapByteArrays.Builder(numberOfTerms, estimatedBytes);
+        if (previous != null)
+            builder.addAll(previous.termCharData);
+        for (String term: terms) {
+            builder.add(term.getBytes(DEFAULT_CHARSET));
+        }
+        this.termCharData = builder.build();
+        this.hotTerms = new HotTerm[HOT_TERMS_CACHE_SIZE];
+        this.sensitiveCollationKeys = null;
+        this.insensitiveCollationKeys = null;
+    }
+
+    /**
+     * Build the collation keys for looking up terms.
+     *
+     * @param sortPosition2GroupId group (and therefore term) for each sort position
+     * @param coll collator to use
+     * @return collation keys by sort position
+     */
+    private OffHeapByteArrays buildCollationKeys(int[] sortPosition2GroupId, Collator coll) {
+        // (keys are usually somewhat longer than the terms; the builder grows if necessary)
+        OffHeapByteArrays.Builder builder = new OffHeapByteArrays.Builder(sortPosition2GroupId.length,
+                termCharData.sizeBytes());
+        int prevGroupId = -1;
+        byte[] key = null;
+        for (int groupId: sortPosition2GroupId) {
+            // (unused insensitive sort positions refer to the previous group; reuse its key)
+            if (groupId != prevGroupId)
+                key = coll.getCollationKey(termCharData.getString(groupId2TermIds[groupId + 1])).toByteArray();
+            builder.add(key);
+            prevGroupId = groupId;
+        }
+        return builder.build();
+    }
+
+    private OffHeapByteArrays collationKeys(MatchSensitivity sensitivity) {
+        boolean sensitive = sensitivity.isCaseSensitive();
+        OffHeapByteArrays keys = sensitive ? sensitiveCollationKeys : insensitiveCollationKeys;
+        if (keys == null) {
+            synchronized (this) {
+                keys = sensitive ? sensitiveCollationKeys : insensitiveCollationKeys;
+                if (keys == null) {
+                    try (BlockTimer ignored = BlockTimer.create(LOG_TIMINGS, "build collation keys (" + sensitivity + ")")) {
+                        if (sensitive) {
+                            keys = buildCollationKeys(sensitivePosition2GroupId, collator);
+                            sensitiveCollationKeys = keys;
+                        } else {
+                            keys = buildCollationKeys(insensitivePosition2GroupId, collatorInsensitive);
+                            insensitiveCollationKeys = keys;
+                        }
+                    }
+                }
+            }
         }
-        this.termCharData.trim(); // clear extra space.
+        return keys;
     }
 
     @Override
@@ -259,14 +465,29 @@ public abstract class TermsReaderAbstract implements Terms {
         if (id >= numberOfTerms || id < 0) {
             return "";
         }
-        boolean isLastId = id == (this.termId2CharDataOffset.length - 1);
-        long start = this.termId2CharDataOffset[id];
-        long end = (isLastId ? this.termCharData.size64() : this.termId2CharDataOffset[id+1]);
-        int length = (int) (end-start);
-
-        byte[] out = new byte[length];
-        this.termCharData.getElements(start, out, 0, length);
-        return new String(out, DEFAULT_CHARSET);
+        int slot = id & (HOT_TERMS_CACHE_SIZE - 1);
+        HotTerm hotTerm = hotTerms[slot];
+        if (hotTerm != null && hotTerm.id == id)
+            return hotTerm.term;
+        String term = termCharData.getString(id);
+        hotTerms[slot] = new HotTerm(id, term);
+        return term;
+    }
+
+    /**
+     * Get the UTF-8 bytes of a term without decoding it to a String.
+     *
+     * The BytesRef's array is reused if it is large enough.
+     *
+     * @param id term id
+     * @param result (out) the term's bytes
+     */
+    public void getBytes(int id, BytesRef result) {
+        if (id >= numberOfTerms || id < 0) {
+            result.length = 0;
+            return;
+        }
+        termCharData.get(id, result);
     }
 
     @Override
@@ -301,6 +522,26 @@ public abstract class TermsReaderAbstract implements Terms {
                 this.sensitivePosition2GroupId :
                 this.insensitivePosition2GroupId;
 
+        if (coll instanceof RuleBasedCollator) {
+            // Compare collation keys bytewise, so we don't have to decode and collate terms
+            // (RuleBasedCollator keys compare the same as the strings they were made from)
+            final OffHeapByteArrays keys = collationKeys(sensitivity);
+            final byte[] key = coll.getCollationKey(term).toByteArray();
+            int l = 0;
+            int r = keys.size() - 1;
+            while (l <= r) {
+                final int sortPositionToCheck = l + (r - l) / 2;
+                final int result = keys.compare(sortPositionToCheck, key);
+                if (result == 0)
+                    return sortPosition2GroupId[sortPositionToCheck];
+                if (result > 0)
+                    r = sortPositionToCheck - 1;
+                else
+                    l = sortPositionToCheck + 1;
+            }
+            return -1;
+        }
+
         // binary search
         int l = 0;
         int r = sortPosition2GroupId.length - 1;
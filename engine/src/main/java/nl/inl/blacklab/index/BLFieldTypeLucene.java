@@ -47,23 +47,31 @@ public class BLFieldTypeLucene implements BLFieldType {
         return tokenized ? BLFieldTypeLucene.METADATA_TOKENIZED : BLFieldTypeLucene.METADATA_UNTOKENIZED;
     }
 
-    public static synchronized BLFieldType contentStore() {
-        return getFieldType(false, false, true);
+    /**
+     * Get the FieldType for a content store field.
+     *
+     * @param codecName how to compress the content store blocks, or null for the default
+     * @return field type
+     */
+    public static synchronized BLFieldType contentStore(String codecName) {
+        return getFieldType(false, false, true, codecName);
     }
 
     public static synchronized BLFieldType annotationSensitivity(boolean offsets, boolean forwardIndex) {
-        return getFieldType(offsets, forwardIndex, false);
+        return getFieldType(offsets, forwardIndex, false, null);
     }
 
     /**
      * Get the appropriate FieldType given the options for an annotation sensitivity.
      */
-    private static synchronized BLFieldType getFieldType(boolean offsets, boolean forwardIndex, boolean contentStore) {
+    private static synchronized BLFieldType getFieldType(boolean offsets, boolean forwardIndex, boolean contentStore,
+            String codecName) {
         if (contentStore && (offsets || forwardIndex))
             throw new IllegalArgumentException("Field can either be content store or can have offsets/forward index, "
                     + "not both!");
 
-        String key = (offsets ? "O" : "-") + (forwardIndex ? "F" : "-") + (contentStore ? "C" : "-");
+        String key = (offsets ? "O" : "-") + (forwardIndex ? "F" : "-") + (contentStore ? "C" : "-") +
+                (codecName == null ? "" : codecName);
         return fieldTypeCache.computeIfAbsent(key, (__) -> {
             FieldType type = new FieldType();
             type.setStored(contentStore);
@@ -82,6 +90,8 @@ public class BLFieldTypeLucene implements BLFieldType {
                 // (we set the field attribute regardless of our index format, but that's okay, it doesn't hurt anything
                 //  if not used)
                 BlackLabIndexIntegrated.setContentStoreField(type);
+                if (codecName != null)
+                    BlackLabIndexIntegrated.setContentStoreCodec(type, codecName);
             }
             if (forwardIndex) {
                 // indicate that this field should get a forward index when written to the index
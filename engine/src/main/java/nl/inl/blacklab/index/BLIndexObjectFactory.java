@@ -15,7 +15,13 @@ public interface BLIndexObjectFactory {
 
     BLFieldType fieldTypeMetadata(boolean tokenized);
 
-    BLFieldType fieldTypeContentStore();
+    /**
+     * Get the field type for a content store field.
+     *
+     * @param codecName how to compress the content store blocks (e.g. "lz4"), or null for the default
+     * @return field type
+     */
+    BLFieldType fieldTypeContentStore(String codecName);
 
     BLFieldType fieldTypeAnnotationSensitivity(boolean offsets, boolean forwardIndex);
 
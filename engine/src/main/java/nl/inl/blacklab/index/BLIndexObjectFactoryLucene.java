@@ -42,8 +42,8 @@ public class BLIndexObjectFactoryLucene implements BLIndexObjectFactory {
     }
 
     @Override
-    public BLFieldType fieldTypeContentStore() {
-        return BLFieldTypeLucene.contentStore();
+    public BLFieldType fieldTypeContentStore(String codecName) {
+        return BLFieldTypeLucene.contentStore(codecName);
     }
 
     @Override
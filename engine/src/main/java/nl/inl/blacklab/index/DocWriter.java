@@ -76,7 +76,21 @@ public interface DocWriter {
      */
     void addToForwardIndex(AnnotatedFieldWriter field, BLInputDocument currentDoc);
 
-    void storeInContentStore(BLInputDocument currentDoc, TextContent document, String contentIdFieldName, String contentStoreName);
+    default void storeInContentStore(BLInputDocument currentDoc, TextContent document, String contentIdFieldName, String contentStoreName) {
+        storeInContentStore(currentDoc, document, contentIdFieldName, contentStoreName, null);
+    }
+
+    /**
+     * Store the document in the content store.
+     *
+     * @param currentDoc Lucene doc, for storing the content (integrated) or content id (external)
+     * @param document document content
+     * @param contentIdFieldName field to store the content id in (external content store only)
+     * @param contentStoreName name of the content store field
+     * @param codecName how to compress the content store blocks (integrated only), or null for the default
+     */
+    void storeInContentStore(BLInputDocument currentDoc, TextContent document, String contentIdFieldName, String contentStoreName,
+            String codecName);
 
     boolean needsPrimaryValuePayloads();
 }
@@ -0,0 +1,41 @@
+package nl.inl.blacklab.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import nl.inl.blacklab.exceptions.MalformedInputFile;
+
+/**
+ * Splits an input file into parts at document boundaries.
+ *
+ * Used to index the documents in a single large input file on multiple threads.
+ * Each part is a complete input file in the same format, containing one or more
+ * of the original documents.
+ */
+public interface DocumentSplitter {
+
+    /** Receives the parts of the input file. */
+    @FunctionalInterface
+    interface PartHandler {
+        /**
+         * Handle a part of the input file.
+         *
+         * @param contents part contents, encoded as UTF-8
+         * @return true if we should continue splitting, false to stop
+         */
+        boolean part(byte[] contents);
+    }
+
+    /**
+     * Split the input into parts.
+     *
+     * @param is input
+     * @param cs character encoding of the input (formats that specify their own encoding may ignore this)
+     * @param minPartSize add documents to a part until it is at least this many bytes
+     * @param handler receives the parts
+     * @throws IOException on I/O error
+     * @throws MalformedInputFile if the input could not be split
+     */
+    void split(InputStream is, Charset cs, int minPartSize, PartHandler handler) throws IOException, MalformedInputFile;
+}
@@ -1,5 +1,6 @@
 package nl.inl.blacklab.index;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -30,6 +31,8 @@ import nl.inl.blacklab.forwardindex.ForwardIndex;
 import nl.inl.blacklab.forwardindex.ForwardIndexExternal;
 import nl.inl.blacklab.index.annotated.AnnotatedFieldWriter;
 import nl.inl.blacklab.index.annotated.AnnotationWriter;
+import nl.inl.blacklab.indexers.config.ConfigInputFormat;
+import nl.inl.blacklab.indexers.config.DocIndexerConfig;
 import nl.inl.blacklab.search.BlackLab;
 import nl.inl.blacklab.search.BlackLabIndexWriter;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
@@ -75,6 +78,11 @@ class IndexerImpl implements DocWriter, Indexer {
             } catch (Exception e) { 
                 logger.trace("Could not determine charset for input file {}, using default ({})", path,  DEFAULT_INPUT_ENCODING.name()); 
             }
+            DocumentSplitter splitter = documentSplitter(contents.length);
+            if (splitter != null) {
+                indexSplit(splitter, path, new ByteArrayInputStream(contents), cs);
+                return;
+            }
             DocIndexer docIndexer = DocumentFormats.get(IndexerImpl.this.formatIdentifier, IndexerImpl.this, path, contents, cs);
             if (docIndexer == null) {
                 throw new PluginException("Could not instantiate DocIndexer: " + IndexerImpl.this.formatIdentifier + ", " + path);
@@ -93,6 +101,14 @@ class IndexerImpl implements DocWriter, Indexer {
             // This usually isn't an issue, since docIndexers work exclusively with either binary data or text.
             // In the case of binary data docIndexers, they should always ignore the encoding anyway
             // and for text docIndexers, passing a binary file is an error in itself already.
+            DocumentSplitter splitter = file != null && file.isFile() && file.getAbsolutePath().equals(path) ?
+                    documentSplitter(file.length()) : null;
+            if (splitter != null) {
+                try (UnicodeStream inputStream = new UnicodeStream(is, DEFAULT_INPUT_ENCODING)) {
+                    indexSplit(splitter, path, inputStream, inputStream.getEncoding());
+                }
+                return;
+            }
             try (
                     UnicodeStream inputStream = new UnicodeStream(is, DEFAULT_INPUT_ENCODING);
                     DocIndexer docIndexer = DocumentFormats.get(IndexerImpl.this.formatIdentifier, IndexerImpl.this, path,
@@ -112,12 +128,31 @@ class IndexerImpl implements DocWriter, Indexer {
             indexer.index();
             listener().fileDone(documentName);
             
-            int docsDoneAfter = indexer.numberOfDocsDone();
-            if (docsDoneAfter == docsDoneBefore) {
+            warnIfNothingIndexed(documentName, indexer.numberOfDocsDone() - docsDoneBefore,
+                    indexer.numberOfTokensDone() - tokensDoneBefore);
+        }
+
+        /**
+         * Index a large file on multiple threads, by splitting it at document boundaries.
+         */
+        private void indexSplit(DocumentSplitter splitter, String documentName, InputStream is, Charset cs)
+                throws MalformedInputFile, PluginException, IOException {
+            if (!continueIndexing())
+                return;
+
+            listener().fileStarted(documentName);
+            SplitFileIndexer.Result result = splitFileIndexer().index(splitter, formatIdentifier, IndexerImpl.this,
+                    documentName, is, cs);
+            listener().fileDone(documentName);
+
+            warnIfNothingIndexed(documentName, result.docsDone, result.tokensDone);
+        }
+
+        private void warnIfNothingIndexed(String documentName, int docsDone, long tokensDone) {
+            if (docsDone == 0) {
                 logger.warn("No docs found in " + documentName + "; wrong format?");
             }
-            long tokensDoneAfter = indexer.numberOfTokensDone();
-            if (tokensDoneAfter == tokensDoneBefore) {
+            if (tokensDone == 0) {
                 logger.warn("No words indexed in " + documentName + "; wrong format?");
             }
         }
@@ -187,6 +222,9 @@ class IndexerImpl implements DocWriter, Indexer {
     /** Index using multiple threads or just one? */
     private int numberOfThreadsToUse = 1;
 
+    /** Worker threads for indexing parts of large files (created when needed) */
+    private SplitFileIndexer splitFileIndexer;
+
     // TODO this is a workaround for a bug where indexMetadata is always written, even when an indexing task was
     //   rollbacked on an empty index. Result of this is that the index can never be opened again (the forwardindex
     //   is missing files that the indexMetadata.yaml says must exist?) so record rollbacks and then don't write
@@ -382,6 +420,8 @@ class IndexerImpl implements DocWriter, Indexer {
             indexWriter.metadata().save();
         }
         indexWriter.close();
+        if (splitFileIndexer != null)
+            splitFileIndexer.close();
 
         // Signal that we're completely done now
         listener().closeEnd();
@@ -432,7 +472,7 @@ class IndexerImpl implements DocWriter, Indexer {
 
     @Override
     public void storeInContentStore(BLInputDocument currentDoc, TextContent document, String contentIdFieldName,
-            String contentStoreName) {
+            String contentStoreName, String codecName) {
 
         Field field = indexWriter.metadata().annotatedField(contentStoreName);
         if (field == null) field = indexWriter.metadata().metadataField(contentStoreName);
@@ -448,7 +488,7 @@ class IndexerImpl implements DocWriter, Indexer {
             }
 
             String luceneFieldName = AnnotatedFieldNameUtil.contentStoreField(contentStoreName);
-            BLFieldType fieldType = indexWriter.indexObjectFactory().fieldTypeContentStore();
+            BLFieldType fieldType = indexWriter.indexObjectFactory().fieldTypeContentStore(codecName);
             currentDoc.addField(luceneFieldName, document.toString(), fieldType);
         } else {
             // external contentstore, different api
@@ -586,6 +626,30 @@ class IndexerImpl implements DocWriter, Indexer {
         return f;
     }
 
+    /**
+     * Get a splitter to index an input file on multiple threads, if appropriate.
+     *
+     * We only split large files, and only if we're indexing using multiple threads
+     * and the input format supports it.
+     *
+     * @param fileSize size of the input file
+     * @return splitter to use, or null if we shouldn't split this file
+     */
+    private DocumentSplitter documentSplitter(long fileSize) {
+        long minSize = BlackLab.config().getIndexing().getSplitFilesLargerThanMegs() * 1_000_000L;
+        if (numberOfThreadsToUse <= 1 || minSize <= 0 || fileSize < minSize)
+            return null;
+        ConfigInputFormat config = DocumentFormats.getConfigInputFormat(formatIdentifier);
+        return config == null ? null : DocIndexerConfig.documentSplitter(config);
+    }
+
+    private synchronized SplitFileIndexer splitFileIndexer() {
+        if (splitFileIndexer == null)
+            splitFileIndexer = new SplitFileIndexer(Math.max(1, Math.min(numberOfThreadsToUse,
+                    Runtime.getRuntime().availableProcessors() - 1)));
+        return splitFileIndexer;
+    }
+
     @Override
     public void setNumberOfThreadsToUse(int numberOfThreadsToUse) {
         this.numberOfThreadsToUse = numberOfThreadsToUse;
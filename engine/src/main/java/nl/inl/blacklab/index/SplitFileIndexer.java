@@ -0,0 +1,155 @@
+package nl.inl.blacklab.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.MalformedInputFile;
+import nl.inl.blacklab.exceptions.MaxDocsReached;
+import nl.inl.blacklab.exceptions.PluginException;
+
+/**
+ * Indexes a single large input file on multiple threads.
+ *
+ * The calling thread splits the file into parts at document boundaries (see {@link DocumentSplitter}).
+ * The parts are put in a bounded queue, so we don't read too far ahead, and indexed by a pool of
+ * worker threads, each with its own DocIndexer. The workers add their documents to the index
+ * themselves; IndexWriter is thread-safe and analyzes documents in addDocument(), so that runs in
+ * parallel as well.
+ */
+class SplitFileIndexer implements AutoCloseable {
+
+    /** Add documents to a part until it is at least this large */
+    static final int MIN_PART_SIZE = 1_000_000;
+
+    /** Counts for the file we indexed */
+    static class Result {
+        final int docsDone;
+
+        final long tokensDone;
+
+        Result(int docsDone, long tokensDone) {
+            this.docsDone = docsDone;
+            this.tokensDone = tokensDone;
+        }
+    }
+
+    private final ExecutorService workers;
+
+    SplitFileIndexer(int numberOfThreads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Block when the queue is full, so the splitting thread waits for the workers to catch up
+        // (every queued part holds a piece of the file in memory)
+        workers = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(numberOfThreads) {
+                    @Override
+                    public boolean offer(Runnable r) {
+                        try {
+                            put(r);
+                            return true;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return false;
+                        }
+                    }
+                }, r -> {
+                    Thread t = new Thread(r, "SplitFileIndexer-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Index an input file on our worker threads.
+     *
+     * @param splitter how to split the file
+     * @param formatIdentifier input format
+     * @param docWriter where to add the documents
+     * @param documentName name of the input file
+     * @param is input
+     * @param cs character encoding of the input
+     * @return number of documents and tokens indexed
+     */
+    Result index(DocumentSplitter splitter, String formatIdentifier, DocWriter docWriter, String documentName,
+            InputStream is, Charset cs) throws IOException, MalformedInputFile, PluginException {
+        LongAdder docsDone = new LongAdder();
+        LongAdder tokensDone = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            splitter.split(is, cs, MIN_PART_SIZE, part -> {
+                if (stop.get() || !docWriter.continueIndexing())
+                    return false;
+                futures.add(workers.submit(() -> {
+                    if (stop.get())
+                        return null;
+                    try (DocIndexer docIndexer = DocumentFormats.get(formatIdentifier, docWriter, documentName, part,
+                            StandardCharsets.UTF_8)) {
+                        if (docIndexer == null) {
+                            throw new PluginException("Could not instantiate DocIndexer: " + formatIdentifier + ", "
+                                    + documentName);
+                        }
+                        try {
+                            docIndexer.index();
+                        } catch (MaxDocsReached e) {
+                            stop.set(true);
+                        } finally {
+                            docsDone.add(docIndexer.numberOfDocsDone());
+                            tokensDone.add(docIndexer.numberOfTokensDone());
+                        }
+                    } catch (Exception e) {
+                        stop.set(true); // don't start indexing any other parts
+                        throw e;
+                    }
+                    return null;
+                }));
+                return true;
+            });
+        } finally {
+            // Wait for all parts to be indexed, even if splitting failed
+            awaitParts(futures);
+        }
+        return new Result(docsDone.intValue(), tokensDone.longValue());
+    }
+
+    private static void awaitParts(List<Future<?>> futures) throws IOException, MalformedInputFile, PluginException {
+        Throwable error = null;
+        for (Future<?> future: futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (error == null)
+                    error = e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BlackLabRuntimeException("Interrupted while waiting for indexing threads", e);
+            }
+        }
+        if (error instanceof IOException)
+            throw (IOException) error;
+        if (error instanceof MalformedInputFile)
+            throw (MalformedInputFile) error;
+        if (error instanceof PluginException)
+            throw (PluginException) error;
+        if (error != null)
+            throw BlackLabRuntimeException.wrap(error);
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+}
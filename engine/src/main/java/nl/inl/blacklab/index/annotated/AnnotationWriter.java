@@ -19,7 +19,6 @@ import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
-import nl.inl.util.CollUtil;
 
 /**
  * An annotation in an annotated field (while indexing). See AnnotatedFieldWriter for details.
@@ -36,20 +35,14 @@ public class AnnotationWriter {
     protected boolean includeOffsets;
 
     /**
-     * Term values for this annotation.
-     */
-    protected List<String> values = new ArrayList<>();
-
-    /**
-     * Token position increments. This allows us to index multiple terms at a single
-     * token position (just set the token increments of the additional tokens to 0).
-     */
-    protected IntArrayList increments = new IntArrayList();
-
-    /**
-     * Payloads for this annotation, if any.
+     * Term values, position increments and payloads (if any) for this annotation.
+     *
+     * Position increments allow us to index multiple terms at a single token position
+     * (just set the token increments of the additional tokens to 0).
+     *
+     * The buffer is reused for each document we index.
      */
-    protected List<BytesRef> payloads = null;
+    private final TokenBuffer tokens;
 
     /**
      * Position of the last value added
@@ -137,8 +130,7 @@ public class AnnotationWriter {
         this.needsPrimaryValuePayload = needsPrimaryValuePayloads;
         if (!includePayloads && needsPrimaryValuePayloads)
             includePayloads = true;
-        if (includePayloads)
-            payloads = new ArrayList<>();
+        tokens = new TokenBuffer(includePayloads);
     }
 
     public Collection<String> sensitivitySuffixes() {
@@ -148,9 +140,9 @@ public class AnnotationWriter {
     TokenStream tokenStream(String sensitivityName, IntArrayList startChars, IntArrayList endChars) {
         TokenStream ts;
         if (includeOffsets) {
-            ts = new TokenStreamWithOffsets(values, increments, startChars, endChars);
+            ts = new TokenStreamWithOffsets(tokens, startChars, endChars);
         } else {
-            ts = new TokenStreamFromList(values, increments, payloads);
+            ts = new TokenStreamFromBuffer(tokens);
         }
         TokenFilterAdder filterAdder = sensitivities.get(sensitivityName);
         if (filterAdder != null)
@@ -190,12 +182,25 @@ public class AnnotationWriter {
         }
     }
 
+    /**
+     * Get the values added to this annotation.
+     *
+     * Returns a copy, because the token buffer is reused for the next document (callers
+     * like the external forward index may hold on to the list).
+     *
+     * @return copy of the values
+     */
     public List<String> values() {
-        return Collections.unmodifiableList(values);
+        return new ArrayList<>(tokens.values());
     }
 
+    /**
+     * Get the position increments of the values added to this annotation.
+     *
+     * @return copy of the position increments
+     */
     public List<Integer> positionIncrements() {
-        return CollUtil.toJavaList(increments);
+        return tokens.positionIncrements();
     }
 
     public int lastValuePosition() {
@@ -267,9 +272,6 @@ public class AnnotationWriter {
             value = value.substring(0, MAXIMUM_VALUE_LENGTH);
         }
 
-        // Make sure we don't keep duplicates of strings in memory, but re-use earlier instances.
-        value = value.intern();
-
         if (position >= lastValuePosition) {
             // Beyond the last position; just add at the end.
             int increment = position - lastValuePosition;
@@ -280,21 +282,20 @@ public class AnnotationWriter {
             // annotation), while still being able to add a value to this position later (for example,
             // when we encounter an XML close tag. Note that we don't do this if we store character offsets, or we
             // lose the offsets for some positions.
-            int lastIndex = values.size() - 1;
-            if (lastIndex >= 0 && values.get(lastIndex).length() == 0 && !includeOffsets &&
-                    (!hasPayload() || payloads.get(lastIndex) == null)) {
+            int lastIndex = tokens.size() - 1;
+            if (lastIndex >= 0 && tokens.value(lastIndex).length() == 0 && !includeOffsets &&
+                    (!hasPayload() || tokens.isPayloadNull(lastIndex))) {
                 // Change the last value and its position increment
-                values.set(lastIndex, value);
+                tokens.setValue(lastIndex, value);
                 if (hasPayload())
-                    payloads.set(lastIndex, payload);
+                    tokens.setPayload(lastIndex, payload);
                 if (increment > 0)
-                    increments.set(lastIndex, increments.get(lastIndex) + increment);
+                    tokens.setIncrement(lastIndex, tokens.increment(lastIndex) + increment);
             } else {
                 // Just add the new value
-                values.add(value);
+                tokens.add(value, increment);
                 if (hasPayload())
-                    payloads.add(payload);
-                increments.add(increment);
+                    tokens.addPayload(payload);
             }
             lastValuePosition += increment; // keep track of position of last token
 
@@ -303,13 +304,13 @@ public class AnnotationWriter {
             // Find the index where the value should be inserted.
             int curPos = this.lastValuePosition;
             int n = 0; // if we go through the whole loop without breaking out, value should go at position 0
-            for (int i = values.size() - 1; i >= 0; i--) {
+            for (int i = tokens.size() - 1; i >= 0; i--) {
                 if (curPos <= position) {
                     // Value should be inserted after this index.
                     n = i + 1;
                     break;
                 }
-                curPos -= increments.get(i); // go to previous value position
+                curPos -= tokens.increment(i); // go to previous value position
             }
             insertValueAtIndex(n, value, position - curPos, payload);
         }
@@ -326,46 +327,46 @@ public class AnnotationWriter {
      * @param payload           payload to add (or null if no payload)
      */
     private void insertValueAtIndex(int index, String value, int positionIncrement, BytesRef payload) {
-        values.add(index, value);
-        increments.addAtIndex(index, positionIncrement);
+        tokens.insert(index, value, positionIncrement);
         if (hasPayload())
-            payloads.add(index, payload);
+            tokens.insertPayload(index, payload);
         // Do we need to adjust the position increment of the next value?
-        if (increments.size() > index + 1 && positionIncrement > 0) {
+        if (tokens.size() > index + 1 && positionIncrement > 0) {
             // Inserted value wasn't the last value, so the
             // increment for the value after this is now wrong;
             // correct it.
-            int newPosIncr = increments.get(index + 1) - positionIncrement;
+            int newPosIncr = tokens.increment(index + 1) - positionIncrement;
             if (newPosIncr < 0)
                 throw new RuntimeException("ERROR insertValueAtPosition(value, index, posIncr): Next token got a negative posIncrement!");
-            increments.set(index + 1, newPosIncr);
+            tokens.setIncrement(index + 1, newPosIncr);
         }
     }
 
     public void addPayload(BytesRef payload) {
-        payloads.add(payload);
+        tokens.addPayload(payload);
     }
 
     public int lastValueIndex() {
-        return values.size() - 1;
+        return tokens.size() - 1;
     }
 
     public void setPayloadAtIndex(int i, BytesRef payload) {
-        payloads.set(i, payload);
+        tokens.setPayload(i, payload);
     }
 
+    /**
+     * Clear the values so we can start the next document.
+     *
+     * Reuses the token buffer (the token streams for the previous document have been
+     * consumed by now). The buffer releases its arrays if a large document made them grow.
+     */
     public void clear() {
         lastValuePosition = -1;
-        // Don't reuse buffers, reclaim memory so we don't run out
-        values = new ArrayList<>();
-        increments = new IntArrayList();
-        if (payloads != null) {
-            payloads = new ArrayList<>();
-        }
+        tokens.reset();
     }
 
     public boolean hasPayload() {
-        return payloads != null;
+        return tokens.hasPayloads();
     }
 
     public AnnotatedField field() {
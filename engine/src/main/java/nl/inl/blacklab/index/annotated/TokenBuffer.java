@@ -0,0 +1,318 @@
+package nl.inl.blacklab.index.annotated;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.lucene.util.BytesRef;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
+
+/**
+ * Columnar buffer for the tokens of one annotation in the document being indexed.
+ *
+ * Values are stored as int codes into a pool of distinct strings, position
+ * increments as an int array and payloads in a single byte arena. This avoids
+ * boxing and per-token objects while indexing. The buffer is reset between
+ * documents instead of reallocated, so an indexing thread keeps reusing the same
+ * arrays (and the strings in the pool) for all the documents it indexes.
+ *
+ * Payloads are a separate column with their own count, just like a separate list
+ * of payloads would be: a token for which no payload was added has no payload.
+ */
+final class TokenBuffer {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** Keep at most arrays of this many tokens between documents, so one huge document doesn't hold on to memory */
+    static final int MAX_RETAINED_CAPACITY = 65_536;
+
+    /** Clear the value pool between documents if it grows larger than this */
+    static final int MAX_RETAINED_POOL_SIZE = 65_536;
+
+    /** Keep a payload arena of at most this many bytes between documents */
+    private static final int MAX_RETAINED_ARENA_SIZE = 1_048_576;
+
+    /** Payload length indicating there's no payload */
+    private static final int NO_PAYLOAD = -1;
+
+    /** Distinct values, indexed by value code */
+    private String[] pool = new String[INITIAL_CAPACITY];
+
+    /** Number of values in the pool */
+    private int poolSize = 0;
+
+    /** Value code for each value in the pool */
+    private final ObjectIntHashMap<String> poolCodes = new ObjectIntHashMap<>();
+
+    /** Value code for each token */
+    private int[] valueCodes = new int[INITIAL_CAPACITY];
+
+    /** Position increment for each token */
+    private int[] increments = new int[INITIAL_CAPACITY];
+
+    /** Number of tokens */
+    private int size = 0;
+
+    /** Offset in the arena for each payload */
+    private int[] payloadOffsets;
+
+    /** Length of each payload, or NO_PAYLOAD */
+    private int[] payloadLengths;
+
+    /** Number of payloads */
+    private int payloadCount = 0;
+
+    /** Bytes of all payloads */
+    private byte[] arena;
+
+    /** Number of bytes used in the arena */
+    private int arenaLength = 0;
+
+    /**
+     * Construct a token buffer.
+     *
+     * @param hasPayloads whether to allocate a payload column
+     */
+    TokenBuffer(boolean hasPayloads) {
+        if (hasPayloads) {
+            payloadOffsets = new int[INITIAL_CAPACITY];
+            payloadLengths = new int[INITIAL_CAPACITY];
+            arena = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String value(int index) {
+        return pool[valueCodes[Objects.checkIndex(index, size)]];
+    }
+
+    public int increment(int index) {
+        return increments[Objects.checkIndex(index, size)];
+    }
+
+    /**
+     * Add a token at the end.
+     *
+     * @param value value to add
+     * @param increment position increment
+     */
+    public void add(String value, int increment) {
+        int code = valueCode(value);
+        ensureCapacity(size + 1);
+        valueCodes[size] = code;
+        increments[size] = increment;
+        size++;
+    }
+
+    /**
+     * Insert a token at an index, moving later tokens up.
+     *
+     * @param index where to insert the token
+     * @param value value to add
+     * @param increment position increment
+     */
+    public void insert(int index, String value, int increment) {
+        Objects.checkIndex(index, size + 1);
+        int code = valueCode(value);
+        ensureCapacity(size + 1);
+        System.arraycopy(valueCodes, index, valueCodes, index + 1, size - index);
+        System.arraycopy(increments, index, increments, index + 1, size - index);
+        valueCodes[index] = code;
+        increments[index] = increment;
+        size++;
+    }
+
+    public void setValue(int index, String value) {
+        valueCodes[Objects.checkIndex(index, size)] = valueCode(value);
+    }
+
+    public void setIncrement(int index, int increment) {
+        increments[Objects.checkIndex(index, size)] = increment;
+    }
+
+    public boolean hasPayloads() {
+        return payloadLengths != null;
+    }
+
+    public int payloadCount() {
+        return payloadCount;
+    }
+
+    /**
+     * Add a payload at the end of the payload column.
+     *
+     * @param payload payload to add (copied), or null for none
+     */
+    public void addPayload(BytesRef payload) {
+        ensurePayloadCapacity(payloadCount + 1);
+        storePayload(payloadCount, payload);
+        payloadCount++;
+    }
+
+    /**
+     * Insert a payload at an index, moving later payloads up.
+     *
+     * @param index where to insert the payload
+     * @param payload payload to insert (copied), or null for none
+     */
+    public void insertPayload(int index, BytesRef payload) {
+        Objects.checkIndex(index, payloadCount + 1);
+        ensurePayloadCapacity(payloadCount + 1);
+        System.arraycopy(payloadOffsets, index, payloadOffsets, index + 1, payloadCount - index);
+        System.arraycopy(payloadLengths, index, payloadLengths, index + 1, payloadCount - index);
+        storePayload(index, payload);
+        payloadCount++;
+    }
+
+    /**
+     * Replace a payload.
+     *
+     * The bytes of the old payload stay in the arena until the buffer is reset.
+     *
+     * @param index index of the payload to replace
+     * @param payload new payload (copied), or null for none
+     */
+    public void setPayload(int index, BytesRef payload) {
+        storePayload(Objects.checkIndex(index, payloadCount), payload);
+    }
+
+    /**
+     * Does the token at this index have no payload?
+     *
+     * @param index token index
+     * @return true if no (or a null) payload was added for this token
+     */
+    public boolean isPayloadNull(int index) {
+        return index >= payloadCount || payloadLengths[index] == NO_PAYLOAD;
+    }
+
+    /**
+     * Get a payload.
+     *
+     * The returned BytesRef points into our arena and is only valid until the
+     * buffer is changed.
+     *
+     * @param index token index
+     * @param ref BytesRef to point at the payload
+     * @return ref, or null if the token has no payload
+     */
+    public BytesRef payload(int index, BytesRef ref) {
+        if (isPayloadNull(index))
+            return null;
+        ref.bytes = arena;
+        ref.offset = payloadOffsets[index];
+        ref.length = payloadLengths[index];
+        return ref;
+    }
+
+    /**
+     * Get the values as a list.
+     *
+     * @return unmodifiable view of the values
+     */
+    public List<String> values() {
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return value(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Get the position increments as a list.
+     *
+     * @return copy of the position increments
+     */
+    public List<Integer> positionIncrements() {
+        List<Integer> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            result.add(increments[i]);
+        return result;
+    }
+
+    /**
+     * Empty the buffer so it can be used for the next document.
+     *
+     * Keeps the arrays and the value pool unless they've grown too large.
+     */
+    public void reset() {
+        size = 0;
+        payloadCount = 0;
+        arenaLength = 0;
+        if (valueCodes.length > MAX_RETAINED_CAPACITY) {
+            valueCodes = new int[INITIAL_CAPACITY];
+            increments = new int[INITIAL_CAPACITY];
+        }
+        if (poolSize > MAX_RETAINED_POOL_SIZE) {
+            pool = new String[INITIAL_CAPACITY];
+            poolSize = 0;
+            poolCodes.clear();
+        }
+        if (hasPayloads()) {
+            if (payloadLengths.length > MAX_RETAINED_CAPACITY) {
+                payloadOffsets = new int[INITIAL_CAPACITY];
+                payloadLengths = new int[INITIAL_CAPACITY];
+            }
+            if (arena.length > MAX_RETAINED_ARENA_SIZE)
+                arena = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    /** Number of distinct values in the pool (for testing) */
+    int poolSize() {
+        return poolSize;
+    }
+
+    private int valueCode(String value) {
+        int code = poolCodes.getIfAbsent(value, -1);
+        if (code < 0) {
+            if (poolSize == pool.length)
+                pool = Arrays.copyOf(pool, pool.length * 2);
+            code = poolSize;
+            pool[poolSize++] = value;
+            poolCodes.put(value, code);
+        }
+        return code;
+    }
+
+    private void storePayload(int index, BytesRef payload) {
+        if (payload == null) {
+            payloadOffsets[index] = 0;
+            payloadLengths[index] = NO_PAYLOAD;
+            return;
+        }
+        if (arenaLength + payload.length > arena.length)
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLength + payload.length));
+        System.arraycopy(payload.bytes, payload.offset, arena, arenaLength, payload.length);
+        payloadOffsets[index] = arenaLength;
+        payloadLengths[index] = payload.length;
+        arenaLength += payload.length;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > valueCodes.length) {
+            int newCapacity = Math.max(valueCodes.length * 2, capacity);
+            valueCodes = Arrays.copyOf(valueCodes, newCapacity);
+            increments = Arrays.copyOf(increments, newCapacity);
+        }
+    }
+
+    private void ensurePayloadCapacity(int capacity) {
+        if (capacity > payloadLengths.length) {
+            int newCapacity = Math.max(payloadLengths.length * 2, capacity);
+            payloadOffsets = Arrays.copyOf(payloadOffsets, newCapacity);
+            payloadLengths = Arrays.copyOf(payloadLengths, newCapacity);
+        }
+    }
+}
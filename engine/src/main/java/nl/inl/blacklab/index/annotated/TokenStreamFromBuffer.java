@@ -0,0 +1,68 @@
+package nl.inl.blacklab.index.annotated;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Iterates through a {@link TokenBuffer} as a TokenStream.
+ *
+ * Reads the buffer's columns directly, without boxing or per-token allocations.
+ * The buffer must not be changed until the stream has been consumed.
+ */
+class TokenStreamFromBuffer extends TokenStream {
+
+    /** Tokens to iterate through */
+    private final TokenBuffer buffer;
+
+    /** Index of the next token */
+    private int index = 0;
+
+    /**
+     * Term text of the current token
+     */
+    private final CharTermAttribute termAttr;
+
+    /**
+     * Position increment of the current token
+     */
+    private final PositionIncrementAttribute positionIncrementAttr;
+
+    /**
+     * Payload of the current token
+     */
+    private PayloadAttribute payloadAttr = null;
+
+    /** Points into the buffer's payload arena */
+    private final BytesRef payload = new BytesRef();
+
+    TokenStreamFromBuffer(TokenBuffer buffer) {
+        clearAttributes();
+        termAttr = addAttribute(CharTermAttribute.class);
+        positionIncrementAttr = addAttribute(PositionIncrementAttribute.class);
+        positionIncrementAttr.setPositionIncrement(1);
+        if (buffer.hasPayloads())
+            payloadAttr = addAttribute(PayloadAttribute.class);
+        this.buffer = buffer;
+    }
+
+    @Override
+    final public boolean incrementToken() {
+        if (index < buffer.size()) {
+            termAttr.setEmpty().append(buffer.value(index));
+            positionIncrementAttr.setPositionIncrement(buffer.increment(index));
+            if (payloadAttr != null)
+                payloadAttr.setPayload(buffer.payload(index, payload));
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void reset() {
+        index = 0;
+    }
+}
@@ -1,21 +1,17 @@
 package nl.inl.blacklab.index.annotated;
 
-import java.util.Iterator;
-import java.util.List;
-
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
-import org.eclipse.collections.api.iterator.IntIterator;
 import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
 
 /**
- * Takes a List&lt;String&gt; plus two List&lt;Integer&gt;'s and iterates
- * through them as a TokenStream.
+ * Takes a TokenBuffer plus two IntArrayLists and iterates through them as a
+ * TokenStream.
  *
- * The Strings are taken as terms. The two integer-lists are taken as start
- * chars and end chars. Token position increment is always 1.
+ * The buffer provides the terms and position increments. The two integer-lists
+ * are taken as start chars and end chars (one per token position).
  */
 class TokenStreamWithOffsets extends TokenStream {
     /**
@@ -33,46 +29,49 @@ class TokenStreamWithOffsets extends TokenStream {
      */
     private final OffsetAttribute offsetAttr;
 
-    protected final Iterator<String> iterator;
+    private final TokenBuffer tokens;
+
+    private final IntArrayList startChar;
+
+    private final IntArrayList endChar;
 
-    protected final IntIterator incrementIt;
+    /** Index of the next token in the buffer */
+    private int tokenIndex = 0;
 
-    private final IntIterator startCharIt;
+    /** Index of the next start/end char to use */
+    private int charIndex = 0;
 
-    private final IntIterator endCharIt;
-    
     private int currentStartChar = -1;
 
     private int currentEndChar = -1;
 
-    public TokenStreamWithOffsets(List<String> tokens, IntArrayList increments, IntArrayList startChar,
-            IntArrayList endChar) {
+    public TokenStreamWithOffsets(TokenBuffer tokens, IntArrayList startChar, IntArrayList endChar) {
         clearAttributes();
         termAttr = addAttribute(CharTermAttribute.class);
         offsetAttr = addAttribute(OffsetAttribute.class);
         positionIncrementAttr = addAttribute(PositionIncrementAttribute.class);
         positionIncrementAttr.setPositionIncrement(1);
 
-        iterator = tokens.iterator();
-        incrementIt = increments.intIterator();
-        startCharIt = startChar.intIterator();
-        endCharIt = endChar.intIterator();
+        this.tokens = tokens;
+        this.startChar = startChar;
+        this.endChar = endChar;
     }
 
     @Override
     final public boolean incrementToken() {
         // Capture token contents
-        if (iterator.hasNext()) {
+        if (tokenIndex < tokens.size()) {
             // Set the term and position increment
-            String term = iterator.next();
-            termAttr.copyBuffer(term.toCharArray(), 0, term.length());
-            int positionIncrement = incrementIt.next();
+            termAttr.setEmpty().append(tokens.value(tokenIndex));
+            int positionIncrement = tokens.increment(tokenIndex);
             positionIncrementAttr.setPositionIncrement(positionIncrement);
-            
+            tokenIndex++;
+
             // Find the appropriate start and end chars and set the offset
-            for (int i = 0; i < positionIncrement; i++) {
-                currentStartChar = startCharIt.next();
-                currentEndChar = endCharIt.next();
+            if (positionIncrement > 0) {
+                charIndex += positionIncrement;
+                currentStartChar = startChar.get(charIndex - 1);
+                currentEndChar = endChar.get(charIndex - 1);
             }
             offsetAttr.setOffset(currentStartChar, currentEndChar);
             return true;
@@ -84,12 +83,13 @@ class TokenStreamWithOffsets extends TokenStream {
     public int hashCode() {
         final int prime = 31;
         int result = super.hashCode();
-        result = prime * result + ((endCharIt == null) ? 0 : endCharIt.hashCode());
-        result = prime * result + ((incrementIt == null) ? 0 : incrementIt.hashCode());
-        result = prime * result + ((iterator == null) ? 0 : iterator.hashCode());
+        result = prime * result + charIndex;
+        result = prime * result + ((endChar == null) ? 0 : endChar.hashCode());
         result = prime * result + ((offsetAttr == null) ? 0 : offsetAttr.hashCode());
         result = prime * result + ((positionIncrementAttr == null) ? 0 : positionIncrementAttr.hashCode());
-        result = prime * result + ((startCharIt == null) ? 0 : startCharIt.hashCode());
+        result = prime * result + ((startChar == null) ? 0 : startChar.hashCode());
+        result = prime * result + tokenIndex;
+        result = prime * result + ((tokens == null) ? 0 : tokens.hashCode());
         result = prime * result + ((termAttr == null) ? 0 : termAttr.hashCode());
         return result;
     }
@@ -103,20 +103,12 @@ class TokenStreamWithOffsets extends TokenStream {
         if (getClass() != obj.getClass())
             return false;
         TokenStreamWithOffsets other = (TokenStreamWithOffsets) obj;
-        if (endCharIt == null) {
-            if (other.endCharIt != null)
-                return false;
-        } else if (!endCharIt.equals(other.endCharIt))
+        if (charIndex != other.charIndex)
             return false;
-        if (incrementIt == null) {
-            if (other.incrementIt != null)
+        if (endChar == null) {
+            if (other.endChar != null)
                 return false;
-        } else if (!incrementIt.equals(other.incrementIt))
-            return false;
-        if (iterator == null) {
-            if (other.iterator != null)
-                return false;
-        } else if (!iterator.equals(other.iterator))
+        } else if (!endChar.equals(other.endChar))
             return false;
         if (offsetAttr == null) {
             if (other.offsetAttr != null)
@@ -128,10 +120,17 @@ class TokenStreamWithOffsets extends TokenStream {
                 return false;
         } else if (!positionIncrementAttr.equals(other.positionIncrementAttr))
             return false;
-        if (startCharIt == null) {
-            if (other.startCharIt != null)
+        if (startChar == null) {
+            if (other.startChar != null)
+                return false;
+        } else if (!startChar.equals(other.startChar))
+            return false;
+        if (tokenIndex != other.tokenIndex)
+            return false;
+        if (tokens == null) {
+            if (other.tokens != null)
                 return false;
-        } else if (!startCharIt.equals(other.startCharIt))
+        } else if (!tokens.equals(other.tokens))
             return false;
         if (termAttr == null) {
             if (other.termAttr != null)
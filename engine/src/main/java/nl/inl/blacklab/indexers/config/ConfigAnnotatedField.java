@@ -7,6 +7,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import nl.inl.blacklab.codec.BlackLab40StoredFieldsFormat;
+
 /**
  * This class represents an AnnotatedField (i.e. a collection of Annotations - formerly "complex field")
  * as defined in a *.blf.yaml/*.blf.json file.
@@ -45,6 +47,9 @@ public class ConfigAnnotatedField implements ConfigWithAnnotations {
 
     private Map<String, ConfigAnnotation> annotationsFlattened;
 
+    /** How to compress the content store blocks ("uncompressed", "zlib" or "lz4"; null for the default) */
+    private String contentStoreCodec = null;
+
     /** If true, this is a dummy annotated field that only exists to store linked documents, e.g. "metadata". */
     private boolean dummyForStoringLinkedDocument = false;
 
@@ -55,6 +60,8 @@ public class ConfigAnnotatedField implements ConfigWithAnnotations {
     public void validate() {
         String t = "annotated field";
         ConfigInputFormat.req(name, t, "name");
+        ConfigInputFormat.req(contentStoreCodec == null || BlackLab40StoredFieldsFormat.isValidBlockCodecName(contentStoreCodec),
+                t, "have a valid contentStoreCodec (uncompressed, zlib or lz4)");
         if (dummyForStoringLinkedDocument)
             return; // dummy doesn't need anything other than a name
         ConfigInputFormat.req(containerPath, t, "containerPath");
@@ -76,6 +83,7 @@ public class ConfigAnnotatedField implements ConfigWithAnnotations {
         result.setWordPath(wordPath);
         result.setTokenIdPath(tokenIdPath);
         result.setPunctPath(punctPath);
+        result.setContentStoreCodec(contentStoreCodec);
         for (ConfigAnnotation a : annotations.values())
             result.addAnnotation(a.copy());
         for (ConfigStandoffAnnotations a : standoffAnnotations)
@@ -201,6 +209,14 @@ public class ConfigAnnotatedField implements ConfigWithAnnotations {
         this.description = description;
     }
 
+    public String getContentStoreCodec() {
+        return contentStoreCodec;
+    }
+
+    public void setContentStoreCodec(String contentStoreCodec) {
+        this.contentStoreCodec = contentStoreCodec;
+    }
+
     @Override
     public String toString() {
         return "ConfigAnnotatedField [name=" + name + "]";
@@ -56,7 +56,8 @@ public class ConfigInputFormat {
     public enum FileTypeOption {
 
         VTD(FileType.XML, Constants.PROCESSING),
-        SAXONICA(FileType.XML, Constants.PROCESSING, "saxon");
+        SAXONICA(FileType.XML, Constants.PROCESSING, "saxon"),
+        STREAMING(FileType.XML, Constants.PROCESSING);
 
         private final FileType fileType;
         private final String key;
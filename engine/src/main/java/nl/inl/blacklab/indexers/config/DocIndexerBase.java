@@ -478,7 +478,18 @@ public abstract class DocIndexerBase extends DocIndexerAbstract {
         } else {
             contentIdFieldName = contentStoreName + "Cid";
         }
-        getDocWriter().storeInContentStore(currentDoc, document, contentIdFieldName, contentStoreName);
+        getDocWriter().storeInContentStore(currentDoc, document, contentIdFieldName, contentStoreName,
+                getContentStoreCodec(contentStoreName));
+    }
+
+    /**
+     * How should the blocks of this content store be compressed?
+     *
+     * @param contentStoreName content store field
+     * @return block codec name, or null for the default
+     */
+    protected String getContentStoreCodec(String contentStoreName) {
+        return null;
     }
 
     /**
@@ -20,6 +20,7 @@ import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InvalidInputFormatConfig;
 import nl.inl.blacklab.exceptions.MalformedInputFile;
 import nl.inl.blacklab.exceptions.PluginException;
+import nl.inl.blacklab.index.DocumentSplitter;
 import nl.inl.blacklab.index.annotated.AnnotatedFieldWriter;
 import nl.inl.blacklab.index.annotated.AnnotationSensitivities;
 import nl.inl.blacklab.index.annotated.AnnotationWriter;
@@ -52,6 +53,10 @@ public abstract class DocIndexerConfig extends DocIndexerBase {
                     docIndexer = new DocIndexerSaxon();
                     break;
                 }
+                if (fto == ConfigInputFormat.FileTypeOption.STREAMING) {
+                    docIndexer = new DocIndexerXmlStreaming();
+                    break;
+                }
             }
             if (docIndexer == null) {
                 docIndexer = new DocIndexerXPath();
@@ -84,6 +89,28 @@ public abstract class DocIndexerConfig extends DocIndexerBase {
         }
     }
 
+    /**
+     * Get a splitter for large input files in this format, if possible.
+     *
+     * Used to index the documents in a single large file on multiple threads.
+     *
+     * @param config input format
+     * @return the splitter, or null if files in this format can't be split
+     */
+    public static DocumentSplitter documentSplitter(ConfigInputFormat config) {
+        if (config.getConvertPluginId() != null || config.getTagPluginId() != null)
+            return null; // input must be converted/tagged as a whole
+        switch (config.getFileType()) {
+        case XML:
+            return DocumentSplitterXml.forConfig(config);
+        case TABULAR:
+            // (if documentPath is /, the whole file is a single document)
+            return config.getDocumentPath().equals("/") ? null : new DocumentSplitterTabular(config);
+        default:
+            return null;
+        }
+    }
+
     /** Our input format */
     protected ConfigInputFormat config;
 
@@ -103,6 +130,14 @@ public abstract class DocIndexerConfig extends DocIndexerBase {
         return to == null ? from : to;
     }
 
+    @Override
+    protected String getContentStoreCodec(String contentStoreName) {
+        if (config == null) // test
+            return null;
+        ConfigAnnotatedField field = config.getAnnotatedField(contentStoreName);
+        return field == null ? null : field.getContentStoreCodec();
+    }
+
     protected void ensureInitialized() {
         if (inited)
             return;
@@ -0,0 +1,855 @@
+package nl.inl.blacklab.indexers.config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.exceptions.InvalidInputFormatConfig;
+import nl.inl.blacklab.exceptions.MalformedInputFile;
+import nl.inl.blacklab.exceptions.PluginException;
+import nl.inl.blacklab.index.annotated.AnnotatedFieldWriter;
+import nl.inl.blacklab.index.annotated.AnnotationWriter;
+import nl.inl.blacklab.indexers.config.StreamingXPath.Element;
+import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
+import nl.inl.util.StringUtil;
+
+/**
+ * An indexer that streams through the XML input instead of building a tree for it.
+ *
+ * Memory use depends on the current element and its ancestors, not on the size of the
+ * input file, so this can index huge documents (dictionaries, newspaper volumes) that would
+ * need a very large heap with VTD-XML or Saxon. The catch is that only a subset of XPath can be
+ * used (see {@link StreamingXPath}), and that standoff annotations, basePath, captureValuePaths,
+ * captureXml and token ids are not supported. Absolute paths (other than the documentPath) are
+ * evaluated relative to the document element's parent, so they can't refer to anything outside
+ * the document. Only one annotated field is supported.
+ *
+ * The stored document is the document element as we serialized it while parsing: the same
+ * XML, but comments and processing instructions are left out and the attribute quoting and
+ * entity use may differ from the input file.
+ */
+public class DocIndexerXmlStreaming extends DocIndexerConfig {
+
+    private Reader reader;
+
+    /** Compiled paths by expression */
+    private final Map<String, StreamingXPath> compiledPaths = new HashMap<>();
+
+    /** The annotated field to index, or null if there is none */
+    private ConfigAnnotatedField annotatedField;
+
+    /** Captures the annotation values for the current word */
+    private final List<AnnotationCapture> annotationCaptures = new ArrayList<>();
+
+    /** The open elements */
+    private final List<Element> elements = new ArrayList<>();
+
+    /** Depth of the document element, or -1 if we're not inside a document */
+    private int documentDepth = -1;
+
+    /** Depth of the annotated field container, or -1 if we're not inside it */
+    private int containerDepth = -1;
+
+    /** Depth of the current word element, or -1 if we're not inside a word */
+    private int wordDepth = -1;
+
+    /** Depths of open elements that we indexed as inline tags */
+    private final Deque<Integer> inlineTagDepths = new ArrayDeque<>();
+
+    /** Punctuation found inside a word; it goes before the next word */
+    private final StringBuilder punctInsideWord = new StringBuilder();
+
+    /** Captures punctuation elements (if punctPath selects elements) */
+    private Capture punctCapture;
+
+    /** Metadata blocks and link values we're capturing in the current document */
+    private final List<ElementListener> documentListeners = new ArrayList<>();
+
+    /** Link value captures by path */
+    private final Map<String, Capture> linkValueCaptures = new HashMap<>();
+
+    /** Serialized document (if we're storing it), or a scratch buffer (if not) */
+    private StringBuilder out = new StringBuilder();
+
+    /** Length of the serialized document so far */
+    private int charPosition;
+
+    @Override
+    public void setConfigInputFormat(ConfigInputFormat config) {
+        super.setConfigInputFormat(config);
+        for (ConfigAnnotatedField af: config.getAnnotatedFields().values()) {
+            if (af.isDummyForStoringLinkedDocuments())
+                continue;
+            if (annotatedField != null)
+                throw new InvalidInputFormatConfig("Streaming processing supports only one annotated field");
+            annotatedField = af;
+        }
+        // Compile all the paths now, so we report unsupported ones right away
+        path(config.getDocumentPath());
+        if (annotatedField != null)
+            prepareAnnotatedField(annotatedField);
+        for (ConfigMetadataBlock b: config.getMetadataBlocks()) {
+            path(b.getContainerPath());
+            for (ConfigMetadataField f: b.getFields()) {
+                if (f.getValuePath() == null || f.getValuePath().isEmpty())
+                    continue;
+                path(f.getValuePath());
+                if (f.isForEach()) {
+                    path(f.getForEachPath());
+                    path(f.getName());
+                }
+            }
+        }
+        for (ConfigLinkedDocument ld: config.getLinkedDocuments().values()) {
+            for (ConfigLinkValue linkValue: ld.getLinkValues()) {
+                if (linkValue.getValuePath() != null)
+                    path(linkValue.getValuePath());
+            }
+        }
+    }
+
+    private void prepareAnnotatedField(ConfigAnnotatedField af) {
+        if (!af.getStandoffAnnotations().isEmpty())
+            throw unsupported("standoffAnnotations");
+        if (af.getTokenIdPath() != null)
+            throw unsupported("tokenIdPath");
+        path(af.getContainerPath());
+        path(af.getWordsPath());
+        if (af.getPunctPath() != null) {
+            StreamingXPath punctPath = path(af.getPunctPath());
+            if (punctPath.target() != StreamingXPath.Target.TEXT && punctPath.target() != StreamingXPath.Target.ELEMENT)
+                throw new InvalidInputFormatConfig("punctPath must select elements or text with streaming processing");
+        }
+        for (ConfigInlineTag inlineTag: af.getInlineTags()) {
+            if (inlineTag.getTokenIdPath() != null && !inlineTag.getTokenIdPath().isEmpty())
+                throw unsupported("tokenIdPath");
+            path(inlineTag.getPath());
+        }
+        for (ConfigAnnotation annotation: af.getAnnotations().values()) {
+            checkSupported(annotation);
+            if (annotation.getValuePath() == null)
+                continue; // (no valuePath given; nothing to capture)
+            annotationCaptures.add(new AnnotationCapture(annotation, null));
+            for (ConfigAnnotation subAnnot: annotation.getSubAnnotations()) {
+                if (subAnnot.getValuePath() == null || subAnnot.getValuePath().isEmpty())
+                    continue;
+                checkSupported(subAnnot);
+                annotationCaptures.add(new AnnotationCapture(annotation, subAnnot));
+            }
+        }
+    }
+
+    private static void checkSupported(ConfigAnnotation annotation) {
+        if (annotation.getBasePath() != null)
+            throw unsupported("basePath");
+        if (!annotation.getCaptureValuePaths().isEmpty())
+            throw unsupported("captureValuePaths");
+        if (annotation.isCaptureXml())
+            throw unsupported("captureXml");
+    }
+
+    private static InvalidInputFormatConfig unsupported(String setting) {
+        return new InvalidInputFormatConfig(setting + " is not supported with streaming processing");
+    }
+
+    private StreamingXPath path(String expr) {
+        return compiledPaths.computeIfAbsent(expr, e -> StreamingXPath.compile(e, config));
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (reader != null)
+                reader.close();
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    @Override
+    public void setDocument(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public void index() throws MalformedInputFile, PluginException, IOException {
+        super.index();
+        indexDocuments(path(config.getDocumentPath()), false);
+    }
+
+    @Override
+    public void indexSpecificDocument(String documentExpr) {
+        super.indexSpecificDocument(documentExpr);
+        indexDocuments(path(documentExpr == null ? config.getDocumentPath() : documentExpr), true);
+    }
+
+    /**
+     * Stream through the input and index the documents we find.
+     *
+     * @param documentPath path to the document elements
+     * @param single if true, the input must contain one matching document
+     */
+    private void indexDocuments(StreamingXPath documentPath, boolean single) {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, config.isNamespaceAware());
+        // Old DTD-style entity declarations are resolved by the parser; never fetch anything external
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, config.shouldResolveNamedEntityReferences());
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        int documentsFound = 0;
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(reader);
+            try {
+                while (xml.hasNext()) {
+                    switch (xml.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        elements.add(new Element(xml));
+                        if (documentDepth < 0 && documentPath.matches(elements, -1)) {
+                            if (single && documentsFound > 0)
+                                throw new BlackLabRuntimeException("Linked file contains multiple documents matching "
+                                        + documentPath + " in " + documentName);
+                            documentsFound++;
+                            startDocumentElement();
+                        }
+                        if (documentDepth >= 0)
+                            startElement();
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (documentDepth >= 0)
+                            endElement();
+                        elements.remove(elements.size() - 1);
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (documentDepth >= 0)
+                            text(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new MalformedInputFile("Error indexing file: " + documentName, e);
+        } finally {
+            elements.clear();
+            documentDepth = containerDepth = wordDepth = -1;
+            inlineTagDepths.clear();
+        }
+    }
+
+    private void startDocumentElement() {
+        documentDepth = elements.size() - 1;
+        startDocument();
+        charPosition = 0;
+        out = new StringBuilder();
+        setAddDefaultPunctuation(annotatedField == null || annotatedField.getPunctPath() == null);
+
+        documentListeners.clear();
+        for (ConfigMetadataBlock b: config.getMetadataBlocks()) {
+            documentListeners.add(new MetadataBlockCapture(b));
+        }
+        linkValueCaptures.clear();
+        for (ConfigLinkedDocument ld: config.getLinkedDocuments().values()) {
+            for (ConfigLinkValue linkValue: ld.getLinkValues()) {
+                String valuePath = linkValue.getValuePath();
+                if (valuePath != null && !linkValueCaptures.containsKey(valuePath)) {
+                    Capture capture = new Capture(path(valuePath));
+                    capture.reset(documentDepth);
+                    linkValueCaptures.put(valuePath, capture);
+                    documentListeners.add(capture);
+                }
+            }
+        }
+    }
+
+    private void endDocumentElement() {
+        for (ConfigLinkedDocument ld: config.getLinkedDocuments().values()) {
+            processLinkedDocument(ld, xpath -> linkValueCaptures.get(xpath).first());
+        }
+        documentDepth = -1;
+        endDocument();
+    }
+
+    /** Absolute paths are evaluated relative to the document element's parent */
+    private int contextDepth(StreamingXPath path, int depth) {
+        return path.isAbsolute() ? documentDepth - 1 : depth;
+    }
+
+    private void startElement() {
+        for (ElementListener listener: documentListeners)
+            listener.startElement();
+        if (annotatedField != null)
+            annotatedFieldStartElement();
+        writeStartTag();
+    }
+
+    private void annotatedFieldStartElement() {
+        int depth = elements.size() - 1;
+        if (containerDepth < 0) {
+            StreamingXPath containerPath = path(annotatedField.getContainerPath());
+            if (!containerPath.matches(elements, contextDepth(containerPath, documentDepth)))
+                return;
+            setCurrentAnnotatedFieldName(annotatedField.getName());
+            containerDepth = depth;
+            String punctPath = annotatedField.getPunctPath();
+            punctCapture = null;
+            if (punctPath != null && path(punctPath).target() == StreamingXPath.Target.ELEMENT) {
+                punctCapture = new Capture(path(punctPath));
+                punctCapture.reset(contextDepth(punctCapture.path, containerDepth));
+            }
+        }
+
+        if (wordDepth >= 0) {
+            // Inside a word; capture annotation values
+            for (AnnotationCapture capture: annotationCaptures)
+                capture.listener.startElement();
+            return;
+        }
+
+        StreamingXPath wordPath = path(annotatedField.getWordsPath());
+        if (wordPath.matches(elements, contextDepth(wordPath, containerDepth))) {
+            wordDepth = depth;
+            beginWord();
+            for (AnnotationCapture capture: annotationCaptures) {
+                capture.reset(wordDepth);
+                capture.listener.startElement();
+            }
+            return;
+        }
+
+        for (ConfigInlineTag inlineTag: annotatedField.getInlineTags()) {
+            StreamingXPath tagPath = path(inlineTag.getPath());
+            if (tagPath.matches(elements, contextDepth(tagPath, containerDepth))) {
+                Element el = elements.get(depth);
+                inlineTag(dedupe(el.rawName), true, el.attributes());
+                inlineTagDepths.push(depth);
+                break;
+            }
+        }
+        if (punctCapture != null)
+            punctCapture.startElement();
+    }
+
+    private void endElement() {
+        int depth = elements.size() - 1;
+        writeEndTag();
+        if (annotatedField != null && containerDepth >= 0)
+            annotatedFieldEndElement(depth);
+        for (ElementListener listener: documentListeners)
+            listener.endElement();
+        if (depth == documentDepth)
+            endDocumentElement();
+    }
+
+    private void annotatedFieldEndElement(int depth) {
+        if (wordDepth >= 0) {
+            for (AnnotationCapture capture: annotationCaptures)
+                capture.listener.endElement();
+            if (depth == wordDepth)
+                endWordElement();
+            return;
+        }
+        if (!inlineTagDepths.isEmpty() && inlineTagDepths.peek() == depth) {
+            inlineTagDepths.pop();
+            inlineTag(dedupe(elements.get(depth).rawName), false, null);
+        }
+        if (punctCapture != null) {
+            punctCapture.endElement();
+            for (String punct: punctCapture.values) {
+                // If punctPath matches an empty tag, replace it with a space.
+                // Deals with e.g. <lb/> (line break) tags in TEI.
+                punctuation(punct.isEmpty() ? " " : dedupe(StringUtil.normalizeWhitespace(punct)));
+            }
+            punctCapture.values.clear();
+        }
+        if (depth == containerDepth)
+            containerDepth = -1;
+    }
+
+    private void endWordElement() {
+        wordDepth = -1;
+        for (AnnotationCapture capture: annotationCaptures)
+            capture.index();
+
+        // Keep track of last value position so we can update lagging annotations
+        int lastValuePosition = -1;
+        for (ConfigAnnotation annotation: annotatedField.getAnnotations().values()) {
+            AnnotationWriter annotWriter = getAnnotation(annotation.getName());
+            if (annotWriter != null && lastValuePosition < annotWriter.lastValuePosition())
+                lastValuePosition = annotWriter.lastValuePosition();
+        }
+
+        endWord();
+
+        // Add empty values to all lagging annotations
+        AnnotatedFieldWriter annotatedFieldWriter = getAnnotatedField(annotatedField.getName());
+        for (AnnotationWriter prop: annotatedFieldWriter.annotationWriters()) {
+            while (prop.lastValuePosition() < lastValuePosition) {
+                prop.addValue("");
+                if (prop.hasPayload())
+                    prop.addPayload(null);
+            }
+        }
+
+        if (punctInsideWord.length() > 0) {
+            punctuation(punctInsideWord.toString());
+            punctInsideWord.setLength(0);
+        }
+    }
+
+    private void text(char[] ch, int start, int length) {
+        writeText(ch, start, length);
+        for (ElementListener listener: documentListeners)
+            listener.text(ch, start, length);
+        if (annotatedField == null || containerDepth < 0)
+            return;
+        if (wordDepth >= 0) {
+            for (AnnotationCapture capture: annotationCaptures)
+                capture.listener.text(ch, start, length);
+        }
+        String punctPath = annotatedField.getPunctPath();
+        if (punctPath != null) {
+            StreamingXPath path = path(punctPath);
+            if (path.target() == StreamingXPath.Target.TEXT) {
+                if (path.matchesText(elements, contextDepth(path, containerDepth))) {
+                    String punct = dedupe(StringUtil.normalizeWhitespace(new String(ch, start, length)));
+                    if (wordDepth >= 0)
+                        punctInsideWord.append(punct);
+                    else
+                        punctuation(punct);
+                }
+            } else if (punctCapture != null) {
+                punctCapture.text(ch, start, length);
+            }
+        }
+    }
+
+    /**
+     * Index values for an annotation.
+     *
+     * @param annotation annotation to index
+     * @param values values found (in document order)
+     */
+    private void indexAnnotationValues(ConfigAnnotation annotation, List<String> values) {
+        List<ConfigProcessStep> processingSteps = annotation.getProcess();
+        if (annotation.isMultipleValues()) {
+            if (values.isEmpty())
+                values = List.of("");
+            // If duplicates are not allowed, keep track of values we've already added
+            boolean mightHaveDuplicates = values.size() > 1 || !processingSteps.isEmpty();
+            boolean duplicatesOkay = annotation.isAllowDuplicateValues() || !mightHaveDuplicates;
+            Set<String> valuesSeen = duplicatesOkay ? null : new HashSet<>();
+            int positionIncrement = 1; // only the first value should get increment 1; the rest get 0 (same pos)
+            for (String rawValue: values) {
+                for (String processedValue: processStringMultipleValues(rawValue, processingSteps, null)) {
+                    if (duplicatesOkay || valuesSeen.add(processedValue)) {
+                        annotation(annotation.getName(), processedValue, positionIncrement, null);
+                        positionIncrement = 0;
+                    }
+                }
+            }
+        } else {
+            // Single value expected; if multiple were matched, only index the first one
+            String rawValue = values.isEmpty() ? "" : values.get(0);
+            annotation(annotation.getName(), processString(rawValue, processingSteps, null), 1, null);
+        }
+    }
+
+    @Override
+    protected void storeDocument() {
+        storeWholeDocument(out.toString());
+    }
+
+    @Override
+    protected int getCharacterPosition() {
+        return charPosition;
+    }
+
+    private void writeStartTag() {
+        int depth = elements.size() - 1;
+        Element el = elements.get(depth);
+        int start = out.length();
+        out.append('<').append(el.rawName);
+        if (depth == documentDepth) {
+            // Declare all namespaces in scope on the document element, as that's the root of the stored document
+            Map<String, String> namespaces = new LinkedHashMap<>();
+            for (Element e: elements) {
+                for (int i = 0; i < e.nsPrefixes.length; i++)
+                    namespaces.put(e.nsPrefixes[i], e.nsUris[i]);
+            }
+            namespaces.forEach(this::writeNamespace);
+        } else {
+            for (int i = 0; i < el.nsPrefixes.length; i++)
+                writeNamespace(el.nsPrefixes[i], el.nsUris[i]);
+        }
+        for (int i = 0; i < el.attrRawNames.length; i++) {
+            out.append(' ').append(el.attrRawNames[i]).append("=\"");
+            escape(el.attrValues[i], true);
+            out.append('"');
+        }
+        out.append('>');
+        written(start);
+    }
+
+    private void writeNamespace(String prefix, String uri) {
+        out.append(prefix.isEmpty() ? " xmlns" : " xmlns:").append(prefix).append("=\"");
+        escape(uri, true);
+        out.append('"');
+    }
+
+    private void writeEndTag() {
+        int start = out.length();
+        out.append("</").append(elements.get(elements.size() - 1).rawName).append('>');
+        written(start);
+    }
+
+    private void writeText(char[] ch, int start, int length) {
+        int startLength = out.length();
+        escape(CharBuffer.wrap(ch, start, length), false);
+        written(startLength);
+    }
+
+    /** Update character position; if we're not storing the document, we don't need to keep the serialized XML */
+    private void written(int start) {
+        charPosition += out.length() - start;
+        if (!isStoreDocuments())
+            out.setLength(0);
+    }
+
+    private void escape(CharSequence str, boolean isAttribute) {
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+            case '&': out.append("&amp;"); break;
+            case '<': out.append("&lt;"); break;
+            case '>': out.append(isAttribute ? ">" : "&gt;"); break;
+            case '"': out.append(isAttribute ? "&quot;" : "\""); break;
+            default: out.append(c); break;
+            }
+        }
+    }
+
+    /** Follows the elements and text inside the current document */
+    private interface ElementListener {
+
+        /** An element was opened (it's now the last one in the elements list) */
+        void startElement();
+
+        /** Text inside the current element */
+        void text(char[] ch, int start, int length);
+
+        /** The current element is about to be closed */
+        void endElement();
+    }
+
+    /** Captures the values a path selects from a context element */
+    private final class Capture implements ElementListener {
+
+        final StreamingXPath path;
+
+        /** Values captured, in document order */
+        final List<String> values = new ArrayList<>(1);
+
+        private int contextDepth;
+
+        /** Depth of the element whose text we're capturing, or -1 if none */
+        private int captureDepth = -1;
+
+        private final StringBuilder text = new StringBuilder();
+
+        Capture(StreamingXPath path) {
+            this.path = path;
+        }
+
+        /** Start capturing values relative to the element at this depth */
+        void reset(int contextDepth) {
+            this.contextDepth = contextDepth(path, contextDepth);
+            values.clear();
+            captureDepth = -1;
+        }
+
+        String first() {
+            return values.isEmpty() ? "" : values.get(0);
+        }
+
+        @Override
+        public void startElement() {
+            if (captureDepth >= 0 || !path.matches(elements, contextDepth))
+                return;
+            switch (path.target()) {
+            case ATTRIBUTE:
+            case NAME:
+                String value = path.value(elements.get(elements.size() - 1));
+                if (value != null)
+                    values.add(value);
+                break;
+            default:
+                captureDepth = elements.size() - 1;
+                text.setLength(0);
+                break;
+            }
+        }
+
+        @Override
+        public void text(char[] ch, int start, int length) {
+            if (captureDepth >= 0 && (!path.isDirectTextOnly() || elements.size() - 1 == captureDepth)
+                    && path.acceptText(elements))
+                text.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement() {
+            if (captureDepth == elements.size() - 1) {
+                values.add(text.toString());
+                captureDepth = -1;
+            }
+        }
+    }
+
+    /** Captures name and values for each element a forEachPath selects */
+    private final class ForEachCapture implements ElementListener {
+
+        private final StreamingXPath forEachPath;
+
+        private final Capture name;
+
+        private final Capture value;
+
+        private final BiConsumer<String, List<String>> handler;
+
+        private int contextDepth;
+
+        /** Depth of the current forEach element, or -1 if none */
+        private int forEachDepth = -1;
+
+        ForEachCapture(String forEachPath, String namePath, String valuePath,
+                BiConsumer<String, List<String>> handler) {
+            this.forEachPath = path(forEachPath);
+            this.name = new Capture(path(namePath));
+            this.value = new Capture(path(valuePath));
+            this.handler = handler;
+        }
+
+        void reset(int contextDepth) {
+            this.contextDepth = contextDepth(forEachPath, contextDepth);
+            forEachDepth = -1;
+        }
+
+        @Override
+        public void startElement() {
+            if (forEachDepth < 0) {
+                if (!forEachPath.matches(elements, contextDepth))
+                    return;
+                forEachDepth = elements.size() - 1;
+                name.reset(forEachDepth);
+                value.reset(forEachDepth);
+            }
+            name.startElement();
+            value.startElement();
+        }
+
+        @Override
+        public void text(char[] ch, int start, int length) {
+            if (forEachDepth >= 0) {
+                name.text(ch, start, length);
+                value.text(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement() {
+            if (forEachDepth < 0)
+                return;
+            name.endElement();
+            value.endElement();
+            if (forEachDepth == elements.size() - 1) {
+                forEachDepth = -1;
+                handler.accept(name.first(), value.values);
+            }
+        }
+    }
+
+    /** Captures the values for an annotation or subannotation of the current word */
+    private final class AnnotationCapture {
+
+        private final ConfigAnnotation annotation;
+
+        /** Subannotation we capture, or null if we capture the annotation itself */
+        private final ConfigAnnotation subAnnotation;
+
+        final ElementListener listener;
+
+        /** For forEach subannotations: names and values found */
+        private final List<String> forEachNames = new ArrayList<>();
+
+        private final List<List<String>> forEachValues = new ArrayList<>();
+
+        AnnotationCapture(ConfigAnnotation annotation, ConfigAnnotation subAnnotation) {
+            this.annotation = annotation;
+            this.subAnnotation = subAnnotation;
+            if (subAnnotation != null && subAnnotation.isForEach()) {
+                listener = new ForEachCapture(subAnnotation.getForEachPath(), subAnnotation.getName(),
+                        subAnnotation.getValuePath(), (name, values) -> {
+                            forEachNames.add(name);
+                            forEachValues.add(new ArrayList<>(values));
+                        });
+            } else {
+                ConfigAnnotation annot = subAnnotation == null ? annotation : subAnnotation;
+                listener = new Capture(path(annot.getValuePath()));
+            }
+        }
+
+        void reset(int wordDepth) {
+            if (listener instanceof Capture)
+                ((Capture) listener).reset(wordDepth);
+            else
+                ((ForEachCapture) listener).reset(wordDepth);
+            forEachNames.clear();
+            forEachValues.clear();
+        }
+
+        /** Index the values we captured */
+        void index() {
+            if (listener instanceof Capture) {
+                indexAnnotationValues(subAnnotation == null ? annotation : subAnnotation, ((Capture) listener).values);
+                return;
+            }
+            for (int i = 0; i < forEachNames.size(); i++) {
+                String name = forEachNames.get(i);
+                String subannotationName = annotation.getName() +
+                        AnnotatedFieldNameUtil.SUBANNOTATION_FIELD_PREFIX_SEPARATOR + name;
+                ConfigAnnotation actualSubAnnot = annotation.getSubAnnotation(subannotationName);
+                if (actualSubAnnot == null) {
+                    // Not declared in the config file; we can't create annotations on the fly.
+                    if (skippedAnnotations.add(subannotationName)) {
+                        logger.error(documentName + ": skipping undeclared annotation " + name + " (" +
+                                "as subannotation of forEachPath " + subAnnotation.getName() + ")");
+                    }
+                    continue;
+                }
+                // If it specifies its own valuePath, it's captured separately
+                if (actualSubAnnot.getValuePath() == null || actualSubAnnot.getValuePath().isEmpty())
+                    indexAnnotationValues(actualSubAnnot, forEachValues.get(i));
+            }
+        }
+    }
+
+    /** Captures the fields in each instance of a metadata block */
+    private final class MetadataBlockCapture implements ElementListener {
+
+        private final ConfigMetadataBlock block;
+
+        private final StreamingXPath containerPath;
+
+        /** Depth of the current container, or -1 if none */
+        private int depth = -1;
+
+        private final List<ConfigMetadataField> fields = new ArrayList<>();
+
+        private final List<ElementListener> captures = new ArrayList<>();
+
+        MetadataBlockCapture(ConfigMetadataBlock block) {
+            this.block = block;
+            containerPath = path(block.getContainerPath());
+            for (ConfigMetadataField f: block.getFields()) {
+                // Metadata field configs without a valuePath are just for adding information
+                // about fields captured in forEach's, such as extra processing steps
+                if (f.getValuePath() == null || f.getValuePath().isEmpty())
+                    continue;
+                fields.add(f);
+                if (f.isForEach()) {
+                    captures.add(new ForEachCapture(f.getForEachPath(), f.getName(), f.getValuePath(),
+                            (name, values) -> addForEachMetadata(f, name, values)));
+                } else {
+                    captures.add(new Capture(path(f.getValuePath())));
+                }
+            }
+        }
+
+        @Override
+        public void startElement() {
+            if (depth < 0) {
+                if (!containerPath.matches(elements, contextDepth(containerPath, documentDepth)))
+                    return;
+                depth = elements.size() - 1;
+                for (ElementListener capture: captures) {
+                    if (capture instanceof Capture)
+                        ((Capture) capture).reset(depth);
+                    else
+                        ((ForEachCapture) capture).reset(depth);
+                }
+            }
+            for (ElementListener capture: captures)
+                capture.startElement();
+        }
+
+        @Override
+        public void text(char[] ch, int start, int length) {
+            if (depth >= 0) {
+                for (ElementListener capture: captures)
+                    capture.text(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement() {
+            if (depth < 0)
+                return;
+            for (ElementListener capture: captures)
+                capture.endElement();
+            if (depth == elements.size() - 1) {
+                depth = -1;
+                for (int i = 0; i < fields.size(); i++) {
+                    ElementListener capture = captures.get(i);
+                    if (capture instanceof Capture) {
+                        ConfigMetadataField f = fields.get(i);
+                        for (String unprocessedValue: ((Capture) capture).values) {
+                            for (String value: processStringMultipleValues(unprocessedValue, f.getProcess(),
+                                    f.getMapValues())) {
+                                addMetadataField(f.getName(), value);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        private void addForEachMetadata(ConfigMetadataField f, String origFieldName, List<String> values) {
+            String fieldName = AnnotatedFieldNameUtil.sanitizeXmlElementName(origFieldName, disallowDashInname());
+            if (!origFieldName.equals(fieldName))
+                DocIndexerXPath.warnSanitized(origFieldName, fieldName);
+            ConfigMetadataField metadataField = block.getOrCreateField(fieldName);
+            // If the field specifies its own valuePath, it's captured separately
+            if (metadataField.getValuePath() != null && !metadataField.getValuePath().isEmpty())
+                return;
+            for (String unprocessedValue: values) {
+                for (String value: processStringMultipleValues(unprocessedValue, f.getProcess(), f.getMapValues())) {
+                    // Also execute process defined for named metadata field, if any
+                    for (String processedValue: processStringMultipleValues(value, metadataField.getProcess(),
+                            metadataField.getMapValues())) {
+                        addMetadataField(fieldName, processedValue);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package nl.inl.blacklab.indexers.config;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+import org.apache.commons.io.input.BOMInputStream;
+
+import nl.inl.blacklab.index.DocumentSplitter;
+
+/**
+ * Splits a tabular file at its document tags.
+ *
+ * Each document starts with a line containing only the document open tag (e.g. {@code <doc title="...">}).
+ * If the file starts with a header line containing the column names, it is repeated at the start of each part.
+ *
+ * If quoting is enabled (the quote file type option), quoted values may contain newlines, so we read
+ * whole records instead of lines, and never split inside a quoted value.
+ */
+class DocumentSplitterTabular implements DocumentSplitter {
+
+    /** Name of the document tag */
+    private final String documentTagName;
+
+    /** Does the first line contain the column names? */
+    private final boolean hasHeaderLine;
+
+    /** Column delimiter */
+    private final char delimiter;
+
+    /** Quote character, or null if values can't be quoted */
+    private final Character quote;
+
+    DocumentSplitterTabular(ConfigInputFormat config) {
+        documentTagName = config.getDocumentPath();
+        Map<String, String> opt = config.getFileTypeOptions();
+        hasHeaderLine = opt.containsKey("columnNames") && opt.get("columnNames").equalsIgnoreCase("true");
+        boolean isCsv = !opt.containsKey("type") ||
+                DocIndexerTabular.Type.fromStringValue(opt.get("type")) == DocIndexerTabular.Type.CSV;
+        if (opt.containsKey("delimiter") && opt.get("delimiter").length() > 0)
+            delimiter = opt.get("delimiter").charAt(0);
+        else
+            delimiter = isCsv ? ',' : '\t';
+        // (same as DocIndexerTabular: quotes are disabled unless configured)
+        quote = opt.containsKey("quote") && opt.get("quote").length() > 0 ? opt.get("quote").charAt(0) : null;
+    }
+
+    @Override
+    public void split(InputStream is, Charset cs, int minPartSize, PartHandler handler) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new BOMInputStream(is), cs));
+        String headerLine = hasHeaderLine ? readRecord(reader) : null;
+        StringBuilder part = new StringBuilder();
+        String record;
+        while ((record = readRecord(reader)) != null) {
+            if (part.length() >= minPartSize && isDocumentOpenTag(record)) {
+                if (!handler.part(part.toString().getBytes(StandardCharsets.UTF_8)))
+                    return;
+                part.setLength(0);
+            }
+            if (part.length() == 0 && headerLine != null)
+                part.append(headerLine).append('\n');
+            part.append(record).append('\n');
+        }
+        if (part.length() > 0)
+            handler.part(part.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read the next record.
+     *
+     * This is the next line, unless it ends inside a quoted value; then the following
+     * lines are added until the quoted value is closed (or the file ends).
+     *
+     * @param reader where to read from
+     * @return the record (without the final line terminator), or null if there are no more records
+     */
+    private String readRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null || quote == null || !endsInsideQuotes(line, false))
+            return line;
+        StringBuilder record = new StringBuilder(line);
+        boolean inQuotes = true;
+        while (inQuotes && (line = reader.readLine()) != null) {
+            record.append('\n').append(line);
+            inQuotes = endsInsideQuotes(line, true);
+        }
+        return record.toString();
+    }
+
+    /**
+     * Check if a line ends inside a quoted value.
+     *
+     * A value is quoted if it starts with the quote character; inside it, a doubled quote
+     * character is an escaped quote.
+     *
+     * @param line line to check
+     * @param startsInsideQuotes whether the line starts inside a quoted value
+     * @return true if the quoted value continues on the next line
+     */
+    private boolean endsInsideQuotes(String line, boolean startsInsideQuotes) {
+        boolean inQuotes = startsInsideQuotes;
+        boolean atValueStart = !startsInsideQuotes;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c == quote) {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == quote)
+                        i++; // escaped quote
+                    else
+                        inQuotes = false;
+                }
+            } else if (c == delimiter) {
+                atValueStart = true;
+                continue;
+            } else if (c == quote && atValueStart) {
+                inQuotes = true;
+            }
+            atValueStart = false;
+        }
+        return inQuotes;
+    }
+
+    private boolean isDocumentOpenTag(String line) {
+        // (separators may follow inline tags, so only look at the first column)
+        int i = line.indexOf(delimiter);
+        Matcher m = DocIndexerTabular.REGEX_TAG.matcher(i < 0 ? line : line.substring(0, i));
+        return m.find() && m.group(1) == null && m.group(2).equals(documentTagName);
+    }
+}
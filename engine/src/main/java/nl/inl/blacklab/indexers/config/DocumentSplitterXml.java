@@ -0,0 +1,198 @@
+package nl.inl.blacklab.indexers.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import nl.inl.blacklab.exceptions.MalformedInputFile;
+import nl.inl.blacklab.index.DocumentSplitter;
+
+/**
+ * Splits an XML file at its document elements.
+ *
+ * Only works if the documentPath finds elements by name anywhere in the file,
+ * e.g. <code>//tei:TEI</code>. Each part contains a root element with one or more
+ * document elements. Namespace declarations from outside a document element are
+ * copied to it.
+ *
+ * Note that anything outside the document elements is not included in the parts,
+ * so this shouldn't be used if the format refers to it (e.g. a corpus-level header).
+ * That's why formats have to enable this explicitly.
+ */
+class DocumentSplitterXml implements DocumentSplitter {
+
+    /** Input format option to enable splitting large XML files */
+    static final String OPT_SPLIT_LARGE_FILES = "splitLargeFiles";
+
+    /** Document paths we can handle: find elements by (optionally prefixed) name */
+    private static final Pattern SIMPLE_DOCUMENT_PATH = Pattern.compile("^//(?:([\\w.-]+):)?([\\w.-]+)$");
+
+    /** Root element for the parts */
+    private static final QName PART_ROOT = new QName("blacklab-split-part");
+
+    /**
+     * Return a splitter for this input format, if possible.
+     *
+     * @param config input format
+     * @return splitter, or null if we can't or shouldn't split files in this format
+     */
+    static DocumentSplitterXml forConfig(ConfigInputFormat config) {
+        String opt = config.getFileTypeOptions().get(OPT_SPLIT_LARGE_FILES);
+        if (opt == null || !opt.equalsIgnoreCase("true"))
+            return null;
+        Matcher m = SIMPLE_DOCUMENT_PATH.matcher(config.getDocumentPath());
+        if (!m.matches())
+            return null;
+        String prefix = m.group(1) == null ? "" : m.group(1);
+        boolean namespaceAware = config.isNamespaceAware();
+        String namespaceUri = namespaceAware ? config.getNamespaces().get(prefix) : null;
+        if (namespaceAware && namespaceUri == null && !prefix.isEmpty())
+            return null; // undeclared prefix; let the DocIndexer report this
+        String name = namespaceAware || prefix.isEmpty() ? m.group(2) : prefix + ":" + m.group(2);
+        return new DocumentSplitterXml(namespaceAware, namespaceUri, name);
+    }
+
+    private final boolean namespaceAware;
+
+    /** Namespace of the document element, or null to match any namespace */
+    private final String namespaceUri;
+
+    /** Name of the document element (with prefix, if not namespace aware) */
+    private final String name;
+
+    private final XMLInputFactory inputFactory;
+
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    DocumentSplitterXml(boolean namespaceAware, String namespaceUri, String name) {
+        this.namespaceAware = namespaceAware;
+        this.namespaceUri = namespaceUri;
+        this.name = name;
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, namespaceAware);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private boolean isDocumentElement(StartElement el) {
+        QName qName = el.getName();
+        if (!namespaceAware) {
+            String prefix = qName.getPrefix();
+            return (prefix.isEmpty() ? qName.getLocalPart() : prefix + ":" + qName.getLocalPart()).equals(name);
+        }
+        if (!qName.getLocalPart().equals(name))
+            return false;
+        return namespaceUri == null || namespaceUri.equals(qName.getNamespaceURI());
+    }
+
+    @Override
+    public void split(InputStream is, Charset cs, int minPartSize, PartHandler handler) throws MalformedInputFile {
+        try {
+            XMLEventReader reader = inputFactory.createXMLEventReader(is);
+            // Namespaces declared by the elements we're inside of (outside documents)
+            Deque<Iterable<Namespace>> namespaceScopes = new ArrayDeque<>();
+            Part part = null;
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    StartElement el = event.asStartElement();
+                    if (isDocumentElement(el)) {
+                        if (part == null)
+                            part = new Part();
+                        part.copyDocument(reader, el, namespaceScopes);
+                        if (part.size() >= minPartSize) {
+                            boolean cont = handler.part(part.finish());
+                            part = null;
+                            if (!cont)
+                                return;
+                        }
+                    } else {
+                        List<Namespace> namespaces = new ArrayList<>();
+                        el.getNamespaces().forEachRemaining(ns -> namespaces.add((Namespace) ns));
+                        namespaceScopes.push(namespaces);
+                    }
+                } else if (event.isEndElement()) {
+                    namespaceScopes.pop();
+                }
+            }
+            if (part != null)
+                handler.part(part.finish());
+        } catch (XMLStreamException e) {
+            throw new MalformedInputFile("Error splitting XML file: " + e.getMessage(), e);
+        }
+    }
+
+    /** A part of the input file that we're building */
+    private class Part {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private final XMLEventWriter writer;
+
+        Part() throws XMLStreamException {
+            writer = outputFactory.createXMLEventWriter(bytes, StandardCharsets.UTF_8.name());
+            writer.add(eventFactory.createStartDocument(StandardCharsets.UTF_8.name(), "1.0"));
+            writer.add(eventFactory.createStartElement(PART_ROOT, null, null));
+        }
+
+        /** Copy the document element that was just read, including all its contents. */
+        void copyDocument(XMLEventReader reader, StartElement docElement, Deque<Iterable<Namespace>> namespaceScopes)
+                throws XMLStreamException {
+            // Declare namespaces from the surrounding elements on the document element
+            Map<String, Namespace> namespaces = new LinkedHashMap<>();
+            Iterator<Iterable<Namespace>> it = namespaceScopes.descendingIterator(); // outermost first
+            while (it.hasNext()) {
+                for (Namespace ns: it.next())
+                    namespaces.put(ns.getPrefix(), ns);
+            }
+            docElement.getNamespaces().forEachRemaining(ns -> namespaces.put(((Namespace) ns).getPrefix(), (Namespace) ns));
+            writer.add(eventFactory.createStartElement(docElement.getName(), docElement.getAttributes(),
+                    namespaces.values().iterator()));
+
+            int depth = 1;
+            while (depth > 0) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement())
+                    depth++;
+                else if (event.isEndElement())
+                    depth--;
+                writer.add(event);
+            }
+            writer.flush();
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        byte[] finish() throws XMLStreamException {
+            writer.add(eventFactory.createEndElement(PART_ROOT, null));
+            writer.add(eventFactory.createEndDocument());
+            writer.close();
+            return bytes.toByteArray();
+        }
+    }
+}
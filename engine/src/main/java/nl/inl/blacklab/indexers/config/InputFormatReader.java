@@ -365,6 +365,9 @@ public class InputFormatReader extends YamlJsonReader {
                 case "inlineTags":
                     readInlineTags(e, af);
                     break;
+                case "contentStoreCodec":
+                    af.setContentStoreCodec(str(e));
+                    break;
                 default:
                     throw new InvalidInputFormatConfig(
                             "Unknown key " + e.getKey() + " in annotated field " + fieldName + inFormat());
@@ -0,0 +1,440 @@
+package nl.inl.blacklab.indexers.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamReader;
+
+import nl.inl.blacklab.exceptions.InvalidInputFormatConfig;
+
+/**
+ * The subset of XPath that {@link DocIndexerXmlStreaming} can evaluate while streaming through a document.
+ *
+ * A path consists of element steps (<code>w</code>, <code>tei:w</code> or <code>*</code>, optionally with
+ * a predicate <code>[@type='x']</code> or <code>[@type]</code>) separated by <code>/</code> or <code>//</code>.
+ * It may start with <code>.</code>, <code>./</code>, <code>.//</code>, <code>/</code> or <code>//</code>.
+ * The last step may select an attribute (<code>@lemma</code>), the element's text (<code>text()</code>,
+ * optionally with a predicate <code>[not(ancestor::w)]</code>) or its name (<code>name()</code>).
+ *
+ * Paths are matched against the stack of open elements, so we only ever need the current element and
+ * its ancestors in memory.
+ */
+final class StreamingXPath {
+
+    /** What a path selects */
+    enum Target {
+        /** the element, or its string value */
+        ELEMENT,
+        /** an attribute value */
+        ATTRIBUTE,
+        /** text nodes */
+        TEXT,
+        /** the element name */
+        NAME
+    }
+
+    private static final String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace";
+
+    /** An open element. Only the current element and its ancestors are kept. */
+    static final class Element {
+
+        final String namespaceUri;
+
+        final String localName;
+
+        /** Name as it appears in the document (with prefix, if any) */
+        final String rawName;
+
+        final String[] attrNamespaceUris;
+
+        final String[] attrLocalNames;
+
+        final String[] attrRawNames;
+
+        final String[] attrValues;
+
+        /** Namespace prefixes declared on this element */
+        final String[] nsPrefixes;
+
+        final String[] nsUris;
+
+        Element(XMLStreamReader xml) {
+            namespaceUri = emptyIfNull(xml.getNamespaceURI());
+            localName = xml.getLocalName();
+            rawName = rawName(xml.getPrefix(), localName);
+            int n = xml.getAttributeCount();
+            attrNamespaceUris = new String[n];
+            attrLocalNames = new String[n];
+            attrRawNames = new String[n];
+            attrValues = new String[n];
+            for (int i = 0; i < n; i++) {
+                attrNamespaceUris[i] = emptyIfNull(xml.getAttributeNamespace(i));
+                attrLocalNames[i] = xml.getAttributeLocalName(i);
+                attrRawNames[i] = rawName(xml.getAttributePrefix(i), attrLocalNames[i]);
+                attrValues[i] = xml.getAttributeValue(i);
+            }
+            int nns = xml.getNamespaceCount();
+            nsPrefixes = new String[nns];
+            nsUris = new String[nns];
+            for (int i = 0; i < nns; i++) {
+                nsPrefixes[i] = emptyIfNull(xml.getNamespacePrefix(i));
+                nsUris[i] = emptyIfNull(xml.getNamespaceURI(i));
+            }
+        }
+
+        /** Attributes by raw name, as used for inline tags */
+        Map<String, String> attributes() {
+            if (attrRawNames.length == 0)
+                return Collections.emptyMap();
+            Map<String, String> attr = new HashMap<>();
+            for (int i = 0; i < attrRawNames.length; i++)
+                attr.put(attrRawNames[i], attrValues[i]);
+            return attr;
+        }
+
+        private static String rawName(String prefix, String localName) {
+            return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+        }
+
+        private static String emptyIfNull(String str) {
+            return str == null ? "" : str;
+        }
+    }
+
+    /** Tests an element or attribute name */
+    private static final class NameTest {
+
+        /** Namespace to match, or null if we're not namespace aware (match raw name) */
+        private final String namespaceUri;
+
+        /** Local name to match (if namespace aware) or raw name; null matches any name */
+        private final String name;
+
+        NameTest(String namespaceUri, String name) {
+            this.namespaceUri = namespaceUri;
+            this.name = name;
+        }
+
+        boolean matches(String uri, String localName, String rawName) {
+            if (name == null)
+                return true;
+            if (namespaceUri == null)
+                return name.equals(rawName);
+            return name.equals(localName) && namespaceUri.equals(uri);
+        }
+    }
+
+    /** A step that selects an element */
+    private static final class Step {
+
+        /** Descendant (//) or child (/) step? */
+        final boolean descendant;
+
+        final NameTest name;
+
+        /** Attribute to test for, or null if there's no predicate */
+        final NameTest predicateAttr;
+
+        /** Required value for the predicate attribute, or null if it only needs to exist */
+        final String predicateValue;
+
+        Step(boolean descendant, NameTest name, NameTest predicateAttr, String predicateValue) {
+            this.descendant = descendant;
+            this.name = name;
+            this.predicateAttr = predicateAttr;
+            this.predicateValue = predicateValue;
+        }
+
+        boolean matches(Element el) {
+            if (!name.matches(el.namespaceUri, el.localName, el.rawName))
+                return false;
+            if (predicateAttr == null)
+                return true;
+            String value = attributeValue(el, predicateAttr);
+            return value != null && (predicateValue == null || predicateValue.equals(value));
+        }
+    }
+
+    private static String attributeValue(Element el, NameTest attr) {
+        for (int i = 0; i < el.attrLocalNames.length; i++) {
+            if (attr.matches(el.attrNamespaceUris[i], el.attrLocalNames[i], el.attrRawNames[i]))
+                return el.attrValues[i];
+        }
+        return null;
+    }
+
+    /**
+     * Compile a path.
+     *
+     * @param expr path expression
+     * @param config input format, for the namespace declarations
+     * @return compiled path
+     * @throws InvalidInputFormatConfig if the expression is not in our supported subset
+     */
+    static StreamingXPath compile(String expr, ConfigInputFormat config) {
+        return new Parser(expr, config).parse();
+    }
+
+    private final String expr;
+
+    /** Absolute paths are evaluated relative to the document element's parent */
+    private final boolean absolute;
+
+    private final List<Step> steps;
+
+    private final Target target;
+
+    /** Attribute to select, if target is ATTRIBUTE */
+    private final NameTest attribute;
+
+    /** For TEXT: only select text directly inside the element (text() vs. .//text())? */
+    private final boolean directTextOnly;
+
+    /** For TEXT: skip text with an ancestor with this name (or null) */
+    private final NameTest notAncestor;
+
+    private StreamingXPath(String expr, boolean absolute, List<Step> steps, Target target, NameTest attribute,
+            boolean directTextOnly, NameTest notAncestor) {
+        this.expr = expr;
+        this.absolute = absolute;
+        this.steps = steps;
+        this.target = target;
+        this.attribute = attribute;
+        this.directTextOnly = directTextOnly;
+        this.notAncestor = notAncestor;
+    }
+
+    boolean isAbsolute() {
+        return absolute;
+    }
+
+    Target target() {
+        return target;
+    }
+
+    boolean isDirectTextOnly() {
+        return directTextOnly;
+    }
+
+    /**
+     * Do the element steps select the current (innermost) element?
+     *
+     * @param elements stack of open elements
+     * @param contextDepth index of the context element in the stack (-1 for the root)
+     * @return true if this path's element steps lead from the context element to the current element
+     */
+    boolean matches(List<Element> elements, int contextDepth) {
+        return matches(elements, 0, contextDepth + 1);
+    }
+
+    private boolean matches(List<Element> elements, int stepIndex, int elementIndex) {
+        int top = elements.size() - 1;
+        if (stepIndex == steps.size())
+            return elementIndex == top + 1;
+        Step step = steps.get(stepIndex);
+        if (!step.descendant) {
+            return elementIndex <= top && step.matches(elements.get(elementIndex)) &&
+                    matches(elements, stepIndex + 1, elementIndex + 1);
+        }
+        for (int i = elementIndex; i <= top; i++) {
+            if (step.matches(elements.get(i)) && matches(elements, stepIndex + 1, i + 1))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Does this (TEXT) path select text inside the current (innermost) element?
+     *
+     * @param elements stack of open elements
+     * @param contextDepth index of the context element in the stack (-1 for the root)
+     * @return true if text in the current element is selected
+     */
+    boolean matchesText(List<Element> elements, int contextDepth) {
+        if (!acceptText(elements))
+            return false;
+        if (directTextOnly)
+            return matches(elements, contextDepth);
+        // Text anywhere inside a matching element will do
+        for (int i = elements.size(); i > contextDepth; i--) {
+            if (matches(elements.subList(0, i), contextDepth))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the value of an ATTRIBUTE or NAME path for the matched element.
+     *
+     * @param el matched element
+     * @return the value, or null if the attribute doesn't exist
+     */
+    String value(Element el) {
+        return target == Target.NAME ? el.rawName : attributeValue(el, attribute);
+    }
+
+    /**
+     * Check the text predicate, if any.
+     *
+     * @param elements stack of open elements (the text's ancestors)
+     * @return true if text in the current element may be selected
+     */
+    boolean acceptText(List<Element> elements) {
+        if (notAncestor == null)
+            return true;
+        for (Element el: elements) {
+            if (notAncestor.matches(el.namespaceUri, el.localName, el.rawName))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return expr;
+    }
+
+    /** Parses our XPath subset */
+    private static class Parser {
+
+        private final String expr;
+
+        private final ConfigInputFormat config;
+
+        private int pos;
+
+        Parser(String expr, ConfigInputFormat config) {
+            this.expr = expr.trim();
+            this.config = config;
+        }
+
+        StreamingXPath parse() {
+            boolean absolute = false;
+            boolean descendant = false;
+            if (expr.startsWith("//") || expr.startsWith(".//")) {
+                absolute = expr.charAt(0) == '/';
+                descendant = true;
+                pos = absolute ? 2 : 3;
+            } else if (expr.startsWith("/") || expr.startsWith("./")) {
+                absolute = expr.charAt(0) == '/';
+                pos = absolute ? 1 : 2;
+            } else if (expr.equals(".")) {
+                pos = 1;
+            }
+            List<Step> steps = new ArrayList<>();
+            while (pos < expr.length()) {
+                if (expr.startsWith("@", pos)) {
+                    pos++;
+                    NameTest attr = nameTest(true);
+                    if (descendant || pos < expr.length())
+                        throw unsupported();
+                    return new StreamingXPath(expr, absolute, steps, Target.ATTRIBUTE, attr, false, null);
+                } else if (expr.startsWith("text()", pos)) {
+                    pos += "text()".length();
+                    NameTest notAncestor = null;
+                    if (expr.startsWith("[not(ancestor::", pos)) {
+                        pos += "[not(ancestor::".length();
+                        notAncestor = nameTest(false);
+                        expect(")]");
+                    }
+                    if (pos < expr.length())
+                        throw unsupported();
+                    return new StreamingXPath(expr, absolute, steps, Target.TEXT, null, !descendant, notAncestor);
+                } else if (expr.startsWith("name()", pos)) {
+                    pos += "name()".length();
+                    if (descendant || pos < expr.length())
+                        throw unsupported();
+                    return new StreamingXPath(expr, absolute, steps, Target.NAME, null, false, null);
+                }
+                steps.add(step(descendant));
+                if (pos == expr.length())
+                    break;
+                if (expr.startsWith("//", pos)) {
+                    descendant = true;
+                    pos += 2;
+                } else if (expr.charAt(pos) == '/') {
+                    descendant = false;
+                    pos++;
+                } else {
+                    throw unsupported();
+                }
+                if (pos == expr.length())
+                    throw unsupported();
+            }
+            if (steps.isEmpty() && (absolute || descendant))
+                throw unsupported();
+            return new StreamingXPath(expr, absolute, steps, Target.ELEMENT, null, false, null);
+        }
+
+        private Step step(boolean descendant) {
+            NameTest name;
+            if (expr.startsWith("*", pos)) {
+                pos++;
+                name = new NameTest(null, null);
+            } else {
+                name = nameTest(false);
+            }
+            NameTest predicateAttr = null;
+            String predicateValue = null;
+            if (expr.startsWith("[@", pos)) {
+                pos += 2;
+                predicateAttr = nameTest(true);
+                if (pos < expr.length() && expr.charAt(pos) == '=') {
+                    pos++;
+                    char quote = pos < expr.length() ? expr.charAt(pos) : 0;
+                    if (quote != '\'' && quote != '"')
+                        throw unsupported();
+                    int end = expr.indexOf(quote, pos + 1);
+                    if (end < 0)
+                        throw unsupported();
+                    predicateValue = expr.substring(pos + 1, end);
+                    pos = end + 1;
+                }
+                expect("]");
+            }
+            return new Step(descendant, name, predicateAttr, predicateValue);
+        }
+
+        private NameTest nameTest(boolean isAttribute) {
+            int start = pos;
+            if (pos == expr.length() || !(Character.isLetter(expr.charAt(pos)) || expr.charAt(pos) == '_'))
+                throw unsupported();
+            while (pos < expr.length() && isNameChar(expr.charAt(pos)))
+                pos++;
+            String qName = expr.substring(start, pos);
+            int colon = qName.indexOf(':');
+            if (colon >= 0 && (colon == qName.length() - 1 || qName.indexOf(':', colon + 1) >= 0))
+                throw unsupported(); // not a (prefixed) name, e.g. an axis like following-sibling::
+            if (!config.isNamespaceAware())
+                return new NameTest(null, qName);
+            if (colon < 0) {
+                // Unprefixed names are in no namespace (as in XPath 1.0)
+                return new NameTest("", qName);
+            }
+            String prefix = qName.substring(0, colon);
+            String uri = prefix.equals("xml") ? XML_NAMESPACE : config.getNamespaces().get(prefix);
+            if (uri == null)
+                throw new InvalidInputFormatConfig("Undeclared namespace prefix " + prefix + " in XPath " + expr);
+            return new NameTest(uri, qName.substring(colon + 1));
+        }
+
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':';
+        }
+
+        private void expect(String str) {
+            if (!expr.startsWith(str, pos))
+                throw unsupported();
+            pos += str.length();
+        }
+
+        private InvalidInputFormatConfig unsupported() {
+            return new InvalidInputFormatConfig("XPath " + expr + " is not supported with streaming processing. " +
+                    "Use simple paths like .//w, tei:fileDesc/tei:title, s[@type='x'], @lemma, text() or name(), " +
+                    "or use a different value for the fileTypeOption 'processing'.");
+        }
+    }
+}
@@ -217,6 +217,47 @@ public abstract class HitProperty implements ResultProperty<Hit>, LongComparator
         return hitPropValueA.compareTo(hitPropValueB);
     }
 
+    /**
+     * Length of this property's sort key, in ints.
+     *
+     * Sorting many hits is much faster if we extract a fixed-width key for each hit
+     * first and sort those keys, instead of calling {@link #compare(long, long)} for
+     * every comparison. Properties that support this return their key length here and
+     * implement {@link #sortKey(long, int[], int)}.
+     *
+     * @return sort key length, or 0 if this property doesn't support sort keys
+     */
+    public int sortKeyLength() {
+        return 0;
+    }
+
+    /**
+     * Does the sort key completely determine the sort order?
+     *
+     * If not (e.g. because the key only includes the first few words of a context),
+     * hits with equal keys must still be compared using {@link #compare(long, long)}.
+     *
+     * @return true if hits with equal sort keys are always equal according to compare()
+     */
+    public boolean sortKeyIsExact() {
+        return false;
+    }
+
+    /**
+     * Write the sort key for a hit.
+     *
+     * Sort keys are compared int by int, as signed values. If the keys for two hits
+     * differ, comparing them must give the same result as {@link #compare(long, long)}
+     * (so reverse must be taken into account as well).
+     *
+     * @param hitIndex hit to get the sort key for
+     * @param dest array to write the key to
+     * @param offset where in the array to write the key
+     */
+    public void sortKey(long hitIndex, int[] dest, int offset) {
+        throw new UnsupportedOperationException("Sort keys not supported for " + getClass().getName());
+    }
+
     /**
      * Retrieve context from which field(s) prior to sorting/grouping on this
      * property?
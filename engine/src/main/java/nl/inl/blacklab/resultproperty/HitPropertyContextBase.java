@@ -36,6 +36,12 @@ public abstract class HitPropertyContextBase extends HitProperty {
         }
     }
 
+    /** How many context words to include in sort keys (ties are resolved by comparing the full context) */
+    protected static final int SORT_KEY_WORDS = 3;
+
+    /** Sort key value for a position beyond the end of the context (shorter contexts sort first) */
+    private static final int SORT_KEY_NO_WORD = Integer.MIN_VALUE;
+
     protected final Terms terms;
 
     protected final Annotation annotation;
@@ -52,8 +58,9 @@ public abstract class HitPropertyContextBase extends HitProperty {
 
     public HitPropertyContextBase(HitPropertyContextBase prop, Hits hits, Contexts contexts, boolean invert) {
         super(prop, hits, contexts, invert);
-        this.terms = prop.terms;
         this.annotation = prop.annotation;
+        // (use the terms that go with the index reader the hits were found with)
+        this.terms = hits == null ? prop.terms : hits.queryInfo().annotationForwardIndex(annotation).terms();
         if (hits != null && !hits.field().equals(this.annotation.field())) {
             throw new IllegalArgumentException(
                     "Hits passed to HitProperty must be in the field it was declared with! (declared with "
@@ -78,6 +85,31 @@ public abstract class HitPropertyContextBase extends HitProperty {
 //        this.contextSize = contextSize == null ? index.defaultContextSize() : contextSize;
     }
 
+    /**
+     * Write sort keys for a number of words from a hit's context.
+     *
+     * The key for each word is its sort position, or a value lower than any sort position
+     * if we run out of words.
+     *
+     * @param context hit context
+     * @param from first context position to include
+     * @param to context position to stop at (exclusive)
+     * @param step 1 to go right, -1 to go left
+     * @param numberOfWords number of keys to write
+     * @param dest array to write the keys to
+     * @param offset where in the array to write the keys
+     */
+    protected void contextSortKey(int[] context, int from, int to, int step, int numberOfWords, int[] dest, int offset) {
+        int contextStart = contextIndices.getInt(0) * context[Contexts.LENGTH_INDEX] + Contexts.NUMBER_OF_BOOKKEEPING_INTS;
+        int pos = from;
+        for (int i = 0; i < numberOfWords; i++) {
+            boolean haveWord = step > 0 ? pos < to : pos > to;
+            int key = haveWord ? terms.idToSortPosition(context[contextStart + pos], sensitivity) : SORT_KEY_NO_WORD;
+            dest[offset + i] = reverse ? ~key : key;
+            pos += step;
+        }
+    }
+
     @Override
     public List<Annotation> needsContext() {
         return annotation == null ? Collections.emptyList() : List.of(annotation);
@@ -47,6 +47,22 @@ public class HitPropertyDocumentId extends HitProperty {
         return reverse ? docB - docA : docA - docB;
     }
 
+    @Override
+    public int sortKeyLength() {
+        return 1;
+    }
+
+    @Override
+    public boolean sortKeyIsExact() {
+        return true;
+    }
+
+    @Override
+    public void sortKey(long hitIndex, int[] dest, int offset) {
+        int doc = hits.doc(hitIndex);
+        dest[offset] = reverse ? ~doc : doc;
+    }
+
     @Override
     public String serialize() {
         return serializeReverse() + "docid";
@@ -50,6 +50,24 @@ public class HitPropertyHitPosition extends HitProperty {
         return reverse ? startB - startA : startA - startB;
     }
 
+    @Override
+    public int sortKeyLength() {
+        return 2;
+    }
+
+    @Override
+    public boolean sortKeyIsExact() {
+        return true;
+    }
+
+    @Override
+    public void sortKey(long hitIndex, int[] dest, int offset) {
+        int start = hits.start(hitIndex);
+        int end = hits.end(hitIndex);
+        dest[offset] = reverse ? ~start : start;
+        dest[offset + 1] = reverse ? ~end : end;
+    }
+
     @Override
     public String serialize() {
         return serializeReverse() + "hitposition";
@@ -96,6 +96,18 @@ public class HitPropertyHitText extends HitPropertyContextBase {
         return reverse ? -1 : 1; // a longer than b => a > b
     }
 
+    @Override
+    public int sortKeyLength() {
+        return SORT_KEY_WORDS;
+    }
+
+    @Override
+    public void sortKey(long hitIndex, int[] dest, int offset) {
+        int[] context = contexts.get(hitIndex);
+        contextSortKey(context, context[Contexts.HIT_START_INDEX], context[Contexts.RIGHT_START_INDEX], 1,
+                SORT_KEY_WORDS, dest, offset);
+    }
+
     @Override
     public boolean isDocPropOrHitText() {
         return true;
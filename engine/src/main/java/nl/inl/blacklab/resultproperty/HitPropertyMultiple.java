@@ -239,6 +239,42 @@ public class HitPropertyMultiple extends HitProperty implements Iterable<HitProp
         return 0;
     }
 
+    @Override
+    public int sortKeyLength() {
+        // Keys of our properties, up to and including the first one that isn't exact
+        int length = 0;
+        for (HitProperty crit: properties) {
+            int critLength = crit.sortKeyLength();
+            if (critLength == 0)
+                break;
+            length += critLength;
+            if (!crit.sortKeyIsExact())
+                break;
+        }
+        return length;
+    }
+
+    @Override
+    public boolean sortKeyIsExact() {
+        return properties.stream().allMatch(crit -> crit.sortKeyLength() > 0 && crit.sortKeyIsExact());
+    }
+
+    @Override
+    public void sortKey(long hitIndex, int[] dest, int offset) {
+        int end = offset + sortKeyLength();
+        int i = offset;
+        for (HitProperty crit: properties) {
+            if (i == end)
+                break;
+            crit.sortKey(hitIndex, dest, i);
+            i += crit.sortKeyLength();
+        }
+        if (reverse) {
+            for (i = offset; i < end; i++)
+                dest[i] = ~dest[i];
+        }
+    }
+
     @Override
     public String name() {
         StringBuilder b = new StringBuilder();
@@ -101,6 +101,18 @@ public class HitPropertyRightContext extends HitPropertyContextBase {
         return reverse ? -1 : 1; // a longer than b => a > b
     }
 
+    @Override
+    public int sortKeyLength() {
+        return SORT_KEY_WORDS;
+    }
+
+    @Override
+    public void sortKey(long hitIndex, int[] dest, int offset) {
+        int[] context = contexts.get(hitIndex);
+        contextSortKey(context, context[Contexts.RIGHT_START_INDEX], context[Contexts.LENGTH_INDEX], 1,
+                SORT_KEY_WORDS, dest, offset);
+    }
+
     @Override
     public boolean isDocPropOrHitText() {
         return false;
@@ -82,6 +82,22 @@ public class HitPropertyWordLeft extends HitPropertyContextBase {
         return reverse ? -cmp : cmp;
     }
 
+    @Override
+    public int sortKeyLength() {
+        return 1;
+    }
+
+    @Override
+    public boolean sortKeyIsExact() {
+        return true;
+    }
+
+    @Override
+    public void sortKey(long hitIndex, int[] dest, int offset) {
+        int[] context = contexts.get(hitIndex);
+        contextSortKey(context, context[Contexts.HIT_START_INDEX] - 1, -1, -1, 1, dest, offset);
+    }
+
     @Override
     public boolean isDocPropOrHitText() {
         return false;
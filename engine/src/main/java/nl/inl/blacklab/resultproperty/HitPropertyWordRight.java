@@ -74,6 +74,23 @@ public class HitPropertyWordRight extends HitPropertyContextBase {
         return reverse ? -cmp : cmp;
     }
 
+    @Override
+    public int sortKeyLength() {
+        return 1;
+    }
+
+    @Override
+    public boolean sortKeyIsExact() {
+        return true;
+    }
+
+    @Override
+    public void sortKey(long hitIndex, int[] dest, int offset) {
+        int[] context = contexts.get(hitIndex);
+        contextSortKey(context, context[Contexts.RIGHT_START_INDEX], context[Contexts.LENGTH_INDEX], 1, 1, dest,
+                offset);
+    }
+
     @Override
     public boolean isDocPropOrHitText() {
         return false;
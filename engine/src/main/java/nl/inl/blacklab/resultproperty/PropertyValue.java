@@ -7,6 +7,8 @@ import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
 
 import nl.inl.blacklab.search.BlackLab;
 import nl.inl.blacklab.search.BlackLabIndex;
@@ -17,7 +19,7 @@ import nl.inl.blacklab.util.PropertySerializeUtil;
 /**
  * A concrete value of a HitProperty of a Hit
  */
-public abstract class PropertyValue implements Comparable<Object> {
+public abstract class PropertyValue implements Comparable<Object>, Accountable {
     protected static final Logger logger = LogManager.getLogger(PropertyValue.class);
 
     /**
@@ -135,4 +137,18 @@ public abstract class PropertyValue implements Comparable<Object> {
     }
     
     public abstract Object value();
+
+    /**
+     * Estimate the heap size of this value.
+     *
+     * Used to estimate the size of grouped results. The default implementation
+     * only counts the object itself; subclasses that reference arrays or strings
+     * should add those.
+     *
+     * @return estimated heap size in bytes
+     */
+    @Override
+    public long ramBytesUsed() {
+        return RamUsageEstimator.shallowSizeOf(this);
+    }
 }
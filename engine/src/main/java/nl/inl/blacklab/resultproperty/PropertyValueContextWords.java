@@ -2,6 +2,8 @@ package nl.inl.blacklab.resultproperty;
 
 import java.util.Arrays;
 
+import org.apache.lucene.util.RamUsageEstimator;
+
 import nl.inl.blacklab.forwardindex.Terms;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
@@ -10,6 +12,8 @@ import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.blacklab.util.PropertySerializeUtil;
 
 public class PropertyValueContextWords extends PropertyValueContext {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(PropertyValueContextWords.class);
+
     int[] valueTokenId;
 
     final int[] valueSortOrder;
@@ -36,6 +40,12 @@ public class PropertyValueContextWords extends PropertyValueContext {
         this.reverseOnDisplay = reverseOnDisplay;
     }
 
+    @Override
+    public long ramBytesUsed() {
+        // (terms and annotation name are shared, so we don't count them)
+        return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(valueTokenId) + RamUsageEstimator.sizeOf(valueSortOrder);
+    }
+
     @Override
     public int compareTo(Object o) {
         return Arrays.compare(valueSortOrder, ((PropertyValueContextWords) o).valueSortOrder);
@@ -3,11 +3,15 @@ package nl.inl.blacklab.resultproperty;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.lucene.util.RamUsageEstimator;
+
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 import nl.inl.blacklab.util.PropertySerializeUtil;
 
 public class PropertyValueMultiple extends PropertyValue {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(PropertyValueMultiple.class);
+
     final PropertyValue[] value;
 
     public PropertyValueMultiple(PropertyValue[] value) {
@@ -23,6 +27,14 @@ public class PropertyValueMultiple extends PropertyValue {
         return value;
     }
 
+    @Override
+    public long ramBytesUsed() {
+        long bytes = BASE_RAM_BYTES_USED + RamUsageEstimator.shallowSizeOf(value);
+        for (PropertyValue v: value)
+            bytes += v.ramBytesUsed();
+        return bytes;
+    }
+
     @Override
     public int compareTo(Object o) {
         return compareHitPropValueArrays(value, ((PropertyValueMultiple) o).value);
@@ -1,8 +1,12 @@
 package nl.inl.blacklab.resultproperty;
 
+import org.apache.lucene.util.RamUsageEstimator;
+
 import nl.inl.blacklab.util.PropertySerializeUtil;
 
 public class PropertyValueString extends PropertyValue {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(PropertyValueString.class);
+
     final String value;
 
     public PropertyValueString(String value) {
@@ -34,6 +38,11 @@ public class PropertyValueString extends PropertyValue {
         return false;
     }
 
+    @Override
+    public long ramBytesUsed() {
+        return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(value);
+    }
+
     public static PropertyValue deserialize(String info) {
         return new PropertyValueString(PropertySerializeUtil.unescapePart(info));
     }
@@ -93,10 +93,20 @@ public final class BlackLab {
      * @param maxThreadsPerSearch max. threads per search.
      */
     public static BlackLabEngine createEngine(int maxThreadsPerSearch) {
+        return createEngine(maxThreadsPerSearch, false);
+    }
+
+    /**
+     * Create a new engine instance.
+     *
+     * @param maxThreadsPerSearch max. threads per search.
+     * @param useVirtualThreads run searches on virtual threads (if available, i.e. Java 21+)
+     */
+    public static BlackLabEngine createEngine(int maxThreadsPerSearch, boolean useVirtualThreads) {
         if (implicitInstance != null)
             throw new UnsupportedOperationException("BlackLab.create() called, but an implicit instance exists already! Don't mix implicit and explicit BlackLabEngine!");
         explicitlyCreated = true;
-        return new BlackLabEngine(maxThreadsPerSearch);
+        return new BlackLabEngine(maxThreadsPerSearch, useVirtualThreads);
     }
 
     public static BlackLabIndex open(File dir) throws ErrorOpeningIndex {
@@ -81,9 +81,18 @@ public final class BlackLabEngine implements AutoCloseable {
     /** Threads on which we run searches. This pool is not limited in size,
      *  but new top-level searches (i.e. not started by other searches) are queued
      *  until server load is deemed low enough that they can start.
+     *
+     *  If we use virtual threads, each search gets its own virtual thread.
      */
     private final ExecutorService searchExecutorService;
 
+    /** Threads on which searches read hits from index segments in parallel.
+     *  Normally the same as searchExecutorService. If we use virtual threads for searches,
+     *  this is a separate pool of platform threads, one per processor, so the amount of
+     *  CPU-bound work running in parallel stays bounded.
+     */
+    private final ExecutorService workerExecutorService;
+
     /** How many threads may a single search use? */
     private final int maxThreadsPerSearch;
 
@@ -110,6 +119,10 @@ public final class BlackLabEngine implements AutoCloseable {
     }
 
     BlackLabEngine(int maxThreadsPerSearch) {
+        this(maxThreadsPerSearch, false);
+    }
+
+    BlackLabEngine(int maxThreadsPerSearch, boolean useVirtualThreads) {
         synchronized (engines) {
             engines.add(this);
         }
@@ -120,16 +133,47 @@ public final class BlackLabEngine implements AutoCloseable {
             worker.setName("BLInit-" + threadNumber);
             return worker;
         });
-        this.searchExecutorService = Executors.newCachedThreadPool(runnable -> {
-            Thread worker = Executors.defaultThreadFactory().newThread(runnable);
-            int threadNumber = threadCounter.getAndUpdate(i -> (i + 1) % 10000);
-            worker.setName("BLSearch-" + threadNumber);
-            return worker;
-        });
+        ExecutorService virtualThreadExecutor = useVirtualThreads ? createVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            logger.info("Running searches on virtual threads");
+            this.searchExecutorService = virtualThreadExecutor;
+            this.workerExecutorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread worker = Executors.defaultThreadFactory().newThread(runnable);
+                int threadNumber = threadCounter.getAndUpdate(i -> (i + 1) % 10000);
+                worker.setDaemon(true); // don't prevent JVM exiting
+                worker.setName("BLWorker-" + threadNumber);
+                return worker;
+            });
+        } else {
+            this.searchExecutorService = Executors.newCachedThreadPool(runnable -> {
+                Thread worker = Executors.defaultThreadFactory().newThread(runnable);
+                int threadNumber = threadCounter.getAndUpdate(i -> (i + 1) % 10000);
+                worker.setName("BLSearch-" + threadNumber);
+                return worker;
+            });
+            this.workerExecutorService = searchExecutorService;
+        }
 
         this.maxThreadsPerSearch = maxThreadsPerSearch;
     }
 
+    /**
+     * Create an executor that starts a new virtual thread for each task.
+     *
+     * Virtual threads are only available from Java 21. We use reflection so we can
+     * still run on older Java versions.
+     *
+     * @return the executor, or null if virtual threads are not available
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Virtual threads requested, but not available (requires Java 21+); using platform threads");
+            return null;
+        }
+    }
+
     /**
      * Set the index object factory to use.
      *
@@ -256,6 +300,8 @@ public final class BlackLabEngine implements AutoCloseable {
             return;
         wasClosed = true;
         closeExecutorPool(searchExecutorService);
+        if (workerExecutorService != searchExecutorService)
+            closeExecutorPool(workerExecutorService);
         closeExecutorPool(initializationExecutorService);
         synchronized (indexReader2BlackLabIndex) {
 
@@ -433,6 +479,21 @@ public final class BlackLabEngine implements AutoCloseable {
         }
     }
 
+    /**
+     * Remove an index reader that is no longer used by an index.
+     *
+     * Used when an index has been reopened and its previous reader is closed.
+     * Unlike {@link #removeIndex(BlackLabIndex)}, this never closes the engine.
+     *
+     * @param reader the index reader to remove
+     */
+    public synchronized void unregisterReader(IndexReader reader) {
+        synchronized (indexReader2BlackLabEngine) {
+            indexReader2BlackLabEngine.remove(reader);
+        }
+        indexReader2BlackLabIndex.remove(reader);
+    }
+
     public synchronized void removeIndex(BlackLabIndex index) {
         synchronized (indexReader2BlackLabEngine) {
             indexReader2BlackLabEngine.remove(index.reader());
@@ -456,6 +517,17 @@ public final class BlackLabEngine implements AutoCloseable {
         return searchExecutorService;
     }
 
+    /**
+     * Get the executor for parallel, CPU-bound parts of a search.
+     *
+     * Tasks on this executor should not wait for other tasks.
+     *
+     * @return the worker executor
+     */
+    public ExecutorService workerExecutorService() {
+        return workerExecutorService;
+    }
+
     /**
      * Given an IndexReader, return corresponding BlackLabIndex.
      *
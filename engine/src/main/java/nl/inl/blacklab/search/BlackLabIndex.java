@@ -32,6 +32,7 @@ import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.blacklab.search.indexmetadata.MetadataField;
 import nl.inl.blacklab.search.indexmetadata.MetadataFields;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.FilterCache;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hits;
@@ -244,8 +245,74 @@ public interface BlackLabIndex extends AutoCloseable {
      */
     IndexReader reader();
 
+    /**
+     * Get the current index reader and make sure it stays open until we release it.
+     *
+     * If the index is reopened (see {@link #reopenIfChanged()}), the previous reader is
+     * only closed when all searches using it have released it. Call {@link #releaseReader(IndexReader)}
+     * when done.
+     *
+     * @return the current index reader
+     */
+    default IndexReader acquireReader() {
+        return reader();
+    }
+
+    /**
+     * Release an index reader acquired with {@link #acquireReader()}.
+     *
+     * @param reader reader to release
+     */
+    default void releaseReader(IndexReader reader) {
+        // (by default, readers aren't reference counted)
+    }
+
     IndexSearcher searcher();
 
+    /**
+     * Get a searcher for an index reader we used before.
+     *
+     * After the index is reopened, searches that were started on the previous reader
+     * keep using it (see {@link nl.inl.blacklab.search.results.QueryInfo#reader()}).
+     *
+     * @param reader current or previous index reader
+     * @return searcher for this reader
+     */
+    default IndexSearcher searcher(IndexReader reader) {
+        return searcher();
+    }
+
+    /**
+     * Reopen the index reader if the index has changed (near-real-time search).
+     *
+     * Only segments that changed are read again; the forward index terms are
+     * updated incrementally and term ids stay the same. Results that were produced
+     * using the previous index reader keep using it and its forward indexes (see
+     * {@link nl.inl.blacklab.search.results.QueryInfo#reader()}), but the index releases
+     * its own reference to that reader here, so it is closed as soon as nothing else
+     * holds it. To keep using such results, acquire their reader first (see
+     * {@link #acquireReader()}); the search cache does this for the results it holds,
+     * until they are removed from the cache. Cached results for the previous index
+     * reader are removed from the cache.
+     *
+     * @return true if the index was reopened, false if nothing changed
+     * @throws UnsupportedOperationException if the index format doesn't support this
+     */
+    default boolean reopenIfChanged() {
+        return false;
+    }
+
+    /**
+     * How many times the index reader was reopened.
+     *
+     * Can be used to check if results were produced using the current index reader.
+     *
+     * @return index reader generation, starting at 0
+     */
+    default long readerGeneration() {
+        return 0;
+    }
+
     /**
      * Get the content accessor for a field.
      * 
@@ -254,6 +321,17 @@ public interface BlackLabIndex extends AutoCloseable {
      */
     ContentAccessor contentAccessor(Field field);
 
+    /**
+     * Get the content accessor for a field, for an index reader we used before.
+     *
+     * @param field the field
+     * @param reader current or previous index reader
+     * @return the content accessor, or null if there is no content accessor for this field
+     */
+    default ContentAccessor contentAccessor(Field field, IndexReader reader) {
+        return contentAccessor(field);
+    }
+
     /**
      * Tries to get the ForwardIndex object for the specified field name.
      *
@@ -275,6 +353,31 @@ public interface BlackLabIndex extends AutoCloseable {
      */
     ForwardIndex forwardIndex(AnnotatedField field);
 
+    /**
+     * Get forward index for the specified annotated field, for an index reader we used before.
+     *
+     * Term ids and document ids may be different in a reopened index reader, so results
+     * from a previous reader need that reader's forward index.
+     *
+     * @param field field to get forward index for
+     * @param reader current or previous index reader
+     * @return forward index
+     */
+    default ForwardIndex forwardIndex(AnnotatedField field, IndexReader reader) {
+        return forwardIndex(field);
+    }
+
+    /**
+     * Get the forward index for an annotation, for an index reader we used before.
+     *
+     * @param annotation the annotation for which we want the forward index
+     * @param reader current or previous index reader
+     * @return the forward index
+     */
+    default AnnotationForwardIndex annotationForwardIndex(Annotation annotation, IndexReader reader) {
+        return forwardIndex(annotation.field(), reader).get(annotation);
+    }
+
 
     
     // Information about the index
@@ -348,6 +451,16 @@ public interface BlackLabIndex extends AutoCloseable {
      */
     SearchSettings searchSettings();
 
+    /**
+     * Get the cache for the documents matching filter queries.
+     *
+     * Each index has its own filter cache, so searches on one index can't evict
+     * another index's entries.
+     *
+     * @return the filter cache
+     */
+    FilterCache filterCache();
+
     /**
      * How do we fix well-formedness for snippets of XML?
      * 
@@ -464,6 +577,19 @@ public interface BlackLabIndex extends AutoCloseable {
      */
     Document luceneDoc(int docId, boolean includeContentStores);
 
+    /**
+     * Get the Lucene document from an index reader we used before.
+     *
+     * Skips content store fields.
+     *
+     * @param docId document id
+     * @param reader current or previous index reader
+     * @return Lucene document
+     */
+    default Document luceneDoc(int docId, IndexReader reader) {
+        return luceneDoc(docId);
+    }
+
     /**
      * Return a query matching all "real" documents in the index.
      *
@@ -53,6 +53,7 @@ import nl.inl.blacklab.search.indexmetadata.IndexMetadataWriter;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.blacklab.search.indexmetadata.MetadataField;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.FilterCache;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hits;
@@ -61,6 +62,7 @@ import nl.inl.blacklab.search.results.SearchSettings;
 import nl.inl.blacklab.searches.SearchCache;
 import nl.inl.blacklab.searches.SearchCacheDummy;
 import nl.inl.blacklab.searches.SearchEmpty;
+import nl.inl.util.BlockTimer;
 import nl.inl.util.LuceneUtil;
 import nl.inl.util.XmlHighlighter.UnbalancedTagsStrategy;
 
@@ -101,8 +103,34 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
      */
     protected final Map<AnnotatedField, ForwardIndex> forwardIndices = new HashMap<>();
 
+    /**
+     * What searches that were started on a previous index reader need to keep using it.
+     *
+     * Document ids and term ids may be different in a reopened reader, so these searches
+     * keep using the searcher, forward indexes and content accessors that go with their
+     * reader. Removed when the reader is closed.
+     */
+    private static class PreviousReader {
+        final IndexSearcher searcher;
+
+        final Map<AnnotatedField, ForwardIndex> forwardIndices;
+
+        final Map<Field, ContentAccessor> contentAccessors = new HashMap<>();
+
+        PreviousReader(IndexSearcher searcher, Map<AnnotatedField, ForwardIndex> forwardIndices) {
+            this.searcher = searcher;
+            this.forwardIndices = new HashMap<>(forwardIndices);
+        }
+    }
+
+    /** Index readers we've replaced by reopening that aren't closed yet (guarded by forwardIndices) */
+    private final Map<IndexReader, PreviousReader> previousReaders = new HashMap<>();
+
     private SearchSettings searchSettings;
 
+    /** Documents matching filter queries, per segment */
+    private final FilterCache filterCache = new FilterCache(FilterCache.DEFAULT_MAX_SIZE_BYTES);
+
     /** Should we default to case-/diacritics-sensitive searching? [default: both insensitive] */
     private MatchSensitivity defaultMatchSensitivity = MatchSensitivity.INSENSITIVE;
 
@@ -118,7 +146,10 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
     /**
      * The Lucene index reader
      */
-    private IndexReader reader;
+    private volatile IndexReader reader;
+
+    /** How many times the index reader was reopened */
+    private volatile long readerGeneration = 0;
 
     /**
      * Are we responsible for closing the IndexReader?
@@ -131,7 +162,7 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
      * The Lucene IndexSearcher, for dealing with non-Span queries (for per-document
      * scoring)
      */
-    private IndexSearcher indexSearcher;
+    private volatile IndexSearcher indexSearcher;
 
     /**
      * Directory where our index resides. May be null for already-opened IndexReader (Solr)
@@ -295,6 +326,11 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
         this.searchSettings = searchSettings;
     }
 
+    @Override
+    public FilterCache filterCache() {
+        return filterCache;
+    }
+
     @Override
     public UnbalancedTagsStrategy defaultUnbalancedTagsStrategy() {
         return defaultUnbalancedTagsStrategy;
@@ -405,6 +441,32 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
         return forwardIndex(annotation.field()).get(annotation);
     }
 
+    @Override
+    public ForwardIndex forwardIndex(AnnotatedField field, IndexReader reader) {
+        synchronized (forwardIndices) {
+            PreviousReader previous = previousReaders.get(reader);
+            if (previous == null)
+                return forwardIndex(field);
+            return previous.forwardIndices.computeIfAbsent(field, f -> createForwardIndex(f, reader));
+        }
+    }
+
+    @Override
+    public IndexSearcher searcher(IndexReader reader) {
+        synchronized (forwardIndices) {
+            PreviousReader previous = previousReaders.get(reader);
+            return previous == null ? indexSearcher : previous.searcher;
+        }
+    }
+
+    @Override
+    public ContentAccessor contentAccessor(Field field, IndexReader reader) {
+        synchronized (forwardIndices) {
+            PreviousReader previous = previousReaders.get(reader);
+            return previous == null ? contentAccessor(field) : previous.contentAccessors.get(field);
+        }
+    }
+
     @Override
     public MatchSensitivity defaultMatchSensitivity() {
         return defaultMatchSensitivity;
@@ -580,6 +642,7 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
         try {
             blackLab.removeIndex(this);
             if (shouldCloseIndex) {
+                // (readers we replaced when reopening are closed when the last search using them releases them)
                 reader.close();
             }
             if (indexWriter != null) {
@@ -592,6 +655,99 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
         }
     }
 
+    @Override
+    public synchronized boolean reopenIfChanged() {
+        if (closed || !shouldCloseIndex || !(reader instanceof DirectoryReader))
+            return false; // we don't manage the reader (e.g. Solr), or we can't reopen it
+        try {
+            DirectoryReader newReader = DirectoryReader.openIfChanged((DirectoryReader) reader);
+            if (newReader == null)
+                return false;
+            try (BlockTimer bt = BlockTimer.create("Reopen index " + name)) {
+                // Update the forward indexes before we start using the new reader,
+                // so the first searches don't have to wait for that
+                Map<AnnotatedField, ForwardIndex> newForwardIndices = new HashMap<>();
+                synchronized (forwardIndices) {
+                    for (Map.Entry<AnnotatedField, ForwardIndex> e: forwardIndices.entrySet()) {
+                        newForwardIndices.put(e.getKey(), reopenForwardIndex(e.getValue(), newReader));
+                    }
+                }
+
+                // Switch to the new reader. Searches that were started on the old reader keep
+                // using it, along with its own forward indexes and content stores.
+                blackLab.registerIndex(newReader, this);
+                IndexReader oldReader = reader;
+                synchronized (forwardIndices) {
+                    PreviousReader previous = new PreviousReader(indexSearcher, forwardIndices);
+                    forwardIndices.putAll(newForwardIndices);
+                    synchronized (contentStores) {
+                        for (AnnotatedField field: indexMetadata.annotatedFields()) {
+                            if (field.hasContentStore()) {
+                                previous.contentAccessors.put(field, contentStores.contentAccessor(field));
+                                openContentStore(field, false, indexLocation, newReader);
+                            }
+                        }
+                    }
+                    previousReaders.put(oldReader, previous);
+                    reader = newReader;
+                    indexSearcher = new IndexSearcher(newReader);
+                }
+                readerReopened();
+
+                // Release our reference to the old reader. Searches that acquired it keep it open
+                // until they're done; the last one to release it closes it.
+                readerGeneration++;
+                IndexReader.CacheHelper cacheHelper = oldReader.getReaderCacheHelper();
+                if (cacheHelper != null)
+                    cacheHelper.addClosedListener(key -> previousReaderClosed(oldReader));
+                else
+                    previousReaderClosed(oldReader);
+                oldReader.decRef();
+            }
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+
+        // Results for the previous reader are no longer valid
+        cache().indexReopened(this);
+        return true;
+    }
+
+    @Override
+    public long readerGeneration() {
+        return readerGeneration;
+    }
+
+    /**
+     * Forget about a reader we've replaced by reopening, because it was closed.
+     *
+     * @param oldReader reader that was closed
+     */
+    private void previousReaderClosed(IndexReader oldReader) {
+        blackLab.unregisterReader(oldReader);
+        synchronized (forwardIndices) {
+            previousReaders.remove(oldReader);
+        }
+    }
+
+    /**
+     * Get a forward index for a reopened index reader, reusing what we can.
+     *
+     * @param previous forward index for the current reader
+     * @param newReader the reopened reader
+     * @return forward index for the new reader
+     */
+    protected abstract ForwardIndex reopenForwardIndex(ForwardIndex previous, IndexReader newReader);
+
+    /**
+     * Called after we've switched to a reopened index reader.
+     *
+     * Subclasses can override this to update information that depends on the reader.
+     */
+    protected void readerReopened() {
+        // subclasses may override
+    }
+
     @Override
     public boolean docExists(int docId) {
         if (docId < 0 || docId >= reader.maxDoc())
@@ -605,11 +761,37 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
         return reader;
     }
 
+    @Override
+    public IndexReader acquireReader() {
+        while (true) {
+            IndexReader current = reader;
+            if (current.tryIncRef())
+                return current;
+            if (current == reader)
+                throw new BlackLabRuntimeException("Index " + name + " was closed");
+            // (we were reopened in the meantime; try the new reader)
+        }
+    }
+
+    @Override
+    public void releaseReader(IndexReader reader) {
+        try {
+            reader.decRef();
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
     protected void openContentStore(Field field, boolean createNewContentStore, File indexDir) throws ErrorOpeningIndex {
+        openContentStore(field, createNewContentStore, indexDir, reader);
+    }
+
+    private void openContentStore(Field field, boolean createNewContentStore, File indexDir, IndexReader reader)
+            throws ErrorOpeningIndex {
         ContentStore cs;
         if (this instanceof BlackLabIndexIntegrated) {
             String luceneField = AnnotatedFieldNameUtil.contentStoreField(field.name());
-            cs = ContentStoreIntegrated.open(reader, luceneField);
+            cs = ContentStoreIntegrated.open(reader, luceneField, blackLab);
         } else {
             // Classic external index format. Open external content store.
             File dir = new File(indexDir, "cs_" + field.name());
@@ -769,6 +951,19 @@ public abstract class BlackLabIndexAbstract implements BlackLabIndexWriter, Blac
 
     protected abstract ForwardIndex createForwardIndex(AnnotatedField field);
 
+    /**
+     * Open the forward index for a field for a previous index reader.
+     *
+     * Only needed for index formats that support reopening (see {@link #reopenIfChanged()}).
+     *
+     * @param field annotated field
+     * @param reader previous index reader
+     * @return forward index for this reader
+     */
+    protected ForwardIndex createForwardIndex(AnnotatedField field, IndexReader reader) {
+        throw new UnsupportedOperationException("Reopening is not supported for this index format");
+    }
+
     @Override
     public ContentStore contentStore(Field field) {
         return contentAccessor(field).getContentStore();
@@ -67,6 +67,16 @@ public class BlackLabIndexExternal extends BlackLabIndexAbstract {
         return new ForwardIndexExternal(this, field);
     }
 
+    @Override
+    public boolean reopenIfChanged() {
+        throw new UnsupportedOperationException("Reopening is only supported for the integrated index format");
+    }
+
+    @Override
+    protected ForwardIndex reopenForwardIndex(ForwardIndex previous, IndexReader newReader) {
+        throw new UnsupportedOperationException("Reopening is only supported for the integrated index format");
+    }
+
     @Override
     protected void deleteFromForwardIndices(Document d) {
         // Delete this document in all forward indices
@@ -46,6 +46,9 @@ public class BlackLabIndexIntegrated extends BlackLabIndexAbstract {
     /** Lucene field attribute. Does the field have a content store */
     static final String BLFA_CONTENT_STORE = "BL_hasContentStore";
 
+    /** Lucene field attribute. How to compress content store blocks (if not set, use the default) */
+    static final String BLFA_CONTENT_STORE_CODEC = "BL_contentStoreCodec";
+
     /**
      * Does the specified Lucene field have a forward index stored with it?
      *
@@ -83,6 +86,16 @@ public class BlackLabIndexIntegrated extends BlackLabIndexAbstract {
         return v != null && v.equals("true");
     }
 
+    /**
+     * How should the blocks of this content store field be compressed?
+     *
+     * @param fieldInfo content store field
+     * @return block codec name, or null for the default
+     */
+    public static String contentStoreCodec(FieldInfo fieldInfo) {
+        return fieldInfo.getAttribute(BLFA_CONTENT_STORE_CODEC);
+    }
+
     /**
      * Get the content store for an index segment.
      *
@@ -115,24 +128,41 @@ public class BlackLabIndexIntegrated extends BlackLabIndexAbstract {
         type.putAttribute(BlackLabIndexIntegrated.BLFA_CONTENT_STORE, "true");
     }
 
+    /**
+     * Set how the blocks of this content store field should be compressed
+     * @param type field type
+     * @param codecName block codec name (see {@link nl.inl.blacklab.codec.BlackLab40StoredFieldsFormat#isValidBlockCodecName(String)})
+     */
+    public static void setContentStoreCodec(FieldType type, String codecName) {
+        type.putAttribute(BlackLabIndexIntegrated.BLFA_CONTENT_STORE_CODEC, codecName);
+    }
+
     /** A list of stored fields that doesn't include content store fields. */
-    private Set<String> allExceptContentStoreFields;
+    private volatile Set<String> allExceptContentStoreFields;
 
     BlackLabIndexIntegrated(String name, BlackLabEngine blackLab, IndexReader reader, File indexDir, boolean indexMode, boolean createNewIndex,
             ConfigInputFormat config) throws ErrorOpeningIndex {
         super(name, blackLab, reader, indexDir, indexMode, createNewIndex, config, null);
+        allExceptContentStoreFields = determineAllExceptContentStoreFields();
+    }
 
-        // Determine the list of all fields in the index, but skip fields that
-        // represent a content store as they contain very large values (i.e. the
-        // whole input document) we don't generally want returned when requesting
-        // a Document)
-        allExceptContentStoreFields = new HashSet<>();
+    /**
+     * Determine the list of all fields in the index, but skip fields that
+     * represent a content store as they contain very large values (i.e. the
+     * whole input document) we don't generally want returned when requesting
+     * a Document)
+     *
+     * @return stored fields to retrieve
+     */
+    private Set<String> determineAllExceptContentStoreFields() {
+        Set<String> fields = new HashSet<>();
         for (LeafReaderContext lrc: reader().leaves()) {
             for (FieldInfo fi: lrc.reader().getFieldInfos()) {
                 if (!isContentStoreField(fi))
-                    allExceptContentStoreFields.add(fi.name);
+                    fields.add(fi.name);
             }
         }
+        return fields;
     }
 
     protected IndexMetadataWriter getIndexMetadata(boolean createNewIndex, ConfigInputFormat config) {
@@ -151,6 +181,22 @@ public class BlackLabIndexIntegrated extends BlackLabIndexAbstract {
         return new ForwardIndexIntegrated(this, field);
     }
 
+    @Override
+    protected ForwardIndex createForwardIndex(AnnotatedField field, IndexReader reader) {
+        return new ForwardIndexIntegrated(this, field, reader);
+    }
+
+    @Override
+    protected ForwardIndex reopenForwardIndex(ForwardIndex previous, IndexReader newReader) {
+        return ((ForwardIndexIntegrated) previous).reopen(newReader);
+    }
+
+    @Override
+    protected void readerReopened() {
+        metadata().readerReopened();
+        allExceptContentStoreFields = determineAllExceptContentStoreFields();
+    }
+
     @Override
     protected void customizeIndexWriterConfig(IndexWriterConfig config) {
         config.setCodec(new BlackLab40Codec()); // our own custom codec (extended from Lucene)
@@ -205,6 +251,15 @@ public class BlackLabIndexIntegrated extends BlackLabIndexAbstract {
         }
     }
 
+    @Override
+    public Document luceneDoc(int docId, IndexReader reader) {
+        try {
+            return reader.document(docId, allExceptContentStoreFields);
+        } catch (IOException e) {
+            throw new BlackLabRuntimeException(e);
+        }
+    }
+
     @Override
     public void delete(Query q) {
         if (!indexMode())
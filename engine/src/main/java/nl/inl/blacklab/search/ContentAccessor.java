@@ -78,6 +78,25 @@ public class ContentAccessor {
         return contentStore.retrieveParts(contentId, start, end);
     }
 
+    /**
+     * Get substrings from several documents.
+     *
+     * This is more efficient than getting them one document at a time, because the
+     * content store may retrieve the documents in parallel.
+     *
+     * @param docIds the document ids
+     * @param docs the Lucene documents (contain the content ids), or null for the integrated index format
+     * @param start for each document, the start positions of the substrings
+     * @param end for each document, the end positions of the substrings
+     * @return for each document, the requested substrings
+     */
+    public String[][] getSubstringsFromDocuments(int[] docIds, Document[] docs, int[][] start, int[][] end) {
+        int[] contentIds = new int[docIds.length];
+        for (int i = 0; i < docIds.length; i++)
+            contentIds[i] = getContentId(docIds[i], docs == null ? null : docs[i]);
+        return contentStore.retrieveParts(contentIds, start, end);
+    }
+
     public void delete(Document d) {
         delete(getContentId(-1, d));
     }
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.DocIdSetIterator;
@@ -43,6 +44,24 @@ public class DocUtil {
      *                                 instead of throwing an exception?
      */
     public static void characterOffsets(BlackLabIndex index, int docId, Field field, int[] startsOfWords, int[] endsOfWords, boolean fillInDefaultsIfNotFound) {
+        characterOffsets(index.reader(), docId, field, startsOfWords, endsOfWords, fillInDefaultsIfNotFound);
+    }
+
+    /**
+     * Given token start/end positions, get the corresponding character offsets.
+     *
+     * Uses the specified index reader, e.g. the one the hits were found with (see
+     * {@link nl.inl.blacklab.search.results.QueryInfo#reader()}).
+     *
+     * @param reader index reader to use
+     * @param docId document id
+     * @param field annotated or metadata field we want offsets for
+     * @param startsOfWords token positions we want the starting character offsets for
+     * @param endsOfWords token positions we want the ending character offsets for
+     * @param fillInDefaultsIfNotFound if some positions could not be found, fill in defaults
+     *                                 instead of throwing an exception?
+     */
+    public static void characterOffsets(IndexReader reader, int docId, Field field, int[] startsOfWords, int[] endsOfWords, boolean fillInDefaultsIfNotFound) {
         if (startsOfWords.length == 0)
             return; // nothing to do
         try {
@@ -66,7 +85,7 @@ public class DocUtil {
 
             String fieldPropName = field.offsetsField();
 
-            org.apache.lucene.index.Terms terms = index.reader().getTermVector(docId, fieldPropName);
+            org.apache.lucene.index.Terms terms = reader.getTermVector(docId, fieldPropName);
             if (terms == null)
                 throw new IllegalArgumentException("Field " + fieldPropName + " in doc " + docId + " has no term vector");
             if (!terms.hasPositions())
@@ -286,25 +305,35 @@ public class DocUtil {
 
     private static String[] getSubstringsFromDocument(BlackLabIndex index,
             int docId, Document d, Field field, int[] starts, int[] ends) {
+        return getSubstringsFromDocuments(index, index.reader(), new int[] { docId }, d == null ? null : new Document[] { d },
+                field, new int[][] { starts }, new int[][] { ends })[0];
+    }
+
+    private static String[][] getSubstringsFromDocuments(BlackLabIndex index, IndexReader reader,
+            int[] docIds, Document[] docs, Field field, int[][] starts, int[][] ends) {
         try {
             if (!field.hasContentStore()) {
                 // No special content accessor set; assume a non-annotated stored field
-                String[] content;
                 String fieldName = field.contentsFieldName();
-                if (d == null)
-                    d = index.reader().document(docId, Set.of(fieldName));
-                String fieldContent = d.get(fieldName);
-                content = new String[starts.length];
-                for (int i = 0; i < starts.length; i++) {
-                    content[i] = fieldContent.substring(starts[i], ends[i]);
+                String[][] content = new String[docIds.length][];
+                for (int i = 0; i < docIds.length; i++) {
+                    Document d = docs == null ? reader.document(docIds[i], Set.of(fieldName)) : docs[i];
+                    String fieldContent = d.get(fieldName);
+                    content[i] = new String[starts[i].length];
+                    for (int j = 0; j < starts[i].length; j++) {
+                        content[i][j] = fieldContent.substring(starts[i][j], ends[i][j]);
+                    }
                 }
                 return content;
             } else {
                 // Content accessor set. Use it to retrieve the content.
-                if (d == null && index instanceof BlackLabIndexExternal) {
-                    d = index.reader().document(docId, Set.of(field.contentIdField()));
+                if (docs == null && index instanceof BlackLabIndexExternal) {
+                    // We need the documents (classic index format so we need to look op content store id)
+                    docs = new Document[docIds.length];
+                    for (int i = 0; i < docIds.length; i++)
+                        docs[i] = reader.document(docIds[i], Set.of(field.contentIdField()));
                 }
-                return index.contentAccessor(field).getSubstringsFromDocument(docId, d, starts, ends);
+                return index.contentAccessor(field, reader).getSubstringsFromDocuments(docIds, docs, starts, ends);
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -327,46 +356,94 @@ public class DocUtil {
      */
     public static List<Concordance> makeConcordancesFromContentStore(BlackLabIndex index, int docId,
             Field field, int[] startsOfWords, int[] endsOfWords, XmlHighlighter hl) {
+        return makeConcordancesFromContentStore(index, new int[] { docId }, field, new int[][] { startsOfWords },
+                new int[][] { endsOfWords }, hl).get(0);
+    }
+
+    /**
+     * Use the content store to make concordances for hits in several documents.
+     *
+     * The content for all documents is retrieved in one go, so the content store can
+     * retrieve it in parallel and only needs to decode each block once.
+     *
+     * @param index our index
+     * @param docIds document ids
+     * @param field field to make concordances for
+     * @param startsOfWords for each document, character positions for concordance and match starts
+     * @param endsOfWords for each document, character positions for match and concordance ends
+     * @param hl highlighter to use
+     * @return for each document, the concordances
+     */
+    public static List<List<Concordance>> makeConcordancesFromContentStore(BlackLabIndex index, int[] docIds,
+            Field field, int[][] startsOfWords, int[][] endsOfWords, XmlHighlighter hl) {
+        return makeConcordancesFromContentStore(index, index.reader(), docIds, field, startsOfWords, endsOfWords, hl);
+    }
+
+    /**
+     * Use the content store to make concordances for hits in several documents.
+     *
+     * Uses the specified index reader, e.g. the one the hits were found with (see
+     * {@link nl.inl.blacklab.search.results.QueryInfo#reader()}).
+     *
+     * @param index our index
+     * @param reader index reader the document ids refer to
+     * @param docIds document ids
+     * @param field field to make concordances for
+     * @param startsOfWords for each document, character positions for concordance and match starts
+     * @param endsOfWords for each document, character positions for match and concordance ends
+     * @param hl highlighter to use
+     * @return for each document, the concordances
+     */
+    public static List<List<Concordance>> makeConcordancesFromContentStore(BlackLabIndex index, IndexReader reader,
+            int[] docIds, Field field, int[][] startsOfWords, int[][] endsOfWords, XmlHighlighter hl) {
         // Determine starts and ends
-        int n = startsOfWords.length / 2;
-        int[] starts = new int[n];
-        int[] ends = new int[n];
-        for (int i = 0, j = 0; i < startsOfWords.length; i += 2, j++) {
-            starts[j] = startsOfWords[i];
-            ends[j] = endsOfWords[i + 1];
+        int[][] starts = new int[docIds.length][];
+        int[][] ends = new int[docIds.length][];
+        for (int d = 0; d < docIds.length; d++) {
+            int n = startsOfWords[d].length / 2;
+            starts[d] = new int[n];
+            ends[d] = new int[n];
+            for (int i = 0, j = 0; i < startsOfWords[d].length; i += 2, j++) {
+                starts[d][j] = startsOfWords[d][i];
+                ends[d][j] = endsOfWords[d][i + 1];
+            }
         }
 
         // Retrieve 'em all
-        String[] content = getSubstringsFromDocument(index, docId, null, field, starts, ends);
+        String[][] content = getSubstringsFromDocuments(index, reader, docIds, null, field, starts, ends);
 
         // Cut 'em up
-        List<Concordance> rv = new ArrayList<>();
-        for (int i = 0, j = 0; i < startsOfWords.length; i += 2, j++) {
-            // Put the concordance in the Hit object
-            int absLeft = startsOfWords[i];
-            int absRight = endsOfWords[i + 1];
-            int relHitLeft = startsOfWords[i + 1] - absLeft;
-            int relHitRight = endsOfWords[i] - absLeft;
-            String currentContent = content[j];
-
-            // Determine context and build concordance.
-            // Note that hit text may be empty for hits of length zero,
-            // such as a search for open tags (which have a location but zero length,
-            // like a search for a word has a length 1)
-            String hitText = relHitRight < relHitLeft ? ""
-                    : currentContent.substring(relHitLeft,
-                            relHitRight);
-            String leftContext = currentContent.substring(0, relHitLeft);
-            String rightContext = currentContent.substring(relHitRight, absRight - absLeft);
-
-            // Make each fragment well-formed
-            hitText = hl.makeWellFormed(hitText);
-            leftContext = hl.makeWellFormed(leftContext);
-            rightContext = hl.makeWellFormed(rightContext);
-
-            rv.add(new Concordance(new String[] { leftContext, hitText, rightContext }));
+        List<List<Concordance>> result = new ArrayList<>(docIds.length);
+        for (int d = 0; d < docIds.length; d++) {
+            List<Concordance> rv = new ArrayList<>();
+            for (int i = 0, j = 0; i < startsOfWords[d].length; i += 2, j++) {
+                // Put the concordance in the Hit object
+                int absLeft = startsOfWords[d][i];
+                int absRight = endsOfWords[d][i + 1];
+                int relHitLeft = startsOfWords[d][i + 1] - absLeft;
+                int relHitRight = endsOfWords[d][i] - absLeft;
+                String currentContent = content[d][j];
+
+                // Determine context and build concordance.
+                // Note that hit text may be empty for hits of length zero,
+                // such as a search for open tags (which have a location but zero length,
+                // like a search for a word has a length 1)
+                String hitText = relHitRight < relHitLeft ? ""
+                        : currentContent.substring(relHitLeft,
+                                relHitRight);
+                String leftContext = currentContent.substring(0, relHitLeft);
+                String rightContext = currentContent.substring(relHitRight, absRight - absLeft);
+
+                // Make each fragment well-formed
+                hitText = hl.makeWellFormed(hitText);
+                leftContext = hl.makeWellFormed(leftContext);
+                rightContext = hl.makeWellFormed(rightContext);
+
+                rv.add(new Concordance(new String[] { leftContext, hitText, rightContext }));
+            }
+            result.add(rv);
         }
-        return rv;
+        return result;
     }
 
     /**
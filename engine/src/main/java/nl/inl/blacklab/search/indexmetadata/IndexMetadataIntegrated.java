@@ -787,6 +787,23 @@ public class IndexMetadataIntegrated implements IndexMetadataWriter {
         return index.reader().numDocs() <= 1;
     }
 
+    /**
+     * Update information that depends on the index reader, after the index was reopened.
+     *
+     * The index structure is assumed not to have changed (i.e. no new fields
+     * or annotations were added).
+     */
+    public synchronized void readerReopened() {
+        try {
+            Integer docId = MetadataDocument.getMetadataDocId(index.reader());
+            metadataDocument.metadataDocId = docId == null ? -1 : docId;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        tokenCountCalculated = false; // recount lazily
+        metadataFields.refreshValues(createMetadataFieldValuesFactory());
+    }
+
     protected MetadataFieldValues.Factory createMetadataFieldValuesFactory() {
         return new MetadataFieldValuesFromIndex.Factory(index);
     }
@@ -77,7 +77,7 @@ public class MetadataFieldImpl extends FieldImpl implements MetadataField {
      * Values for this field and their frequencies.
      */
     @XmlTransient
-    private MetadataFieldValues values;
+    private volatile MetadataFieldValues values;
 
     // For JAXB deserialization
     @SuppressWarnings("unused")
@@ -282,4 +282,13 @@ public class MetadataFieldImpl extends FieldImpl implements MetadataField {
         values = factory.create(fieldName, type);
         setKeepTrackOfValues(false); // integrated uses DocValues for this
     }
+
+    /**
+     * Determine our values again, e.g. because the index was reopened.
+     *
+     * @param factory how to determine our values
+     */
+    void refreshValues(MetadataFieldValues.Factory factory) {
+        values = factory.create(fieldName, type);
+    }
 }
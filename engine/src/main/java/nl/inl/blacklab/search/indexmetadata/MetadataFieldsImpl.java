@@ -346,6 +346,16 @@ class MetadataFieldsImpl implements MetadataFieldsWriter, Freezable {
                 forEach(e -> e.getValue().fixAfterDeserialization(metadata.index, e.getKey(), factory));
     }
 
+    /**
+     * Determine the values for all metadata fields again, e.g. because the index was reopened.
+     *
+     * @param factory how to determine the values
+     */
+    public void refreshValues(MetadataFieldValues.Factory factory) {
+        metadataFieldValuesFactory = factory;
+        metadataFieldInfos.values().parallelStream().forEach(f -> f.refreshValues(factory));
+    }
+
     public void setTopLevelCustom(CustomPropsMap topLevelCustom) {
         this.topLevelCustom = topLevelCustom;
     }
@@ -0,0 +1,254 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.RoaringDocIdSet;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Caches which documents match a filter query, per index segment.
+ *
+ * Users often search the same subcorpus (e.g. a metadata filter like year:[1800 TO 1850])
+ * with many different queries. Instead of evaluating the filter query every time, we keep
+ * the matching document ids for each segment as a compressed bitset (RoaringDocIdSet).
+ *
+ * Entries are keyed by segment core and the rewritten filter query (Lucene queries
+ * implement equals() in a way that e.g. ignores the order of boolean clauses).
+ * Deleted documents are not taken into account, so entries stay valid when the index
+ * is reopened; we remove them when the segment is closed. The cache is bounded by the
+ * memory used by its entries, evicting the least recently used ones.
+ *
+ * Each index has its own filter cache (see {@link nl.inl.blacklab.search.BlackLabIndex#filterCache()}),
+ * so searches on one index can't evict the entries of another.
+ */
+@ThreadSafe
+public class FilterCache {
+
+    /** Default maximum cache size */
+    public static final long DEFAULT_MAX_SIZE_BYTES = 64_000_000L;
+
+    /** Approximate overhead per entry (key, map entry, etc.) */
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    /** Cache key: segment and filter query */
+    private static final class Key {
+        final IndexReader.CacheKey segment;
+
+        final Query query;
+
+        Key(IndexReader.CacheKey segment, Query query) {
+            this.segment = segment;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return segment == key.segment && query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(segment), query);
+        }
+    }
+
+    /** Cached document sets, in access order (least recently used first) */
+    private final LinkedHashMap<Key, DocIdSet> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Segments we've registered a closed listener for */
+    private final Set<IndexReader.CacheKey> segments = new HashSet<>();
+
+    /** Memory used by our entries */
+    private long sizeBytes = 0;
+
+    /** Maximum memory to use; if 0, we don't cache anything */
+    private volatile long maxSizeBytes;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public FilterCache(long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Set the maximum memory the cache may use.
+     *
+     * @param maxSizeBytes maximum size in bytes; 0 disables the cache
+     */
+    public synchronized void setMaxSizeBytes(long maxSizeBytes) {
+        this.maxSizeBytes = Math.max(0, maxSizeBytes);
+        evictIfNecessary();
+    }
+
+    /**
+     * Get the documents in a segment matching a filter query.
+     *
+     * @param query the (rewritten) filter query
+     * @param weight weight for the filter query
+     * @param context segment
+     * @return iterator over the matching documents, or null if there are none
+     */
+    public DocIdSetIterator iterator(Query query, Weight weight, LeafReaderContext context) throws IOException {
+        IndexReader.CacheHelper cacheHelper = context.reader().getCoreCacheHelper();
+        if (cacheHelper == null || maxSizeBytes == 0 || !weight.isCacheable(context)) {
+            // Can't or shouldn't cache this
+            return uncachedIterator(weight, context);
+        }
+
+        Key key = new Key(cacheHelper.getKey(), query);
+        DocIdSet docIdSet;
+        synchronized (this) {
+            docIdSet = entries.get(key);
+        }
+        if (docIdSet != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            // (not synchronized; if several threads need the same set at the same time,
+            //  they may determine it concurrently, which is okay)
+            docIdSet = determineDocIdSet(weight, context);
+            put(cacheHelper, key, docIdSet);
+        }
+        return docIdSet.iterator();
+    }
+
+    /**
+     * Get the documents in a segment matching a filter query, without using a cache.
+     *
+     * @param weight weight for the filter query
+     * @param context segment
+     * @return iterator over the matching documents, or null if there are none
+     */
+    static DocIdSetIterator uncachedIterator(Weight weight, LeafReaderContext context) throws IOException {
+        Scorer scorer = weight.scorer(context);
+        return scorer == null ? null : scorer.iterator();
+    }
+
+    private static DocIdSet determineDocIdSet(Weight weight, LeafReaderContext context) throws IOException {
+        Scorer scorer = weight.scorer(context);
+        if (scorer == null)
+            return DocIdSet.EMPTY;
+        RoaringDocIdSet.Builder builder = new RoaringDocIdSet.Builder(context.reader().maxDoc());
+        DocIdSetIterator it = scorer.iterator();
+        for (int docId = it.nextDoc(); docId != DocIdSetIterator.NO_MORE_DOCS; docId = it.nextDoc()) {
+            builder.add(docId);
+        }
+        return builder.build();
+    }
+
+    private synchronized void put(IndexReader.CacheHelper cacheHelper, Key key, DocIdSet docIdSet) {
+        if (ramBytesUsed(docIdSet) > maxSizeBytes) {
+            // Too large to cache; don't evict everything else for it
+            return;
+        }
+        DocIdSet previous = entries.put(key, docIdSet);
+        if (previous != null)
+            sizeBytes -= ramBytesUsed(previous);
+        sizeBytes += ramBytesUsed(docIdSet);
+        if (segments.add(key.segment)) {
+            // Remove this segment's entries when it is closed
+            cacheHelper.addClosedListener(this::removeSegment);
+        }
+        evictIfNecessary();
+    }
+
+    private static long ramBytesUsed(DocIdSet docIdSet) {
+        return docIdSet.ramBytesUsed() + ENTRY_OVERHEAD_BYTES;
+    }
+
+    /**
+     * Evict least recently used entries until we're within our maximum size.
+     *
+     * Because put() doesn't add entries larger than the maximum size, this never evicts
+     * the entry that was just added (it is the most recently used one).
+     */
+    private void evictIfNecessary() {
+        Iterator<DocIdSet> it = entries.values().iterator();
+        while (sizeBytes > maxSizeBytes && it.hasNext()) {
+            sizeBytes -= ramBytesUsed(it.next());
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private synchronized void removeSegment(IndexReader.CacheKey segment) {
+        Iterator<Map.Entry<Key, DocIdSet>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, DocIdSet> e = it.next();
+            if (e.getKey().segment == segment) {
+                sizeBytes -= ramBytesUsed(e.getValue());
+                it.remove();
+            }
+        }
+        segments.remove(segment);
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        segments.clear();
+        sizeBytes = 0;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized int numberOfEntries() {
+        return entries.size();
+    }
+
+    /**
+     * Get the cache status.
+     *
+     * @return a map containing the cache metrics
+     */
+    public synchronized Map<String, Object> getStatus() {
+        return Map.of(
+                "maxSizeBytes", maxSizeBytes,
+                "sizeBytes", sizeBytes,
+                "numberOfEntries", entries.size(),
+                "hits", hits(),
+                "misses", misses(),
+                "evictions", evictions()
+        );
+    }
+}
@@ -0,0 +1,84 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+
+/**
+ * Wraps a filter query so the matching documents are taken from the {@link FilterCache}.
+ *
+ * Only used when no scores are needed; otherwise the wrapped query is used as-is.
+ */
+public class FilterCacheQuery extends Query {
+
+    /** The filter query */
+    private final Query query;
+
+    /** Cache to get the matching documents from (the index's filter cache) */
+    private final FilterCache cache;
+
+    public FilterCacheQuery(Query query, FilterCache cache) {
+        this.query = query;
+        this.cache = cache;
+    }
+
+    @Override
+    public Query rewrite(IndexReader reader) throws IOException {
+        Query rewritten = query.rewrite(reader);
+        return rewritten == query ? this : new FilterCacheQuery(rewritten, cache);
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+        if (scoreMode.needsScores())
+            return query.createWeight(searcher, scoreMode, boost);
+        Weight weight = query.createWeight(searcher, ScoreMode.COMPLETE_NO_SCORES, 1.0f);
+        return new ConstantScoreWeight(this, boost) {
+            @Override
+            public Scorer scorer(LeafReaderContext context) throws IOException {
+                DocIdSetIterator it = cache.iterator(query, weight, context);
+                return it == null ? null : new ConstantScoreScorer(this, score(), scoreMode, it);
+            }
+
+            @Override
+            public boolean isCacheable(LeafReaderContext ctx) {
+                return false; // we do our own caching
+            }
+        };
+    }
+
+    @Override
+    public void visit(QueryVisitor visitor) {
+        query.visit(visitor.getSubVisitor(BooleanClause.Occur.FILTER, this));
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    @Override
+    public String toString(String field) {
+        return "CACHED(" + query.toString(field) + ")";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return sameClassAs(obj) && query.equals(((FilterCacheQuery) obj).query);
+    }
+
+    @Override
+    public int hashCode() {
+        return classHash() ^ query.hashCode();
+    }
+}
@@ -0,0 +1,191 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.IndexReader;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Caches the optimized and rewritten form of queries, and their weights.
+ *
+ * Optimizing and rewriting a query (e.g. expanding wildcard and regex terms to all
+ * matching terms in the index) and creating its weight can take longer than actually
+ * finding the hits, especially for small result sets. Users often run the same query
+ * several times, e.g. with different sorting, grouping or result window, so we keep
+ * the result around.
+ *
+ * Entries are keyed by index reader, the source query (which includes the filter and
+ * the sensitivity settings; parsing CQL normalizes away any differences in formatting)
+ * and the forward index matching threshold used while optimizing. We remove a reader's
+ * entries when it is closed. The cache is bounded by number of entries, evicting the
+ * least useful ones. Setting the maximum size to 0 disables it.
+ */
+@ThreadSafe
+public final class QueryRewriteCache {
+
+    /** Default maximum number of cached queries */
+    public static final long DEFAULT_MAX_SIZE = 500;
+
+    private static final QueryRewriteCache instance = new QueryRewriteCache(DEFAULT_MAX_SIZE);
+
+    /**
+     * Get the query rewrite cache.
+     *
+     * @return the query rewrite cache
+     */
+    public static QueryRewriteCache get() {
+        return instance;
+    }
+
+    /** Cache key: index reader, source query and forward index matching threshold */
+    private static final class Key {
+        final IndexReader.CacheKey reader;
+
+        final BLSpanQuery query;
+
+        final long nfaThreshold;
+
+        Key(IndexReader.CacheKey reader, BLSpanQuery query, long nfaThreshold) {
+            this.reader = reader;
+            this.query = query;
+            this.nfaThreshold = nfaThreshold;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return reader == key.reader && nfaThreshold == key.nfaThreshold && query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(reader), query, nfaThreshold);
+        }
+    }
+
+    /** Optimizes and rewrites a query that's not in the cache, and creates its weight. */
+    @FunctionalInterface
+    public interface WeightFactory {
+        BLSpanWeight create() throws IOException;
+    }
+
+    /** Weights for the rewritten queries */
+    private final Cache<Key, BLSpanWeight> cache;
+
+    /** Readers we've registered a closed listener for */
+    private final Set<IndexReader.CacheKey> readers = ConcurrentHashMap.newKeySet();
+
+    /** Are we caching at all? (false if max. size is 0) */
+    private volatile boolean enabled;
+
+    QueryRewriteCache(long maxSize) {
+        cache = Caffeine.newBuilder()
+                .recordStats()
+                .maximumSize(Math.max(0, maxSize))
+                .build();
+        enabled = maxSize > 0;
+    }
+
+    /**
+     * Set the maximum number of cached queries.
+     *
+     * @param maxSize maximum number of queries, or 0 to disable the cache
+     */
+    public void setMaxSize(long maxSize) {
+        enabled = maxSize > 0;
+        cache.policy().eviction().ifPresent(eviction -> eviction.setMaximum(Math.max(0, maxSize)));
+        if (!enabled)
+            cache.invalidateAll();
+    }
+
+    /**
+     * Get the weight for the optimized and rewritten query, creating it if it's not in the cache.
+     *
+     * The optimized query itself can be found using {@link BLSpanWeight#getQuery()}.
+     *
+     * Two threads that need the same uncached query at the same time may both create it.
+     * That's fine, and better than making one of them wait while holding a lock.
+     *
+     * @param reader index reader the query will be executed on
+     * @param sourceQuery the query before optimizing and rewriting
+     * @param nfaThreshold forward index matching threshold used while optimizing
+     * @param factory optimizes and rewrites the query and creates the weight if needed
+     * @return the weight
+     */
+    public BLSpanWeight weight(IndexReader reader, BLSpanQuery sourceQuery, long nfaThreshold, WeightFactory factory)
+            throws IOException {
+        IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+        if (!enabled || cacheHelper == null)
+            return factory.create();
+        Key key = new Key(cacheHelper.getKey(), sourceQuery, nfaThreshold);
+        BLSpanWeight weight = cache.getIfPresent(key);
+        if (weight == null) {
+            weight = factory.create();
+            if (readers.add(key.reader)) {
+                // Remove this reader's entries when it is closed
+                cacheHelper.addClosedListener(this::removeReader);
+            }
+            cache.put(key, weight);
+        }
+        return weight;
+    }
+
+    private void removeReader(IndexReader.CacheKey reader) {
+        cache.asMap().keySet().removeIf(key -> key.reader == reader);
+        readers.remove(reader);
+    }
+
+    /**
+     * Get statistics about cache use, such as the hit ratio.
+     *
+     * @return cache statistics
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Get the underlying cache, e.g. to register it with a metrics registry.
+     *
+     * @return the underlying cache
+     */
+    public Cache<?, ?> cache() {
+        return cache;
+    }
+
+    /**
+     * Get the cache status.
+     *
+     * @return a map containing the cache metrics
+     */
+    public Map<String, Object> getStatus() {
+        CacheStats stats = cache.stats();
+        return Map.of(
+                "maxSize", cache.policy().eviction().map(Policy.Eviction::getMaximum).orElse(0L),
+                "numberOfEntries", cache.estimatedSize(),
+                "hits", stats.hitCount(),
+                "misses", stats.missCount(),
+                "hitRatio", stats.hitRate(),
+                "evictions", stats.evictionCount()
+        );
+    }
+
+    /** Remove all queries from the cache. */
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
@@ -9,6 +9,7 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermStates;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchNoDocsQuery;
 import org.apache.lucene.search.MultiTermQuery;
@@ -110,19 +111,23 @@ public class SpanQueryFiltered extends BLSpanQueryAbstract {
         if (rewrite instanceof MatchNoDocsQuery)
             rewrite = new TermQuery(new Term("_nonexistentfield_", "_nonexistentvalue_")); // HACK. This "fixes" the 'Query does not implement createWeight issue'
         Weight filterWeight = rewrite.createWeight(searcher, ScoreMode.COMPLETE_NO_SCORES, boost);
-        return new SpanWeightFiltered(weight, filterWeight, searcher, scoreMode.needsScores() ? getTermStates(weight) : null, boost);
+        return new SpanWeightFiltered(weight, rewrite, filterWeight, searcher, scoreMode.needsScores() ? getTermStates(weight) : null, boost);
     }
 
     class SpanWeightFiltered extends BLSpanWeight {
 
         final BLSpanWeight weight;
 
+        /** Rewritten filter query (key for the filter cache) */
+        final Query filterQuery;
+
         final Weight filterWeight;
 
-        public SpanWeightFiltered(BLSpanWeight weight, Weight filterWeight, IndexSearcher searcher,
+        public SpanWeightFiltered(BLSpanWeight weight, Query filterQuery, Weight filterWeight, IndexSearcher searcher,
                 Map<Term, TermStates> terms, float boost) throws IOException {
             super(SpanQueryFiltered.this, searcher, terms, boost);
             this.weight = weight;
+            this.filterQuery = filterQuery;
             this.filterWeight = filterWeight;
         }
 
@@ -141,11 +146,22 @@ public class SpanQueryFiltered extends BLSpanQueryAbstract {
             BLSpans result = weight.getSpans(context, requiredPostings);
             if (result == null)
                 return null;
-            return new SpansFiltered(result, filterWeight.scorer(context));
+            // Matching documents for the filter are cached, as many searches use the same filter
+            DocIdSetIterator filterDocs = queryInfo == null ? FilterCache.uncachedIterator(filterWeight, context) :
+                    queryInfo.index().filterCache().iterator(filterQuery, filterWeight, context);
+            return new SpansFiltered(result, filterDocs);
         }
 
     }
 
+    public BLSpanQuery getClause() {
+        return clauses.get(0);
+    }
+
+    public Query getFilter() {
+        return filter;
+    }
+
     @Override
     public String toString(String field) {
         return "FILTER(" + clausesToString(field) + ", " + filter + ")";
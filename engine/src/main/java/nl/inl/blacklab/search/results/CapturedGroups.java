@@ -3,13 +3,15 @@ package nl.inl.blacklab.search.results;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.lucene.util.Accountable;
+
 import nl.inl.blacklab.search.Span;
 
 /** Captured group information for a list of hits.
  *
  * This interface is read-only.
  */
-public interface CapturedGroups {
+public interface CapturedGroups extends Accountable {
 
     /**
      * Get the group names
@@ -7,12 +7,23 @@ import java.util.Map;
 import java.util.TreeMap;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.util.RamUsageEstimator;
 
 import nl.inl.blacklab.search.Span;
 
 /** Captured group information for a list of hits. */
 public class CapturedGroupsImpl implements CapturedGroups {
 
+    /** Size of this object, excluding the map contents */
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(CapturedGroupsImpl.class) +
+            RamUsageEstimator.shallowSizeOfInstance(HashMap.class);
+
+    /** Estimated size of a Hit key in our map */
+    private static final long HIT_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(HitImpl.class);
+
+    /** Estimated size of a captured group Span */
+    private static final long SPAN_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Span.class);
+
     /** The captured groups per hit. */
     private final Map<Hit, Span[]> capturedGroups;
 
@@ -102,6 +113,17 @@ public class CapturedGroupsImpl implements CapturedGroups {
         return Collections.unmodifiableMap(result);
     }
 
+    @Override
+    public long ramBytesUsed() {
+        // Per hit: a map entry, the Hit key, the Span array and the Spans themselves.
+        // (all hits have the same number of groups, so we don't have to look at every entry)
+        long bytesPerHit = RamUsageEstimator.HASHTABLE_RAM_BYTES_PER_ENTRY + HIT_RAM_BYTES_USED +
+                RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER +
+                        (long) capturedGroupNames.size() * RamUsageEstimator.NUM_BYTES_OBJECT_REF) +
+                capturedGroupNames.size() * SPAN_RAM_BYTES_USED;
+        return BASE_RAM_BYTES_USED + capturedGroups.size() * bytesPerHit;
+    }
+
     @Override
     public String toString() {
         String grp = StringUtils.abbreviate(capturedGroups.toString(), 80);
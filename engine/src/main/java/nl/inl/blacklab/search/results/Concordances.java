@@ -62,22 +62,20 @@ public class Concordances {
     }
 
     /**
-     * Retrieves the concordance information (left, hit and right context) for a
-     * number of hits in the same document from the ContentStore.
+     * Determine the character positions of the concordances for a number of hits
+     * in the same document.
      *
-     * NOTE1: it is assumed that all hits in this Hits object are in the same
+     * For each hit, we determine the start of the concordance, the start of the hit,
+     * the end of the hit and the end of the concordance.
+     *
+     * NOTE: it is assumed that all hits in this Hits object are in the same
      * document!
-     * 
-     * @param hits hits to make concordance for
+     *
+     * @param hits hits to determine positions for
      * @param wordsAroundHit number of words left and right of hit to fetch
-     * @param conc where to add the concordances
-     * @param hl highlighter
+     * @return starts and ends (character positions)
      */
-    private synchronized static void makeConcordancesSingleDocContentStore(Hits hits, ContextSize wordsAroundHit,
-            Map<Hit, Concordance> conc,
-            XmlHighlighter hl) {
-        if (hits.size() == 0)
-            return;
+    private static int[][] concordanceCharPositionsSingleDoc(Hits hits, ContextSize wordsAroundHit) {
         QueryInfo queryInfo = hits.queryInfo();
         int docId = hits.get(0).doc();
         long arrayLength = hits.size() * 2;
@@ -110,20 +108,16 @@ public class Concordances {
         // Get the relevant character offsets (overwrites the startsOfWords and endsOfWords
         // arrays)
         AnnotatedField field = queryInfo.field();
-        DocUtil.characterOffsets(hits.index(), docId, field, startsOfWords, endsOfWords, true);
-
-        // Make all the concordances
-        List<Concordance> newConcs = DocUtil.makeConcordancesFromContentStore(hits.index(), docId, field, startsOfWords, endsOfWords, hl);
-        int i = 0;
-        for (Iterator<Hit> it = hits.iterator(); it.hasNext(); ) {
-            conc.put(it.next(), newConcs.get(i));
-            ++i;
-        }
+        DocUtil.characterOffsets(hits.queryInfo().reader(), docId, field, startsOfWords, endsOfWords, true);
+        return new int[][] { startsOfWords, endsOfWords };
     }
 
     /**
      * Generate concordances from content store (slower).
      *
+     * The content for all documents is retrieved in one go, so the content store
+     * can do this in parallel and decode each block only once.
+     *
      * @param hits hits for which to generate concordances
      * @param contextSize how many words around the hit to retrieve
      * @return the concordances
@@ -144,10 +138,34 @@ public class Concordances {
             }
             hitsInDoc.add(key);
         }
-        Map<Hit, Concordance> conc = new HashMap<>();
+
+        // Determine the character positions of the concordances in each document
+        int numberOfDocs = hitsPerDocument.size();
+        int[] docIds = new int[numberOfDocs];
+        Hits[] hitsInDocs = new Hits[numberOfDocs];
+        int[][] startsOfWords = new int[numberOfDocs][];
+        int[][] endsOfWords = new int[numberOfDocs][];
+        int d = 0;
         for (HitsInternal l : hitsPerDocument.values()) {
             Hits hitsInThisDoc = Hits.list(queryInfo, l, null);
-            Concordances.makeConcordancesSingleDocContentStore(hitsInThisDoc, contextSize, conc, hl);
+            int[][] startsEnds = concordanceCharPositionsSingleDoc(hitsInThisDoc, contextSize);
+            docIds[d] = hitsInThisDoc.get(0).doc();
+            hitsInDocs[d] = hitsInThisDoc;
+            startsOfWords[d] = startsEnds[0];
+            endsOfWords[d] = startsEnds[1];
+            d++;
+        }
+
+        // Make all the concordances
+        List<List<Concordance>> newConcs = DocUtil.makeConcordancesFromContentStore(queryInfo.index(), queryInfo.reader(), docIds,
+                queryInfo.field(), startsOfWords, endsOfWords, hl);
+        Map<Hit, Concordance> conc = new HashMap<>();
+        for (d = 0; d < numberOfDocs; d++) {
+            int i = 0;
+            for (Iterator<Hit> it = hitsInDocs[d].iterator(); it.hasNext(); ) {
+                conc.put(it.next(), newConcs.get(d).get(i));
+                ++i;
+            }
         }
         return conc;
     }
@@ -8,6 +8,8 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
 
 import it.unimi.dsi.fastutil.BigList;
 import it.unimi.dsi.fastutil.objects.ObjectBigArrayBigList;
@@ -26,7 +28,11 @@ import nl.inl.blacklab.search.indexmetadata.Annotation;
  *
  * This interface is read-only.
  */
-public class Contexts implements Iterable<int[]> {
+public class Contexts implements Iterable<int[]>, Accountable {
+
+    /** Estimated size of this object and its list, excluding the context arrays */
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Contexts.class) +
+            RamUsageEstimator.shallowSizeOfInstance(ObjectBigArrayBigList.class);
 
     /** In context arrays, how many bookkeeping ints are stored at the start? */
     public final static int NUMBER_OF_BOOKKEEPING_INTS = 3;
@@ -256,7 +262,7 @@ public class Contexts implements Iterable<int[]> {
 
         List<AnnotationForwardIndex> fis = new ArrayList<>();
         for (Annotation annotation: annotations) {
-            fis.add(hits.index().annotationForwardIndex(annotation));
+            fis.add(hits.queryInfo().annotationForwardIndex(annotation));
         }
 
         // Get the context
@@ -324,6 +330,14 @@ public class Contexts implements Iterable<int[]> {
         return contexts.iterator();
     }
 
+    @Override
+    public long ramBytesUsed() {
+        long bytes = BASE_RAM_BYTES_USED + contexts.size64() * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+        for (int[] context: contexts)
+            bytes += RamUsageEstimator.sizeOf(context);
+        return bytes;
+    }
+
     @Override
     public String toString() {
         return "Contexts(" + StringUtils.join(annotations, ", ") + ")";
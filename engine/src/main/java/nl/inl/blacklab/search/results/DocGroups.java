@@ -6,6 +6,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.apache.lucene.util.RamUsageEstimator;
+
 import nl.inl.blacklab.Constants;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.resultproperty.DocProperty;
@@ -43,12 +45,18 @@ public class DocGroups extends ResultsList<DocGroup, GroupProperty<DocResult, Do
     /** Maximum number of groups (limited by number of entries allowed in a HashMap) */
     public final static int MAX_NUMBER_OF_GROUPS = Constants.JAVA_MAX_HASHMAP_SIZE;
 
+    /** Estimated size of this object, excluding the groups */
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(DocGroups.class);
+
     private long largestGroupSize = 0;
 
     private int totalResults = 0;
     
     private long resultObjects = 0;
 
+    /** Estimated heap size, or -1 if not calculated yet (we're immutable, so we only calculate it once) */
+    private volatile long ramBytesUsed = -1;
+
     private final DocProperty groupBy;
     
     private final WindowStats windowStats;
@@ -103,6 +111,22 @@ public class DocGroups extends ResultsList<DocGroup, GroupProperty<DocResult, Do
        );
     }
 
+    /**
+     * Return the first groups according to the given property.
+     *
+     * Gives the same groups as sorting and taking the first ones, but is much cheaper
+     * if there are many groups and we only need a few of them.
+     *
+     * @param sortProp the property to sort on
+     * @param number the number of groups to return
+     * @return the first groups, sorted in the specified way
+     */
+    public DocGroups sortTop(GroupProperty<DocResult, DocGroup> sortProp, long number) {
+        ensureAllResultsRead();
+        List<DocGroup> top = TopResults.select(this.results, sortProp, number);
+        return new DocGroups(this.queryInfo(), top, this.groupBy, null, null);
+    }
+
     @Override
     public ResultGroups<DocGroup> group(GroupProperty<DocResult, DocGroup> criteria, long maxResultsToStorePerGroup) {
         throw new UnsupportedOperationException("Cannot group DocGroups");
@@ -186,4 +210,17 @@ public class DocGroups extends ResultsList<DocGroup, GroupProperty<DocResult, Do
         return resultObjects;
     }
 
+    @Override
+    public long ramBytesUsed() {
+        if (ramBytesUsed < 0) {
+            // Each group is stored both in the results list and in the groups map
+            long bytes = BASE_RAM_BYTES_USED + groups.size() *
+                    (RamUsageEstimator.HASHTABLE_RAM_BYTES_PER_ENTRY + RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+            for (DocGroup group: results)
+                bytes += group.ramBytesUsed();
+            ramBytesUsed = bytes;
+        }
+        return ramBytesUsed;
+    }
+
 }
@@ -6,8 +6,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.apache.lucene.index.DocValues;
@@ -19,6 +18,7 @@ import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.RamUsageEstimator;
 
 import nl.inl.blacklab.Constants;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
@@ -31,6 +31,8 @@ import nl.inl.blacklab.resultproperty.PropertyValue;
 import nl.inl.blacklab.resultproperty.PropertyValueDoc;
 import nl.inl.blacklab.resultproperty.PropertyValueInt;
 import nl.inl.blacklab.search.BlackLabIndexAbstract;
+import nl.inl.blacklab.search.lucene.FilterCacheQuery;
+import nl.inl.util.ProgressLock;
 
 /**
  * A list of DocResult objects (document-level query results).
@@ -39,6 +41,9 @@ import nl.inl.blacklab.search.BlackLabIndexAbstract;
  */
 public class DocResults extends ResultsList<DocResult, DocProperty> implements ResultGroups<Hit> {
 
+    /** Estimated size of this object, excluding the results */
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(DocResults.class);
+
     private static final class SimpleDocCollector extends SimpleCollector {
 
         /** Info about our query (needed to instantiate DocResult) */
@@ -153,7 +158,7 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
 
     private HitPropertyDoc groupByDoc;
 
-    Lock ensureResultsReadLock;
+    ProgressLock ensureResultsReadLock;
 
     /** Largest number of hits in a single document */
     private long mostHitsInDocument = 0;
@@ -162,6 +167,14 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
 
     private long resultObjects = 0;
 
+    /**
+     * Estimated heap size of our DocResult objects, or -1 if not calculated yet.
+     *
+     * If we're reading from a Hits object, this is updated as results are added.
+     * Otherwise our list is complete from the start, and we calculate it on first request.
+     */
+    private final AtomicLong docResultsRamBytesUsed = new AtomicLong(-1);
+
     private WindowStats windowStats;
 
     private SampleParameters sampleParameters;
@@ -199,8 +212,9 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
         this.groupByDoc = (HitPropertyDoc) new HitPropertyDoc(queryInfo.index()).copyWith(hits, null, false);
         this.sourceHitsIterator = hits.iterator();
         this.maxHitsToStorePerDoc = maxHitsToStorePerDoc;
+        this.docResultsRamBytesUsed.set(0);
         partialDocHits = null;
-        ensureResultsReadLock = new ReentrantLock();
+        ensureResultsReadLock = new ProgressLock();
     }
 
     /**
@@ -227,13 +241,14 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
     }
 
     private DocResults(QueryInfo queryInfo, Query query) {
-        this(queryInfo);
+        this(queryInfo.withPinnedReader());
         this.query = query;
         // TODO: a better approach is to only read documents we're actually interested in instead of all of them; compare with Hits.
         //    even better: make DocResults abstract and provide two implementations, DocResultsFromHits and DocResultsFromQuery.
         results = new ArrayList<>();
         try {
-            queryInfo.index().searcher().search(query, new SimpleDocCollector(results, queryInfo));
+            // (use the filter cache; the same subcorpus is often requested many times)
+            queryInfo().searcher().search(new FilterCacheQuery(query, queryInfo().index().filterCache()), new SimpleDocCollector(results, queryInfo()));
         } catch (IOException e) {
             throw BlackLabRuntimeException.wrap(e);
         }
@@ -270,16 +285,13 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
             if (doneProcessingAndCounting() || (number >= 0 && results.size() > number))
                 return;
 
-            while (!ensureResultsReadLock.tryLock()) {
-                /*
-                * Another thread is already counting, we don't want to straight up block until it's done
-                * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction
-                * So instead poll our own state, then if we're still missing results after that just count them ourselves
-                */
-                Thread.sleep(50);
-                if (doneProcessingAndCounting() || (number >= 0 && results.size() >= number))
-                    return;
-            }
+            /*
+             * If another thread is already counting, we don't want to straight up block until it's done
+             * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction
+             * So instead wait for progress and check our own state, then if we're still missing results after that just count them ourselves
+             */
+            if (!ensureResultsReadLock.lockUnless(() -> doneProcessingAndCounting() || (number >= 0 && results.size() >= number)))
+                return;
 
             try {
                 // Fill list of document results
@@ -343,6 +355,9 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
         else
             docResult = DocResult.fromHits(doc, docHits, totalNumberOfHits);
         results.add(docResult);
+        if (ensureResultsReadLock != null)
+            ensureResultsReadLock.signalProgress();
+        docResultsRamBytesUsed.addAndGet(docResult.ramBytesUsed() + RamUsageEstimator.NUM_BYTES_OBJECT_REF);
         if (docHits.size() > mostHitsInDocument)
             mostHitsInDocument = docHits.size();
         totalHits += docHits.size();
@@ -488,6 +503,19 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
         return resultObjects;
     }
 
+    @Override
+    public long ramBytesUsed() {
+        long bytes = docResultsRamBytesUsed.get();
+        if (bytes < 0) {
+            bytes = 0;
+            for (DocResult result: results)
+                bytes += result.ramBytesUsed() + RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+            // (if another thread calculated it first, both results are the same)
+            docResultsRamBytesUsed.compareAndSet(-1, bytes);
+        }
+        return BASE_RAM_BYTES_USED + bytes;
+    }
+
     /**
      * Determine the size of the subcorpus defined by this set of documents.
      *
@@ -521,7 +549,7 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
 
                 // Rewrite query (we store the original query, not the rewritten one)
                 try {
-                    query = query.rewrite(index().reader());
+                    query = query.rewrite(queryInfo().reader());
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
@@ -531,8 +559,8 @@ public class DocResults extends ResultsList<DocResult, DocProperty> implements R
                 try {
                     numberOfTokens = countTokens ? 0 : -1;
                     numberOfDocuments = 0;
-                    Weight weight = queryInfo().index().searcher().createWeight(query, ScoreMode.COMPLETE_NO_SCORES, 1.0f);
-                    for (LeafReaderContext r: queryInfo().index().reader().leaves()) {
+                    Weight weight = queryInfo().searcher().createWeight(new FilterCacheQuery(query, queryInfo().index().filterCache()), ScoreMode.COMPLETE_NO_SCORES, 1.0f);
+                    for (LeafReaderContext r: queryInfo().reader().leaves()) {
                         Scorer scorer = weight.scorer(r);
                         if (scorer != null) {
                             DocIdSetIterator it = scorer.iterator();
@@ -4,9 +4,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.lucene.util.RamUsageEstimator;
+
 import nl.inl.blacklab.resultproperty.DocProperty;
 
 public class Facets implements SearchResult {
+
+    /** Estimated size of this object, excluding the facet groups */
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Facets.class);
     
     private final List<DocProperty> facets;
     
@@ -37,4 +42,12 @@ public class Facets implements SearchResult {
         return resultObjects;
     }
 
+    @Override
+    public long ramBytesUsed() {
+        long bytes = BASE_RAM_BYTES_USED;
+        for (DocGroups groups: counts.values())
+            bytes += RamUsageEstimator.HASHTABLE_RAM_BYTES_PER_ENTRY + groups.ramBytesUsed();
+        return bytes;
+    }
+
 }
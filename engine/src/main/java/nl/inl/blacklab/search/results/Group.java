@@ -1,5 +1,8 @@
 package nl.inl.blacklab.search.results;
 
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
 import nl.inl.blacklab.resultproperty.PropertyValue;
 import nl.inl.blacklab.resultproperty.ResultProperty;
 
@@ -8,7 +11,10 @@ import nl.inl.blacklab.resultproperty.ResultProperty;
  * 
  * @param <T> result type, e.g. Hit 
  */
-public abstract class Group<T> implements Result<Group<T>> {
+public abstract class Group<T> implements Result<Group<T>>, Accountable {
+
+    /** Estimated size of a group object, excluding its identity and stored results */
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Group.class);
     
     protected final PropertyValue groupIdentity;
 
@@ -38,6 +44,25 @@ public abstract class Group<T> implements Result<Group<T>> {
         return totalSize;
     }
 
+    /**
+     * Estimate the heap size of this group, including identity and stored results.
+     *
+     * @return estimated heap size in bytes
+     */
+    @Override
+    public long ramBytesUsed() {
+        return BASE_RAM_BYTES_USED + groupIdentity.ramBytesUsed() + storedResultsRamBytesUsed();
+    }
+
+    /**
+     * Estimate the heap size of our stored results.
+     *
+     * @return estimated heap size in bytes
+     */
+    protected long storedResultsRamBytesUsed() {
+        return storedResults != null ? storedResults.ramBytesUsed() : 0;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "(id=" + identity() + ", size=" + size() + ")";
@@ -54,4 +54,11 @@ public class HitGroup extends Group<Hit> {
     public Hits storedResults() {
         return (Hits)super.storedResults();
     }
+
+    @Override
+    protected long storedResultsRamBytesUsed() {
+        // Captured groups are usually shared between all groups,
+        // so whoever holds the groups should count those (once).
+        return storedResults().getInternalHits().ramBytesUsed();
+    }
 }
@@ -1,13 +1,17 @@
 package nl.inl.blacklab.search.results;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
 
 import nl.inl.blacklab.Constants;
@@ -69,6 +73,9 @@ public class HitGroups extends ResultsList<HitGroup, GroupProperty<Hit, HitGroup
     /** Maximum number of groups (limited by number of entries allowed in a HashMap) */
     public final static int MAX_NUMBER_OF_GROUPS = Constants.JAVA_MAX_HASHMAP_SIZE;
 
+    /** Estimated size of this object, excluding the groups */
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(HitGroups.class);
+
     /**
      * Total number of results in the source set of hits. 
      * Note that unlike other Hits instances (samples/sorts/windows), we should safely be able to copy these from our source, 
@@ -93,6 +100,9 @@ public class HitGroups extends ResultsList<HitGroup, GroupProperty<Hit, HitGroup
 
     private int resultObjects;
 
+    /** Estimated heap size, or -1 if not calculated yet (we're immutable, so we only calculate it once) */
+    private volatile long ramBytesUsed = -1;
+
     /**
      * Construct a ResultsGrouper object, by grouping the supplied hits.
      *
@@ -194,6 +204,23 @@ public class HitGroups extends ResultsList<HitGroup, GroupProperty<Hit, HitGroup
         // Sorted contains the same hits as us, so we can pass on our result statistics.
         return HitGroups.fromList(queryInfo(), sorted, criteria, null, null, hitsStats, docsStats);
     }
+
+    /**
+     * Return the first groups according to the given property.
+     *
+     * Gives the same groups as sorting and taking the first ones, but is much cheaper
+     * if there are many groups and we only need a few of them.
+     *
+     * @param sortProp the property to sort on
+     * @param number the number of groups to return
+     * @return the first groups, sorted in the specified way
+     */
+    public HitGroups sortTop(GroupProperty<Hit, HitGroup> sortProp, long number) {
+        ensureAllResultsRead();
+        List<HitGroup> top = TopResults.select(this.results, sortProp, number);
+        // Result statistics are those of all the groups, like a window's
+        return HitGroups.fromList(queryInfo(), top, criteria, null, null, hitsStats, docsStats);
+    }
     
     /**
      * Take a sample of hits by wrapping an existing Hits object.
@@ -311,6 +338,26 @@ public class HitGroups extends ResultsList<HitGroup, GroupProperty<Hit, HitGroup
         return resultObjects;
     }
 
+    @Override
+    public long ramBytesUsed() {
+        if (ramBytesUsed < 0) {
+            // Each group is stored both in the results list and in the groups map
+            long bytes = BASE_RAM_BYTES_USED + groups.size() *
+                    (RamUsageEstimator.HASHTABLE_RAM_BYTES_PER_ENTRY + RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+            Set<CapturedGroups> capturedGroups = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (HitGroup group: results) {
+                bytes += group.ramBytesUsed();
+                if (group.storedResults().hasCapturedGroups())
+                    capturedGroups.add(group.storedResults().capturedGroups());
+            }
+            // Captured groups are usually shared between groups; only count them once
+            for (CapturedGroups cg: capturedGroups)
+                bytes += cg.ramBytesUsed();
+            ramBytesUsed = bytes;
+        }
+        return ramBytesUsed;
+    }
+
     /** 
      * Get document stats for these groups.
      * NOTE: docsCounted will return -1 if this HitGroups instance is a sample and hasn't got all hits stored 
@@ -3,25 +3,26 @@ package nl.inl.blacklab.search.results;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.SimpleCollector;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
 
+import it.unimi.dsi.fastutil.HashCommon;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
 import nl.inl.blacklab.forwardindex.Terms;
@@ -33,8 +34,6 @@ import nl.inl.blacklab.resultproperty.PropertyValueContextWords;
 import nl.inl.blacklab.resultproperty.PropertyValueDoc;
 import nl.inl.blacklab.resultproperty.PropertyValueMultiple;
 import nl.inl.blacklab.search.BlackLabIndex;
-import nl.inl.blacklab.search.BlackLabIndexAbstract;
-import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.blacklab.searches.SearchHits;
@@ -53,39 +52,211 @@ public class HitGroupsTokenFrequencies {
 
     private static final Logger logger = LogManager.getLogger(HitGroupsTokenFrequencies.class);
 
-    /** Precalculated hashcode for group id, to save time while grouping and sorting. */
-    private static class GroupIdHash {
-        private final int[] tokenIds;
-        private final int[] tokenSortPositions;
-        private final PropertyValue[] metadataValues;
-        private final int hash;
+    /** How many documents to process in one go (all from the same index segment) */
+    private static final int DOCS_PER_CHUNK = 128;
+
+    /**
+     * Counts hits and docs per group while grouping.
+     *
+     * A group is identified by a metadata id (see {@link MetadataIds}) and the sort position
+     * of each grouped-on annotation's value. We group on sort positions instead of term ids
+     * because term ids are case-sensitive, and we may want to group insensitively.
+     *
+     * Uses open addressing on plain arrays, so we don't allocate objects per token or per group.
+     * Not threadsafe: each thread fills its own instance, and these are merged at the end.
+     */
+    private static final class GroupCounts {
+        /** Initial number of slots (must be a power of two) */
+        private static final int INITIAL_CAPACITY = 1024;
+
+        /** Number of annotations we group on */
+        private final int numAnnotations;
+
+        /** Length of a group key: metadata id plus a sort position for each annotation */
+        private final int keyLength;
+
+        /** Number of slots in our arrays; always a power of two */
+        private int capacity;
+
+        /** Group keys, keyLength per slot */
+        private int[] keys;
+
+        /** Term id for each annotation for each group (of the first occurrence we saw), numAnnotations per slot */
+        private int[] tokenIds;
+
+        /** Number of hits in each group */
+        private long[] hits;
+
+        /** Number of docs in each group (0 means slot is empty) */
+        private int[] docs;
+
+        /** Last document we counted for each group, so we count each document only once */
+        private int[] lastDocId;
+
+        /** Number of groups */
+        private int size;
+
+        public GroupCounts(int numAnnotations) {
+            this.numAnnotations = numAnnotations;
+            keyLength = numAnnotations + 1;
+            allocate(INITIAL_CAPACITY);
+        }
+
+        private void allocate(int capacity) {
+            this.capacity = capacity;
+            keys = new int[capacity * keyLength];
+            tokenIds = new int[capacity * numAnnotations];
+            hits = new long[capacity];
+            docs = new int[capacity];
+            lastDocId = new int[capacity];
+        }
+
+        private int hash(int[] keyArray, int offset) {
+            int h = 0;
+            for (int i = 0; i < keyLength; i++)
+                h = 31 * h + keyArray[offset + i];
+            return HashCommon.mix(h);
+        }
+
+        /** Find the slot for this key: either the slot containing it or the empty slot where it should go. */
+        private int findSlot(int[] keyArray, int offset) {
+            int mask = capacity - 1;
+            int slot = hash(keyArray, offset) & mask;
+            while (docs[slot] != 0 && !Arrays.equals(keys, slot * keyLength, (slot + 1) * keyLength,
+                    keyArray, offset, offset + keyLength)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /** Store a new group in an empty slot, growing the table if necessary. */
+        private int insert(int slot, int[] keyArray, int offset, int[] tokenIdArray, int tokenIdsOffset) {
+            if ((size + 1) * 4L > capacity * 3L) {
+                // Load factor would exceed 0.75; grow and find the new slot
+                grow();
+                slot = findSlot(keyArray, offset);
+            }
+            System.arraycopy(keyArray, offset, keys, slot * keyLength, keyLength);
+            System.arraycopy(tokenIdArray, tokenIdsOffset, tokenIds, slot * numAnnotations, numAnnotations);
+            size++;
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldTokenIds = tokenIds;
+            long[] oldHits = hits;
+            int[] oldDocs = docs;
+            int[] oldLastDocId = lastDocId;
+            int oldCapacity = capacity;
+            allocate(capacity * 2);
+            for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+                if (oldDocs[oldSlot] == 0)
+                    continue;
+                int slot = findSlot(oldKeys, oldSlot * keyLength);
+                System.arraycopy(oldKeys, oldSlot * keyLength, keys, slot * keyLength, keyLength);
+                System.arraycopy(oldTokenIds, oldSlot * numAnnotations, tokenIds, slot * numAnnotations, numAnnotations);
+                hits[slot] = oldHits[oldSlot];
+                docs[slot] = oldDocs[oldSlot];
+                lastDocId[slot] = oldLastDocId[oldSlot];
+            }
+        }
 
         /**
+         * Count hits for a group in a document.
+         *
+         * Documents must be added one after the other, not interleaved.
          *
-         * @param tokenIds token term id for each token in the group id
-         * @param tokenSortPositions sort position for each token in the group id
-         * @param metadataValues relevant metadatavalues
-         * @param metadataValuesHash since many tokens per document, precalculate md hash for that thing
+         * @param key metadata id followed by the sort position for each annotation
+         * @param tokenIdsForGroup term id for each annotation
+         * @param numberOfHits number of hits to add
+         * @param docId document the hits occur in
          */
-        public GroupIdHash(int[] tokenIds, int[] tokenSortPositions, PropertyValue[] metadataValues, int metadataValuesHash) {
-            this.tokenIds = tokenIds;
-            this.tokenSortPositions = tokenSortPositions;
-            this.metadataValues = metadataValues;
-            hash = Arrays.hashCode(tokenSortPositions) ^ metadataValuesHash;
+        public void add(int[] key, int[] tokenIdsForGroup, long numberOfHits, int docId) {
+            int slot = findSlot(key, 0);
+            if (docs[slot] == 0) {
+                slot = insert(slot, key, 0, tokenIdsForGroup, 0);
+                hits[slot] = numberOfHits;
+                docs[slot] = 1;
+                lastDocId[slot] = docId;
+            } else {
+                hits[slot] += numberOfHits;
+                if (lastDocId[slot] != docId) {
+                    docs[slot]++;
+                    lastDocId[slot] = docId;
+                }
+            }
         }
 
-        @Override
-        public int hashCode() {
-            return hash;
+        /**
+         * Add the counts from another instance to ours.
+         *
+         * The other instance must have counted different documents than we did.
+         *
+         * @param other counts to add
+         * @return this instance
+         */
+        public GroupCounts addAll(GroupCounts other) {
+            for (int otherSlot = 0; otherSlot < other.capacity; otherSlot++) {
+                if (other.docs[otherSlot] == 0)
+                    continue;
+                int slot = findSlot(other.keys, otherSlot * keyLength);
+                if (docs[slot] == 0) {
+                    slot = insert(slot, other.keys, otherSlot * keyLength, other.tokenIds, otherSlot * numAnnotations);
+                    lastDocId[slot] = -1;
+                }
+                hits[slot] += other.hits[otherSlot];
+                docs[slot] += other.docs[otherSlot];
+            }
+            return this;
         }
 
-        // Assume only called with other instances of IdHash (faster for large groupings)
-        @SuppressWarnings("EqualsWhichDoesntCheckParameterClass")
-        @Override
-        public boolean equals(Object obj) {
-            return ((GroupIdHash) obj).hash == this.hash &&
-                   Arrays.equals(((GroupIdHash) obj).tokenSortPositions, this.tokenSortPositions) &&
-                   Arrays.deepEquals(((GroupIdHash) obj).metadataValues, this.metadataValues);
+        /** @return number of slots; use {@link #isUsed(int)} to find the groups */
+        public int capacity() {
+            return capacity;
+        }
+
+        public boolean isUsed(int slot) {
+            return docs[slot] != 0;
+        }
+
+        public int metadataId(int slot) {
+            return keys[slot * keyLength];
+        }
+
+        public int tokenId(int slot, int annotationIndex) {
+            return tokenIds[slot * numAnnotations + annotationIndex];
+        }
+
+        public long hits(int slot) {
+            return hits[slot];
+        }
+
+        public int docs(int slot) {
+            return docs[slot];
+        }
+    }
+
+    /**
+     * Assigns ids to the combinations of metadata values we group on.
+     *
+     * Many documents share the same metadata values, so this way group keys only need an int for the
+     * metadata. Threadsafe; used once per document.
+     */
+    private static final class MetadataIds {
+        private final Map<List<PropertyValue>, Integer> ids = new ConcurrentHashMap<>();
+
+        private final AtomicInteger nextId = new AtomicInteger();
+
+        public int get(PropertyValue[] metadataValues) {
+            return ids.computeIfAbsent(Arrays.asList(metadataValues), __ -> nextId.getAndIncrement());
+        }
+
+        /** @return metadata values, indexed by id */
+        public PropertyValue[][] valuesById() {
+            PropertyValue[][] values = new PropertyValue[nextId.get()][];
+            ids.forEach((metadataValues, id) -> values[id] = metadataValues.toArray(new PropertyValue[0]));
+            return values;
         }
     }
 
@@ -103,18 +274,6 @@ public class HitGroupsTokenFrequencies {
         return !mustStoreHits && hitsSearch.isAnyTokenQuery() && property.isDocPropOrHitText();
     }
 
-    /** Counts of hits and docs while grouping. */
-    private static final class OccurrenceCounts {
-        // volatile just to be safe, as these objects are at times added together from different threads.
-        public volatile long hits;
-        public volatile int docs;
-
-        public OccurrenceCounts(long hits, int docs) {
-            this.hits = hits;
-            this.docs = docs;
-        }
-    }
-
     /** Info about doc and hit properties while grouping. */
     private static final class PropInfo {
 
@@ -185,9 +344,6 @@ public class HitGroupsTokenFrequencies {
         SearchSettings searchSettings = source.searchSettings();
 
         try {
-            // This is where we store our groups while we're computing/gathering them. Maps from group Id to number of hits and number of docs
-            final ConcurrentHashMap<GroupIdHash, OccurrenceCounts> globalOccurrences = new ConcurrentHashMap<>();
-
             final BlackLabIndex index = queryInfo.index();
 
             /*
@@ -239,21 +395,32 @@ public class HitGroupsTokenFrequencies {
             }
 
             final int numAnnotations = hitProperties.size();
-            long numberOfDocsProcessed;
+            final AtomicLong numberOfDocsProcessed = new AtomicLong();
             final AtomicLong numberOfHitsProcessed = new AtomicLong();
             final AtomicBoolean hitMaxHitsToCount = new AtomicBoolean(false);
 
+            // Ids for the combinations of metadata values we group on (shared by all threads)
+            final MetadataIds metadataIds = new MetadataIds();
+
+            // This is where we store our groups after computing/gathering them
+            final GroupCounts globalOccurrences;
+
             try (final BlockTimer c = BlockTimer.create("Top Level")) {
 
-                // Collect all doc ids that match the given filter (or all docs if no filter specified)
-                final List<Integer> docIds = new ArrayList<>();
+                // Collect all doc ids that match the given filter (or all docs if no filter specified),
+                // then divide them into chunks of documents from the same segment.
+                final List<IntArrayList> docIdsPerSegment = new ArrayList<>();
                 try (BlockTimer ignored = c.child("Gathering documents")) {
                     index.searcher().search(filterQuery == null ? index.getAllRealDocsQuery() : filterQuery, new SimpleCollector() {
                         private int docBase;
 
+                        private IntArrayList docIds;
+
                         @Override
                         protected void doSetNextReader(LeafReaderContext context) throws IOException {
                             docBase = context.docBase;
+                            docIds = new IntArrayList();
+                            docIdsPerSegment.add(docIds);
                             super.doSetNextReader(context);
                         }
 
@@ -269,41 +436,42 @@ public class HitGroupsTokenFrequencies {
                         }
                     });
                 }
+                final List<int[]> docIdChunks = new ArrayList<>();
+                for (IntArrayList docIdList: docIdsPerSegment) {
+                    int[] docIds = docIdList.toArray();
+                    for (int start = 0; start < docIds.length; start += DOCS_PER_CHUNK) {
+                        docIdChunks.add(Arrays.copyOfRange(docIds, start, Math.min(start + DOCS_PER_CHUNK, docIds.length)));
+                    }
+                }
+
+                final String fieldName = index.mainAnnotatedField().name(); // FIXME: shouldn't this be source.queryInfo().field() ?
+                final DocPropertyAnnotatedFieldLength propTokens = new DocPropertyAnnotatedFieldLength(index, fieldName);
 
                 // Start actually calculating the requests frequencies.
+                // Each thread counts the groups in the chunks it processes in its own GroupCounts;
+                // these are merged at the end.
                 if (hitProperties.isEmpty()) {
                     // Matched all tokens but not grouping by a specific annotation, only metadata
                     // This requires a different approach because we never retrieve the individual tokens if there's no annotation
                     // e.g. match '*' group by document year --
                     // What we do instead is for every document just retrieve how many tokens it contains (from its metadata), and add that count to the appropriate group
-                    numberOfDocsProcessed = docIds.size();
                     try (BlockTimer ignored = c.child("Grouping documents (metadata only path)")) {
-                        String fieldName =  index.mainAnnotatedField().name();
-                        DocPropertyAnnotatedFieldLength propTokens = new DocPropertyAnnotatedFieldLength(index, fieldName);
                         final int[] emptyTokenValuesArray = new int[0];
-
-                        docIds.parallelStream().forEach(docId -> {
-                            final int docLength = (int) propTokens.get(docId) - BlackLabIndexAbstract.IGNORE_EXTRA_CLOSING_TOKEN;
-                            final DocResult synthesizedDocResult = DocResult.fromDoc(queryInfo, new PropertyValueDoc(
-                                    index, docId), 0, docLength);
-                            final PropertyValue[] metadataValuesForGroup = new PropertyValue[docProperties.size()];
-                            for (int i = 0; i < docProperties.size(); ++i) { metadataValuesForGroup[i] = docProperties.get(i).get(synthesizedDocResult); }
-                            final int metadataValuesHash = Arrays.hashCode(metadataValuesForGroup); // precompute, it's the same for all hits in document
-
-                            numberOfHitsProcessed.addAndGet(docLength);
-
-                            // Add all tokens in document to the group.
-                            final GroupIdHash groupId = new GroupIdHash(emptyTokenValuesArray, emptyTokenValuesArray, metadataValuesForGroup, metadataValuesHash);
-                            globalOccurrences.compute(groupId, (__, groupSizes) -> {
-                                if (groupSizes != null) {
-                                    groupSizes.hits += docLength;
-                                    groupSizes.docs += 1;
-                                    return groupSizes;
-                                } else {
-                                    return new OccurrenceCounts(docLength, 1);
-                                }
-                            });
-                        });
+                        globalOccurrences = docIdChunks.parallelStream().collect(() -> new GroupCounts(0), (occurrences, docIds) -> {
+                            final int[] key = new int[1];
+                            for (int docId: docIds) {
+                                // (NOTE: propTokens already excludes the extra closing token)
+                                final int docLength = (int) propTokens.get(docId);
+                                final DocResult synthesizedDocResult = DocResult.fromDoc(queryInfo, new PropertyValueDoc(
+                                        index, docId), 0, docLength);
+                                key[0] = metadataIds.get(metadataValues(docProperties, synthesizedDocResult));
+                                numberOfHitsProcessed.addAndGet(docLength);
+
+                                // Add all tokens in document to the group.
+                                occurrences.add(key, emptyTokenValuesArray, docLength, docId);
+                            }
+                            numberOfDocsProcessed.addAndGet(docIds.length);
+                        }, GroupCounts::addAll);
                     }
                 } else {
                     // We do have hit properties, so we need to use both document metadata and the tokens from the forward index to
@@ -313,132 +481,78 @@ public class HitGroupsTokenFrequencies {
                     //       exists to manage server load, so maybe we can ignore it here? I guess then we might need
                     //       another setting that can limit this operation as well.
                     final long maxHitsToCount = searchSettings.maxHitsToCount() > 0 ? searchSettings.maxHitsToCount() : Long.MAX_VALUE;
-                    //final IntUnaryOperator incrementUntilMax = (v) -> v < maxHitsToCount ? v + 1 : v;
-                    final String fieldName = index.mainAnnotatedField().name(); // FIXME: shouldn't this be source.queryInfo().field() ?
-                    final String lengthTokensFieldName = AnnotatedFieldNameUtil.lengthTokensField(fieldName);
-
-                    // Determine all the fields we want to be able to load, so we don't need to load the entire document
-                    final Set<String> fieldsToLoad = new HashSet<>();
-                    fieldsToLoad.add(lengthTokensFieldName);
 
-                    final IndexReader reader = index.reader();
+                    globalOccurrences = docIdChunks.parallelStream().collect(() -> new GroupCounts(numAnnotations), (occurrences, docIds) -> {
 
-                    numberOfDocsProcessed = docIds.parallelStream().filter(docId -> {
-
-                        // If we've already exceeded the maximum, skip this doc
+                        // If we've already exceeded the maximum, skip these docs
                         if (numberOfHitsProcessed.get() >= maxHitsToCount)
-                            return false;
-
-                        try {
-
-                            // Step 1: read all values for the to-be-grouped annotations for this document
-                            // This will create one int[] for every annotation, containing ids that map to the values for this document for this annotation
-
-                            final Document doc = reader.document(docId, fieldsToLoad);
-                            final List<int[]> tokenValuesPerAnnotation = new ArrayList<>();
-                            final List<int[]> sortValuesPerAnnotation = new ArrayList<>();
-
-                            try (BlockTimer ignored = c.child("Read annotations from forward index")) {
-                                for (AnnotInfo annot : hitProperties) {
-                                    final AnnotationForwardIndex afi = annot.getAnnotationForwardIndex();
-                                    final int[] tokenValues = afi.getDocument(docId);
-                                    tokenValuesPerAnnotation.add(tokenValues);
+                            return;
+
+                        // Step 1: read all values for the to-be-grouped annotations for these documents
+                        // This will create one int[] for every annotation and document, containing ids that map to the values for this document for this annotation
+                        final List<List<int[]>> tokenValuesPerAnnotation = new ArrayList<>(numAnnotations);
+                        try (BlockTimer ignored = c.child("Read annotations from forward index")) {
+                            for (AnnotInfo annot : hitProperties) {
+                                tokenValuesPerAnnotation.add(annot.getAnnotationForwardIndex().getDocuments(docIds));
+                            }
+                        }
 
-                                    // Look up sort values
-                                    // NOTE: tried moving this to a TermsReader.arrayOfIdsToSortPosition() method,
-                                    //       but that was slower...
-                                    int docLength = tokenValues.length;
-                                    int[] sortValues = new int[docLength];
-                                    for (int tokenIndex = 0; tokenIndex < docLength; ++tokenIndex) {
-                                        final int termId = tokenValues[tokenIndex];
-                                        sortValues[tokenIndex] = annot.getTerms().idToSortPosition(termId, annot.getMatchSensitivity());
+                        try (BlockTimer ignored = c.child("Group tokens")) {
+                            final int[] key = new int[numAnnotations + 1];
+                            final int[] annotationValuesForThisToken = new int[numAnnotations];
+                            final int[][] tokenValues = new int[numAnnotations][];
+                            for (int i = 0; i < docIds.length; i++) {
+                                final int docId = docIds[i];
+
+                                // If we've already exceeded the maximum, skip this doc
+                                if (numberOfHitsProcessed.get() >= maxHitsToCount)
+                                    break;
+
+                                // Step 2: retrieve the to-be-grouped metadata for this document
+                                int docLength = (int) propTokens.get(docId);
+                                final DocResult synthesizedDocResult = DocResult.fromDoc(queryInfo, new PropertyValueDoc(
+                                        index, docId), 0, docLength);
+                                key[0] = metadataIds.get(metadataValues(docProperties, synthesizedDocResult));
+
+                                // now we have all values for all relevant annotations for this document
+                                // iterate again and pair up the nth entries for all annotations, then store that as a group.
+                                for (int annotationIndex = 0; annotationIndex < numAnnotations; ++annotationIndex) {
+                                    tokenValues[annotationIndex] = tokenValuesPerAnnotation.get(annotationIndex).get(i);
+                                    if (tokenValues[annotationIndex].length < docLength) {
+                                        logger.debug("Forward index for " + hitProperties.get(annotationIndex).getAnnotationForwardIndex().annotation().name() +
+                                                " has " + tokenValues[annotationIndex].length + " tokens for doc " + docId +
+                                                ", expected " + docLength);
+                                        docLength = tokenValues[annotationIndex].length;
                                     }
-                                    sortValuesPerAnnotation.add(sortValues);
                                 }
 
-                            }
-
-                            // Step 2: retrieve the to-be-grouped metadata for this document
-                            int docLength = Integer.parseInt(doc.get(lengthTokensFieldName)) - BlackLabIndexAbstract.IGNORE_EXTRA_CLOSING_TOKEN;
-                            final DocResult synthesizedDocResult = DocResult.fromDoc(queryInfo, new PropertyValueDoc(
-                                    index, docId), 0, docLength);
-                            final PropertyValue[] metadataValuesForGroup = !docProperties.isEmpty() ? new PropertyValue[docProperties.size()] : null;
-                            for (int i = 0; i < docProperties.size(); ++i)
-                                metadataValuesForGroup[i] = docProperties.get(i).get(synthesizedDocResult);
-                            final int metadataValuesHash = Arrays.hashCode(metadataValuesForGroup); // precompute, it's the same for all hits in document
-
-                            // now we have all values for all relevant annotations for this document
-                            // iterate again and pair up the nth entries for all annotations, then store that as a group.
-
-                            // Keep track of term occurrences in this document; later we'll merge it with the global term frequencies
-                            Map<GroupIdHash, OccurrenceCounts> occsInDoc = new HashMap<>();
-
-                            try (BlockTimer ignored = c.child("Group tokens")) {
-
-                                for (int tokenIndex = 0; tokenIndex < docLength; ++ tokenIndex) {
-                                    int[] annotationValuesForThisToken = new int[numAnnotations];
-                                    int[] sortPositions = new int[numAnnotations];
-
+                                for (int tokenIndex = 0; tokenIndex < docLength; ++tokenIndex) {
                                     // Unfortunate fact: token ids are case-sensitive, and in order to group on a token's values case and diacritics insensitively,
                                     // we need to actually group by their "sort positions" - which is just the index the term would have if all terms would have been sorted
                                     // so in essence it's also an "id", but a case-insensitive one.
-                                    // we could further optimize to not do this step when grouping sensitively by making a specialized instance of the GroupIdHash class
-                                    // that hashes the token ids instead of the sortpositions in that case.
+                                    // NOTE: tried looking up the sort positions for the whole document in one go,
+                                    //       but that was slower...
                                     for (int annotationIndex = 0; annotationIndex < numAnnotations; ++annotationIndex) {
-                                        int[] tokenValues = tokenValuesPerAnnotation.get(annotationIndex);
-                                        if (tokenIndex >= tokenValues.length) {
-                                            logger.debug("### ERROR");
-                                            logger.debug("docLength = " + docLength);
-                                            logger.debug("tokenValues.length = " + tokenValues.length);
-                                            logger.debug("tokenIndex = " + tokenIndex);
-                                            logger.debug("annotationIndex = " + annotationIndex);
-                                            logger.debug("annotation = " + (hitProperties.get(annotationIndex).getAnnotationForwardIndex().annotation().name()));
-                                        }
-                                        annotationValuesForThisToken[annotationIndex] = tokenValues[tokenIndex];
-                                        int[] sortValuesThisAnnotation = sortValuesPerAnnotation.get(annotationIndex);
-                                        sortPositions[annotationIndex] = sortValuesThisAnnotation[tokenIndex];
+                                        final AnnotInfo annot = hitProperties.get(annotationIndex);
+                                        final int termId = tokenValues[annotationIndex][tokenIndex];
+                                        annotationValuesForThisToken[annotationIndex] = termId;
+                                        key[annotationIndex + 1] = annot.getTerms().idToSortPosition(termId, annot.getMatchSensitivity());
                                     }
-                                    final GroupIdHash groupId = new GroupIdHash(annotationValuesForThisToken, sortPositions, metadataValuesForGroup, metadataValuesHash);
-
-                                    // Count occurrence in this doc
-                                    OccurrenceCounts occ = occsInDoc.get(groupId);
-                                    if (occ == null) {
-                                        occ = new OccurrenceCounts(1, 1);
-                                        occsInDoc.put(groupId, occ);
-                                    } else {
-                                        occ.hits++;
-                                    }
-
-
+                                    occurrences.add(key, annotationValuesForThisToken, 1, docId);
                                 }
-
-                                // Merge occurrences in this doc with global occurrences
-                                occsInDoc.forEach((groupId, occurrenceInDocument) -> globalOccurrences.compute(groupId, (__, globalGroup) -> {
-                                    if (globalGroup != null) {
-                                        // Merge local & global counts
-                                        globalGroup.hits += occurrenceInDocument.hits;
-                                        globalGroup.docs += occurrenceInDocument.docs;
-                                        return globalGroup;
-                                    } else {
-                                        return occurrenceInDocument; // first time we found this group.
-                                    }
-                                }));
-
+                                numberOfDocsProcessed.incrementAndGet();
 
                                 // If we exceeded maxHitsToCount, remember that and don't process more docs.
                                 // (NOTE: we don't care if we don't get exactly maxHitsToCount in this case; just that
                                 //  we stop the operation before the server is overloaded)
-                                if (numberOfHitsProcessed.getAndUpdate(i -> i + docLength) >= maxHitsToCount) {
+                                final int finalDocLength = docLength;
+                                if (numberOfHitsProcessed.getAndUpdate(n -> n + finalDocLength) >= maxHitsToCount) {
                                     hitMaxHitsToCount.set(true);
                                 }
-
                             }
-                        } catch (IOException e) {
-                            throw BlackLabRuntimeException.wrap(e);
                         }
-                        return true;
-                    }).count();
-                    logger.trace("Number of processed docs: " + numberOfDocsProcessed);
+                    }, GroupCounts::addAll);
+                    logger.trace("Number of processed docs: " + numberOfDocsProcessed.get());
                 }
             }
 
@@ -447,11 +561,11 @@ public class HitGroupsTokenFrequencies {
             List<HitGroup> groups;
             try (final BlockTimer ignored = BlockTimer.create("Resolve string values for tokens")) {
                 final int numMetadataValues = docProperties.size();
-                groups = globalOccurrences.entrySet().parallelStream().map(e -> {
-                    final long groupSizeHits = e.getValue().hits;
-                    final int groupSizeDocs = e.getValue().docs;
-                    final int[] annotationValues = e.getKey().tokenIds;
-                    final PropertyValue[] metadataValues = e.getKey().metadataValues;
+                final PropertyValue[][] metadataValuesById = metadataIds.valuesById();
+                groups = IntStream.range(0, globalOccurrences.capacity()).parallel().filter(globalOccurrences::isUsed).mapToObj(slot -> {
+                    final long groupSizeHits = globalOccurrences.hits(slot);
+                    final int groupSizeDocs = globalOccurrences.docs(slot);
+                    final PropertyValue[] metadataValues = metadataValuesById[globalOccurrences.metadataId(slot)];
                     // allocate new - is not copied when moving into propertyvaluemultiple
                     final PropertyValue[] groupIdAsList = new PropertyValue[numAnnotations + numMetadataValues];
 
@@ -468,7 +582,8 @@ public class HitGroupsTokenFrequencies {
                             AnnotInfo annotInfo = hitProperties.get(indexInInput);
                             Annotation annot = annotInfo.getAnnotationForwardIndex().annotation();
                             MatchSensitivity sens = annotInfo.getMatchSensitivity();
-                            groupIdAsList[indexInOutput++] = new PropertyValueContextWords(index, annot, sens, new int[] {annotationValues[indexInInput]}, false);
+                            int[] tokenId = { globalOccurrences.tokenId(slot, indexInInput) };
+                            groupIdAsList[indexInOutput++] = new PropertyValueContextWords(index, annot, sens, tokenId, false);
                         }
                     }
 
@@ -487,10 +602,24 @@ public class HitGroupsTokenFrequencies {
             logger.debug("fast path used for grouping");
 
             ResultsStats hitsStats = new ResultsStatsStatic(numberOfHitsProcessed.get(), numberOfHitsProcessed.get(), new MaxStats(hitMaxHitsToCount.get(), hitMaxHitsToCount.get()));
-            ResultsStats docsStats = new ResultsStatsStatic((int) numberOfDocsProcessed, (int) numberOfDocsProcessed, new MaxStats(hitMaxHitsToCount.get(), hitMaxHitsToCount.get()));
+            ResultsStats docsStats = new ResultsStatsStatic((int) numberOfDocsProcessed.get(), (int) numberOfDocsProcessed.get(), new MaxStats(hitMaxHitsToCount.get(), hitMaxHitsToCount.get()));
             return HitGroups.fromList(queryInfo, groups, requestedGroupingProperty, null, null, hitsStats, docsStats);
         } catch (IOException e) {
             throw BlackLabRuntimeException.wrap(e);
         }
     }
+
+    /**
+     * Get the values of the document properties we group on for a document.
+     *
+     * @param docProperties document properties to get
+     * @param doc document to get them for
+     * @return values of the document properties
+     */
+    private static PropertyValue[] metadataValues(List<DocProperty> docProperties, DocResult doc) {
+        final PropertyValue[] metadataValues = new PropertyValue[docProperties.size()];
+        for (int i = 0; i < docProperties.size(); ++i)
+            metadataValues[i] = docProperties.get(i).get(doc);
+        return metadataValues;
+    }
 }
@@ -77,6 +77,32 @@ public interface Hits extends Results<Hit, HitProperty> {
                 ascendingLuceneDocIds);
     }
 
+    /**
+     * Make a wrapper Hits object for hits derived from a larger result set.
+     *
+     * @param queryInfo query info
+     * @param hits the hits (not copied)
+     * @param hitsCounted number of hits counted (may be larger than the number of hits)
+     * @param docsRetrieved number of distinct documents in hits
+     * @param docsCounted number of documents counted
+     * @param capturedGroups captured groups, or null if none
+     * @param ascendingLuceneDocIds are the hits sorted by Lucene doc id?
+     * @param maxStats whether processing/counting limits were exceeded
+     * @return hits object
+     */
+    static Hits list(
+            QueryInfo queryInfo,
+            HitsInternal hits,
+            long hitsCounted,
+            long docsRetrieved,
+            long docsCounted,
+            CapturedGroups capturedGroups,
+            boolean ascendingLuceneDocIds,
+            MaxStats maxStats) {
+        return new HitsList(queryInfo, hits, hitsCounted, docsRetrieved, docsCounted, capturedGroups,
+                ascendingLuceneDocIds, maxStats);
+    }
+
     /**
      * Return a Hits object with a single hit
      *
@@ -138,6 +164,19 @@ public interface Hits extends Results<Hit, HitProperty> {
     @Override
     Hits sort(HitProperty sortProp);
 
+    /**
+     * Return a new Hits object with the first hits according to the given property.
+     * <p>
+     * Gives the same hits as sorting and taking the first ones, but is much cheaper
+     * if the number of hits is small compared to the total, e.g. when showing the
+     * first page of sorted hits. The result statistics are those of the full result set.
+     *
+     * @param sortProp the hit property to sort on
+     * @param number   the number of hits to return
+     * @return a new Hits object with the first hits, sorted in the specified way
+     */
+    Hits sortTop(HitProperty sortProp, long number);
+
     /**
      * Is this Hits object sorted by Lucene doc ids?
      *
@@ -9,6 +9,7 @@ import java.util.TreeSet;
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.RamUsageEstimator;
 
 import nl.inl.blacklab.Constants;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
@@ -38,6 +39,9 @@ public abstract class HitsAbstract extends ResultsAbstract<Hit, HitProperty> imp
      */
     protected static final int FETCH_HITS_MIN = 20;
 
+    /** Estimated size of a Hits object itself, excluding hits and captured groups */
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(HitsAbstract.class);
+
     /** Our internal list of simple hits. */
     protected final HitsInternal hitsInternal;
 
@@ -296,6 +300,28 @@ public abstract class HitsAbstract extends ResultsAbstract<Hit, HitProperty> imp
                 hitsCounted, docsRetrieved, docsCounted, capturedGroups, ascendingLuceneDocIds);
     }
 
+    @Override
+    public Hits sortTop(HitProperty sortProp, long number) {
+        // We need a HitProperty with the correct Hits object
+        // If we need context, make sure we have it.
+        List<Annotation> requiredContext = sortProp.needsContext();
+        sortProp = sortProp.copyWith(this,
+            requiredContext == null ? null : new Contexts(this, requiredContext, sortProp.needsContextSize(index())));
+
+        // Select the first hits.
+        this.ensureAllResultsRead();
+        HitsInternal top = this.hitsInternal.sortTop(sortProp, number);
+
+        // Keep the statistics of the full result set, like a sort would.
+        CapturedGroups capturedGroups = capturedGroups();
+        long hitsCounted = hitsCountedSoFar();
+        long docsRetrieved = docsProcessedSoFar();
+        long docsCounted = docsCountedSoFar();
+        boolean ascendingLuceneDocIds = sortProp instanceof HitPropertyDocumentId && !sortProp.isReverse();
+        return Hits.list(queryInfo(), top, null, null,
+                hitsCounted, docsRetrieved, docsCounted, capturedGroups, ascendingLuceneDocIds);
+    }
+
     /**
      * Return a Hits object with these hits in ascending Lucene doc id order.
      *
@@ -358,6 +384,12 @@ public abstract class HitsAbstract extends ResultsAbstract<Hit, HitProperty> imp
         return this.hitsInternal.size();
     }
 
+    @Override
+    public long ramBytesUsed() {
+        CapturedGroups groups = capturedGroups;
+        return BASE_RAM_BYTES_USED + hitsInternal.ramBytesUsed() + (groups == null ? 0 : groups.ramBytesUsed());
+    }
+
     @Override
     public Iterator<Hit> iterator() {
         // We need to wrap the internal iterator, as we probably shouldn't
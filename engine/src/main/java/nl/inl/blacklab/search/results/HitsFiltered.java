@@ -1,18 +1,16 @@
 package nl.inl.blacklab.search.results;
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-
 import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.resultproperty.PropertyValue;
+import nl.inl.util.ProgressLock;
 
 /**
  * A Hits object that filters another.
  */
 public class HitsFiltered extends HitsMutable {
 
-    private final Lock ensureHitsReadLock = new ReentrantLock();
+    private final ProgressLock ensureHitsReadLock = new ProgressLock();
 
     /**
      * Document the previous hit was in, so we can count separate documents.
@@ -25,7 +23,7 @@ public class HitsFiltered extends HitsMutable {
 
     private final PropertyValue filterValue;
 
-    private boolean doneFiltering = false;
+    private volatile boolean doneFiltering = false;
 
     private int indexInSource = -1;
 
@@ -74,16 +72,14 @@ public class HitsFiltered extends HitsMutable {
             if (number >= 0 && number - hitsInternalMutable.size() < FETCH_HITS_MIN)
                 number = hitsInternalMutable.size() + FETCH_HITS_MIN;
 
-            while (!ensureHitsReadLock.tryLock()) {
-                /*
-                 * Another thread is already counting, we don't want to straight up block until it's done
-                 * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction
-                 * So instead poll our own state, then if we're still missing results after that just count them ourselves
-                 */
-                Thread.sleep(50);
-                if (doneFiltering || number >= 0 && hitsInternalMutable.size() >= number)
-                    return;
-            }
+            /*
+             * If another thread is already counting, we don't want to straight up block until it's done
+             * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction
+             * So instead wait for progress and check our own state, then if we're still missing results after that just count them ourselves
+             */
+            final long numberNeeded = number;
+            if (!ensureHitsReadLock.lockUnless(() -> doneFiltering || numberNeeded >= 0 && hitsInternalMutable.size() >= numberNeeded))
+                return;
             try {
                 boolean readAllHits = number < 0;
                 EphemeralHit hit = new EphemeralHit();
@@ -98,6 +94,7 @@ public class HitsFiltered extends HitsMutable {
                         if (filterProperty.get(indexInSource).equals(filterValue)) {
                             // Yes, keep this hit
                             hitsInternalMutable.add(hit);
+                            ensureHitsReadLock.signalProgress();
                             hitsCounted++;
                             if (hit.doc() != previousHitDoc) {
                                 docsCounted++;
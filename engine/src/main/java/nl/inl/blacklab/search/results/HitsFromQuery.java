@@ -8,10 +8,7 @@ import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 import org.apache.lucene.index.IndexReader;
@@ -21,18 +18,16 @@ import org.apache.lucene.search.ScoreMode;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InterruptedSearch;
 import nl.inl.blacklab.search.BlackLab;
-import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
 import nl.inl.blacklab.search.lucene.BLSpanWeight;
 import nl.inl.blacklab.search.lucene.HitQueryContext;
+import nl.inl.blacklab.search.lucene.QueryRewriteCache;
 import nl.inl.blacklab.search.lucene.optimize.ClauseCombinerNfa;
 import nl.inl.util.CurrentThreadExecutorService;
+import nl.inl.util.ProgressLock;
 
 public class HitsFromQuery extends HitsMutable {
 
-    /** If another thread is busy fetching hits and we're monitoring it, how often should we check? */
-    private static final int HIT_POLLING_TIME_MS = 50;
-
     protected final AtomicLong globalDocsProcessed = new AtomicLong();
     protected final AtomicLong globalDocsCounted = new AtomicLong();
     protected final AtomicLong globalHitsProcessed = new AtomicLong();
@@ -48,15 +43,14 @@ public class HitsFromQuery extends HitsMutable {
 
     // state
     protected final HitQueryContext hitQueryContext = new HitQueryContext();
-    protected final Lock ensureHitsReadLock = new ReentrantLock();
+    protected final ProgressLock ensureHitsReadLock = new ProgressLock();
     protected final List<SpansReader> spansReaders = new ArrayList<>();
-    protected boolean allSourceSpansFullyRead = false;
+    protected volatile boolean allSourceSpansFullyRead = false;
 
     protected HitsFromQuery(QueryInfo queryInfo, BLSpanQuery sourceQuery, SearchSettings searchSettings) {
-        super(queryInfo, HitsInternal.create(-1, true, true)); // explicitly construct HitsInternal so they're writeable
-        final BlackLabIndex index = queryInfo.index();
-        final IndexReader reader = index.reader();
-        BLSpanQuery optimizedQuery;
+        // (we keep using the current index reader, even if the index is reopened while we're reading hits)
+        super(queryInfo.withPinnedReader(), HitsInternal.create(-1, true, true)); // explicitly construct HitsInternal so they're writeable
+        final IndexReader reader = queryInfo().reader();
 
         // Ensure max. count >= max. process >= 0
         // After this both will be above 0 and process will never exceed count
@@ -70,37 +64,17 @@ public class HitsFromQuery extends HitsMutable {
         this.maxHitsToCount = configuredMaxHitsToCount;
 
         try {
-            // Override FI match threshold? (debug use only!)
-            synchronized (ClauseCombinerNfa.class) {
-                long oldFiMatchValue = ClauseCombinerNfa.getNfaThreshold();
-                if (searchSettings.fiMatchFactor() != -1) {
-                    logger.debug("setting NFA threshold for this query to " + searchSettings.fiMatchFactor());
-                    ClauseCombinerNfa.setNfaThreshold(searchSettings.fiMatchFactor());
-                }
-
-                sourceQuery.setQueryInfo(queryInfo);
-                boolean traceOptimization = BlackLab.config().getLog().getTrace().isOptimization();
-                if (traceOptimization)
-                    logger.debug("Query before optimize()/rewrite(): " + sourceQuery);
-
-                optimizedQuery = sourceQuery.optimize(reader);
-                if (traceOptimization)
-                    logger.debug("Query after optimize(): " + optimizedQuery);
-
-                optimizedQuery = optimizedQuery.rewrite(reader);
-                if (traceOptimization)
-                    logger.debug("Query after rewrite(): " + optimizedQuery);
-
-                optimizedQuery = BLSpanQuery.ensureSortedUnique(optimizedQuery);
-
-                // Restore previous FI match threshold
-                if (searchSettings.fiMatchFactor() != -1) {
-                    ClauseCombinerNfa.setNfaThreshold(oldFiMatchValue);
-                }
-            }
-
-            // This call can take a long time
-            BLSpanWeight weight = optimizedQuery.createWeight(index.searcher(), ScoreMode.COMPLETE_NO_SCORES, 1.0f);
+            // Optimizing and rewriting the query (e.g. expanding wildcard terms) and creating its weight can
+            // take a long time, so we reuse the result if we've recently executed the same query.
+            sourceQuery.setQueryInfo(queryInfo());
+            long nfaThreshold = searchSettings.fiMatchFactor() != -1 ? searchSettings.fiMatchFactor() :
+                    ClauseCombinerNfa.getNfaThreshold();
+            BLSpanWeight weight = QueryRewriteCache.get().weight(reader, sourceQuery, nfaThreshold, () -> {
+                BLSpanQuery optimizedQuery = optimize(sourceQuery, reader, searchSettings);
+
+                // This call can take a long time
+                return optimizedQuery.createWeight(queryInfo().searcher(), ScoreMode.COMPLETE_NO_SCORES, 1.0f);
+            });
 
             // We must always initialize one spansReader upfront, so global state for Capture Groups and context are created.
             // We then store get these global objects from the initialized SpansReader, and pass them to the rest of the (stil uninitialized) SpansReaders.
@@ -118,7 +92,8 @@ public class HitsFromQuery extends HitsMutable {
                     this.globalHitsProcessed,
                     this.globalHitsCounted,
                     this.requestedHitsToProcess,
-                    this.requestedHitsToCount
+                    this.requestedHitsToCount,
+                    this.ensureHitsReadLock
                 );
                 spansReaders.add(spansReader);
 
@@ -151,6 +126,46 @@ public class HitsFromQuery extends HitsMutable {
         }
     }
 
+    /**
+     * Optimize and rewrite a query.
+     *
+     * @param sourceQuery query to optimize and rewrite
+     * @param reader index reader
+     * @param searchSettings search settings (may override the forward index matching threshold)
+     * @return the optimized and rewritten query
+     */
+    private static BLSpanQuery optimize(BLSpanQuery sourceQuery, IndexReader reader, SearchSettings searchSettings)
+            throws IOException {
+        // Override FI match threshold? (debug use only!)
+        synchronized (ClauseCombinerNfa.class) {
+            long oldFiMatchValue = ClauseCombinerNfa.getNfaThreshold();
+            if (searchSettings.fiMatchFactor() != -1) {
+                logger.debug("setting NFA threshold for this query to " + searchSettings.fiMatchFactor());
+                ClauseCombinerNfa.setNfaThreshold(searchSettings.fiMatchFactor());
+            }
+
+            boolean traceOptimization = BlackLab.config().getLog().getTrace().isOptimization();
+            if (traceOptimization)
+                logger.debug("Query before optimize()/rewrite(): " + sourceQuery);
+
+            BLSpanQuery optimizedQuery = sourceQuery.optimize(reader);
+            if (traceOptimization)
+                logger.debug("Query after optimize(): " + optimizedQuery);
+
+            optimizedQuery = optimizedQuery.rewrite(reader);
+            if (traceOptimization)
+                logger.debug("Query after rewrite(): " + optimizedQuery);
+
+            optimizedQuery = BLSpanQuery.ensureSortedUnique(optimizedQuery);
+
+            // Restore previous FI match threshold
+            if (searchSettings.fiMatchFactor() != -1) {
+                ClauseCombinerNfa.setNfaThreshold(oldFiMatchValue);
+            }
+            return optimizedQuery;
+        }
+    }
+
     @Override
     protected void ensureResultsRead(long number) {
         final long clampedNumber = number < 0 ? maxHitsToCount : Math.min(number, maxHitsToCount);
@@ -166,22 +181,19 @@ public class HitsFromQuery extends HitsMutable {
         boolean hasLock = false;
         List<Future<?>> pendingResults = null;
         try {
-            while (!ensureHitsReadLock.tryLock(HIT_POLLING_TIME_MS, TimeUnit.MILLISECONDS)) {
-                /*
-                * Another thread is already working on hits, we don't want to straight up block until it's done,
-                * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction.
-                * So instead poll our own state, then if we're still missing results after that just count them ourselves
-                */
-                if (allSourceSpansFullyRead || (hitsInternalMutable.size() >= clampedNumber)) {
-                    return;
-                }
-            }
+            /*
+            * If another thread is already working on hits, we don't want to straight up block until it's done,
+            * as it might be counting/retrieving all results, while we might only want trying to retrieve a small fraction.
+            * So instead wait for progress and check our own state, then if we're still missing results after that just count them ourselves
+            */
+            if (!ensureHitsReadLock.lockUnless(() -> allSourceSpansFullyRead || (hitsInternalMutable.size() >= clampedNumber)))
+                return;
             hasLock = true;
             
             // This is the blocking portion, start worker threads, then wait for them to finish.
             final int numThreads = Math.max(queryInfo().index().blackLab().maxThreadsPerSearch(), 1);
             final ExecutorService executorService = numThreads >= 2
-                    ? queryInfo().index().blackLab().searchExecutorService()
+                    ? queryInfo().index().blackLab().workerExecutorService()
                     : new CurrentThreadExecutorService();
 
             final AtomicLong i = new AtomicLong();
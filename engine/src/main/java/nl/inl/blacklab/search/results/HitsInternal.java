@@ -2,6 +2,8 @@ package nl.inl.blacklab.search.results;
 
 import java.util.function.Consumer;
 
+import org.apache.lucene.util.Accountable;
+
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import nl.inl.blacklab.Constants;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
@@ -16,8 +18,11 @@ import nl.inl.blacklab.search.BlackLab;
  * bookkeeping (hit/doc retrieved/counted stats, hasAscendingLuceneDocIds, etc.).
  *
  * This is a read-only interface.
+ *
+ * Implementations estimate their heap size (see {@link #ramBytesUsed()}),
+ * which is used to determine the size of cached results.
  */
-public interface HitsInternal extends Iterable<EphemeralHit> {
+public interface HitsInternal extends Iterable<EphemeralHit>, Accountable {
 
     /** An empty HitsInternalRead object. */
     HitsInternal EMPTY_SINGLETON = new HitsInternalNoLock32();
@@ -146,6 +151,17 @@ public interface HitsInternal extends Iterable<EphemeralHit> {
      */
     HitsInternal sort(HitProperty p);
 
+    /**
+     * Return a new object with the first hits in sorted order.
+     *
+     * Cheaper than sorting all hits if we only need a few of them.
+     *
+     * @param p sort property
+     * @param number number of hits to return
+     * @return first hits in sorted order
+     */
+    HitsInternal sortTop(HitProperty p, long number);
+
     /**
      * For iterating through the hits using EphemeralHit
      */
@@ -185,4 +185,14 @@ class HitsInternalLock extends HitsInternalNoLock {
             this.lock.readLock().unlock();
         }
     }
+
+    @Override
+    public HitsInternal sortTop(HitProperty p, long number) {
+        this.lock.readLock().lock();
+        try {
+            return super.sortTop(p, number);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
 }
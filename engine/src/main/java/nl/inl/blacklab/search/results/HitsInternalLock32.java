@@ -202,4 +202,14 @@ class HitsInternalLock32 extends HitsInternalNoLock32 {
             this.lock.readLock().unlock();
         }
     }
+
+    @Override
+    public HitsInternal sortTop(HitProperty p, long number) {
+        this.lock.readLock().lock();
+        try {
+            return super.sortTop(p, number);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
 }
@@ -2,7 +2,8 @@ package nl.inl.blacklab.search.results;
 
 import java.util.function.Consumer;
 
-import it.unimi.dsi.fastutil.ints.IntArrays;
+import org.apache.lucene.util.RamUsageEstimator;
+
 import it.unimi.dsi.fastutil.ints.IntBigArrayBigList;
 import it.unimi.dsi.fastutil.ints.IntBigList;
 import it.unimi.dsi.fastutil.ints.IntIterator;
@@ -63,6 +64,10 @@ class HitsInternalNoLock implements HitsInternalMutable {
         }
     }
 
+    /** Size of this object and its three list objects, excluding the backing arrays */
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(HitsInternalNoLock.class) +
+            3 * RamUsageEstimator.shallowSizeOfInstance(IntBigArrayBigList.class);
+
     protected final IntBigList docs;
     protected final IntBigList starts;
     protected final IntBigList ends;
@@ -219,12 +224,7 @@ class HitsInternalNoLock implements HitsInternalMutable {
                 }
             }
         } else {
-            // We can use regular arrays Collections classes, faster
-            int[] indices = new int[(int) size];
-            for (int i = 0; i < indices.length; ++i)
-                indices[i] = i;
-
-            IntArrays.quickSort(indices, p::compare);
+            int[] indices = HitsSorter.sortedIndices(p, docs.size());
 
             r = HitsInternal.create(size, false, false);
             for (int index : indices) {
@@ -233,4 +233,52 @@ class HitsInternalNoLock implements HitsInternalMutable {
         }
         return r;
     }
+
+    @Override
+    public HitsInternal sortTop(HitProperty p, long number) {
+        long size = docs.size64();
+        if (size > Constants.JAVA_MAX_ARRAY_SIZE) {
+            // Selection works on int indices; just sort everything and keep the first hits
+            HitsInternal sorted = sort(p);
+            long n = Math.min(number, size);
+            HitsInternalMutable r = HitsInternal.create(n, n, false);
+            EphemeralHit hit = new EphemeralHit();
+            for (long i = 0; i < n; i++) {
+                sorted.getEphemeral(i, hit);
+                r.add(hit);
+            }
+            return r;
+        }
+        int[] indices = HitsSorter.topIndices(p, (int) size, (int) Math.min(number, size));
+        HitsInternalMutable r = HitsInternal.create(indices.length, false, false);
+        for (int index : indices) {
+            r.add(docs.getInt(index), starts.getInt(index), ends.getInt(index));
+        }
+        return r;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return BASE_RAM_BYTES_USED + ramBytesUsed(docs) + ramBytesUsed(starts) + ramBytesUsed(ends);
+    }
+
+    /**
+     * Estimate the size of a big list's backing arrays.
+     *
+     * We count the capacity, not the size, because that's the memory actually in use.
+     *
+     * @param list list to estimate
+     * @return estimated size in bytes
+     */
+    private static long ramBytesUsed(IntBigList list) {
+        if (!(list instanceof IntBigArrayBigList))
+            return list.size64() * Integer.BYTES;
+        int[][] segments = ((IntBigArrayBigList) list).elements();
+        long bytes = RamUsageEstimator.shallowSizeOf(segments);
+        for (int[] segment: segments) {
+            if (segment != null)
+                bytes += RamUsageEstimator.sizeOf(segment);
+        }
+        return bytes;
+    }
 }
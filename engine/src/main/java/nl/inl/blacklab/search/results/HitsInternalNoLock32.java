@@ -2,8 +2,9 @@ package nl.inl.blacklab.search.results;
 
 import java.util.function.Consumer;
 
+import org.apache.lucene.util.RamUsageEstimator;
+
 import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntArrays;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntList;
 import nl.inl.blacklab.Constants;
@@ -58,6 +59,10 @@ class HitsInternalNoLock32 implements HitsInternalMutable {
         }
     }
 
+    /** Size of this object and its three list objects, excluding the backing arrays */
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(HitsInternalNoLock32.class) +
+            3 * RamUsageEstimator.shallowSizeOfInstance(IntArrayList.class);
+
     protected final IntList docs;
     protected final IntList starts;
     protected final IntList ends;
@@ -201,11 +206,7 @@ class HitsInternalNoLock32 implements HitsInternalMutable {
 
     @Override
     public HitsInternal sort(HitProperty p) {
-        int[] indices = new int[docs.size()];
-        for (int i = 0; i < indices.length; ++i)
-            indices[i] = i;
-
-        IntArrays.quickSort(indices, p::compare);
+        int[] indices = HitsSorter.sortedIndices(p, docs.size());
 
         HitsInternalMutable r = HitsInternal.create(docs.size(), false, false);
         for (int index : indices) {
@@ -213,4 +214,33 @@ class HitsInternalNoLock32 implements HitsInternalMutable {
         }
         return r;
     }
+
+    @Override
+    public HitsInternal sortTop(HitProperty p, long number) {
+        int[] indices = HitsSorter.topIndices(p, docs.size(), (int) Math.min(number, docs.size()));
+
+        HitsInternalMutable r = HitsInternal.create(indices.length, false, false);
+        for (int index : indices) {
+            r.add(docs.getInt(index), starts.getInt(index), ends.getInt(index));
+        }
+        return r;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return BASE_RAM_BYTES_USED + ramBytesUsed(docs) + ramBytesUsed(starts) + ramBytesUsed(ends);
+    }
+
+    /**
+     * Estimate the size of a list's backing array.
+     *
+     * We count the capacity, not the size, because that's the memory actually in use.
+     *
+     * @param list list to estimate
+     * @return estimated size in bytes
+     */
+    private static long ramBytesUsed(IntList list) {
+        long capacity = list instanceof IntArrayList ? ((IntArrayList) list).elements().length : list.size();
+        return RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + capacity * Integer.BYTES);
+    }
 }
@@ -15,6 +15,9 @@ public class HitsList extends HitsAbstract {
 
     private boolean ascendingLuceneDocIds;
 
+    /** Did the search that produced these hits exceed its processing/counting limits? */
+    private MaxStats maxStats = MaxStats.NOT_EXCEEDED;
+
     /**
      * Make a wrapper Hits object for a list of Hit objects.
      *
@@ -72,6 +75,25 @@ public class HitsList extends HitsAbstract {
         this.ascendingLuceneDocIds = ascendingLuceneDocIds;
     }
 
+    /**
+     * Construct a HitsImmutable from all its components, including max stats.
+     *
+     * Used when deriving hits from the (larger) result set of another search.
+     */
+    protected HitsList(
+                       QueryInfo queryInfo,
+                       HitsInternal hits,
+                       long hitsCounted,
+                       long docsRetrieved,
+                       long docsCounted,
+                       CapturedGroups capturedGroups,
+                       boolean ascendingLuceneDocIds,
+                       MaxStats maxStats
+                       ) {
+        this(queryInfo, hits, null, null, hitsCounted, docsRetrieved, docsCounted, capturedGroups, ascendingLuceneDocIds);
+        this.maxStats = maxStats;
+    }
+
     @Override
     public String toString() {
         return "HitsImmutable#" + hitsObjId + " (hits.size()=" + size() + ")";
@@ -106,7 +128,7 @@ public class HitsList extends HitsAbstract {
 
     @Override
     public MaxStats maxStats() {
-        return MaxStats.NOT_EXCEEDED;
+        return maxStats;
     }
 
     @Override
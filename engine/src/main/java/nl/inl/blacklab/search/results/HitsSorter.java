@@ -0,0 +1,142 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.stream.IntStream;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import nl.inl.blacklab.resultproperty.HitProperty;
+
+/**
+ * Determines the sorted order of hits according to a HitProperty.
+ *
+ * If the property supports sort keys (see {@link HitProperty#sortKeyLength()}) and there
+ * are enough hits to make it worthwhile, we first extract the keys for all hits (in
+ * parallel) into one int array per key position. These are then sorted using a stable
+ * parallel radix sort, one pass per key position starting with the last (LSD order).
+ * Only runs of hits with identical keys still need the (much slower) comparator, and
+ * only if the key doesn't completely determine the order.
+ *
+ * Hits that are equal according to the property are always ordered by their index,
+ * so the order doesn't depend on the sort method used, and the first hits selected by
+ * {@link #topIndices(HitProperty, int, int)} are the same as those of a full sort.
+ */
+final class HitsSorter {
+
+    /** With fewer hits than this, just sort using the comparator */
+    static final int MIN_HITS_FOR_SORT_KEYS = 10_000;
+
+    /** How many sort keys to extract per task */
+    private static final int HITS_PER_TASK = 10_000;
+
+    private HitsSorter() {
+    }
+
+    /**
+     * Determine the sorted order of the hits.
+     *
+     * @param p property to sort by (with hits and contexts set)
+     * @param numberOfHits number of hits
+     * @return hit indices in sorted order
+     */
+    static int[] sortedIndices(HitProperty p, int numberOfHits) {
+        if (numberOfHits >= MIN_HITS_FOR_SORT_KEYS && p.sortKeyLength() > 0)
+            return sortedIndicesUsingKeys(p, numberOfHits);
+        int[] indices = identity(numberOfHits);
+        IntArrays.quickSort(indices, stableComparator(p));
+        return indices;
+    }
+
+    /**
+     * Determine the first hits in sorted order, without sorting all of them.
+     *
+     * @param p property to sort by (with hits and contexts set)
+     * @param numberOfHits number of hits
+     * @param number number of hits to select
+     * @return indices of the first hits in sorted order
+     */
+    static int[] topIndices(HitProperty p, int numberOfHits, int number) {
+        return TopResults.select(p::compare, numberOfHits, number);
+    }
+
+    /**
+     * Determine the sorted order of the hits using the property's sort keys.
+     *
+     * @param p property to sort by (with hits and contexts set); must support sort keys
+     * @param numberOfHits number of hits
+     * @return hit indices in sorted order
+     */
+    static int[] sortedIndicesUsingKeys(HitProperty p, int numberOfHits) {
+        // Extract the sort keys for all hits
+        int keyLength = p.sortKeyLength();
+        int[][] keys = new int[keyLength][numberOfHits];
+        int numberOfTasks = (numberOfHits + HITS_PER_TASK - 1) / HITS_PER_TASK;
+        IntStream.range(0, numberOfTasks).parallel().forEach(task -> {
+            int[] key = new int[keyLength];
+            int end = Math.min(numberOfHits, (task + 1) * HITS_PER_TASK);
+            for (int i = task * HITS_PER_TASK; i < end; i++) {
+                p.sortKey(i, key, 0);
+                for (int j = 0; j < keyLength; j++)
+                    keys[j][i] = key[j];
+            }
+        });
+
+        // Sort by the keys, one key position at a time, starting with the last. Each pass is a
+        // stable sort of the current order, so the hits end up in key order.
+        // (the stable indirect radix sort keeps equal elements in index order, so we sort the keys
+        //  in the current order and apply the resulting permutation)
+        int[] indices = identity(numberOfHits);
+        int[] keysInOrder = new int[numberOfHits];
+        int[] order = new int[numberOfHits];
+        int[] newIndices = new int[numberOfHits];
+        for (int j = keyLength - 1; j >= 0; j--) {
+            int[] key = keys[j];
+            for (int i = 0; i < numberOfHits; i++) {
+                keysInOrder[i] = key[indices[i]];
+                order[i] = i;
+            }
+            IntArrays.parallelRadixSortIndirect(order, keysInOrder, true);
+            for (int i = 0; i < numberOfHits; i++)
+                newIndices[i] = indices[order[i]];
+            int[] t = indices;
+            indices = newIndices;
+            newIndices = t;
+        }
+
+        if (!p.sortKeyIsExact()) {
+            // Sort runs of hits with identical keys using the comparator
+            IntComparator cmp = stableComparator(p);
+            int runStart = 0;
+            for (int i = 1; i <= numberOfHits; i++) {
+                if (i == numberOfHits || !sameKey(keys, indices[runStart], indices[i])) {
+                    if (i - runStart > 1)
+                        IntArrays.quickSort(indices, runStart, i, cmp);
+                    runStart = i;
+                }
+            }
+        }
+        return indices;
+    }
+
+    /** Compare hits using the property, ordering equal hits by index */
+    private static IntComparator stableComparator(HitProperty p) {
+        return (a, b) -> {
+            int c = p.compare(a, b);
+            return c != 0 ? c : Integer.compare(a, b);
+        };
+    }
+
+    private static boolean sameKey(int[][] keys, int a, int b) {
+        for (int[] key: keys) {
+            if (key[a] != key[b])
+                return false;
+        }
+        return true;
+    }
+
+    private static int[] identity(int size) {
+        int[] indices = new int[size];
+        for (int i = 0; i < size; ++i)
+            indices[i] = i;
+        return indices;
+    }
+}
@@ -3,8 +3,11 @@ package nl.inl.blacklab.search.results;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
+
 import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
-import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.DocContentsFromForwardIndex;
 import nl.inl.blacklab.search.Kwic;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedFieldNameUtil;
@@ -14,7 +17,12 @@ import nl.inl.blacklab.search.indexmetadata.Annotation;
  *
  * Instances of this class are immutable.
  */
-public class Kwics {
+public class Kwics implements Accountable {
+
+    /** Estimated size of a Hit key plus a Kwic object, excluding the Kwic's tokens */
+    private static final long ENTRY_RAM_BYTES_USED = RamUsageEstimator.HASHTABLE_RAM_BYTES_PER_ENTRY +
+            RamUsageEstimator.shallowSizeOfInstance(HitImpl.class) + RamUsageEstimator.shallowSizeOfInstance(Kwic.class) +
+            RamUsageEstimator.shallowSizeOfInstance(DocContentsFromForwardIndex.class);
     
     /**
      * The KWIC data, if it has been retrieved.
@@ -48,6 +56,17 @@ public class Kwics {
         return kwics.get(h);
     }
 
+    @Override
+    public long ramBytesUsed() {
+        long bytes = RamUsageEstimator.shallowSizeOf(this);
+        for (Kwic kwic: kwics.values()) {
+            bytes += ENTRY_RAM_BYTES_USED;
+            for (String token: kwic.tokens())
+                bytes += RamUsageEstimator.NUM_BYTES_OBJECT_REF + RamUsageEstimator.sizeOf(token);
+        }
+        return bytes;
+    }
+
     
     /**
      * Retrieve KWICs for a (sub)list of hits.
@@ -75,16 +94,17 @@ public class Kwics {
 //        }
 
         // All FIs except word and punct are attributes
-        BlackLabIndex index = hits.index();
+        // (use the forward indexes that go with the index reader the hits were found with)
+        QueryInfo queryInfo = hits.queryInfo();
         Annotation wordAnnot = field.mainAnnotation();
-        AnnotationForwardIndex wordForwardIndex = index.annotationForwardIndex(wordAnnot);
+        AnnotationForwardIndex wordForwardIndex = queryInfo.annotationForwardIndex(wordAnnot);
         Annotation punctAnnot = field.annotation(AnnotatedFieldNameUtil.PUNCTUATION_ANNOT_NAME);
-        AnnotationForwardIndex punctForwardIndex = index.annotationForwardIndex(punctAnnot);
+        AnnotationForwardIndex punctForwardIndex = queryInfo.annotationForwardIndex(punctAnnot);
         Map<Annotation, AnnotationForwardIndex> attrForwardIndices = new HashMap<>();
         for (Annotation annotation: field.annotations()) {
             if (annotation.hasForwardIndex() && !annotation.equals(field.mainAnnotation()) && !annotation.name().equals(
                     AnnotatedFieldNameUtil.PUNCTUATION_ANNOT_NAME)) {
-                attrForwardIndices.put(annotation, index.annotationForwardIndex(annotation));
+                attrForwardIndices.put(annotation, queryInfo.annotationForwardIndex(annotation));
             }
         }
 
@@ -1,7 +1,15 @@
 package nl.inl.blacklab.search.results;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+
+import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
 import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.ContentAccessor;
 import nl.inl.blacklab.search.indexmetadata.AnnotatedField;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.Field;
 
 /**
  * Information about the original query.
@@ -17,7 +25,7 @@ public final class QueryInfo {
     }
 
     public static QueryInfo create(BlackLabIndex index, AnnotatedField field, boolean useCache) {
-        return new QueryInfo(index, field, useCache);
+        return new QueryInfo(index, field, useCache, null);
     }
 
     private final BlackLabIndex index;
@@ -28,11 +36,22 @@ public final class QueryInfo {
     /** Should we use the cache for this query, or bypass it? */
     private final boolean useCache;
 
-    private QueryInfo(BlackLabIndex index, AnnotatedField field, boolean useCache) {
+    /**
+     * Index reader the results were produced with, or null if not pinned yet.
+     *
+     * If the index is reopened while the results are still in use, they keep using
+     * this reader and its forward indexes, as document ids and term ids may have changed.
+     * Whoever caches the results should keep the reader open (see
+     * {@link BlackLabIndex#acquireReader()}).
+     */
+    private final IndexReader reader;
+
+    private QueryInfo(BlackLabIndex index, AnnotatedField field, boolean useCache, IndexReader reader) {
         super();
         this.index = index;
         this.field = field == null ? index.mainAnnotatedField() : field;
         this.useCache = useCache;
+        this.reader = reader;
     }
 
     /**
@@ -46,7 +65,20 @@ public final class QueryInfo {
     public QueryInfo withIndex(BlackLabIndex newIndex) {
         if (this.index == newIndex)
             return this;
-        return new QueryInfo(newIndex, field, useCache);
+        return new QueryInfo(newIndex, field, useCache, null);
+    }
+
+    /**
+     * Return a copy that uses the current index reader from now on, even if the index is reopened.
+     *
+     * If a reader was already pinned, simply returns this object.
+     *
+     * @return QueryInfo with a pinned index reader
+     */
+    public QueryInfo withPinnedReader() {
+        if (reader != null)
+            return this;
+        return new QueryInfo(index, field, useCache, index.reader());
     }
 
     /** @return the index that was searched. */
@@ -64,6 +96,46 @@ public final class QueryInfo {
         return useCache;
     }
 
+    /** @return the index reader the results were produced with (the current reader if not pinned) */
+    public IndexReader reader() {
+        return reader == null ? index.reader() : reader;
+    }
+
+    /** @return searcher for our index reader */
+    public IndexSearcher searcher() {
+        return index.searcher(reader());
+    }
+
+    /**
+     * Get the forward index for an annotation that goes with our index reader.
+     *
+     * @param annotation annotation
+     * @return forward index
+     */
+    public AnnotationForwardIndex annotationForwardIndex(Annotation annotation) {
+        return index.annotationForwardIndex(annotation, reader());
+    }
+
+    /**
+     * Get the content accessor for a field that goes with our index reader.
+     *
+     * @param field field
+     * @return content accessor, or null if there is none for this field
+     */
+    public ContentAccessor contentAccessor(Field field) {
+        return index.contentAccessor(field, reader());
+    }
+
+    /**
+     * Get a Lucene document from our index reader (skipping content store fields).
+     *
+     * @param docId document id
+     * @return Lucene document
+     */
+    public Document luceneDoc(int docId) {
+        return index.luceneDoc(docId, reader());
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
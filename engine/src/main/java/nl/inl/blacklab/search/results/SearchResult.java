@@ -3,23 +3,48 @@ package nl.inl.blacklab.search.results;
 import java.util.HashMap;
 import java.util.Map;
 
-// Base interface for all possible search results
-public interface SearchResult {
+import org.apache.lucene.util.Accountable;
+
+/**
+ * Base interface for all possible search results.
+ *
+ * Results estimate their own heap size (see {@link #ramBytesUsed()}) so the
+ * search cache can decide what to evict based on actual memory use.
+ */
+public interface SearchResult extends Accountable {
+
+    /** Very rough measure of how large a result object is, based on a Hit (3 ints + 12 bytes object overhead) */
+    int ESTIMATED_BYTES_PER_RESULT_OBJECT = 24;
     
     /**
      * How many result objects does this search store?
      * 
-     * Used for estimating the cache size. Hits make up most of the storage
-     * of results objects, and they should take 24 bytes of memory, so we can use
-     * this number to make a reasonable approximation of memory usage.
-     * 
      * Note that this number can be misleading, because Hit objects are
-     * shared between results objects. But it's the best we have at the moment.
+     * shared between results objects. For estimating memory use, use
+     * {@link #ramBytesUsed()} instead.
      * 
      * @return how many hits are stored in this result object
      */
     long numberOfResultObjects();
 
+    /**
+     * Estimate how many bytes of heap memory this result object uses.
+     *
+     * Used by the search cache to decide what to evict. Implementations should
+     * include everything they keep a reference to (hits, captured groups, group maps,
+     * contexts, etc.), even if that data may be shared with another cached result;
+     * this overestimates a little, but that is safer than underestimating.
+     *
+     * The default implementation is a very rough guess based on the number of
+     * result objects (3 ints plus object overhead per result).
+     *
+     * @return estimated heap size in bytes
+     */
+    @Override
+    default long ramBytesUsed() {
+        return numberOfResultObjects() * ESTIMATED_BYTES_PER_RESULT_OBJECT;
+    }
+
     /**
      * Return debug info.
      */
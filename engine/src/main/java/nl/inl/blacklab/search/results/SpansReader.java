@@ -18,6 +18,7 @@ import nl.inl.blacklab.search.Span;
 import nl.inl.blacklab.search.lucene.BLSpanWeight;
 import nl.inl.blacklab.search.lucene.BLSpans;
 import nl.inl.blacklab.search.lucene.HitQueryContext;
+import nl.inl.util.ProgressLock;
 import nl.inl.util.ThreadAborter;
 
 /** 
@@ -61,6 +62,8 @@ class SpansReader implements Runnable {
     private final HitsInternalMutable globalResults;
     /** Master list of capturedGroups (only set if any groups to capture. Should always be locked before writing! */
     private CapturedGroupsImpl globalCapturedGroups;
+    /** Signalled whenever we add hits to {@link #globalResults}, so waiting threads can check them (may be null) */
+    private final ProgressLock globalResultsProgress;
 
     // Internal state
     boolean isDone = false;
@@ -118,6 +121,7 @@ class SpansReader implements Runnable {
      * @param globalHitsCounted     global hits counter (includes ones that weren't retrieved because of max. settings)
      * @param globalHitsToProcess   how many more hits to retrieve
      * @param globalHitsToCount     how many more hits to count
+     * @param globalResultsProgress signalled whenever we add hits to the global results (may be null)
      */
     SpansReader(
         BLSpanWeight weight,
@@ -131,7 +135,8 @@ class SpansReader implements Runnable {
         AtomicLong globalHitsProcessed,
         AtomicLong globalHitsCounted,
         AtomicLong globalHitsToProcess,
-        AtomicLong globalHitsToCount
+        AtomicLong globalHitsToCount,
+        ProgressLock globalResultsProgress
     ) {
         this.spans = null; // inverted for uninitialized version
         this.weight = weight;
@@ -149,6 +154,7 @@ class SpansReader implements Runnable {
         this.globalHitsCounted = globalHitsCounted;
         this.globalHitsToCount = globalHitsToCount;
         this.globalHitsToProcess = globalHitsToProcess;
+        this.globalResultsProgress = globalResultsProgress;
 
         this.isInitialized = false;
         this.isDone = false;
@@ -323,6 +329,8 @@ class SpansReader implements Runnable {
                 capturedGroups.clear();
             }
         }
+        if (globalResultsProgress != null)
+            globalResultsProgress.signalProgress();
     }
 
     public HitQueryContext getHitContext() {
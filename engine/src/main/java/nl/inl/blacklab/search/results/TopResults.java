@@ -0,0 +1,104 @@
+package nl.inl.blacklab.search.results;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+
+/**
+ * Selects the first results in sort order without sorting all of them.
+ *
+ * Keeps a bounded max-heap of the best results seen so far, so we need
+ * O(n log k) comparisons instead of O(n log n), and most results are rejected
+ * after comparing them to the heap's root only. Results that compare equal are
+ * ordered by their index, so the selection is always the start of the order a
+ * stable full sort would produce.
+ */
+final class TopResults {
+
+    private TopResults() {
+    }
+
+    /**
+     * Select the first results in sort order.
+     *
+     * @param cmp comparator for result indices
+     * @param size number of results
+     * @param number number of results to select
+     * @return indices of the first results, in sorted order
+     */
+    static int[] select(IntComparator cmp, int size, int number) {
+        IntComparator stable = (a, b) -> {
+            int c = cmp.compare(a, b);
+            return c != 0 ? c : Integer.compare(a, b);
+        };
+        int heapSize = Math.min(size, number);
+        int[] heap = new int[heapSize];
+        if (heapSize == 0)
+            return heap;
+        for (int i = 0; i < heapSize; i++) {
+            heap[i] = i;
+            siftUp(heap, i, stable);
+        }
+        for (int i = heapSize; i < size; i++) {
+            // Is this result better than the worst one we've selected so far?
+            if (stable.compare(i, heap[0]) < 0) {
+                heap[0] = i;
+                siftDown(heap, heapSize, stable);
+            }
+        }
+        IntArrays.quickSort(heap, stable);
+        return heap;
+    }
+
+    /**
+     * Select the first results in sort order.
+     *
+     * @param results results to select from
+     * @param cmp how to sort the results
+     * @param number number of results to select
+     * @return the first results, in sorted order
+     * @param <T> result type
+     */
+    static <T> List<T> select(List<T> results, Comparator<? super T> cmp, long number) {
+        int[] indices = select((a, b) -> cmp.compare(results.get(a), results.get(b)), results.size(),
+                (int) Math.min(number, Integer.MAX_VALUE));
+        List<T> selected = new ArrayList<>(indices.length);
+        for (int index: indices)
+            selected.add(results.get(index));
+        return selected;
+    }
+
+    /** Move the element at i up until its parent is not smaller (max-heap) */
+    private static void siftUp(int[] heap, int i, IntComparator cmp) {
+        int element = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (cmp.compare(heap[parent], element) >= 0)
+                break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = element;
+    }
+
+    /** Move the root down until neither of its children is larger (max-heap) */
+    private static void siftDown(int[] heap, int heapSize, IntComparator cmp) {
+        int element = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize)
+                break;
+            if (child + 1 < heapSize && cmp.compare(heap[child + 1], heap[child]) > 0)
+                child++;
+            if (cmp.compare(heap[child], element) <= 0)
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = element;
+    }
+}
@@ -20,6 +20,12 @@ import nl.inl.blacklab.search.results.SearchResult;
  */
 public abstract class AbstractSearch<R extends SearchResult> implements Search<R> {
 
+    /**
+     * Windows ending at or before this result select their results from the unsorted
+     * results instead of sorting all of them.
+     */
+    static final long MAX_TOP_RESULTS = 1000;
+
     private final QueryInfo queryInfo;
 
     public AbstractSearch(QueryInfo queryInfo) {
@@ -118,6 +124,24 @@ public abstract class AbstractSearch<R extends SearchResult> implements Search<R
         }
     }
 
+    /**
+     * Should a window on a sorted search select the first results instead?
+     *
+     * Most requests for sorted results only look at the first few pages, so for those
+     * we select just the results we need from the unsorted results. Later pages use the
+     * full sort. Once that's in the cache, we use it for all pages.
+     *
+     * @param sortSearch the sorted search the window is on
+     * @param first first result in the window
+     * @param number number of results in the window
+     * @return true if we should select the first results from the unsorted results
+     */
+    protected static boolean shouldSelectTopResults(Search<?> sortSearch, long first, long number) {
+        if (first < 0 || number < 0 || first > MAX_TOP_RESULTS || number > MAX_TOP_RESULTS - first)
+            return false;
+        return sortSearch.queryInfo().index().cache().getIfFinished(sortSearch) == null;
+    }
+
     @Override
     public QueryInfo queryInfo() {
         return queryInfo;
@@ -131,6 +131,46 @@ public interface Search<R extends SearchResult> {
      */
     default R peekObject(Future<R> future) { return null; }
 
+    /**
+     * Return the search whose results this search operates on, if any.
+     *
+     * For example, a sort operation sorts the results of its source search.
+     * Searches that don't operate on another search (e.g. a query) return null.
+     *
+     * @return source search, or null if none
+     */
+    default Search<?> source() {
+        return null;
+    }
+
+    /**
+     * Give a (very rough) estimate of how expensive this search is.
+     *
+     * The estimate is based on term statistics (see {@link nl.inl.blacklab.search.lucene.BLSpanQuery#reverseMatchingCost(org.apache.lucene.index.IndexReader)})
+     * and roughly corresponds to the number of hits that need to be processed.
+     * Operations on other searches (sort, group, etc.) default to the cost of their source.
+     *
+     * @return estimated cost, or -1 if unknown
+     */
+    default long estimatedCost() {
+        Search<?> source = source();
+        return source == null ? -1 : source.estimatedCost();
+    }
+
+    /**
+     * Key under which the cache indexes this search's finished result.
+     *
+     * Other searches may be able to derive their results from it (e.g. truncate hits
+     * found with a higher limit, or roll up groups by more detailed criteria). Those
+     * look up candidates by this key instead of going through the whole cache (see
+     * {@link SearchCache#findFinishedResult(Object, java.util.function.BiPredicate)}).
+     *
+     * @return key, or null if other searches can't derive their results from this one
+     */
+    default Object supersetKey() {
+        return null;
+    }
+
     @Override
     boolean equals(Object obj);
 
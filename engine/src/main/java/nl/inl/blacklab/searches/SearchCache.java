@@ -2,6 +2,7 @@ package nl.inl.blacklab.searches;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiPredicate;
 
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.search.results.SearchResult;
@@ -34,6 +35,37 @@ public interface SearchCache {
      */
     <R extends SearchResult> SearchCacheEntry<R> getAsync(Search<R> search, boolean allowQueue);
 
+    /**
+     * Get the result of a search if it is in the cache and has finished.
+     *
+     * Unlike {@link #getAsync(Search, boolean)}, this never starts or waits for a search.
+     *
+     * @param search search to look up
+     * @return the result, or null if the search is not in the cache or hasn't finished
+     */
+    default SearchResult getIfFinished(Search<?> search) {
+        return null;
+    }
+
+    /**
+     * Find the result of a finished search in the cache that satisfies a condition.
+     *
+     * Used to derive results from a cached search that subsumes the requested one
+     * (e.g. the same query without a metadata filter) instead of running the requested
+     * search from scratch. Must not block or start any searches.
+     *
+     * Only searches with the specified {@link Search#supersetKey()} are considered.
+     * The condition may be expensive to check, so implementations should not check it
+     * while holding a lock.
+     *
+     * @param supersetKey superset key of the searches to consider
+     * @param test condition that the search and its result must satisfy
+     * @return result of a matching finished search, or null if there is none
+     */
+    default SearchResult findFinishedResult(Object supersetKey, BiPredicate<Search<?>, SearchResult> test) {
+        return null;
+    }
+
     /**
      * Remove a search from the cache.
      *
@@ -50,6 +82,18 @@ public interface SearchCache {
      */
     void removeSearchesForIndex(BlackLabIndex index);
 
+    /**
+     * Notify the cache that an index has switched to a new index reader.
+     *
+     * Results that were produced using the previous index reader are out of date.
+     * By default, all searches for the index are removed.
+     *
+     * @param index index that was reopened
+     */
+    default void indexReopened(BlackLabIndex index) {
+        removeSearchesForIndex(index);
+    }
+
     /**
      * Clear the cache.
      *
@@ -1,6 +1,7 @@
 package nl.inl.blacklab.searches;
 
 import org.apache.commons.lang3.concurrent.ConcurrentUtils;
+import org.apache.lucene.index.IndexReader;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InvalidQuery;
@@ -12,10 +13,16 @@ public final class SearchCacheDummy implements SearchCache {
 
     @Override
     public <R extends SearchResult> SearchCacheEntry<R> getAsync(Search<R> search, boolean allowQueue) {
+        BlackLabIndex index = search.queryInfo().index();
+        // Keep the reader open while the search runs, even if the index is reopened. We don't hold on to
+        // the results, so after this, they rely on the index's own reference to the reader (until it's reopened).
+        IndexReader reader = index.acquireReader();
         try {
             return SearchCacheEntry.fromFuture(ConcurrentUtils.constantFuture(search.executeInternal(null)), search); // It's never in cache, and don't add it either
         } catch (InvalidQuery e) {
             throw BlackLabRuntimeException.wrap(e);
+        } finally {
+            index.releaseReader(reader);
         }
     }
 
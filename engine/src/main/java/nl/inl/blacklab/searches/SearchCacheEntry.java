@@ -46,6 +46,16 @@ public abstract class SearchCacheEntry<R extends SearchResult> implements Future
         return new SearchCacheEntryFromFuture<>(future, search);
     }
 
+    /**
+     * Indicate that a client is still interested in this search.
+     *
+     * The cache may abort running searches that haven't been accessed in a while.
+     * Does nothing by default.
+     */
+    public void updateLastAccess() {
+        // (by default, we don't keep track of this)
+    }
+
     /**
      * Is this search currently running?
      * @return true if the search is running (not queued, cancelled or completed)
@@ -30,6 +30,11 @@ public class SearchCollocationsFiltered extends SearchCollocations {
         return executeChildSearch(activeSearch, source).filter(property, value);
     }
 
+    @Override
+    public SearchCollocations source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
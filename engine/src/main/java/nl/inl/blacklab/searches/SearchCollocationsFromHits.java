@@ -30,6 +30,11 @@ public class SearchCollocationsFromHits extends SearchCollocations {
         return executeChildSearch(activeSearch, source).collocations(annotation, contextSize, sensitivity);
     }
 
+    @Override
+    public SearchHits source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -25,6 +25,11 @@ public class SearchCollocationsSampled extends SearchCollocations {
         return executeChildSearch(activeSearch, source).sample(sampleParameters);
     }
 
+    @Override
+    public SearchCollocations source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
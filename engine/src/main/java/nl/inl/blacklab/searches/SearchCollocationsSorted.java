@@ -25,6 +25,11 @@ public class SearchCollocationsSorted extends SearchCollocations {
         return executeChildSearch(activeSearch, source).sort(property);
     }
 
+    @Override
+    public SearchCollocations source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -27,6 +27,11 @@ public class SearchCollocationsWindow extends SearchCollocations {
         return executeChildSearch(activeSearch, source).window(first, number);
     }
 
+    @Override
+    public SearchCollocations source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(super.hashCode(), source, first, number);
@@ -65,6 +65,11 @@ public class SearchCountFromResults<T extends Results<?, ?>> extends SearchCount
         return new ResultsStatsDelegate(future);
     }
 
+    @Override
+    public SearchForResults<T> source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -27,6 +27,11 @@ public class SearchDocGroupsFiltered extends SearchDocGroups {
         return executeChildSearch(activeSearch, source).filter(property, value);
     }
 
+    @Override
+    public SearchDocGroups source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
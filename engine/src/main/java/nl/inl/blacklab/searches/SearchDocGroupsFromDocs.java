@@ -28,6 +28,11 @@ public class SearchDocGroupsFromDocs extends SearchDocGroups {
         return executeChildSearch(activeSearch, source).group(property, maxDocs);
     }
 
+    @Override
+    public SearchDocs source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(super.hashCode(), source, property, maxDocs);
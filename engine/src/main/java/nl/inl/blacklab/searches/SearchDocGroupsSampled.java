@@ -23,6 +23,11 @@ public class SearchDocGroupsSampled extends SearchDocGroups {
         return executeChildSearch(activeSearch, source).sample(sampleParameters);
     }
 
+    @Override
+    public SearchDocGroups source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -23,6 +23,20 @@ public class SearchDocGroupsSorted extends SearchDocGroups {
         return executeChildSearch(activeSearch, source).sort(property);
     }
 
+    @Override
+    public SearchDocGroups source() {
+        return source;
+    }
+
+    /**
+     * Get the property we sort by.
+     *
+     * @return sort property
+     */
+    public DocGroupProperty sortBy() {
+        return property;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
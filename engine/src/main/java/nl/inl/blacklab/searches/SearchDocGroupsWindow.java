@@ -22,9 +22,21 @@ public class SearchDocGroupsWindow extends SearchDocGroups {
 
     @Override
     public DocGroups executeInternal(ActiveSearch<DocGroups> activeSearch) throws InvalidQuery {
+        if (source instanceof SearchDocGroupsSorted && shouldSelectTopResults(source, first, number)) {
+            // Select the groups we need from the unsorted groups (+1 so we know if there's a next page)
+            SearchDocGroupsSorted sorted = (SearchDocGroupsSorted) source;
+            return executeChildSearch(activeSearch, sorted.source())
+                    .sortTop(sorted.sortBy(), first + number + 1)
+                    .window(first, number);
+        }
         return executeChildSearch(activeSearch, source).window(first, number);
     }
 
+    @Override
+    public SearchDocGroups source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(super.hashCode(), source, first, number);
@@ -26,6 +26,11 @@ public class SearchDocsFiltered extends SearchDocs {
         return executeChildSearch(activeSearch, source).filter(property, value);
     }
 
+    @Override
+    public SearchDocs source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
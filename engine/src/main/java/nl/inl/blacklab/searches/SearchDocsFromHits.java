@@ -32,6 +32,11 @@ public class SearchDocsFromHits extends SearchDocs {
         return maxHits == that.maxHits && source.equals(that.source);
     }
 
+    @Override
+    public SearchHits source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(super.hashCode(), source, maxHits);
@@ -22,6 +22,11 @@ public class SearchDocsSampled extends SearchDocs {
         return executeChildSearch(activeSearch, source).sample(sampleParameters);
     }
 
+    @Override
+    public SearchDocs source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -22,6 +22,11 @@ public class SearchDocsSorted extends SearchDocs {
         return executeChildSearch(activeSearch, source).sort(property);
     }
 
+    @Override
+    public SearchDocs source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -35,6 +35,11 @@ public class SearchDocsWindow extends SearchDocs {
         return first == that.first && number == that.number && source.equals(that.source);
     }
 
+    @Override
+    public SearchDocs source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(super.hashCode(), source, first, number);
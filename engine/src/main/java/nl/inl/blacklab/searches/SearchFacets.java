@@ -24,6 +24,11 @@ public class SearchFacets extends AbstractSearch<Facets> {
         return new Facets(executeChildSearch(activeSearch, source), properties);
     }
 
+    @Override
+    public SearchDocs source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
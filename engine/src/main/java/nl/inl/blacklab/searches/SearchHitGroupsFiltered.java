@@ -29,6 +29,11 @@ public class SearchHitGroupsFiltered extends SearchHitGroups {
         return executeChildSearch(activeSearch, source).filter(property, value);
     }
 
+    @Override
+    public SearchHitGroups source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -1,5 +1,6 @@
 package nl.inl.blacklab.searches;
 
+import java.util.List;
 import java.util.Objects;
 
 import nl.inl.blacklab.exceptions.InvalidQuery;
@@ -51,6 +52,14 @@ public class SearchHitGroupsFromHits extends SearchHitGroups {
      */
     @Override
     public HitGroups executeInternal(ActiveSearch<HitGroups> activeSearch) throws InvalidQuery {
+        if (!mustStoreHits) {
+            // If we've already grouped by more detailed criteria (e.g. A+B when we want A), roll those up.
+            // (groups we can roll up share our first criterion, so they have the same superset key)
+            HitGroups detailed = (HitGroups) queryInfo().index().cache().findFinishedResult(supersetKey(),
+                    (search, result) -> !equals(search) && SupersetResults.canRollUp((HitGroups) result, property));
+            if (detailed != null)
+                return SupersetResults.rollUp(detailed, property, maxResultsToStorePerGroup);
+        }
         if (HitGroupsTokenFrequencies.canUse(mustStoreHits, source, property)) {
             // Any token query, group by hit text or doc metadata! Choose faster path that just "looks up"
             // token frequencies in the forward index(es).
@@ -70,6 +79,16 @@ public class SearchHitGroupsFromHits extends SearchHitGroups {
         return maxResultsToStorePerGroup == that.maxResultsToStorePerGroup && mustStoreHits == that.mustStoreHits && source.equals(that.source) && property.equals(that.property);
     }
 
+    @Override
+    public Object supersetKey() {
+        return List.of(SearchHitGroupsFromHits.class, source, property.propsList().get(0));
+    }
+
+    @Override
+    public SearchHits source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(super.hashCode(), source, property, maxResultsToStorePerGroup, mustStoreHits);
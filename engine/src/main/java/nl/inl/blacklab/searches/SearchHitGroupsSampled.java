@@ -25,6 +25,11 @@ public class SearchHitGroupsSampled extends SearchHitGroups {
         return executeChildSearch(activeSearch, source).sample(sampleParameters);
     }
 
+    @Override
+    public SearchHitGroups source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -27,6 +27,20 @@ public class SearchHitGroupsSorted extends SearchHitGroups {
         return executeChildSearch(activeSearch, source).sort(property);
     }
 
+    @Override
+    public SearchHitGroups source() {
+        return source;
+    }
+
+    /**
+     * Get the property we sort by.
+     *
+     * @return sort property
+     */
+    public GroupProperty<Hit, HitGroup> sortBy() {
+        return property;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
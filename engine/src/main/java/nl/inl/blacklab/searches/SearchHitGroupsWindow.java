@@ -24,6 +24,13 @@ public class SearchHitGroupsWindow extends SearchHitGroups {
 
     @Override
     public HitGroups executeInternal(ActiveSearch<HitGroups> activeSearch) throws InvalidQuery {
+        if (source instanceof SearchHitGroupsSorted && shouldSelectTopResults(source, first, number)) {
+            // Select the groups we need from the unsorted groups (+1 so we know if there's a next page)
+            SearchHitGroupsSorted sorted = (SearchHitGroupsSorted) source;
+            return executeChildSearch(activeSearch, sorted.source())
+                    .sortTop(sorted.sortBy(), first + number + 1)
+                    .window(first, number);
+        }
         return executeChildSearch(activeSearch, source).window(first, number);
     }
 
@@ -36,6 +43,11 @@ public class SearchHitGroupsWindow extends SearchHitGroups {
         return first == that.first && number == that.number && source.equals(that.source);
     }
 
+    @Override
+    public SearchHitGroups source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(super.hashCode(), source, first, number);
@@ -26,6 +26,11 @@ public class SearchHitsFiltered extends SearchHits {
         return executeChildSearch(activeSearch, source).filter(property, value);
     }
 
+    @Override
+    public SearchHits source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -1,10 +1,14 @@
 package nl.inl.blacklab.searches;
 
+import java.util.List;
+
 import org.apache.lucene.search.Query;
 
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.SpanQueryFiltered;
 import nl.inl.blacklab.search.results.Hits;
 import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.SearchResult;
 import nl.inl.blacklab.search.results.SearchSettings;
 
 /** A search that yields hits. */
@@ -14,6 +18,9 @@ public class SearchHitsFromBLSpanQuery extends SearchHits {
 
     private final SearchSettings searchSettings;
 
+    /** Estimated cost, determined on first call to {@link #estimatedCost()} (-2 if not yet known) */
+    private volatile long estimatedCost = -2;
+
     public SearchHitsFromBLSpanQuery(QueryInfo queryInfo, BLSpanQuery spanQuery, SearchSettings searchSettings) {
         super(queryInfo);
         if (spanQuery == null)
@@ -29,9 +36,71 @@ public class SearchHitsFromBLSpanQuery extends SearchHits {
      */
     @Override
     public Hits executeInternal(ActiveSearch<Hits> activeSearch) {
+        Hits hits = hitsFromCachedSuperset();
+        if (hits != null)
+            return hits;
         return queryInfo().index().find(spanQuery, searchSettings);
     }
 
+    /**
+     * Try to derive our hits from a finished search in the cache.
+     *
+     * Hits for the same query with higher limits can be truncated, and hits for our
+     * query without its metadata filter can be filtered using a document bitset.
+     *
+     * @return derived hits, or null if there's no suitable search in the cache
+     */
+    private Hits hitsFromCachedSuperset() {
+        SearchCache cache = queryInfo().index().cache();
+        Hits superset = (Hits) cache.findFinishedResult(supersetKey(),
+                (search, result) -> isSuperset(search, result, spanQuery, false));
+        if (superset != null)
+            return SupersetResults.deriveHits(queryInfo(), superset, null, searchSettings);
+        if (spanQuery instanceof SpanQueryFiltered) {
+            SpanQueryFiltered filtered = (SpanQueryFiltered) spanQuery;
+            superset = (Hits) cache.findFinishedResult(supersetKey(queryInfo(), filtered.getClause()),
+                    (search, result) -> isSuperset(search, result, filtered.getClause(), true));
+            if (superset != null) {
+                return SupersetResults.deriveHits(queryInfo(), superset,
+                        SupersetResults.docsMatching(queryInfo().index(), filtered.getFilter()), searchSettings);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Object supersetKey() {
+        return supersetKey(queryInfo(), spanQuery);
+    }
+
+    private static Object supersetKey(QueryInfo queryInfo, BLSpanQuery query) {
+        return List.of(SearchHitsFromBLSpanQuery.class, queryInfo, query);
+    }
+
+    private boolean isSuperset(Search<?> search, SearchResult result, BLSpanQuery query, boolean mustBeComplete) {
+        if (!(search instanceof SearchHitsFromBLSpanQuery) || equals(search) || !queryInfo().equals(search.queryInfo()))
+            return false;
+        SearchHitsFromBLSpanQuery other = (SearchHitsFromBLSpanQuery) search;
+        return other.spanQuery.equals(query) &&
+                SupersetResults.canDeriveHits((Hits) result, other.searchSettings, searchSettings, mustBeComplete);
+    }
+
+    @Override
+    public long estimatedCost() {
+        // Looking up term statistics is not free, and derived searches ask us again, so remember the result
+        long cost = estimatedCost;
+        if (cost == -2) {
+            try {
+                cost = spanQuery.reverseMatchingCost(queryInfo().index().reader());
+            } catch (RuntimeException e) {
+                // Can't estimate this query (e.g. it must be rewritten first)
+                cost = -1;
+            }
+            estimatedCost = cost;
+        }
+        return cost;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
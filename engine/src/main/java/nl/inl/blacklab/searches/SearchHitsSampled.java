@@ -23,6 +23,11 @@ public class SearchHitsSampled extends SearchHits {
         return executeChildSearch(activeSearch, source).sample(sampleParameters);
     }
 
+    @Override
+    public SearchHits source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
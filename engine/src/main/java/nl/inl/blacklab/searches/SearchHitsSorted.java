@@ -23,6 +23,20 @@ public class SearchHitsSorted extends SearchHits {
         return executeChildSearch(activeSearch, source).sort(property);
     }
 
+    @Override
+    public SearchHits source() {
+        return source;
+    }
+
+    /**
+     * Get the property we sort by.
+     *
+     * @return sort property
+     */
+    public HitProperty sortBy() {
+        return property;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -23,9 +23,33 @@ public class SearchHitsWindow extends SearchHits {
 
     @Override
     public Hits executeInternal(ActiveSearch<Hits> activeSearch) throws InvalidQuery {
+        if (selectsTopHits()) {
+            // Select the hits we need from the unsorted hits (+1 so we know if there's a next page)
+            SearchHitsSorted sorted = (SearchHitsSorted) source;
+            return executeChildSearch(activeSearch, sorted.source())
+                    .sortTop(sorted.sortBy(), first + number + 1)
+                    .window(first, number);
+        }
         return executeChildSearch(activeSearch, source).window(first, number);
     }
 
+    /**
+     * Will we select the hits in this window from the unsorted hits?
+     *
+     * If so, the hits are never fully sorted, so there's no need to
+     * execute our source search as well.
+     *
+     * @return true if we'll select the first hits instead of sorting all of them
+     */
+    public boolean selectsTopHits() {
+        return source instanceof SearchHitsSorted && shouldSelectTopResults(source, first, number);
+    }
+
+    @Override
+    public SearchHits source() {
+        return source;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(super.hashCode(), source, first, number);
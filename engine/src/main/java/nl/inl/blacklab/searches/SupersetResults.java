@@ -0,0 +1,248 @@
+package nl.inl.blacklab.searches;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+import nl.inl.blacklab.resultproperty.HitProperty;
+import nl.inl.blacklab.resultproperty.HitPropertyMultiple;
+import nl.inl.blacklab.resultproperty.PropertyValue;
+import nl.inl.blacklab.resultproperty.PropertyValueMultiple;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.results.CapturedGroups;
+import nl.inl.blacklab.search.results.Hit;
+import nl.inl.blacklab.search.results.HitGroup;
+import nl.inl.blacklab.search.results.HitGroups;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.HitsInternal;
+import nl.inl.blacklab.search.results.HitsInternalMutable;
+import nl.inl.blacklab.search.results.MaxStats;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.Results;
+import nl.inl.blacklab.search.results.SearchSettings;
+
+/**
+ * Derives results from the (finished) results of a search that subsumes them.
+ *
+ * For example, hits for a query with a metadata filter can be derived from the hits
+ * for the same query without the filter, and groups by A can be derived from groups by A+B.
+ * This saves us from running a very similar search again.
+ */
+final class SupersetResults {
+
+    private SupersetResults() {
+    }
+
+    /**
+     * Can we derive hits with the specified settings from these hits?
+     *
+     * @param superset finished hits for the same query (or the same query without a filter)
+     * @param supersetSettings settings the superset hits were found with
+     * @param settings settings for the hits we want
+     * @param mustBeComplete if true, the superset must contain all hits (needed if we want to filter them)
+     * @return true if we can derive our hits from the superset
+     */
+    static boolean canDeriveHits(Hits superset, SearchSettings supersetSettings, SearchSettings settings,
+            boolean mustBeComplete) {
+        if (supersetSettings == null || settings == null || !superset.doneProcessingAndCounting())
+            return false;
+        MaxStats maxStats = superset.maxStats();
+        boolean processedAll = !maxStats.hitsProcessedExceededMaximum();
+        boolean countedAll = !maxStats.hitsCountedExceededMaximum();
+        if (processedAll && countedAll)
+            return true; // we have all the hits
+        if (mustBeComplete)
+            return false;
+
+        // The superset stopped early. We can only use it if it processed at least as many hits as we would,
+        // and counted exactly as many hits as we would.
+        boolean processedEnough = processedAll ||
+                covers(supersetSettings.maxHitsToProcess(), settings.maxHitsToProcess());
+        boolean countedSame = countedAll ?
+                settings.maxHitsToCount() == Results.NO_LIMIT ||
+                        superset.hitsStats().countedTotal() < settings.maxHitsToCount() :
+                supersetSettings.maxHitsToCount() == settings.maxHitsToCount();
+        return processedEnough && countedSame;
+    }
+
+    private static boolean covers(long supersetLimit, long limit) {
+        return supersetLimit == Results.NO_LIMIT || limit != Results.NO_LIMIT && limit <= supersetLimit;
+    }
+
+    /**
+     * Derive hits from a finished superset of hits.
+     *
+     * Call {@link #canDeriveHits(Hits, SearchSettings, SearchSettings, boolean)} first.
+     *
+     * @param queryInfo query info for the new hits
+     * @param superset hits to derive from
+     * @param docFilter documents to keep hits from, or null to keep all hits
+     * @param settings processing and counting limits to apply
+     * @return derived hits
+     */
+    static Hits deriveHits(QueryInfo queryInfo, Hits superset, Bits docFilter, SearchSettings settings) {
+        HitsInternal source = superset.getInternalHits();
+        long maxProcess = settings.maxHitsToProcess();
+        long maxCount = settings.maxHitsToCount();
+        HitsInternalMutable hits = HitsInternal.create(-1, source.size(), false);
+        long hitsCounted = 0;
+        long docsRetrieved = 0;
+        long docsCounted = 0;
+        boolean ascendingLuceneDocIds = true;
+        int prevDoc = -1;
+        for (long i = 0; i < source.size(); i++) {
+            int doc = source.doc(i);
+            if (docFilter != null && !docFilter.get(doc))
+                continue;
+            if (maxCount != Results.NO_LIMIT && hitsCounted >= maxCount)
+                break;
+            boolean newDoc = doc != prevDoc;
+            hitsCounted++;
+            if (newDoc)
+                docsCounted++;
+            if (maxProcess == Results.NO_LIMIT || hits.size() < maxProcess) {
+                hits.add(doc, source.start(i), source.end(i));
+                if (newDoc)
+                    docsRetrieved++;
+            }
+            if (doc < prevDoc)
+                ascendingLuceneDocIds = false;
+            prevDoc = doc;
+        }
+        MaxStats supersetMaxStats = superset.maxStats();
+        if (supersetMaxStats.hitsProcessedExceededMaximum() || supersetMaxStats.hitsCountedExceededMaximum()) {
+            // The superset counted more hits than it stored; we count the same (see canDeriveHits())
+            hitsCounted = superset.hitsStats().countedTotal();
+            docsCounted = superset.docsStats().countedTotal();
+        }
+        // (same definition as HitsFromQuery)
+        MaxStats maxStats = new MaxStats(maxProcess != Results.NO_LIMIT && hitsCounted >= maxProcess,
+                maxCount != Results.NO_LIMIT && hitsCounted >= maxCount);
+        return Hits.list(queryInfo, hits, hitsCounted, docsRetrieved, docsCounted, superset.capturedGroups(),
+                ascendingLuceneDocIds, maxStats);
+    }
+
+    /**
+     * Determine which documents match a filter query.
+     *
+     * @param index index to search
+     * @param filter filter query
+     * @return bitset of (global) Lucene document ids
+     */
+    static Bits docsMatching(BlackLabIndex index, Query filter) {
+        FixedBitSet docs = new FixedBitSet(index.reader().maxDoc());
+        try {
+            index.searcher().search(filter, new SimpleCollector() {
+                private int docBase;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) {
+                    docBase = context.docBase;
+                }
+
+                @Override
+                public void collect(int doc) {
+                    docs.set(docBase + doc);
+                }
+
+                @Override
+                public ScoreMode scoreMode() {
+                    return ScoreMode.COMPLETE_NO_SCORES;
+                }
+            });
+        } catch (IOException e) {
+            throw BlackLabRuntimeException.wrap(e);
+        }
+        return docs;
+    }
+
+    /**
+     * How many of the detailed grouping criteria correspond to our criteria?
+     *
+     * @param detailed criteria of the detailed grouping, e.g. A+B
+     * @param criteria our criteria, e.g. A
+     * @return number of detailed criteria that make up our criteria, or -1 if we can't roll up
+     */
+    private static int rollUpLength(HitProperty detailed, HitProperty criteria) {
+        if (!(detailed instanceof HitPropertyMultiple))
+            return -1;
+        List<HitProperty> detailedProps = detailed.propsList();
+        List<HitProperty> props = criteria.propsList();
+        if (props.size() >= detailedProps.size() || !detailedProps.subList(0, props.size()).equals(props))
+            return -1;
+        return props.size();
+    }
+
+    /**
+     * Can we roll up these groups to groups by the specified criteria?
+     *
+     * This is possible if the groups are by more detailed criteria (e.g. A+B if we want A)
+     * and all groups store all their hits (so we can determine the number of documents in
+     * each rolled-up group).
+     *
+     * @param detailed finished groups
+     * @param criteria criteria we want to group by
+     * @return true if we can roll up
+     */
+    static boolean canRollUp(HitGroups detailed, HitProperty criteria) {
+        return rollUpLength(detailed.groupCriteria(), criteria) > 0 &&
+                detailed.stream().allMatch(g -> g.identity() instanceof PropertyValueMultiple &&
+                        g.storedResults().size() == g.size());
+    }
+
+    /**
+     * Roll up groups to groups by less detailed criteria.
+     *
+     * Call {@link #canRollUp(HitGroups, HitProperty)} first.
+     *
+     * Stored hits in each group will be in document order.
+     *
+     * @param detailed groups to roll up, e.g. grouped by A+B
+     * @param criteria criteria to group by, e.g. A
+     * @param maxResultsToStorePerGroup how many hits to store per group at most
+     * @return rolled-up groups
+     */
+    static HitGroups rollUp(HitGroups detailed, HitProperty criteria, long maxResultsToStorePerGroup) {
+        int length = rollUpLength(detailed.groupCriteria(), criteria);
+        Map<PropertyValue, List<HitGroup>> subgroupsPerGroup = new LinkedHashMap<>();
+        for (HitGroup subgroup: detailed) {
+            PropertyValue[] values = ((PropertyValueMultiple) subgroup.identity()).value();
+            PropertyValue identity = criteria instanceof HitPropertyMultiple ?
+                    new PropertyValueMultiple(Arrays.copyOf(values, length)) : values[0];
+            subgroupsPerGroup.computeIfAbsent(identity, k -> new ArrayList<>()).add(subgroup);
+        }
+        List<HitGroup> groups = new ArrayList<>(subgroupsPerGroup.size());
+        for (Map.Entry<PropertyValue, List<HitGroup>> e: subgroupsPerGroup.entrySet()) {
+            long size = 0;
+            CapturedGroups capturedGroups = null;
+            List<Hit> hits = new ArrayList<>();
+            for (HitGroup subgroup: e.getValue()) {
+                size += subgroup.size();
+                Hits stored = subgroup.storedResults();
+                stored.forEach(hits::add);
+                if (capturedGroups == null)
+                    capturedGroups = stored.capturedGroups();
+            }
+            hits.sort(null);
+            long numberToStore = maxResultsToStorePerGroup < 0 ? hits.size() :
+                    Math.min(hits.size(), maxResultsToStorePerGroup);
+            HitsInternalMutable storedHits = HitsInternal.create(numberToStore, numberToStore, false);
+            for (int i = 0; i < numberToStore; i++)
+                storedHits.add(hits.get(i));
+            groups.add(HitGroup.fromList(detailed.queryInfo(), e.getKey(), storedHits, capturedGroups, size));
+        }
+        return HitGroups.fromList(detailed.queryInfo(), groups, criteria, null, null, detailed.hitsStats(),
+                detailed.docsStats());
+    }
+}
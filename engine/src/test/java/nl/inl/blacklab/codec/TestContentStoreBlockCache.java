@@ -0,0 +1,55 @@
+package nl.inl.blacklab.codec;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestContentStoreBlockCache {
+
+    private static ContentStoreBlockCache.Key key(int docId, int blockNumber) {
+        return new ContentStoreBlockCache.Key("segment", 0, docId, blockNumber);
+    }
+
+    @Test
+    public void testHitsAndMisses() throws IOException {
+        ContentStoreBlockCache cache = new ContentStoreBlockCache(1_000_000);
+        AtomicInteger loads = new AtomicInteger();
+        ContentStoreBlockCache.BlockLoader loader = () -> "block" + loads.incrementAndGet();
+
+        Assert.assertEquals("block1", cache.get(key(1, 0), loader));
+        Assert.assertEquals("block1", cache.get(key(1, 0), loader));
+        Assert.assertEquals("block2", cache.get(key(1, 1), loader));
+        Assert.assertEquals("block3", cache.get(new ContentStoreBlockCache.Key("other", 0, 1, 0), loader));
+        Assert.assertEquals(3, loads.get());
+        Assert.assertEquals(1, cache.stats().hitCount());
+        Assert.assertEquals(3, cache.stats().missCount());
+        Assert.assertEquals(0.25, (double) cache.getStatus().get("hitRatio"), 0.0001);
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        ContentStoreBlockCache cache = new ContentStoreBlockCache(1_000_000);
+        cache.setMaxSizeBytes(0);
+        AtomicInteger loads = new AtomicInteger();
+        ContentStoreBlockCache.BlockLoader loader = () -> "block" + loads.incrementAndGet();
+        cache.get(key(1, 0), loader);
+        cache.get(key(1, 0), loader);
+        Assert.assertEquals(2, loads.get());
+        Assert.assertEquals(0, cache.cache().estimatedSize());
+    }
+
+    @Test
+    public void testSizeBound() throws IOException {
+        int maxSizeBytes = 10_000;
+        ContentStoreBlockCache cache = new ContentStoreBlockCache(maxSizeBytes);
+        String block = StringUtils.repeat('x', 1000);
+        for (int i = 0; i < 100; i++)
+            cache.get(key(i, 0), () -> block);
+        cache.cache().cleanUp();
+        Assert.assertTrue(cache.cache().estimatedSize() > 0);
+        Assert.assertTrue((long) cache.getStatus().get("sizeBytes") <= maxSizeBytes);
+    }
+}
@@ -5,6 +5,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Triple;
 import org.junit.Assert;
 import org.junit.Before;
@@ -18,7 +19,7 @@ public class TestContentStoreBlockCodec {
 
     @Parameters(name = "codec #{0}")
     public static Collection<Integer> codecToUse() {
-        return List.of(0, 1);
+        return List.of(0, 1, 2);
     }
 
     /** Code of the codec to use */
@@ -70,6 +71,22 @@ public class TestContentStoreBlockCodec {
         }
     }
 
+    @Test
+    public void testLargeBlock() throws IOException {
+        // A full block with repetitive, partly non-ASCII text
+        String input = StringUtils.repeat("De kat zat op de mat, één keer – ", 300)
+                .substring(0, BlackLab40StoredFieldsFormat.DEFAULT_BLOCK_SIZE_CHARS);
+        byte[] encoded = encoder.encode(input, 0, input.length());
+        Assert.assertEquals(input, decoder.decode(encoded, 0, encoded.length));
+
+        // Decoding into a buffer that's too small should fail gracefully
+        // (the uncompressed codec throws an exception instead)
+        if (blockCodecCode == 0)
+            return;
+        byte[] decodeBuffer = new byte[100];
+        Assert.assertEquals(-1, decoder.decode(encoded, 0, encoded.length, decodeBuffer, 0, decodeBuffer.length));
+    }
+
     private void testEncodeDecode(Triple<String, Integer, Integer> test) throws IOException {
         String testTitle = getTestTitle(test);
         String inputBuffer = test.getLeft();
@@ -0,0 +1,49 @@
+package nl.inl.blacklab.forwardindex;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestOffHeapByteArrays {
+
+    @Test
+    public void testArrays() {
+        String[] strings = { "", "a", "b", StringUtils.repeat('x', 300), "été", "ab" };
+        OffHeapByteArrays.Builder builder = new OffHeapByteArrays.Builder(strings.length, 4);
+        for (String str: strings)
+            builder.add(str.getBytes(StandardCharsets.UTF_8));
+        OffHeapByteArrays arrays = builder.build();
+
+        Assert.assertEquals(strings.length, arrays.size());
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = strings[i].getBytes(StandardCharsets.UTF_8);
+            Assert.assertEquals(strings[i], arrays.getString(i));
+            Assert.assertEquals(bytes.length, arrays.length(i));
+            Assert.assertEquals(Arrays.hashCode(bytes), arrays.hashCode(i));
+            Assert.assertTrue(arrays.equals(i, bytes));
+        }
+        byte[] a = "a".getBytes(StandardCharsets.UTF_8);
+        Assert.assertTrue(arrays.compare(0, a) < 0);
+        Assert.assertEquals(0, arrays.compare(1, a));
+        Assert.assertTrue(arrays.compare(5, a) > 0);
+        Assert.assertTrue(arrays.compare(4, a) > 0); // bytes are compared unsigned
+        Assert.assertFalse(arrays.equals(5, a));
+    }
+
+    @Test
+    public void testRelease() {
+        OffHeapByteArrays.Builder builder = new OffHeapByteArrays.Builder(2, 4);
+        builder.add("aap".getBytes(StandardCharsets.UTF_8));
+        builder.add("noot".getBytes(StandardCharsets.UTF_8));
+        OffHeapByteArrays arrays = builder.build();
+        arrays.retain(); // shared with another owner
+        arrays.release();
+        Assert.assertEquals("noot", arrays.getString(1));
+        arrays.release();
+        Assert.assertThrows(IllegalStateException.class, () -> arrays.getString(1));
+        Assert.assertThrows(IllegalStateException.class, arrays::retain);
+    }
+}
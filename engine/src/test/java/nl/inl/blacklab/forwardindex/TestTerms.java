@@ -4,6 +4,7 @@ import java.io.File;
 import java.text.Collator;
 import java.util.Locale;
 
+import org.apache.lucene.util.BytesRef;
 import org.eclipse.collections.api.set.primitive.MutableIntSet;
 import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
 import org.junit.AfterClass;
@@ -114,4 +115,26 @@ public class TestTerms {
             Assert.assertEquals(expected[i], results.intIterator().next());
         }
     }
+
+    @Test
+    public void testIndexOfCaseAndNotFound() {
+        Assert.assertEquals(-1, t.indexOf("The"));
+        Assert.assertEquals(-1, t.indexOf("cat"));
+        MutableIntSet results = new IntHashSet();
+        t.indexOf(results, "ThE", MatchSensitivity.INSENSITIVE);
+        Assert.assertEquals(IntHashSet.newSetWith(0), results);
+        results.clear();
+        t.indexOf(results, "cat", MatchSensitivity.INSENSITIVE);
+        Assert.assertEquals(IntHashSet.newSetWith(-1), results);
+    }
+
+    @Test
+    public void testGetBytes() {
+        BytesRef bytes = new BytesRef();
+        t.getBytes(2, bytes);
+        Assert.assertEquals("brown", bytes.utf8ToString());
+        t.getBytes(7, bytes);
+        Assert.assertEquals("dog", bytes.utf8ToString());
+        Assert.assertSame(t.get(7), t.get(7)); // decoded term is cached
+    }
 }
@@ -0,0 +1,105 @@
+package nl.inl.blacklab.index.annotated;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestTokenBuffer {
+
+    private static BytesRef bytes(int... values) {
+        byte[] b = new byte[values.length];
+        for (int i = 0; i < values.length; i++)
+            b[i] = (byte) values[i];
+        return new BytesRef(b);
+    }
+
+    @Test
+    public void testValuesAndIncrements() {
+        TokenBuffer buffer = new TokenBuffer(false);
+        buffer.add("the", 1);
+        buffer.add("quick", 1);
+        buffer.add("the", 1);
+        buffer.insert(1, "a", 0);
+        buffer.setIncrement(2, 2);
+        Assert.assertEquals(List.of("the", "a", "quick", "the"), buffer.values());
+        Assert.assertEquals(List.of(1, 0, 2, 1), buffer.positionIncrements());
+        Assert.assertEquals(3, buffer.poolSize());
+        Assert.assertFalse(buffer.hasPayloads());
+        Assert.assertTrue(buffer.isPayloadNull(0));
+    }
+
+    @Test
+    public void testPayloads() {
+        TokenBuffer buffer = new TokenBuffer(true);
+        buffer.add("a", 1);
+        buffer.addPayload(bytes(1, 2));
+        buffer.add("b", 1);
+        buffer.addPayload(null);
+        buffer.insert(0, "c", 0);
+        buffer.insertPayload(0, bytes(3));
+        buffer.setPayload(2, bytes(4, 5, 6));
+
+        BytesRef ref = new BytesRef();
+        Assert.assertEquals(bytes(3), buffer.payload(0, ref));
+        Assert.assertEquals(bytes(1, 2), buffer.payload(1, ref));
+        Assert.assertEquals(bytes(4, 5, 6), buffer.payload(2, ref));
+        Assert.assertTrue(buffer.isPayloadNull(3)); // never added
+        buffer.setPayload(2, null);
+        Assert.assertNull(buffer.payload(2, ref));
+    }
+
+    @Test
+    public void testReset() {
+        TokenBuffer buffer = new TokenBuffer(true);
+        buffer.add("a", 1);
+        buffer.addPayload(bytes(1));
+        buffer.reset();
+        Assert.assertEquals(0, buffer.size());
+        Assert.assertEquals(0, buffer.payloadCount());
+        Assert.assertEquals(1, buffer.poolSize()); // value pool is kept between documents
+
+        // A document with many distinct values shouldn't make us keep them all
+        for (int i = 0; i <= TokenBuffer.MAX_RETAINED_POOL_SIZE; i++)
+            buffer.add("v" + i, 1);
+        buffer.reset();
+        Assert.assertEquals(0, buffer.poolSize());
+        buffer.add("b", 1);
+        Assert.assertEquals(List.of("b"), buffer.values());
+    }
+
+    @Test
+    public void testTokenStream() throws IOException {
+        TokenBuffer buffer = new TokenBuffer(true);
+        buffer.add("x", 1);
+        buffer.addPayload(bytes(7));
+        buffer.add("y", 0);
+        buffer.addPayload(null);
+        buffer.add("x", 3);
+
+        TokenStream ts = new TokenStreamFromBuffer(buffer);
+        CharTermAttribute termAttr = ts.getAttribute(CharTermAttribute.class);
+        PositionIncrementAttribute posIncrAttr = ts.getAttribute(PositionIncrementAttribute.class);
+        PayloadAttribute payloadAttr = ts.getAttribute(PayloadAttribute.class);
+        ts.reset();
+        Assert.assertTrue(ts.incrementToken());
+        Assert.assertEquals("x", termAttr.toString());
+        Assert.assertEquals(1, posIncrAttr.getPositionIncrement());
+        Assert.assertEquals(bytes(7), payloadAttr.getPayload());
+        Assert.assertTrue(ts.incrementToken());
+        Assert.assertEquals("y", termAttr.toString());
+        Assert.assertEquals(0, posIncrAttr.getPositionIncrement());
+        Assert.assertNull(payloadAttr.getPayload());
+        Assert.assertTrue(ts.incrementToken());
+        Assert.assertEquals("x", termAttr.toString());
+        Assert.assertEquals(3, posIncrAttr.getPositionIncrement());
+        Assert.assertNull(payloadAttr.getPayload());
+        Assert.assertFalse(ts.incrementToken());
+    }
+}
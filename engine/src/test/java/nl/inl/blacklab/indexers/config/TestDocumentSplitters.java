@@ -0,0 +1,89 @@
+package nl.inl.blacklab.indexers.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.inl.blacklab.index.DocumentSplitter;
+
+public class TestDocumentSplitters {
+
+    private static List<String> split(DocumentSplitter splitter, String input, int minPartSize) throws IOException {
+        List<String> parts = new ArrayList<>();
+        splitter.split(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8,
+                minPartSize, part -> parts.add(new String(part, StandardCharsets.UTF_8)));
+        return parts;
+    }
+
+    @Test
+    public void testTabular() throws IOException {
+        ConfigInputFormat config = new ConfigInputFormat("test");
+        config.setFileType(ConfigInputFormat.FileType.TABULAR);
+        config.setDocumentPath("doc");
+        config.addFileTypeOption("type", "tsv");
+        config.addFileTypeOption("columnNames", "true");
+        DocumentSplitter splitter = DocIndexerConfig.documentSplitter(config);
+        Assert.assertNotNull(splitter);
+
+        String input = "word\tlemma\n<doc id=\"1\">\nThe\tthe\n</doc>\n<doc id=\"2\">\ncat\tcat\n</doc>\n";
+        List<String> parts = split(splitter, input, 1);
+        Assert.assertEquals(List.of(
+                "word\tlemma\n<doc id=\"1\">\nThe\tthe\n</doc>\n",
+                "word\tlemma\n<doc id=\"2\">\ncat\tcat\n</doc>\n"), parts);
+
+        // Large minimum part size: everything in one part
+        Assert.assertEquals(List.of(input), split(splitter, input, 1_000_000));
+    }
+
+    @Test
+    public void testTabularQuotedMultilineValue() throws IOException {
+        ConfigInputFormat config = new ConfigInputFormat("test");
+        config.setFileType(ConfigInputFormat.FileType.TABULAR);
+        config.setDocumentPath("doc");
+        config.addFileTypeOption("type", "csv");
+        config.addFileTypeOption("quote", "\"");
+        DocumentSplitter splitter = DocIndexerConfig.documentSplitter(config);
+
+        // The quoted value contains a line that looks like a document open tag
+        String doc1 = "<doc id=\"1\">\nThe,\"a \"\"quoted\"\"\n<doc id=\"x\">\nvalue\"\n</doc>\n";
+        String doc2 = "<doc id=\"2\">\ncat,cat\n</doc>\n";
+        Assert.assertEquals(List.of(doc1, doc2), split(splitter, doc1 + doc2, 1));
+    }
+
+    @Test
+    public void testTabularSingleDocument() {
+        ConfigInputFormat config = new ConfigInputFormat("test");
+        config.setFileType(ConfigInputFormat.FileType.TABULAR);
+        config.setDocumentPath("/");
+        Assert.assertNull(DocIndexerConfig.documentSplitter(config));
+    }
+
+    @Test
+    public void testXml() throws IOException {
+        ConfigInputFormat config = new ConfigInputFormat("test");
+        config.setFileType(ConfigInputFormat.FileType.XML);
+        config.setDocumentPath("//tei:TEI");
+        config.getNamespaces().put("tei", "http://www.tei-c.org/ns/1.0");
+        Assert.assertNull(DocIndexerConfig.documentSplitter(config)); // must be enabled explicitly
+        config.addFileTypeOption(DocumentSplitterXml.OPT_SPLIT_LARGE_FILES, "true");
+        DocumentSplitter splitter = DocIndexerConfig.documentSplitter(config);
+        Assert.assertNotNull(splitter);
+
+        String input = "<?xml version='1.0'?><teiCorpus xmlns='http://www.tei-c.org/ns/1.0'><teiHeader/>" +
+                "<TEI n='1'><text>The &amp; cat</text></TEI><TEI n='2'><text>sat</text></TEI></teiCorpus>";
+        List<String> parts = split(splitter, input, 1);
+        Assert.assertEquals(2, parts.size());
+        Assert.assertTrue(parts.get(0).contains("<TEI xmlns=\"http://www.tei-c.org/ns/1.0\" n=\"1\"><text>The &amp; cat</text></TEI>"));
+        Assert.assertFalse(parts.get(0).contains("teiHeader"));
+        Assert.assertTrue(parts.get(1).contains("<text>sat</text>"));
+
+        parts = split(splitter, input, 1_000_000);
+        Assert.assertEquals(1, parts.size());
+        Assert.assertTrue(parts.get(0).contains("n=\"1\"") && parts.get(0).contains("n=\"2\""));
+    }
+}
@@ -0,0 +1,101 @@
+package nl.inl.blacklab.indexers.config;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.inl.blacklab.exceptions.InvalidInputFormatConfig;
+
+public class TestStreamingXPath {
+
+    private static final String TEI = "http://www.tei-c.org/ns/1.0";
+
+    private static ConfigInputFormat config(boolean namespaceAware) {
+        ConfigInputFormat config = new ConfigInputFormat("test");
+        if (namespaceAware)
+            config.getNamespaces().put("tei", TEI);
+        return config;
+    }
+
+    /** Return the element stacks for all elements in the input, in document order */
+    private static List<List<StreamingXPath.Element>> stacks(String xml, boolean namespaceAware)
+            throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, namespaceAware);
+        XMLStreamReader reader = factory.createXMLStreamReader(new StringReader(xml));
+        List<List<StreamingXPath.Element>> result = new ArrayList<>();
+        List<StreamingXPath.Element> stack = new ArrayList<>();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                stack.add(new StreamingXPath.Element(reader));
+                result.add(new ArrayList<>(stack));
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                stack.remove(stack.size() - 1);
+            }
+        }
+        return result;
+    }
+
+    /** Names of the elements that the path matches, relative to the root element */
+    private static List<String> matches(String path, String xml, boolean namespaceAware) throws XMLStreamException {
+        StreamingXPath xpath = StreamingXPath.compile(path, config(namespaceAware));
+        List<String> result = new ArrayList<>();
+        for (List<StreamingXPath.Element> stack: stacks(xml, namespaceAware)) {
+            if (xpath.matches(stack, xpath.isAbsolute() ? -1 : 0))
+                result.add(stack.get(stack.size() - 1).rawName + stack.size());
+        }
+        return result;
+    }
+
+    @Test
+    public void testMatches() throws XMLStreamException {
+        String xml = "<doc><s type='a'><w>x</w><hi><w>y</w></hi></s><s><w>z</w></s></doc>";
+        Assert.assertEquals(List.of("w3", "w4", "w3"), matches(".//w", xml, false));
+        Assert.assertEquals(List.of("w3", "w4", "w3"), matches("//w", xml, false));
+        Assert.assertEquals(List.of("s2", "s2"), matches("s", xml, false));
+        Assert.assertEquals(List.of("w3"), matches("s/w", xml, false).subList(0, 1));
+        Assert.assertEquals(List.of("w3", "w4"), matches("s[@type='a']//w", xml, false));
+        Assert.assertEquals(List.of("s2"), matches("./s[@type]", xml, false));
+        Assert.assertEquals(List.of("doc1"), matches("/doc", xml, false));
+        Assert.assertEquals(List.of("doc1"), matches(".", xml, false));
+    }
+
+    @Test
+    public void testNamespaces() throws XMLStreamException {
+        String xml = "<TEI xmlns='" + TEI + "' xmlns:x='urn:x'><w/><x:w/></TEI>";
+        Assert.assertEquals(List.of("w2"), matches(".//tei:w", xml, true));
+        Assert.assertEquals(List.of(), matches(".//w", xml, true)); // unprefixed means no namespace
+        Assert.assertEquals(List.of("x:w2"), matches(".//x:w", xml, false));
+        Assert.assertThrows(InvalidInputFormatConfig.class, () -> StreamingXPath.compile(".//foo:w", config(true)));
+    }
+
+    @Test
+    public void testTargets() {
+        ConfigInputFormat config = config(false);
+        Assert.assertEquals(StreamingXPath.Target.ATTRIBUTE, StreamingXPath.compile("@lemma", config).target());
+        Assert.assertEquals(StreamingXPath.Target.ATTRIBUTE, StreamingXPath.compile("pos/@class", config).target());
+        Assert.assertEquals(StreamingXPath.Target.NAME, StreamingXPath.compile("name()", config).target());
+        StreamingXPath text = StreamingXPath.compile(".//text()[not(ancestor::w)]", config);
+        Assert.assertEquals(StreamingXPath.Target.TEXT, text.target());
+        Assert.assertFalse(text.isDirectTextOnly());
+        Assert.assertTrue(StreamingXPath.compile("text()", config).isDirectTextOnly());
+    }
+
+    @Test
+    public void testUnsupported() {
+        ConfigInputFormat config = config(false);
+        for (String path: List.of("..", "w[1]", "string(@lemma)", ".//@lemma", "@a | @b", "w/", "following-sibling::w",
+                "normalize-space(.)")) {
+            Assert.assertThrows(path, InvalidInputFormatConfig.class, () -> StreamingXPath.compile(path, config));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package nl.inl.blacklab.search.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestFilterCache {
+
+    private Directory directory;
+
+    private DirectoryReader reader;
+
+    private IndexSearcher searcher;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new ByteBuffersDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            for (int i = 0; i < 100; i++) {
+                Document doc = new Document();
+                doc.add(new StringField("genre", i % 3 == 0 ? "news" : "fiction", Field.Store.NO));
+                writer.addDocument(doc);
+            }
+        }
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+        searcher.setQueryCache(null);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    private int count(FilterCache cache, Query query) throws IOException {
+        Query rewritten = searcher.rewrite(query);
+        Weight weight = searcher.createWeight(rewritten, ScoreMode.COMPLETE_NO_SCORES, 1.0f);
+        int n = 0;
+        for (LeafReaderContext context: reader.leaves()) {
+            DocIdSetIterator it = cache.iterator(rewritten, weight, context);
+            if (it != null) {
+                while (it.nextDoc() != DocIdSetIterator.NO_MORE_DOCS)
+                    n++;
+            }
+        }
+        return n;
+    }
+
+    @Test
+    public void testHitsAndMisses() throws IOException {
+        FilterCache cache = new FilterCache(FilterCache.DEFAULT_MAX_SIZE_BYTES);
+        Query news = new TermQuery(new Term("genre", "news"));
+        Assert.assertEquals(34, count(cache, news));
+        Assert.assertEquals(0, cache.hits());
+        Assert.assertEquals(1, cache.misses());
+        Assert.assertEquals(34, count(cache, new TermQuery(new Term("genre", "news"))));
+        Assert.assertEquals(1, cache.hits());
+        Assert.assertEquals(1, cache.numberOfEntries());
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        FilterCache cache = new FilterCache(FilterCache.DEFAULT_MAX_SIZE_BYTES);
+        Assert.assertEquals(66, count(cache, new TermQuery(new Term("genre", "fiction"))));
+        long oneEntry = cache.sizeBytes();
+        cache.setMaxSizeBytes(oneEntry);
+        Assert.assertEquals(34, count(cache, new TermQuery(new Term("genre", "news"))));
+        // The least recently used entry was evicted, not the one we just added
+        Assert.assertEquals(1, cache.numberOfEntries());
+        Assert.assertTrue(cache.sizeBytes() <= oneEntry);
+        Assert.assertEquals(1, cache.evictions());
+        Assert.assertEquals(34, count(cache, new TermQuery(new Term("genre", "news"))));
+        Assert.assertEquals(1, cache.hits());
+
+        // Disabled cache still gives correct results
+        cache.setMaxSizeBytes(0);
+        Assert.assertEquals(0, cache.numberOfEntries());
+        Assert.assertEquals(66, count(cache, new TermQuery(new Term("genre", "fiction"))));
+        Assert.assertEquals(0, cache.numberOfEntries());
+    }
+
+    @Test
+    public void testEntryLargerThanCacheIsNotAdded() throws IOException {
+        FilterCache cache = new FilterCache(FilterCache.DEFAULT_MAX_SIZE_BYTES);
+        Assert.assertEquals(34, count(cache, new TermQuery(new Term("genre", "news"))));
+        long oneEntry = cache.sizeBytes();
+        cache.setMaxSizeBytes(oneEntry);
+        Assert.assertEquals(66, count(cache, new TermQuery(new Term("genre", "fiction"))));
+        // The large set wasn't cached, and didn't evict the entry we had
+        Assert.assertEquals(1, cache.numberOfEntries());
+        Assert.assertEquals(oneEntry, cache.sizeBytes());
+        Assert.assertEquals(0, cache.evictions());
+    }
+
+    @Test
+    public void testClear() throws IOException {
+        FilterCache cache = new FilterCache(FilterCache.DEFAULT_MAX_SIZE_BYTES);
+        count(cache, new TermQuery(new Term("genre", "news")));
+        cache.clear();
+        Assert.assertEquals(0, cache.numberOfEntries());
+        Assert.assertEquals(0, cache.sizeBytes());
+        // Entries added after clearing are still removed when the segment is closed
+        count(cache, new TermQuery(new Term("genre", "news")));
+        reader.close();
+        Assert.assertEquals(0, cache.numberOfEntries());
+        reader = DirectoryReader.open(directory); // for tearDown
+    }
+
+    @Test
+    public void testSegmentClosed() throws IOException {
+        FilterCache cache = new FilterCache(FilterCache.DEFAULT_MAX_SIZE_BYTES);
+        count(cache, new TermQuery(new Term("genre", "news")));
+        Assert.assertEquals(1, cache.numberOfEntries());
+        reader.close();
+        Assert.assertEquals(0, cache.numberOfEntries());
+        Assert.assertEquals(0, cache.sizeBytes());
+        reader = DirectoryReader.open(directory); // for tearDown
+    }
+}
@@ -35,6 +35,7 @@ import nl.inl.blacklab.search.indexmetadata.Field;
 import nl.inl.blacklab.search.indexmetadata.IndexMetadata;
 import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
 import nl.inl.blacklab.search.lucene.BLSpanQuery;
+import nl.inl.blacklab.search.lucene.FilterCache;
 import nl.inl.blacklab.search.results.ContextSize;
 import nl.inl.blacklab.search.results.DocResults;
 import nl.inl.blacklab.search.results.Hits;
@@ -51,6 +52,8 @@ public class MockBlackLabIndex implements BlackLabIndex {
 
     private final SearchSettings searchSettings;
 
+    private final FilterCache filterCache = new FilterCache(FilterCache.DEFAULT_MAX_SIZE_BYTES);
+
     private final Map<Annotation, AnnotationForwardIndex> forwardIndices = new HashMap<>();
 
     private final Analyzer analyzer;
@@ -130,6 +133,11 @@ public class MockBlackLabIndex implements BlackLabIndex {
         return searchSettings;
     }
 
+    @Override
+    public FilterCache filterCache() {
+        return filterCache;
+    }
+
     @Override
     public UnbalancedTagsStrategy defaultUnbalancedTagsStrategy() {
         throw new UnsupportedOperationException();
@@ -4,6 +4,8 @@ import java.util.List;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 
@@ -20,6 +22,12 @@ public class Doc {
     @JsonInclude(JsonInclude.Include.NON_NULL)
     public List<DocResultsHitContext> snippets;
 
+    /** Keys for merging sorted documents from several nodes (only included if requested) */
+    @XmlElementWrapper(name="sortKeys")
+    @XmlElement(name = "item")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public List<String> sortKeys;
+
     // required for Jersey
     public Doc() {}
 
@@ -35,6 +35,13 @@ public class Hit  {
 
     public ContextWords right;
 
+    /** Keys for merging sorted hits from several nodes (only included if requested) */
+    @XmlElementWrapper(name="sortKeys")
+    @XmlElement(name = "item")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty("sortKeys")
+    public List<String> sortKeys;
+
     // required for Jersey
     public Hit() {}
 
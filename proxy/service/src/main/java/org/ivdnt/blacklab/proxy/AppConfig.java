@@ -1,5 +1,7 @@
 package org.ivdnt.blacklab.proxy;
 
+import java.util.concurrent.TimeUnit;
+
 import javax.inject.Singleton;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -23,11 +25,12 @@ public class AppConfig extends ResourceConfig {
 
 		@Override
 		public Client provide() {
-//			ClientConfig configuration = new ClientConfig();
-//			configuration = configuration.property(ClientProperties.CONNECT_TIMEOUT, 1000);
-//			configuration = configuration.property(ClientProperties.READ_TIMEOUT, 1000);
-//			return ClientBuilder.newClient(configuration);
-			return ClientBuilder.newClient();
+			// Don't wait forever for a BLS node that doesn't respond
+			int timeoutSec = ProxyConfig.get().getRequestTimeoutSec();
+			return ClientBuilder.newBuilder()
+					.connectTimeout(timeoutSec, TimeUnit.SECONDS)
+					.readTimeout(timeoutSec, TimeUnit.SECONDS)
+					.build();
 		}
 
 		@Override
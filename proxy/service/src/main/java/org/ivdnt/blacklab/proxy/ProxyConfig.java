@@ -2,6 +2,7 @@ package org.ivdnt.blacklab.proxy;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -44,6 +45,15 @@ public class ProxyConfig {
 
     private ProxyTarget proxyTarget;
 
+    /** Servers each holding a shard of the documents (optional, instead of proxyTarget) */
+    private List<ProxyTarget> shards;
+
+    /** How many results to request from a shard at a time (must not exceed BLS's parameters.pageSize.max) */
+    private int shardPageSize = 1000;
+
+    /** How long to wait for a BLS node to respond, in seconds (0 means wait forever) */
+    private int requestTimeoutSec = 300;
+
     static ProxyConfig readConfig() {
         File configFile = locateConfigFile();
         ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
@@ -72,7 +82,41 @@ public class ProxyConfig {
 
     private ProxyConfig() {}
 
+    /**
+     * Get the server to proxy to.
+     *
+     * If shards were configured instead, this is the first shard. It is used for
+     * requests that don't need to be distributed, like corpus information.
+     *
+     * @return proxy target
+     */
     public ProxyTarget getProxyTarget() {
-        return proxyTarget;
+        return proxyTarget != null || shards == null || shards.isEmpty() ? proxyTarget : shards.get(0);
+    }
+
+    /**
+     * Get the servers to distribute searches over.
+     *
+     * @return the configured shards, or just the proxy target if no shards were configured
+     */
+    public List<ProxyTarget> getShards() {
+        return shards == null || shards.isEmpty() ? List.of(proxyTarget) : shards;
+    }
+
+    /**
+     * Should we distribute searches over several servers?
+     *
+     * @return true if more than one shard was configured
+     */
+    public boolean isSharded() {
+        return getShards().size() > 1;
+    }
+
+    public int getShardPageSize() {
+        return shardPageSize;
+    }
+
+    public int getRequestTimeoutSec() {
+        return requestTimeoutSec;
     }
 }
@@ -0,0 +1,26 @@
+package org.ivdnt.blacklab.proxy.logic;
+
+import java.util.Comparator;
+
+import org.ivdnt.blacklab.proxy.representation.Doc;
+
+/**
+ * Compares documents from different shards.
+ *
+ * Like hits, these are compared using the sort keys the shards include
+ * (see {@link MergeUtil#compareSortKeys(java.util.List, java.util.List)}).
+ */
+public class DocComparators {
+
+    private static final Comparator<Doc> SORT_KEYS = (a, b) -> MergeUtil.compareSortKeys(a.sortKeys, b.sortKeys);
+
+    /**
+     * Get the comparator to merge documents sorted by the specified property.
+     *
+     * @param docProp the sort property
+     * @return comparator, or null if the documents are not sorted
+     */
+    public static Comparator<Doc> deserialize(String docProp) {
+        return docProp.isEmpty() ? null : SORT_KEYS;
+    }
+}
@@ -0,0 +1,78 @@
+package org.ivdnt.blacklab.proxy.logic;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.ivdnt.blacklab.proxy.representation.Doc;
+import org.ivdnt.blacklab.proxy.representation.DocsResults;
+import org.ivdnt.blacklab.proxy.representation.HitOrDocGroup;
+import org.ivdnt.blacklab.proxy.representation.SearchSummary;
+
+import it.unimi.dsi.fastutil.objects.ObjectBigArrayBigList;
+
+/** Merges docs results from several shards. */
+public class DocsMerger {
+
+    private DocsMerger() {
+    }
+
+    /**
+     * Merge (sorted) documents from each shard and return the requested window.
+     *
+     * Each shard should have returned its first <code>first + number</code> documents,
+     * sorted the same way, with sort keys if sorted.
+     *
+     * @param shardResults documents from each shard
+     * @param sort sort the documents were sorted by (empty if unsorted)
+     * @param first first document in the window
+     * @param number number of documents in the window
+     * @return merged results
+     */
+    public static DocsResults mergeDocs(List<DocsResults> shardResults, String sort, long first, long number) {
+        Comparator<Doc> cmp = DocComparators.deserialize(sort);
+        List<Doc> window = MergeUtil.merge(shardResults.stream().map(r -> r.docs).collect(Collectors.toList()), cmp,
+                first, number);
+        window.forEach(doc -> doc.sortKeys = null); // (only meant for us)
+
+        DocsResults merged = new DocsResults();
+        merged.summary = mergeSummaries(shardResults);
+        MergeUtil.setWindow(merged.summary, first, number, window.size(), merged.summary.numberOfDocsRetrieved);
+        merged.docs = new ObjectBigArrayBigList<>(window.iterator());
+        merged.facets = MergeUtil.mergeFacets(shardResults.stream().map(r -> r.facets).collect(Collectors.toList()));
+        return merged;
+    }
+
+    /**
+     * Merge document groups from each shard and return the requested window.
+     *
+     * Each shard should have returned all its groups.
+     *
+     * @param shardResults groups from each shard
+     * @param sort group sort (empty if unsorted)
+     * @param first first group in the window
+     * @param number number of groups in the window
+     * @return merged results
+     */
+    public static DocsResults mergeGroups(List<DocsResults> shardResults, String sort, long first, long number) {
+        List<HitOrDocGroup> groups = MergeUtil.mergeGroups(shardResults.stream()
+                .map(r -> r.docGroups)
+                .collect(Collectors.toList()));
+        Comparator<HitOrDocGroup> cmp = HitGroupComparators.deserialize(sort);
+        if (cmp != null)
+            groups.sort(cmp);
+
+        DocsResults merged = new DocsResults();
+        merged.summary = mergeSummaries(shardResults);
+        merged.summary.numberOfGroups = (long) groups.size();
+        merged.summary.largestGroupSize = groups.stream().mapToLong(g -> g.size).max().orElse(0);
+        merged.docGroups = MergeUtil.window(groups, first, number);
+        MergeUtil.setWindow(merged.summary, first, number, merged.docGroups.size(), groups.size());
+        merged.facets = MergeUtil.mergeFacets(shardResults.stream().map(r -> r.facets).collect(Collectors.toList()));
+        return merged;
+    }
+
+    private static SearchSummary mergeSummaries(List<DocsResults> shardResults) {
+        return MergeUtil.mergeSummaries(shardResults.stream().map(r -> r.summary).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,262 @@
+package org.ivdnt.blacklab.proxy.logic;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+import org.ivdnt.blacklab.proxy.representation.FacetValue;
+import org.ivdnt.blacklab.proxy.representation.HitOrDocGroup;
+import org.ivdnt.blacklab.proxy.representation.SearchSummary;
+
+/** Combines the (partial) results we got from each shard into one result. */
+public class MergeUtil {
+
+    private MergeUtil() {
+    }
+
+    /** Current position in one of the sorted lists we're merging */
+    private static class Cursor<T> {
+
+        final int shard;
+
+        final Iterator<T> it;
+
+        T current;
+
+        Cursor(int shard, Iterator<T> it) {
+            this.shard = shard;
+            this.it = it;
+        }
+
+        boolean advance() {
+            current = it.hasNext() ? it.next() : null;
+            return current != null;
+        }
+    }
+
+    /**
+     * Merge sorted results from each shard, and return a window of the merged results.
+     *
+     * Only reads as far into the shard results as necessary. If items compare equal,
+     * items from the first shard come first, so if no comparator is given, the result
+     * is simply the shard results concatenated.
+     *
+     * @param shardResults sorted results per shard
+     * @param cmp how the results are sorted, or null if unsorted
+     * @param first first result in the window
+     * @param number (maximum) number of results in the window
+     * @return window of the merged results
+     */
+    public static <T> List<T> merge(List<? extends Iterable<T>> shardResults, Comparator<T> cmp, long first,
+            long number) {
+        Comparator<Cursor<T>> cursorCmp = Comparator.comparingInt(c -> c.shard);
+        if (cmp != null)
+            cursorCmp = Comparator.<Cursor<T>, T>comparing(c -> c.current, cmp).thenComparing(cursorCmp);
+        PriorityQueue<Cursor<T>> queue = new PriorityQueue<>(Math.max(1, shardResults.size()), cursorCmp);
+        for (int i = 0; i < shardResults.size(); i++) {
+            Cursor<T> cursor = new Cursor<>(i, shardResults.get(i).iterator());
+            if (cursor.advance())
+                queue.add(cursor);
+        }
+        List<T> window = new ArrayList<>();
+        for (long i = 0; i < first + number && !queue.isEmpty(); i++) {
+            Cursor<T> cursor = queue.poll();
+            if (i >= first)
+                window.add(cursor.current);
+            if (cursor.advance())
+                queue.add(cursor);
+        }
+        return window;
+    }
+
+    /**
+     * Compare results from different shards by the sort keys the shards included.
+     *
+     * BLS includes a key per sort property that compares as a string in the order it sorted
+     * in (see SortKeys in BLS). An empty key means the property (e.g. hit position) can't be
+     * compared between shards; results that are equal up to there are kept in shard order.
+     * If a shard didn't include sort keys at all, its results are also kept in shard order.
+     *
+     * @param a sort keys of the first result (may be null)
+     * @param b sort keys of the second result (may be null)
+     * @return negative, zero or positive if the first result comes before, at the same position as or after the second
+     */
+    public static int compareSortKeys(List<String> a, List<String> b) {
+        if (a == null || b == null)
+            return 0;
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            String keyA = a.get(i), keyB = b.get(i);
+            if (keyA.isEmpty() || keyB.isEmpty())
+                return 0;
+            int cmp = keyA.compareTo(keyB);
+            if (cmp != 0)
+                return cmp;
+        }
+        return 0;
+    }
+
+    /**
+     * Get a window of a (merged) list of results.
+     *
+     * @param results results
+     * @param first first result in the window
+     * @param number (maximum) number of results in the window
+     * @return window of the results
+     */
+    public static <T> List<T> window(List<T> results, long first, long number) {
+        int from = (int) Math.min(first, results.size());
+        int to = (int) Math.min(first + number, results.size());
+        return new ArrayList<>(results.subList(from, to));
+    }
+
+    /**
+     * Merge groups with the same identity from different shards.
+     *
+     * Because shards hold different documents, the counts are simply added up.
+     *
+     * @param shardGroups groups per shard
+     * @return merged groups, in the order we first encountered them
+     */
+    public static List<HitOrDocGroup> mergeGroups(List<List<HitOrDocGroup>> shardGroups) {
+        Map<String, HitOrDocGroup> merged = new LinkedHashMap<>();
+        for (List<HitOrDocGroup> groups: shardGroups) {
+            if (groups == null)
+                continue;
+            for (HitOrDocGroup group: groups) {
+                HitOrDocGroup total = merged.get(group.identity);
+                if (total == null) {
+                    total = new HitOrDocGroup(group.identity, group.identityDisplay, 0, group.properties, 0, null);
+                    total.numberOfDocs = null;
+                    merged.put(group.identity, total);
+                }
+                total.size += group.size;
+                total.numberOfDocs = add(total.numberOfDocs, group.numberOfDocs);
+                total.numberOfTokens = add(total.numberOfTokens, group.numberOfTokens);
+                total.subcorpusSize = add(total.subcorpusSize, group.subcorpusSize);
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * Merge facets from different shards by adding up the counts.
+     *
+     * Note that shards only report their most frequent values, so the counts for
+     * less frequent values may be incomplete.
+     *
+     * @param shardFacets facets per shard (entries may be null)
+     * @return merged facets, most frequent values first, or null if no shard returned facets
+     */
+    public static Map<String, ArrayList<FacetValue>> mergeFacets(List<Map<String, ArrayList<FacetValue>>> shardFacets) {
+        Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+        for (Map<String, ArrayList<FacetValue>> facets: shardFacets) {
+            if (facets == null)
+                continue;
+            for (Map.Entry<String, ArrayList<FacetValue>> e: facets.entrySet()) {
+                Map<String, Long> valueCounts = counts.computeIfAbsent(e.getKey(), k -> new HashMap<>());
+                for (FacetValue value: e.getValue())
+                    valueCounts.merge(value.value, value.size, Long::sum);
+            }
+        }
+        if (counts.isEmpty())
+            return null;
+        Map<String, ArrayList<FacetValue>> merged = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Long>> e: counts.entrySet()) {
+            merged.put(e.getKey(), e.getValue().entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .map(v -> {
+                        FacetValue value = new FacetValue();
+                        value.value = v.getKey();
+                        value.size = v.getValue();
+                        return value;
+                    })
+                    .collect(Collectors.toCollection(ArrayList::new)));
+        }
+        return merged;
+    }
+
+    /**
+     * Merge the search summaries from different shards.
+     *
+     * Totals are added up. The window information is not set here, use
+     * {@link #setWindow(SearchSummary, long, long, long, long)} for that.
+     *
+     * @param shardSummaries summary per shard
+     * @return merged summary
+     */
+    public static SearchSummary mergeSummaries(List<SearchSummary> shardSummaries) {
+        SearchSummary merged;
+        try {
+            merged = shardSummaries.get(0).clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+        for (int i = 1; i < shardSummaries.size(); i++) {
+            SearchSummary summary = shardSummaries.get(i);
+            merged.searchTime = Math.max(merged.searchTime, summary.searchTime);
+            if (summary.countTime != null)
+                merged.countTime = merged.countTime == null ? summary.countTime : Math.max(merged.countTime, summary.countTime);
+            merged.stillCounting |= summary.stillCounting;
+            merged.numberOfHits = add(merged.numberOfHits, summary.numberOfHits);
+            merged.numberOfHitsRetrieved = add(merged.numberOfHitsRetrieved, summary.numberOfHitsRetrieved);
+            merged.stoppedCountingHits = or(merged.stoppedCountingHits, summary.stoppedCountingHits);
+            merged.stoppedRetrievingHits = or(merged.stoppedRetrievingHits, summary.stoppedRetrievingHits);
+            merged.numberOfDocs += summary.numberOfDocs;
+            merged.numberOfDocsRetrieved += summary.numberOfDocsRetrieved;
+            merged.tokensInMatchingDocuments = add(merged.tokensInMatchingDocuments, summary.tokensInMatchingDocuments);
+            merged.subcorpusSize = add(merged.subcorpusSize, summary.subcorpusSize);
+        }
+        return merged;
+    }
+
+    /**
+     * Set the window information in a merged summary.
+     *
+     * Also updates the search parameters so they reflect the client's request
+     * instead of the requests we sent to the shards.
+     *
+     * @param summary summary to update
+     * @param first first result requested
+     * @param number number of results requested
+     * @param windowSize actual number of results in the window
+     * @param total total number of results available
+     */
+    public static void setWindow(SearchSummary summary, long first, long number, long windowSize, long total) {
+        summary.windowFirstResult = first;
+        summary.requestedWindowSize = number;
+        summary.actualWindowSize = windowSize;
+        summary.windowHasPrevious = first > 0;
+        summary.windowHasNext = first + windowSize < total;
+        if (summary.searchParam != null) {
+            summary.searchParam = new LinkedHashMap<>(summary.searchParam);
+            summary.searchParam.put("first", Long.toString(first));
+            summary.searchParam.put("number", Long.toString(number));
+        }
+    }
+
+    private static Long add(Long a, Long b) {
+        if (a == null || b == null)
+            return a == null ? b : a;
+        return a + b;
+    }
+
+    private static Boolean or(Boolean a, Boolean b) {
+        if (a == null || b == null)
+            return a == null ? b : a;
+        return a || b;
+    }
+
+    private static Map<String, Long> add(Map<String, Long> a, Map<String, Long> b) {
+        if (a == null || b == null)
+            return a == null ? b : a;
+        Map<String, Long> sum = new LinkedHashMap<>(a);
+        b.forEach((k, v) -> sum.merge(k, v, Long::sum));
+        return sum;
+    }
+}
@@ -72,7 +72,11 @@ public class Requests {
     }
 
     public static Object request(Client client, Map<WebserviceParameter, String> queryParams, String method, List<Class<?>> entityTypes) {
-        ProxyConfig.ProxyTarget proxyTarget = ProxyConfig.get().getProxyTarget();
+        return request(client, ProxyConfig.get().getProxyTarget(), queryParams, method, entityTypes);
+    }
+
+    public static Object request(Client client, ProxyConfig.ProxyTarget proxyTarget,
+            Map<WebserviceParameter, String> queryParams, String method, List<Class<?>> entityTypes) {
         String url = proxyTarget.getUrl();
         WebTarget target = client.target(url);
         if (!queryParams.containsKey(WebserviceParameter.CORPUS_NAME)) {
@@ -107,7 +111,7 @@ public class Requests {
             // Just one option for the response type. Use that.
             // (the loop below correctly reduces to this in the case of size() == 1, but we've kept this
             //  'special case' for clarity)
-            return target.request(MediaType.APPLICATION_JSON_TYPE).method(method).readEntity(entityTypes.get(0));
+            return readBlsEntity(target.request(MediaType.APPLICATION_JSON_TYPE).method(method), entityTypes.get(0));
         } else {
             // Try mapping response to each of the supplied options.
             // (mainly used for /fields/NAME, where the proxy doesn't know in advance if the field is an annotated
@@ -116,7 +120,7 @@ public class Requests {
             for (int i = 0; i < entityTypes.size(); i++) {
                 Class<?> entityType = entityTypes.get(i);
                 try {
-                    return target.request(MediaType.APPLICATION_JSON_TYPE).method(method).readEntity(entityType);
+                    return readBlsEntity(target.request(MediaType.APPLICATION_JSON_TYPE).method(method), entityType);
                 } catch (ProcessingException e) {
                     if (i != entityTypes.size() - 1) {
                         // Couldn't map to this class. Try the next one.
@@ -131,6 +135,21 @@ public class Requests {
         }
     }
 
+    /**
+     * Read the entity from a BLS response, or throw if BLS returned an error.
+     *
+     * @param response response from BLS
+     * @param entityType type to read
+     * @return the entity
+     */
+    private static Object readBlsEntity(Response response, Class<?> entityType) {
+        if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+            ErrorResponse err = response.readEntity(ErrorResponse.class);
+            throw new BlsRequestException(Response.Status.fromStatusCode(response.getStatus()), err);
+        }
+        return response.readEntity(entityType);
+    }
+
     private static Object requestSolr(WebTarget target, Map<WebserviceParameter, String> queryParams, String method, List<Class<?>> entityTypes) {
         if (queryParams != null) {
             String corpusName = queryParams.get(WebserviceParameter.CORPUS_NAME);
@@ -0,0 +1,343 @@
+package org.ivdnt.blacklab.proxy.logic;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Response;
+
+import org.ivdnt.blacklab.proxy.ProxyConfig;
+import org.ivdnt.blacklab.proxy.logic.hits.HitsMerger;
+import org.ivdnt.blacklab.proxy.representation.DocsResults;
+import org.ivdnt.blacklab.proxy.representation.ErrorResponse;
+import org.ivdnt.blacklab.proxy.representation.HitsResults;
+import org.ivdnt.blacklab.proxy.representation.SearchSummary;
+
+import it.unimi.dsi.fastutil.BigList;
+import it.unimi.dsi.fastutil.objects.ObjectBigArrayBigList;
+import nl.inl.blacklab.webservice.WebserviceParameter;
+
+/**
+ * Distributes searches over several BLS nodes that each hold a shard of the documents.
+ *
+ * The request is sent to all shards in parallel, and the results are merged. For a window
+ * of hits or documents, we ask each shard for its first <code>first + number</code> results
+ * (the requested window can only contain those), and merge these sorted lists using the sort
+ * keys the shards include (see SortKeys in BLS). For groups, we need all groups from each
+ * shard, because a group's size is only known when we've added up the sizes from all shards.
+ *
+ * BLS limits the number of results per request, so we retrieve these results from each
+ * shard page by page.
+ */
+public class ScatterGather {
+
+    /** Window size if the client didn't specify one (same as BLS's default page size) */
+    static final long DEFAULT_WINDOW_SIZE = 50;
+
+    /** How many results to request from a shard at a time if not configured */
+    static final int DEFAULT_PAGE_SIZE = 1000;
+
+    /** Error code BLS returns if a shard doesn't have the requested group */
+    private static final String GROUP_NOT_FOUND = "GROUP_NOT_FOUND";
+
+    /** Performs the requests to the shards */
+    private static final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "ScatterGather");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** A node holding a shard of the documents */
+    @FunctionalInterface
+    public interface Shard {
+        /**
+         * Perform a request on this shard.
+         *
+         * @param params request parameters
+         * @param entityType type of entity to return
+         * @return the response entity
+         */
+        Object request(Map<WebserviceParameter, String> params, Class<?> entityType);
+    }
+
+    /**
+     * Get the shards from the proxy configuration.
+     *
+     * @param client REST client
+     * @return shards to distribute searches over
+     */
+    public static ScatterGather fromConfig(Client client) {
+        ProxyConfig config = ProxyConfig.get();
+        return new ScatterGather(config.getShards().stream()
+                .map(target -> (Shard) (params, entityType) ->
+                        Requests.request(client, target, params, "GET", List.of(entityType)))
+                .collect(Collectors.toList()),
+                config.getShardPageSize(), TimeUnit.SECONDS.toMillis(config.getRequestTimeoutSec()));
+    }
+
+    private final List<Shard> shards;
+
+    /** How many results to request from a shard at a time */
+    private final int pageSize;
+
+    /** How long to wait for all shards to respond, in milliseconds (0 means wait forever) */
+    private final long timeoutMs;
+
+    public ScatterGather(List<Shard> shards) {
+        this(shards, DEFAULT_PAGE_SIZE, 0);
+    }
+
+    public ScatterGather(List<Shard> shards, int pageSize, long timeoutMs) {
+        this.shards = shards;
+        this.pageSize = pageSize;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Find hits (or hit groups) on all shards.
+     *
+     * @param params request parameters
+     * @return merged hits
+     */
+    public HitsResults hits(Map<WebserviceParameter, String> params) {
+        long first = getLong(params, WebserviceParameter.FIRST_RESULT, 0);
+        long number = getLong(params, WebserviceParameter.NUMBER_OF_RESULTS, DEFAULT_WINDOW_SIZE);
+        String sort = params.getOrDefault(WebserviceParameter.SORT_BY, "");
+        if (isGroupedRequest(params)) {
+            List<HitsResults> results = requestAll(params, shard -> fetchHits(shard, params, Long.MAX_VALUE));
+            return HitsMerger.mergeGroups(results, sort, first, number);
+        }
+        Map<WebserviceParameter, String> shardParams = sortKeyParams(params, sort);
+        List<HitsResults> results = requestAll(params, shard -> fetchHits(shard, shardParams, first + number));
+        return HitsMerger.mergeHits(results, sort, first, number);
+    }
+
+    /**
+     * Find documents (or document groups) on all shards.
+     *
+     * @param params request parameters
+     * @return merged documents
+     */
+    public DocsResults docs(Map<WebserviceParameter, String> params) {
+        long first = getLong(params, WebserviceParameter.FIRST_RESULT, 0);
+        long number = getLong(params, WebserviceParameter.NUMBER_OF_RESULTS, DEFAULT_WINDOW_SIZE);
+        String sort = params.getOrDefault(WebserviceParameter.SORT_BY, "");
+        if (isGroupedRequest(params)) {
+            List<DocsResults> results = requestAll(params, shard -> fetchDocs(shard, params, Long.MAX_VALUE));
+            return DocsMerger.mergeGroups(results, sort, first, number);
+        }
+        Map<WebserviceParameter, String> shardParams = sortKeyParams(params, sort);
+        List<DocsResults> results = requestAll(params, shard -> fetchDocs(shard, shardParams, first + number));
+        return DocsMerger.mergeDocs(results, sort, first, number);
+    }
+
+    /**
+     * Perform a request about a single document on the shard that has it.
+     *
+     * @param params request parameters (including the document pid)
+     * @param entityType type of entity to return
+     * @return the response from the shard that has the document
+     */
+    public <T> T document(Map<WebserviceParameter, String> params, Class<T> entityType) {
+        Requests.BlsRequestException notFound = null;
+        for (Shard shard: shards) {
+            try {
+                return entityType.cast(shard.request(params, entityType));
+            } catch (Requests.BlsRequestException e) {
+                if (e.getStatus() != Response.Status.NOT_FOUND)
+                    throw e;
+                notFound = e; // not on this shard, try the next one
+            }
+        }
+        throw notFound;
+    }
+
+    private static boolean isGroupedRequest(Map<WebserviceParameter, String> params) {
+        return params.containsKey(WebserviceParameter.GROUP_BY) && !params.containsKey(WebserviceParameter.VIEW_GROUP);
+    }
+
+    private static long getLong(Map<WebserviceParameter, String> params, WebserviceParameter par, long defVal) {
+        String value = params.get(par);
+        try {
+            return value == null || value.isEmpty() ? defVal : Math.max(0, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + par.value() + " must be a number", e);
+        }
+    }
+
+    /** Parameters that ask the shards to include sort keys, so we can merge their sorted results. */
+    private static Map<WebserviceParameter, String> sortKeyParams(Map<WebserviceParameter, String> params,
+            String sort) {
+        if (sort.isEmpty())
+            return params;
+        Map<WebserviceParameter, String> shardParams = new HashMap<>(params);
+        shardParams.put(WebserviceParameter.INCLUDE_SORT_KEYS, "true");
+        return shardParams;
+    }
+
+    /** Get the first hits or hit groups from a shard. */
+    private HitsResults fetchHits(Shard shard, Map<WebserviceParameter, String> params, long needed) {
+        return fetch(shard, params, needed, HitsResults.class,
+                page -> page.hitGroups != null ? page.hitGroups.size() : page.hits == null ? 0 : page.hits.size64(),
+                page -> page.summary,
+                (result, page) -> {
+                    result.hits = append(result.hits, page.hits);
+                    result.docInfos = append(result.docInfos, page.docInfos);
+                    result.hitGroups = append(result.hitGroups, page.hitGroups);
+                    return result;
+                });
+    }
+
+    /** Get the first documents or document groups from a shard. */
+    private DocsResults fetchDocs(Shard shard, Map<WebserviceParameter, String> params, long needed) {
+        return fetch(shard, params, needed, DocsResults.class,
+                page -> page.docGroups != null ? page.docGroups.size() : page.docs == null ? 0 : page.docs.size64(),
+                page -> page.summary,
+                (result, page) -> {
+                    result.docs = append(result.docs, page.docs);
+                    result.docGroups = append(result.docGroups, page.docGroups);
+                    return result;
+                });
+    }
+
+    /**
+     * Get the first results from a shard, page by page.
+     *
+     * We can't simply ask for all the results we need at once, because BLS limits the
+     * number of results per request (parameters.pageSize.max). The summary and facets
+     * are taken from the first page.
+     *
+     * If the thread is interrupted (because the request failed or timed out), we stop
+     * before requesting the next page.
+     *
+     * @param shard shard to request from
+     * @param params request parameters
+     * @param needed how many results we need (Long.MAX_VALUE for all)
+     * @param entityType type of entity to return
+     * @param pageLength number of results in a page
+     * @param summary search summary of a page
+     * @param append appends the results of a page to the results so far
+     * @return the results
+     */
+    private <T> T fetch(Shard shard, Map<WebserviceParameter, String> params, long needed, Class<T> entityType,
+            ToLongFunction<T> pageLength, Function<T, SearchSummary> summary, BinaryOperator<T> append) {
+        T result = null;
+        long retrieved = 0;
+        while (true) {
+            if (Thread.currentThread().isInterrupted())
+                throw new CancellationException("Request to shard was cancelled");
+            Map<WebserviceParameter, String> pageParams = new HashMap<>(params);
+            pageParams.put(WebserviceParameter.FIRST_RESULT, Long.toString(retrieved));
+            // (always ask for at least one result, as BLS doesn't allow windows of size 0)
+            long number = Math.max(1, Math.min(pageSize, needed - retrieved));
+            pageParams.put(WebserviceParameter.NUMBER_OF_RESULTS, Long.toString(number));
+            T page = entityType.cast(shard.request(pageParams, entityType));
+            result = result == null ? page : append.apply(result, page);
+            long length = pageLength.applyAsLong(page);
+            retrieved += length;
+            // Note that the shard may return fewer results than we asked for (if it limits the page size)
+            if (length == 0 || retrieved >= needed || !summary.apply(page).windowHasNext)
+                return result;
+        }
+    }
+
+    /** Append a page to the results so far (copying the results only if they can't grow) */
+    private static <E> BigList<E> append(BigList<E> a, BigList<E> b) {
+        if (a == null || b == null)
+            return a == null ? b : a;
+        BigList<E> result = a instanceof ObjectBigArrayBigList ? a : new ObjectBigArrayBigList<>(a.iterator());
+        result.addAll(b);
+        return result;
+    }
+
+    /** Append a page to the results so far (copying the results only if they can't grow) */
+    private static <E> List<E> append(List<E> a, List<E> b) {
+        if (a == null || b == null)
+            return a == null ? b : a;
+        List<E> result = a instanceof ArrayList ? a : new ArrayList<>(a);
+        result.addAll(b);
+        return result;
+    }
+
+    /**
+     * Send a request to all shards in parallel and wait for the results.
+     *
+     * When viewing a group, shards that don't have the group are skipped.
+     *
+     * @param params request parameters
+     * @param request performs the request on a shard
+     * @return results from each shard that had results
+     */
+    private <T> List<T> requestAll(Map<WebserviceParameter, String> params, Function<Shard, T> request) {
+        boolean viewGroup = params.containsKey(WebserviceParameter.VIEW_GROUP);
+        List<Future<T>> futures = shards.stream()
+                .map(shard -> executor.submit(() -> {
+                    try {
+                        return request.apply(shard);
+                    } catch (Requests.BlsRequestException e) {
+                        if (viewGroup && GROUP_NOT_FOUND.equals(e.getResponse().getError().getCode()))
+                            return null;
+                        throw e;
+                    }
+                }))
+                .collect(Collectors.toList());
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        List<T> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                Future<T> future = futures.get(i);
+                try {
+                    if (timeoutMs > 0)
+                        results.add(future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+                    else
+                        results.add(future.get());
+                } catch (TimeoutException e) {
+                    throw shardTimeout(i);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof ProcessingException
+                            && e.getCause().getCause() instanceof SocketTimeoutException)
+                        throw shardTimeout(i);
+                    if (e.getCause() instanceof RuntimeException)
+                        throw (RuntimeException) e.getCause();
+                    throw new RuntimeException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+        } finally {
+            // Don't let the other shards keep working for us if we failed.
+            // This interrupts the requests, so they won't ask their shard for more pages
+            // (a page request that is already underway still runs until it completes or times out).
+            futures.forEach(f -> f.cancel(true));
+        }
+        results.removeIf(Objects::isNull);
+        if (results.isEmpty()) {
+            // No shard has this group; let the first shard report the error
+            return List.of(request.apply(shards.get(0)));
+        }
+        return results;
+    }
+
+    private Requests.BlsRequestException shardTimeout(int shard) {
+        return new Requests.BlsRequestException(Response.Status.GATEWAY_TIMEOUT,
+                new ErrorResponse(Response.Status.GATEWAY_TIMEOUT.getStatusCode(), "SHARD_TIMEOUT",
+                        "Shard " + shard + " didn't respond in time", null));
+    }
+}
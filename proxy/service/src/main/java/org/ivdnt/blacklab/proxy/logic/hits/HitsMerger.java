@@ -0,0 +1,107 @@
+package org.ivdnt.blacklab.proxy.logic.hits;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.ivdnt.blacklab.proxy.logic.HitGroupComparators;
+import org.ivdnt.blacklab.proxy.logic.MergeUtil;
+import org.ivdnt.blacklab.proxy.representation.DocInfo;
+import org.ivdnt.blacklab.proxy.representation.FacetValue;
+import org.ivdnt.blacklab.proxy.representation.Hit;
+import org.ivdnt.blacklab.proxy.representation.HitOrDocGroup;
+import org.ivdnt.blacklab.proxy.representation.HitsResults;
+import org.ivdnt.blacklab.proxy.representation.SearchSummary;
+
+import it.unimi.dsi.fastutil.BigList;
+import it.unimi.dsi.fastutil.objects.ObjectBigArrayBigList;
+
+/** Merges hits results from several shards. */
+public class HitsMerger {
+
+    private HitsMerger() {
+    }
+
+    /**
+     * Merge (sorted) hits from each shard and return the requested window.
+     *
+     * Each shard should have returned its first <code>first + number</code> hits,
+     * sorted the same way, with sort keys if sorted. Hits that compare equal are
+     * ordered by shard.
+     *
+     * @param shardResults hits from each shard
+     * @param sort sort the hits were sorted by (empty if unsorted)
+     * @param first first hit in the window
+     * @param number number of hits in the window
+     * @return merged results
+     */
+    public static HitsResults mergeHits(List<HitsResults> shardResults, String sort, long first, long number) {
+        Map<String, DocInfo> docInfos = new LinkedHashMap<>();
+        List<BigList<Hit>> shardHits = new ArrayList<>();
+        for (HitsResults results: shardResults) {
+            if (results.docInfos != null) {
+                for (DocInfo docInfo: results.docInfos)
+                    docInfos.put(docInfo.pid, docInfo);
+            }
+            shardHits.add(results.hits);
+        }
+        Comparator<Hit> cmp = HitComparators.deserialize(sort);
+        BigList<Hit> window = new ObjectBigArrayBigList<>(MergeUtil.merge(shardHits, cmp, first, number).iterator());
+        window.forEach(hit -> hit.sortKeys = null); // (only meant for us)
+
+        SearchSummary summary = mergeSummaries(shardResults);
+        long total = summary.numberOfHitsRetrieved == null ? 0 : summary.numberOfHitsRetrieved;
+        MergeUtil.setWindow(summary, first, number, window.size64(), total);
+        List<DocInfo> windowDocInfos = window.stream()
+                .map(h -> h.docPid)
+                .distinct()
+                .map(docInfos::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        HitsResults merged = new HitsResults(summary, window, windowDocInfos);
+        merged.facets = mergeFacets(shardResults);
+        return merged;
+    }
+
+    /**
+     * Merge hit groups from each shard and return the requested window.
+     *
+     * Each shard should have returned all its groups, so we know the group sizes
+     * are complete before sorting.
+     *
+     * @param shardResults groups from each shard
+     * @param sort group sort (empty if unsorted)
+     * @param first first group in the window
+     * @param number number of groups in the window
+     * @return merged results
+     */
+    public static HitsResults mergeGroups(List<HitsResults> shardResults, String sort, long first, long number) {
+        List<HitOrDocGroup> groups = MergeUtil.mergeGroups(shardResults.stream()
+                .map(r -> r.hitGroups)
+                .collect(Collectors.toList()));
+        Comparator<HitOrDocGroup> cmp = HitGroupComparators.deserialize(sort);
+        if (cmp != null)
+            groups.sort(cmp);
+        List<HitOrDocGroup> window = MergeUtil.window(groups, first, number);
+
+        SearchSummary summary = mergeSummaries(shardResults);
+        summary.numberOfGroups = (long) groups.size();
+        summary.largestGroupSize = groups.stream().mapToLong(g -> g.size).max().orElse(0);
+        MergeUtil.setWindow(summary, first, number, window.size(), groups.size());
+        HitsResults merged = new HitsResults(summary, window);
+        merged.facets = mergeFacets(shardResults);
+        return merged;
+    }
+
+    private static SearchSummary mergeSummaries(List<HitsResults> shardResults) {
+        return MergeUtil.mergeSummaries(shardResults.stream().map(r -> r.summary).collect(Collectors.toList()));
+    }
+
+    private static Map<String, ArrayList<FacetValue>> mergeFacets(List<HitsResults> shardResults) {
+        return MergeUtil.mergeFacets(shardResults.stream().map(r -> r.facets).collect(Collectors.toList()));
+    }
+}
@@ -20,6 +20,7 @@ import javax.ws.rs.core.UriInfo;
 import org.apache.commons.lang3.StringUtils;
 import org.ivdnt.blacklab.proxy.ProxyConfig;
 import org.ivdnt.blacklab.proxy.logic.Requests;
+import org.ivdnt.blacklab.proxy.logic.ScatterGather;
 import org.ivdnt.blacklab.proxy.representation.AnnotatedField;
 import org.ivdnt.blacklab.proxy.representation.AutocompleteResponse;
 import org.ivdnt.blacklab.proxy.representation.Corpus;
@@ -132,6 +133,12 @@ public class CorpusResource {
             @Context UriInfo uriInfo,
             @Context HttpHeaders headers) {
         boolean isCsv = isCsvRequest(headers);
+        if (ProxyConfig.get().isSharded()) {
+            Map<WebserviceParameter, String> params = getParams(uriInfo, corpusName, WebserviceOperation.HITS);
+            if (isCsv || params.containsKey(WebserviceParameter.CALCULATE_STATS))
+                return notImplemented("/hits (CSV or calc) on a sharded corpus");
+            return success(ScatterGather.fromConfig(client).hits(params));
+        }
         WebserviceOperation op = isCsv ? WebserviceOperation.HITS_CSV : WebserviceOperation.HITS;
         List<Class<?>> resultTypes = isCsv ? List.of(JsonCsvResponse.class) : List.of(TokenFreqList.class, HitsResults.class);
         return handlePossibleCsvResponse(corpusName, uriInfo, op, resultTypes);
@@ -145,6 +152,12 @@ public class CorpusResource {
             @Context UriInfo uriInfo,
             @Context HttpHeaders headers) {
         boolean isCsv = isCsvRequest(headers);
+        if (ProxyConfig.get().isSharded()) {
+            if (isCsv)
+                return notImplemented("/docs (CSV) on a sharded corpus");
+            return success(ScatterGather.fromConfig(client).docs(
+                    getParams(uriInfo, corpusName, WebserviceOperation.DOCS)));
+        }
         WebserviceOperation op = isCsv ? WebserviceOperation.DOCS_CSV : WebserviceOperation.DOCS;
         List<Class<?>> resultTypes = List.of(isCsv ? JsonCsvResponse.class : DocsResults.class);
         return handlePossibleCsvResponse(corpusName, uriInfo, op, resultTypes);
@@ -181,6 +194,21 @@ public class CorpusResource {
         }
     }
 
+    /**
+     * Perform a request about a single document.
+     *
+     * If the corpus is sharded, the request goes to the shard that has the document.
+     *
+     * @param params request parameters
+     * @param entityType type of entity to return
+     * @return response entity
+     */
+    private <T> T getDocument(Map<WebserviceParameter, String> params, Class<T> entityType) {
+        if (ProxyConfig.get().isSharded())
+            return ScatterGather.fromConfig(client).document(params, entityType);
+        return Requests.get(client, params, entityType);
+    }
+
     @GET
     @Path("/docs/{pid}")
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
@@ -191,7 +219,7 @@ public class CorpusResource {
 
         Map<WebserviceParameter, String> params = getParams(uriInfo, corpusName, WebserviceOperation.DOC_INFO);
         params.put(WebserviceParameter.DOC_PID, docPid);
-        return success(Requests.get(client, params, DocInfoResponse.class));
+        return success(getDocument(params, DocInfoResponse.class));
     }
 
     @GET
@@ -203,7 +231,7 @@ public class CorpusResource {
             @Context UriInfo uriInfo) {
         Map<WebserviceParameter, String> params = getParams(uriInfo, corpusName, WebserviceOperation.DOC_CONTENTS);
         params.put(WebserviceParameter.DOC_PID, docPid);
-        DocContentsResults entity = Requests.get(client, params, DocContentsResults.class);
+        DocContentsResults entity = getDocument(params, DocContentsResults.class);
         return Response.ok().entity(entity.contents).type(MediaType.APPLICATION_XML).build();
     }
 
@@ -216,7 +244,7 @@ public class CorpusResource {
             @Context UriInfo uriInfo) {
         Map<WebserviceParameter, String> params = getParams(uriInfo, corpusName, WebserviceOperation.DOC_SNIPPET);
         params.put(WebserviceParameter.DOC_PID, docPid);
-        return success(Requests.get(client, params, DocSnippetResponse.class));
+        return success(getDocument(params, DocSnippetResponse.class));
     }
 
     @GET
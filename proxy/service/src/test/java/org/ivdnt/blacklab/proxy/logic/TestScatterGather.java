@@ -0,0 +1,276 @@
+package org.ivdnt.blacklab.proxy.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.core.Response;
+
+import org.ivdnt.blacklab.proxy.representation.DocInfo;
+import org.ivdnt.blacklab.proxy.representation.DocInfoResponse;
+import org.ivdnt.blacklab.proxy.representation.ErrorResponse;
+import org.ivdnt.blacklab.proxy.representation.Hit;
+import org.ivdnt.blacklab.proxy.representation.HitOrDocGroup;
+import org.ivdnt.blacklab.proxy.representation.HitsResults;
+import org.ivdnt.blacklab.proxy.representation.SearchSummary;
+import org.junit.Assert;
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.objects.ObjectBigArrayBigList;
+import nl.inl.blacklab.webservice.WebserviceParameter;
+
+public class TestScatterGather {
+
+    /**
+     * Stand-in for a BLS node with some hits, sorted by position.
+     *
+     * If asked for sort keys, the key is the hit's start (or empty if sorted by hit position).
+     */
+    private static class HitsShard implements ScatterGather.Shard {
+
+        final String docPid;
+
+        final long[] starts;
+
+        /** Maximum page size, like BLS's parameters.pageSize.max */
+        int maxPageSize = Integer.MAX_VALUE;
+
+        final List<Map<WebserviceParameter, String>> requests = Collections.synchronizedList(new ArrayList<>());
+
+        HitsShard(String docPid, long... starts) {
+            this.docPid = docPid;
+            this.starts = starts;
+        }
+
+        @Override
+        public Object request(Map<WebserviceParameter, String> params, Class<?> entityType) {
+            requests.add(params);
+            int first = Integer.parseInt(params.get(WebserviceParameter.FIRST_RESULT));
+            int number = Math.min(maxPageSize, Integer.parseInt(params.get(WebserviceParameter.NUMBER_OF_RESULTS)));
+            List<Hit> window = new ArrayList<>();
+            for (int i = first; i < Math.min(first + number, starts.length); i++) {
+                Hit hit = new Hit(docPid, starts[i], starts[i] + 1);
+                if ("true".equals(params.get(WebserviceParameter.INCLUDE_SORT_KEYS))) {
+                    boolean byPosition = params.get(WebserviceParameter.SORT_BY).equals("hitposition");
+                    hit.sortKeys = List.of(byPosition ? "" : String.format("%04d", starts[i]));
+                }
+                window.add(hit);
+            }
+            SearchSummary summary = summary(starts.length, starts.length == 0 ? 0 : 1);
+            summary.windowHasNext = first + window.size() < starts.length;
+            List<DocInfo> docInfos = starts.length == 0 ? List.of() : List.of(new DocInfo(docPid, Map.of()));
+            return new HitsResults(summary, new ObjectBigArrayBigList<>(window.iterator()), docInfos);
+        }
+    }
+
+    private static SearchSummary summary(long numberOfHits, long numberOfDocs) {
+        SearchSummary summary = new SearchSummary();
+        summary.numberOfHits = numberOfHits;
+        summary.numberOfHitsRetrieved = numberOfHits;
+        summary.numberOfDocs = numberOfDocs;
+        summary.numberOfDocsRetrieved = numberOfDocs;
+        return summary;
+    }
+
+    private static Map<WebserviceParameter, String> params(Object... keyValues) {
+        Map<WebserviceParameter, String> params = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2)
+            params.put((WebserviceParameter) keyValues[i], keyValues[i + 1].toString());
+        return params;
+    }
+
+    private static List<Long> starts(HitsResults results) {
+        return results.hits.stream().map(h -> h.start).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSortedHitsWindow() {
+        HitsShard a = new HitsShard("a", 1, 4, 6, 9);
+        HitsShard b = new HitsShard("b", 2, 3, 8);
+        HitsShard c = new HitsShard("c");
+        ScatterGather sg = new ScatterGather(List.of(a, b, c));
+
+        HitsResults results = sg.hits(params(WebserviceParameter.SORT_BY, "hit:word:i",
+                WebserviceParameter.FIRST_RESULT, 2, WebserviceParameter.NUMBER_OF_RESULTS, 3));
+        Assert.assertEquals(List.of(3L, 4L, 6L), starts(results));
+        Assert.assertTrue(results.hits.stream().allMatch(h -> h.sortKeys == null));
+        Assert.assertEquals(List.of("b", "a"), results.docInfos.stream().map(d -> d.pid).collect(Collectors.toList()));
+        Assert.assertEquals(7L, (long) results.summary.numberOfHits);
+        Assert.assertEquals(2, results.summary.numberOfDocs);
+        Assert.assertEquals(3, results.summary.actualWindowSize);
+        Assert.assertTrue(results.summary.windowHasPrevious);
+        Assert.assertTrue(results.summary.windowHasNext);
+
+        // Each shard was only asked for the hits up to the end of the window
+        for (HitsShard shard: List.of(a, b, c)) {
+            Assert.assertEquals(1, shard.requests.size());
+            Assert.assertEquals("0", shard.requests.get(0).get(WebserviceParameter.FIRST_RESULT));
+            Assert.assertEquals("5", shard.requests.get(0).get(WebserviceParameter.NUMBER_OF_RESULTS));
+        }
+    }
+
+    @Test
+    public void testHitPositionIsConcatenated() {
+        // Hit positions (and document ids) can't be compared between shards
+        ScatterGather sg = new ScatterGather(List.of(new HitsShard("a", 1, 4), new HitsShard("b", 2, 3)));
+        HitsResults results = sg.hits(params(WebserviceParameter.SORT_BY, "hitposition"));
+        Assert.assertEquals(List.of(1L, 4L, 2L, 3L), starts(results));
+    }
+
+    @Test
+    public void testShardPagesAreCombined() {
+        HitsShard a = new HitsShard("a", 1, 4, 6, 9);
+        HitsShard b = new HitsShard("b", 2, 3, 8);
+        a.maxPageSize = b.maxPageSize = 2;
+        ScatterGather sg = new ScatterGather(List.of(a, b), 3, 0);
+
+        HitsResults results = sg.hits(params(WebserviceParameter.SORT_BY, "hit:word:i",
+                WebserviceParameter.FIRST_RESULT, 3, WebserviceParameter.NUMBER_OF_RESULTS, 3));
+        Assert.assertEquals(List.of(4L, 6L, 8L), starts(results));
+        // Pages of at most 3 hits, continuing where the (clamped) previous page ended
+        Assert.assertEquals(List.of("0", "2"), a.requests.stream()
+                .map(p -> p.get(WebserviceParameter.FIRST_RESULT)).collect(Collectors.toList()));
+        Assert.assertEquals(List.of("3", "3"), a.requests.stream()
+                .map(p -> p.get(WebserviceParameter.NUMBER_OF_RESULTS)).collect(Collectors.toList()));
+        Assert.assertEquals(2, b.requests.size());
+    }
+
+    @Test
+    public void testUnsortedHitsAreConcatenated() {
+        ScatterGather sg = new ScatterGather(List.of(new HitsShard("a", 5, 7), new HitsShard("b", 1, 2)));
+        HitsResults results = sg.hits(params(WebserviceParameter.FIRST_RESULT, 1));
+        Assert.assertEquals(List.of(7L, 1L, 2L), starts(results));
+        Assert.assertFalse(results.summary.windowHasNext);
+        Assert.assertEquals(ScatterGather.DEFAULT_WINDOW_SIZE, results.summary.requestedWindowSize);
+    }
+
+    private static HitOrDocGroup group(String identity, long size, long numberOfDocs) {
+        return new HitOrDocGroup(identity, identity, size, List.of(), numberOfDocs, null);
+    }
+
+    @Test
+    public void testGroupsAreMerged() {
+        ScatterGather.Shard a = (params, type) -> new HitsResults(summary(10, 3),
+                List.of(group("cat", 6, 2), group("dog", 4, 1)));
+        ScatterGather.Shard b = (params, type) -> new HitsResults(summary(9, 2),
+                List.of(group("dog", 5, 2), group("eel", 4, 1)));
+        ScatterGather sg = new ScatterGather(List.of(a, b));
+
+        HitsResults results = sg.hits(params(WebserviceParameter.GROUP_BY, "hit:word",
+                WebserviceParameter.SORT_BY, "size", WebserviceParameter.NUMBER_OF_RESULTS, 2));
+        List<HitOrDocGroup> groups = results.hitGroups;
+        Assert.assertEquals(List.of("dog", "cat"), groups.stream().map(g -> g.identity).collect(Collectors.toList()));
+        Assert.assertEquals(9, groups.get(0).size);
+        Assert.assertEquals(3L, (long) groups.get(0).numberOfDocs);
+        Assert.assertEquals(3L, (long) results.summary.numberOfGroups);
+        Assert.assertEquals(9L, (long) results.summary.largestGroupSize);
+        Assert.assertEquals(19L, (long) results.summary.numberOfHits);
+        Assert.assertTrue(results.summary.windowHasNext);
+    }
+
+    /** Stand-in for a BLS node with hit groups that returns at most 2 groups per request */
+    private static ScatterGather.Shard groupsShard(HitOrDocGroup... groups) {
+        return (params, type) -> {
+            int first = Integer.parseInt(params.get(WebserviceParameter.FIRST_RESULT));
+            int number = Math.min(2, Integer.parseInt(params.get(WebserviceParameter.NUMBER_OF_RESULTS)));
+            List<HitOrDocGroup> window = List.of(groups).subList(Math.min(first, groups.length),
+                    Math.min(first + number, groups.length));
+            SearchSummary summary = summary(List.of(groups).stream().mapToLong(g -> g.size).sum(), 1);
+            summary.windowHasNext = first + window.size() < groups.length;
+            return new HitsResults(summary, window);
+        };
+    }
+
+    @Test
+    public void testAllGroupsAreRetrieved() {
+        ScatterGather sg = new ScatterGather(List.of(
+                groupsShard(group("a", 5, 1), group("b", 4, 1), group("c", 3, 1), group("d", 2, 1), group("e", 1, 1)),
+                groupsShard(group("e", 9, 1))));
+        HitsResults results = sg.hits(params(WebserviceParameter.GROUP_BY, "hit:word",
+                WebserviceParameter.SORT_BY, "size", WebserviceParameter.NUMBER_OF_RESULTS, 1));
+        Assert.assertEquals("e", results.hitGroups.get(0).identity);
+        Assert.assertEquals(10, results.hitGroups.get(0).size);
+        Assert.assertEquals(5L, (long) results.summary.numberOfGroups);
+        Assert.assertEquals(10L, (long) results.summary.largestGroupSize);
+    }
+
+    @Test
+    public void testShardTimeout() {
+        ScatterGather.Shard hanging = (params, type) -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        };
+        ScatterGather sg = new ScatterGather(List.of(new HitsShard("a", 1), hanging), 1000, 100);
+        Requests.BlsRequestException e = Assert.assertThrows(Requests.BlsRequestException.class,
+                () -> sg.hits(params()));
+        Assert.assertEquals(Response.Status.GATEWAY_TIMEOUT, e.getStatus());
+    }
+
+    @Test
+    public void testTimedOutShardStopsPaging() throws InterruptedException {
+        long[] starts = new long[100];
+        for (int i = 0; i < starts.length; i++)
+            starts[i] = i;
+        HitsShard slow = new HitsShard("a", starts) {
+            @Override
+            public Object request(Map<WebserviceParameter, String> params, Class<?> entityType) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.request(params, entityType);
+            }
+        };
+        slow.maxPageSize = 1;
+        ScatterGather sg = new ScatterGather(List.of(slow), 1000, 100);
+        Assert.assertThrows(Requests.BlsRequestException.class,
+                () -> sg.hits(params(WebserviceParameter.NUMBER_OF_RESULTS, "100")));
+        Thread.sleep(100);
+        int requestsAfterTimeout = slow.requests.size();
+        Thread.sleep(200);
+        Assert.assertEquals(requestsAfterTimeout, slow.requests.size());
+        Assert.assertTrue(requestsAfterTimeout < starts.length);
+    }
+
+    @Test
+    public void testDocumentOnOtherShard() {
+        ErrorResponse notFound = new ErrorResponse(404, "DOC_NOT_FOUND", "Document not found", null);
+        ScatterGather.Shard a = (params, type) -> {
+            throw new Requests.BlsRequestException(Response.Status.NOT_FOUND, notFound);
+        };
+        DocInfoResponse docInfo = new DocInfoResponse();
+        ScatterGather.Shard b = (params, type) -> docInfo;
+        ScatterGather sg = new ScatterGather(List.of(a, b));
+        Assert.assertSame(docInfo, sg.document(params(WebserviceParameter.DOC_PID, "x"), DocInfoResponse.class));
+        Assert.assertThrows(Requests.BlsRequestException.class,
+                () -> new ScatterGather(List.of(a)).document(params(), DocInfoResponse.class));
+    }
+
+    @Test
+    public void testCompareSortKeys() {
+        Assert.assertTrue(MergeUtil.compareSortKeys(List.of("a", "b"), List.of("a", "c")) < 0);
+        Assert.assertTrue(MergeUtil.compareSortKeys(List.of("b", "a"), List.of("a", "c")) > 0);
+        // Empty key: can't compare any further between shards
+        Assert.assertEquals(0, MergeUtil.compareSortKeys(List.of("a", "", "b"), List.of("a", "", "c")));
+        // No keys (shard didn't include them)
+        Assert.assertEquals(0, MergeUtil.compareSortKeys(null, List.of("a")));
+    }
+
+    @Test
+    public void testMergeReadsOnlyWhatsNeeded() {
+        List<Integer> odd = List.of(1, 3, 5, 7);
+        List<Integer> even = List.of(0, 2, 4, 6);
+        Assert.assertEquals(List.of(2, 3, 4), MergeUtil.merge(List.of(odd, even), Comparator.naturalOrder(), 2, 3));
+        Assert.assertEquals(List.of(9, 8, 6),
+                MergeUtil.merge(List.of(List.of(9, 4), List.of(8, 6)), Comparator.reverseOrder(), 0, 3));
+    }
+}
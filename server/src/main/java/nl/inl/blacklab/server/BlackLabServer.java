@@ -38,10 +38,13 @@ import nl.inl.blacklab.server.config.ConfigFileReader;
 import nl.inl.blacklab.server.datastream.DataFormat;
 import nl.inl.blacklab.server.datastream.DataStream;
 import nl.inl.blacklab.server.datastream.DataStreamAbstract;
+import nl.inl.blacklab.server.datastream.DataStreamBinary;
+import nl.inl.blacklab.server.datastream.ServerSentEvents;
 import nl.inl.blacklab.server.exceptions.BlsException;
 import nl.inl.blacklab.server.exceptions.ConfigurationException;
 import nl.inl.blacklab.server.exceptions.InternalServerError;
 import nl.inl.blacklab.server.lib.Response;
+import nl.inl.blacklab.server.lib.results.EventProducer;
 import nl.inl.blacklab.server.lib.results.ResponseStreamer;
 import nl.inl.blacklab.server.requesthandlers.RequestHandler;
 import nl.inl.blacklab.server.requesthandlers.UserRequestBls;
@@ -239,12 +242,43 @@ public class BlackLabServer extends HttpServlet {
 
         int cacheTime = requestHandler.isCacheAllowed() ? searchManager.config().getCache().getClientCacheTimeSec() : 0;
 
+        // Does the client want us to push progress events (Server-Sent Events) instead of a single response?
+        ServerSentEvents events = null;
+        if (isEventStreamRequested(request) && requestHandler.supportsProgressEvents()) {
+            // Event data is always JSON. Send headers now, so we can push events while the search runs.
+            outputType = DataFormat.JSON;
+            responseObject.setStatus(HttpServletResponse.SC_OK);
+            responseObject.setCharacterEncoding(OUTPUT_ENCODING.name().toLowerCase());
+            responseObject.setContentType(ServerSentEvents.CONTENT_TYPE);
+            responseObject.setHeader("X-Accel-Buffering", "no"); // tell nginx not to buffer our events
+            optAddAllowOriginHeader(responseObject);
+            ServletUtil.writeCacheHeaders(responseObject, 0);
+            try {
+                events = new ServerSentEvents(new OutputStreamWriter(responseObject.getOutputStream(),
+                        OUTPUT_ENCODING), requestHandler.apiCompatibility());
+            } catch (IOException e) {
+                logger.debug("(couldn't send response, client probably cancelled the request)");
+                requestHandler.cleanup();
+                return;
+            }
+        }
+
         String rootEl = requestHandler.omitBlackLabResponseRootElement() ? null : ResponseStreamer.BLACKLAB_RESPONSE_ROOT_ELEMENT;
 
         // === Handle the request
         StringWriter buf = new StringWriter();
         PrintWriter out = new PrintWriter(buf);
         DataStream ds = DataStreamAbstract.create(outputType, out, prettyPrint);
+        if (ds instanceof DataStreamBinary) {
+            // Binary responses can be large, so we stream them to the client as they're produced
+            ((DataStreamBinary) ds).setOutput(() -> {
+                responseObject.setStatus(HttpServletResponse.SC_OK);
+                responseObject.setContentType(DataFormat.BINARY.getContentType());
+                optAddAllowOriginHeader(responseObject);
+                ServletUtil.writeCacheHeaders(responseObject, cacheTime);
+                return responseObject.getOutputStream();
+            });
+        }
         ds.setOmitEmptyAnnotations(searchManager.config().getProtocol().isOmitEmptyProperties());
         ds.startDocument(rootEl);
         ResponseStreamer dstream = ResponseStreamer.get(ds, requestHandler.apiCompatibility());
@@ -255,8 +289,14 @@ public class BlackLabServer extends HttpServlet {
         ResponseStreamer errorWriter = ResponseStreamer.get(es, requestHandler.apiCompatibility());
         int errorBufLengthBefore = errorBuf.getBuffer().length();
         int httpCode;
+        EventProducer eventProducer = null;
         try {
-            httpCode = requestHandler.handle(dstream);
+            if (events != null) {
+                eventProducer = requestHandler.handleProgressEvents(events);
+                httpCode = HttpServletResponse.SC_OK;
+            } else {
+                httpCode = requestHandler.handle(dstream);
+            }
         } catch (ErrorOpeningIndex e) {
             httpCode = Response.internalError(errorWriter, e, userRequest.isDebugMode(), "ERROR_OPENING_INDEX");
         } catch (InvalidQuery e) {
@@ -275,19 +315,37 @@ public class BlackLabServer extends HttpServlet {
         }
         ds.endDocument();
 
+        if (events != null) {
+            // Headers were already sent; report any error as an event
+            if (errorBuf.getBuffer().length() > errorBufLengthBefore)
+                events.send("error", errorBuf.getBuffer().substring(errorBufLengthBefore));
+            else if (eventProducer != null)
+                events.follow(eventProducer, request.startAsync()); // send the rest without blocking this thread
+            return;
+        }
+
+        boolean errorOccurred = errorBuf.getBuffer().length() > errorBufLengthBefore;
+        if (ds instanceof DataStreamBinary && ((DataStreamBinary) ds).isStarted()) {
+            // Headers were already sent; the client will notice the response is incomplete
+            if (errorOccurred)
+                logger.error("Error while streaming binary response: " + errorBuf.getBuffer().substring(errorBufLengthBefore));
+            return;
+        }
+
         // === Write the response headers
 
         // Write HTTP headers (status code, encoding, content type and cache)
         responseObject.setStatus(httpCode);
         responseObject.setCharacterEncoding(OUTPUT_ENCODING.name().toLowerCase());
-        responseObject.setContentType(outputType.getContentType());
+        // (errors for binary requests are plain text)
+        responseObject.setContentType(errorOccurred && outputType == DataFormat.BINARY ? "text/plain" :
+                outputType.getContentType());
         optAddAllowOriginHeader(responseObject);
         ServletUtil.writeCacheHeaders(responseObject, cacheTime);
 
         // === Write the response that was captured in buf
         try {
             Writer realOut = new OutputStreamWriter(responseObject.getOutputStream(), OUTPUT_ENCODING);
-            boolean errorOccurred = errorBuf.getBuffer().length() > errorBufLengthBefore;
             StringWriter writeWhat = errorOccurred ? errorBuf : buf;
             realOut.write(writeWhat.toString());
             realOut.flush();
@@ -298,6 +356,17 @@ public class BlackLabServer extends HttpServlet {
         }
     }
 
+    /**
+     * Does the client want to receive Server-Sent Events?
+     *
+     * @param request request
+     * @return true if the client accepts an event stream
+     */
+    private static boolean isEventStreamRequested(HttpServletRequest request) {
+        String accept = request.getHeader("Accept");
+        return accept != null && accept.contains(ServerSentEvents.CONTENT_TYPE);
+    }
+
     private void initializationErrorResponse(HttpServletResponse responseObject, BlsException e) {
         // Write HTTP headers (status code, encoding, content type and cache)
         responseObject.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
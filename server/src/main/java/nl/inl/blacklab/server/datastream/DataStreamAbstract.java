@@ -15,6 +15,8 @@ public abstract class DataStreamAbstract implements DataStream {
             return new DataStreamJson(out, prettyPrint);
         if (format == DataFormat.CSV)
             return new DataStreamCsv(out, prettyPrint);
+        if (format == DataFormat.BINARY)
+            return new DataStreamBinary(out, prettyPrint);
         return new DataStreamXml(out, prettyPrint);
     }
 
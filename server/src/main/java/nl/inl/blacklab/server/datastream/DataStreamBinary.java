@@ -0,0 +1,166 @@
+package nl.inl.blacklab.server.datastream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.server.exceptions.BadRequest;
+import nl.inl.blacklab.server.lib.BinaryResponseWriter;
+
+/**
+ * Only supports {@link #binary(BinaryResponseWriter.Content)}, for the compact binary hits format.
+ *
+ * The binary response is streamed directly to the client instead of being written to the
+ * (character) output, so we never have to keep it in memory as a whole. Errors that occur
+ * before we start streaming are written to the output as plain text.
+ */
+public class DataStreamBinary extends DataStreamAbstract {
+
+    private static final Logger logger = LogManager.getLogger(DataStreamBinary.class);
+
+    private static DataStreamAbstract binaryNotSupported() {
+        throw new BadRequest("BINARY_NOT_SUPPORTED", "This request does not support binary output.");
+    }
+
+    /** Opens the stream to the client, sending the response headers. */
+    @FunctionalInterface
+    public interface OutputOpener {
+        OutputStream open() throws IOException;
+    }
+
+    /** How to open the stream to the client, or null if not set */
+    private OutputOpener opener;
+
+    /** Did we start streaming the binary response? */
+    private boolean started;
+
+    public DataStreamBinary(PrintWriter out, boolean prettyPrint) {
+        super(out, prettyPrint);
+    }
+
+    /**
+     * Set how to open the stream to write the binary response to.
+     *
+     * @param opener opens the stream (and sends the response headers)
+     */
+    public void setOutput(OutputOpener opener) {
+        this.opener = opener;
+    }
+
+    /**
+     * Did we start streaming the binary response?
+     *
+     * If so, the response headers were sent and we can no longer report an error.
+     *
+     * @return true if we started streaming
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    @Override
+    public void error(String code, String msg, Throwable e) {
+        plain(code + "\n");
+        plain(msg + "\n");
+        if (e != null) {
+            StringWriter sw = new StringWriter();
+            PrintWriter pw = new PrintWriter(sw);
+            e.printStackTrace(pw);
+            plain(sw.toString());
+        }
+    }
+
+    @Override
+    public void binary(BinaryResponseWriter.Content content) {
+        if (opener == null)
+            throw new IllegalStateException("No output stream to write binary response to");
+        started = true;
+        try {
+            OutputStream stream = opener.open();
+            content.writeTo(stream);
+            stream.flush();
+        } catch (IOException e) {
+            // Client cancelled the request midway through.
+            // This is okay, don't raise the alarm.
+            logger.debug("(couldn't send response, client probably cancelled the request)");
+        }
+    }
+
+    @Override
+    public DataStream startDocument(String rootEl) {
+        return this;
+    }
+
+    @Override
+    public DataStream endDocument() {
+        return this;
+    }
+
+    @Override
+    DataStreamAbstract pretty(String str) { return binaryNotSupported(); }
+
+    @Override
+    public DataStream startList() { return binaryNotSupported(); }
+
+    @Override
+    public DataStream endList() { return binaryNotSupported(); }
+
+    @Override
+    public DataStream startItem(String name) { return binaryNotSupported(); }
+
+    @Override
+    public DataStream endItem() { return binaryNotSupported(); }
+
+    @Override
+    public DataStream startMap() { return binaryNotSupported(); }
+
+    @Override
+    public DataStream endMap() { return binaryNotSupported(); }
+
+    @Override
+    public DataStream startEntry(String key) { return binaryNotSupported(); }
+
+    @Override
+    public DataStream endEntry() { return binaryNotSupported(); }
+
+    @Override
+    public DataStream startAttrEntry(String elementName, String attrName, String key) { return binaryNotSupported(); }
+
+    @Override
+    public DataStream startAttrEntry(String elementName, String attrName, int key) { return binaryNotSupported(); }
+
+    @Override
+    public DataStream endAttrEntry() { return binaryNotSupported(); }
+
+    @Override
+    public DataStream contextList(List<Annotation> annotations, Collection<Annotation> annotationsToList,
+            List<String> values) {
+        return binaryNotSupported();
+    }
+
+    @Override
+    public DataStream value(String value) { return binaryNotSupported(); }
+
+    @Override
+    public DataStream value(long value) { return binaryNotSupported(); }
+
+    @Override
+    public DataStream value(double value) { return binaryNotSupported(); }
+
+    @Override
+    public DataStream value(boolean value) { return binaryNotSupported(); }
+
+    @Override
+    public void csv(String csv) { binaryNotSupported(); }
+
+    @Override
+    public void xslt(String xslt) { binaryNotSupported(); }
+
+}
@@ -0,0 +1,237 @@
+package nl.inl.blacklab.server.datastream;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import nl.inl.blacklab.server.lib.Response;
+import nl.inl.blacklab.server.lib.results.ApiVersion;
+import nl.inl.blacklab.server.lib.results.EventProducer;
+import nl.inl.blacklab.server.lib.results.EventSink;
+import nl.inl.blacklab.server.lib.results.ResponseStreamer;
+import nl.inl.blacklab.server.lib.results.WebserviceRequestHandler;
+
+/**
+ * Pushes events to the client using Server-Sent Events (text/event-stream).
+ *
+ * Event data is always JSON.
+ */
+public class ServerSentEvents implements EventSink {
+
+    private static final Logger logger = LogManager.getLogger(ServerSentEvents.class);
+
+    public static final String CONTENT_TYPE = "text/event-stream";
+
+    /** If we haven't sent anything for this long, send a comment so we notice if the client went away (ms) */
+    private static final long KEEP_ALIVE_INTERVAL_MS = 5000;
+
+    /** Periodically lets event producers produce their events, so no thread has to wait for them */
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ServerSentEvents");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Writes the produced events to the clients.
+     *
+     * Writing blocks while the client isn't reading, so we don't do it on the timer thread,
+     * or one slow client would hold up the events for all other clients. Each client uses
+     * at most one writer thread at a time.
+     */
+    private static final ExecutorService writers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "ServerSentEventsWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Where to write the events */
+    private final Writer out;
+
+    /** What version of responses to write */
+    private final ApiVersion apiVersion;
+
+    /** Did the client go away? */
+    private volatile boolean clientGone = false;
+
+    /** When did we last write to the client? (ms) */
+    private volatile long lastWriteTime = System.currentTimeMillis();
+
+    /** Are we following a producer? Then events are written by a writer thread. */
+    private volatile boolean writeFromWriterThread = false;
+
+    /** Writes waiting for a writer thread (events, and finally completing the request) */
+    private final Queue<Runnable> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    /** Is a writer thread writing our pending writes? */
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+
+    public ServerSentEvents(Writer out, ApiVersion apiVersion) {
+        this.out = out;
+        this.apiVersion = apiVersion;
+    }
+
+    @Override
+    public boolean send(String name, Consumer<ResponseStreamer> data) {
+        StringWriter buf = new StringWriter();
+        PrintWriter pw = new PrintWriter(buf);
+        data.accept(ResponseStreamer.get(DataStreamAbstract.create(DataFormat.JSON, pw, false), apiVersion));
+        pw.flush();
+        return send(name, buf.toString());
+    }
+
+    /**
+     * Send an event with the specified data.
+     *
+     * @param name event name
+     * @param data event data
+     * @return true if the event was sent, false if the client is no longer listening
+     */
+    public boolean send(String name, String data) {
+        StringBuilder event = new StringBuilder("event: ").append(name).append('\n');
+        for (String line: data.trim().split("\n", -1)) {
+            event.append("data: ").append(line).append('\n');
+        }
+        event.append('\n');
+        return write(event.toString());
+    }
+
+    private boolean write(String str) {
+        if (clientGone)
+            return false;
+        if (writeFromWriterThread) {
+            enqueue(() -> writeNow(str));
+            return true;
+        }
+        return writeNow(str);
+    }
+
+    private boolean writeNow(String str) {
+        if (clientGone)
+            return false;
+        try {
+            out.write(str);
+            out.flush();
+            lastWriteTime = System.currentTimeMillis();
+            return true;
+        } catch (IOException e) {
+            logger.debug("(couldn't send event, client probably went away)");
+            clientGone = true;
+            return false;
+        }
+    }
+
+    /** Have a writer thread perform this write after the ones already waiting. */
+    private void enqueue(Runnable write) {
+        pendingWrites.add(write);
+        if (writing.compareAndSet(false, true))
+            writers.execute(this::writePending);
+    }
+
+    private void writePending() {
+        do {
+            Runnable write;
+            while ((write = pendingWrites.poll()) != null)
+                write.run();
+            writing.set(false);
+            // (a write may have been added after we emptied the queue, but before we reset the flag)
+        } while (!pendingWrites.isEmpty() && writing.compareAndSet(false, true));
+    }
+
+    /**
+     * Keep sending events from a producer until it's done, then complete the request.
+     *
+     * Doesn't block: the producer is called periodically from a shared timer thread,
+     * so we don't hold on to a request thread while e.g. a count is running. The events
+     * are written to the client by a writer thread.
+     *
+     * @param producer produces the remaining events
+     * @param async asynchronous context for the request
+     */
+    public void follow(EventProducer producer, AsyncContext async) {
+        async.setTimeout(0); // the search itself is aborted if it takes too long
+        writeFromWriterThread = true;
+        new Follower(producer, async).start();
+    }
+
+    /** Periodically lets a producer send its events until it's done, then completes the request. */
+    private class Follower implements Runnable, AsyncListener {
+
+        private final EventProducer producer;
+
+        private final AsyncContext async;
+
+        private ScheduledFuture<?> task;
+
+        Follower(EventProducer producer, AsyncContext async) {
+            this.producer = producer;
+            this.async = async;
+        }
+
+        synchronized void start() {
+            async.addListener(this);
+            task = scheduler.scheduleWithFixedDelay(this, WebserviceRequestHandler.PROGRESS_EVENT_INTERVAL_MS,
+                    WebserviceRequestHandler.PROGRESS_EVENT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public synchronized void run() {
+            // If the client hasn't read our previous events yet, don't pile up more
+            if (writing.get() && !clientGone)
+                return;
+            boolean done = clientGone;
+            try {
+                done = done || producer.sendEvents();
+                // (SSE comments are ignored by clients, but tell us if the client went away)
+                if (!done && System.currentTimeMillis() - lastWriteTime > KEEP_ALIVE_INTERVAL_MS)
+                    done = !write(": keep-alive\n\n");
+            } catch (RuntimeException e) {
+                logger.error("Error sending events", e);
+                send("error", rs -> Response.internalError(rs, e, false, "INTERR_SENDING_EVENTS"));
+                done = true;
+            }
+            if (done) {
+                task.cancel(false);
+                enqueue(async::complete); // (after the last events have been written)
+            }
+        }
+
+        @Override
+        public synchronized void onTimeout(AsyncEvent event) {
+            task.cancel(false);
+        }
+
+        @Override
+        public synchronized void onError(AsyncEvent event) {
+            clientGone = true;
+            task.cancel(false);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            // (nothing to do)
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // (nothing to do)
+        }
+    }
+}
@@ -20,6 +20,7 @@ import nl.inl.blacklab.instrumentation.RequestInstrumentationProvider;
 import nl.inl.blacklab.search.BlackLabIndex;
 import nl.inl.blacklab.server.BlackLabServer;
 import nl.inl.blacklab.server.datastream.DataFormat;
+import nl.inl.blacklab.server.exceptions.BadRequest;
 import nl.inl.blacklab.server.exceptions.BlsException;
 import nl.inl.blacklab.server.exceptions.IndexNotFound;
 import nl.inl.blacklab.server.index.Index;
@@ -29,6 +30,8 @@ import nl.inl.blacklab.server.lib.IndexUtil;
 import nl.inl.blacklab.server.lib.User;
 import nl.inl.blacklab.server.lib.WebserviceParamsImpl;
 import nl.inl.blacklab.server.lib.results.ApiVersion;
+import nl.inl.blacklab.server.lib.results.EventProducer;
+import nl.inl.blacklab.server.lib.results.EventSink;
 import nl.inl.blacklab.server.lib.results.ResponseStreamer;
 import nl.inl.blacklab.server.search.SearchManager;
 import nl.inl.blacklab.server.util.ServletUtil;
@@ -64,6 +67,8 @@ public abstract class RequestHandler {
         availableHandlers.put("hits-grouped", RequestHandlerHitsGrouped.class);
         availableHandlers.put("hits-csv", RequestHandlerHitsCsv.class);
         availableHandlers.put("hits-grouped-csv", RequestHandlerHitsCsv.class);
+        availableHandlers.put("hits-binary", RequestHandlerHitsBinary.class);
+        availableHandlers.put("hits-grouped-binary", RequestHandlerHitsBinary.class);
         availableHandlers.put("status", RequestHandlerIndexStatus.class);
         availableHandlers.put("termfreq", RequestHandlerTermFreq.class);
         availableHandlers.put("", RequestHandlerIndexMetadata.class);
@@ -75,7 +80,7 @@ public abstract class RequestHandler {
      * Handle a request by dispatching it to the corresponding subclass.
      *
      * @param userRequest the servlet, request and response objects
-     * @param outputType output type requested (XML, JSON or CSV)
+     * @param outputType output type requested (XML, JSON, CSV or binary)
      * @return the response data
      */
     public static RequestHandler create(UserRequestBls userRequest, DataFormat outputType) {
@@ -212,7 +217,8 @@ public abstract class RequestHandler {
                         }
 
                         if (debugMode && !handlerName.isEmpty()
-                                && !Arrays.asList("hits", "hits-csv", "hits-grouped-csv", "docs",
+                                && !Arrays.asList("hits", "hits-csv", "hits-grouped-csv", "hits-binary",
+                                        "hits-grouped-binary", "docs",
                                         "docs-csv", "docs-grouped-csv", "fields", "termfreq",
                                         "status", "autocomplete", "sharing").contains(handlerName)) {
                             handlerName = "debug";
@@ -248,6 +254,8 @@ public abstract class RequestHandler {
                             }
                             if (outputType == DataFormat.CSV)
                                 handlerName += "-csv";
+                            else if (outputType == DataFormat.BINARY && handlerName.startsWith("hits"))
+                                handlerName += "-binary";
                         }
 
                         if (!availableHandlers.containsKey(handlerName))
@@ -452,6 +460,33 @@ public abstract class RequestHandler {
      */
     public abstract int handle(ResponseStreamer rs) throws BlsException, InvalidQuery;
 
+    /**
+     * Can this request push progress events to the client instead of a single response?
+     *
+     * @return true if {@link #handleProgressEvents(EventSink)} is supported
+     */
+    public boolean supportsProgressEvents() {
+        return false;
+    }
+
+    /**
+     * Handle the request, pushing progress events to the client.
+     *
+     * Sends the first event(s) right away and returns a producer for the rest, which the
+     * servlet will call periodically without blocking a request thread.
+     *
+     * Only called if {@link #supportsProgressEvents()} returns true.
+     *
+     * @param events where to send events
+     * @return producer for the remaining events, or null if there are none
+     *
+     * @throws BlsException if the query can't be executed, or the request doesn't support progress events
+     * @throws InterruptedSearch if the thread was interrupted
+     */
+    public EventProducer handleProgressEvents(EventSink events) throws BlsException, InvalidQuery {
+        throw new BadRequest("PROGRESS_EVENTS_NOT_SUPPORTED", "This request doesn't support progress events.");
+    }
+
     public ApiVersion apiCompatibility() {
         return params.apiCompatibility();
     }
@@ -2,6 +2,8 @@ package nl.inl.blacklab.server.requesthandlers;
 
 import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.server.exceptions.BlsException;
+import nl.inl.blacklab.server.lib.results.EventProducer;
+import nl.inl.blacklab.server.lib.results.EventSink;
 import nl.inl.blacklab.server.lib.results.ResponseStreamer;
 import nl.inl.blacklab.server.lib.results.WebserviceRequestHandler;
 import nl.inl.blacklab.webservice.WebserviceOperation;
@@ -21,4 +23,14 @@ public class RequestHandlerHits extends RequestHandler {
         return HTTP_OK;
     }
 
+    @Override
+    public boolean supportsProgressEvents() {
+        return WebserviceRequestHandler.canStreamHitsProgress(params);
+    }
+
+    @Override
+    public EventProducer handleProgressEvents(EventSink events) throws BlsException {
+        return WebserviceRequestHandler.opHitsProgress(params, events);
+    }
+
 }
@@ -0,0 +1,30 @@
+package nl.inl.blacklab.server.requesthandlers;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.server.datastream.DataFormat;
+import nl.inl.blacklab.server.exceptions.BlsException;
+import nl.inl.blacklab.server.lib.results.ResponseStreamer;
+import nl.inl.blacklab.server.lib.results.WebserviceRequestHandler;
+import nl.inl.blacklab.webservice.WebserviceOperation;
+
+/**
+ * Request handler for hits or groups in the compact binary format.
+ */
+public class RequestHandlerHitsBinary extends RequestHandler {
+
+    public RequestHandlerHitsBinary(UserRequestBls userRequest) {
+        super(userRequest, WebserviceOperation.HITS_BINARY);
+    }
+
+    @Override
+    public int handle(ResponseStreamer rs) throws BlsException, InvalidQuery {
+        WebserviceRequestHandler.opHitsBinary(params, rs);
+        return HTTP_OK;
+    }
+
+    @Override
+    public DataFormat getOverrideType() {
+        return DataFormat.BINARY;
+    }
+
+}
@@ -2,9 +2,19 @@ package nl.inl.blacklab.search.datastream;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -12,6 +22,8 @@ import org.junit.Test;
 import nl.inl.blacklab.server.datastream.DataFormat;
 import nl.inl.blacklab.server.datastream.DataStream;
 import nl.inl.blacklab.server.datastream.DataStreamAbstract;
+import nl.inl.blacklab.server.datastream.ServerSentEvents;
+import nl.inl.blacklab.server.lib.results.ApiVersion;
 
 public class TestDataStream {
 
@@ -49,4 +61,126 @@ public class TestDataStream {
         Assert.assertEquals("{\"mies\":3,\"noot\":2,\"test\":1}", sw.toString());
     }
 
+    @Test
+    public void testServerSentEvents() {
+        StringWriter sw = new StringWriter();
+        ServerSentEvents events = new ServerSentEvents(sw, ApiVersion.CURRENT);
+        Assert.assertTrue(events.send("progress", rs -> rs.getDataStream().startMap()
+                .entry("numberOfHits", 3).endMap()));
+        Assert.assertTrue(events.send("error", "{\n\"code\": \"X\"\n}\n"));
+        Assert.assertEquals("event: progress\ndata: {\"numberOfHits\":3}\n\n" +
+                "event: error\ndata: {\ndata: \"code\": \"X\"\ndata: }\n\n", sw.toString());
+    }
+
+    /** Asynchronous context that only keeps track of whether the request was completed */
+    private static class CompletionAsyncContext implements AsyncContext {
+
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        @Override
+        public void addListener(AsyncListener listener) {
+            // (no events in this test)
+        }
+
+        @Override
+        public void addListener(AsyncListener listener, ServletRequest request, ServletResponse response) {
+            // (no events in this test)
+        }
+
+        @Override
+        public void setTimeout(long timeout) {
+            // (never times out)
+        }
+
+        @Override
+        public long getTimeout() {
+            return 0;
+        }
+
+        @Override
+        public ServletRequest getRequest() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServletResponse getResponse() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean hasOriginalRequestAndResponse() {
+            return true;
+        }
+
+        @Override
+        public void dispatch() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void dispatch(String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void dispatch(ServletContext context, String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void start(Runnable run) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends AsyncListener> T createListener(Class<T> clazz) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /** Follow a producer that sends a few progress events. */
+    private static CompletionAsyncContext follow(ServerSentEvents events) {
+        AtomicInteger eventsSent = new AtomicInteger();
+        CompletionAsyncContext async = new CompletionAsyncContext();
+        events.follow(() -> {
+            events.send("progress", "{}");
+            return eventsSent.incrementAndGet() == 3;
+        }, async);
+        return async;
+    }
+
+    @Test
+    public void testSlowClientDoesntHoldUpOthers() throws InterruptedException {
+        // A client that doesn't read anything until we let it
+        CountDownLatch slowClientReads = new CountDownLatch(1);
+        Writer slowClient = new StringWriter() {
+            @Override
+            public void write(String str) {
+                try {
+                    slowClientReads.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(str);
+            }
+        };
+        CompletionAsyncContext slow = follow(new ServerSentEvents(slowClient, ApiVersion.CURRENT));
+        try {
+            StringWriter fastClient = new StringWriter();
+            CompletionAsyncContext fast = follow(new ServerSentEvents(fastClient, ApiVersion.CURRENT));
+            Assert.assertTrue(fast.completed.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals("event: progress\ndata: {}\n\n".repeat(3), fastClient.toString());
+            Assert.assertEquals(1, slow.completed.getCount());
+        } finally {
+            slowClientReads.countDown();
+        }
+        Assert.assertTrue(slow.completed.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals("event: progress\ndata: {}\n\n".repeat(3), slowClient.toString());
+    }
+
 }
@@ -24,9 +24,9 @@ public class BLIndexObjectFactorySolr implements BLIndexObjectFactory {
     }
 
     @Override
-    public BLFieldType fieldTypeContentStore() {
+    public BLFieldType fieldTypeContentStore(String codecName) {
         // ignored in solr path, see BLInputDocumentSolr.
-        return BLFieldTypeLucene.contentStore();
+        return BLFieldTypeLucene.contentStore(codecName);
     }
 
     @Override
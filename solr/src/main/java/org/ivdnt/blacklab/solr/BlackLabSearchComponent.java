@@ -205,6 +205,9 @@ public class BlackLabSearchComponent extends SearchComponent implements SolrCore
                 case HITS_CSV:
                     WebserviceRequestHandler.opHitsCsv(params, dstream);
                     break;
+                case HITS_BINARY:
+                    WebserviceRequestHandler.opHitsBinary(params, dstream);
+                    break;
                 case HITS: case HITS_GROUPED:
                     // [grouped] hits
                     WebserviceRequestHandler.opHits(params, dstream);
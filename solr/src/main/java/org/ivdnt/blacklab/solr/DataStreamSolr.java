@@ -1,6 +1,7 @@
 package org.ivdnt.blacklab.solr;
 
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.List;
 
@@ -10,6 +11,7 @@ import org.apache.solr.response.SolrQueryResponse;
 
 import nl.inl.blacklab.search.indexmetadata.Annotation;
 import nl.inl.blacklab.server.datastream.DataStream;
+import nl.inl.blacklab.server.lib.BinaryResponseWriter;
 
 public class DataStreamSolr implements DataStream {
 
@@ -262,6 +264,14 @@ public class DataStreamSolr implements DataStream {
         startMap().entry("csv", csv).endMap();
     }
 
+    @Override
+    public void binary(BinaryResponseWriter.Content content) {
+        // Solr doesn't support custom binary output, so we'll wrap it (Base64-encoded) in a field,
+        // which the client should easily be able to extract.
+        byte[] data = BinaryResponseWriter.toByteArray(content);
+        startMap().entry("binary", Base64.getEncoder().encodeToString(data)).endMap();
+    }
+
     @Override
     public void xslt(String xslt) {
         // Solr doesn't easily support custom output formats, so we'll wrap it in a field,
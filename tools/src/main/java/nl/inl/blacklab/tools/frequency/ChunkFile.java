@@ -0,0 +1,222 @@
+package nl.inl.blacklab.tools.frequency;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A file containing partial frequency counts, sorted by group.
+ *
+ * Groups are identified by their values as they appear in the output (annotation values,
+ * then metadata values). Unlike term ids, these don't change when segments are added to
+ * the index, so chunk files can be kept around and merged with counts from later runs.
+ *
+ * Because records are sorted, any number of chunk files can be merged using very little memory.
+ */
+class ChunkFile {
+
+    /** Counts for a group. */
+    static final class Record implements Comparable<Record> {
+        private final String[] group;
+
+        private long hits;
+
+        private long docs;
+
+        public Record(String[] group, long hits, long docs) {
+            this.group = group;
+            this.hits = hits;
+            this.docs = docs;
+        }
+
+        public String[] getGroup() {
+            return group;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getDocs() {
+            return docs;
+        }
+
+        void add(Record other) {
+            hits += other.hits;
+            docs += other.docs;
+        }
+
+        @Override
+        public int compareTo(Record other) {
+            return Arrays.compare(group, other.group);
+        }
+    }
+
+    /** Receives merged records. */
+    @FunctionalInterface
+    interface RecordConsumer {
+        void accept(Record record) throws IOException;
+    }
+
+    /** Marks the start of a record in the file */
+    private static final byte RECORD = 1;
+
+    /** Marks the end of the file */
+    private static final byte END = 0;
+
+    private ChunkFile() {
+    }
+
+    private static OutputStream openForWriting(File file, boolean compress) throws IOException {
+        OutputStream stream = new FileOutputStream(file);
+        if (compress)
+            stream = new GZIPOutputStream(stream);
+        return new BufferedOutputStream(stream);
+    }
+
+    /**
+     * Sort records and write them to a chunk file.
+     *
+     * Records for the same group are merged.
+     *
+     * @param file file to write
+     * @param records records to write (will be sorted in place)
+     * @param compress whether to compress the file
+     */
+    static void write(File file, Record[] records, boolean compress) throws IOException {
+        Arrays.parallelSort(records);
+        try (DataOutputStream out = new DataOutputStream(openForWriting(file, compress))) {
+            Record pending = null;
+            for (Record record: records) {
+                if (pending != null && pending.compareTo(record) == 0) {
+                    pending.add(record);
+                } else {
+                    if (pending != null)
+                        writeRecord(out, pending);
+                    pending = record;
+                }
+            }
+            if (pending != null)
+                writeRecord(out, pending);
+            out.writeByte(END);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+        out.writeByte(RECORD);
+        out.writeInt(record.group.length);
+        for (String value: record.group) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeLong(record.hits);
+        out.writeLong(record.docs);
+    }
+
+    /**
+     * Merge sorted chunk files.
+     *
+     * Records for the same group are combined and passed to the consumer in sorted order.
+     *
+     * @param chunkFiles files to merge
+     * @param compressed whether the files are compressed
+     * @param consumer receives the merged records
+     */
+    static void merge(List<File> chunkFiles, boolean compressed, RecordConsumer consumer) throws IOException {
+        PriorityQueue<Reader> queue = new PriorityQueue<>(Math.max(1, chunkFiles.size()),
+                Comparator.comparing(Reader::current));
+        try {
+            for (File chunkFile: chunkFiles) {
+                Reader reader = new Reader(chunkFile, compressed);
+                if (reader.next())
+                    queue.add(reader);
+                else
+                    reader.close();
+            }
+            while (!queue.isEmpty()) {
+                // Take the lowest group and add the counts for the same group from all chunk files
+                Reader reader = queue.poll();
+                Record merged = reader.current();
+                advance(queue, reader);
+                while (!queue.isEmpty() && queue.peek().current().compareTo(merged) == 0) {
+                    reader = queue.poll();
+                    merged.add(reader.current());
+                    advance(queue, reader);
+                }
+                consumer.accept(merged);
+            }
+        } finally {
+            for (Reader reader: queue)
+                reader.close();
+        }
+    }
+
+    private static void advance(PriorityQueue<Reader> queue, Reader reader) throws IOException {
+        if (reader.next())
+            queue.add(reader);
+        else
+            reader.close();
+    }
+
+    /** Reads records from a chunk file in order. */
+    private static class Reader implements Closeable {
+        private final DataInputStream in;
+
+        private Record current;
+
+        public Reader(File file, boolean compressed) throws IOException {
+            InputStream stream = new FileInputStream(file);
+            if (compressed)
+                stream = new GZIPInputStream(stream);
+            in = new DataInputStream(new BufferedInputStream(stream));
+        }
+
+        public Record current() {
+            return current;
+        }
+
+        /**
+         * Read the next record.
+         *
+         * @return true if there was a next record, false if we're at the end of the file
+         */
+        public boolean next() throws IOException {
+            byte marker = in.readByte();
+            if (marker == END) {
+                current = null;
+                return false;
+            }
+            if (marker != RECORD)
+                throw new IOException("Corrupt chunk file, unexpected marker " + marker);
+            String[] group = new String[in.readInt()];
+            for (int i = 0; i < group.length; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                group[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            current = new Record(group, in.readLong(), in.readLong());
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
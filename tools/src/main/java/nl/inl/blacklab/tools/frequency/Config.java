@@ -47,6 +47,16 @@ class Config {
      */
     private boolean compressTempFiles = false;
 
+    /**
+     * Keep counts per index segment between runs?
+     *
+     * Optional. If true, counts are kept in a state directory next to the output file.
+     * An interrupted run can then be resumed, and later runs only need to count segments
+     * that were added (or had documents deleted) since the previous run.
+     * Default: false.
+     */
+    private boolean incremental = false;
+
     /**
      * Use regular search instead of specifically optimized one?
      *
@@ -140,11 +150,21 @@ class Config {
         this.compressTempFiles = compressTempFiles;
     }
 
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    @SuppressWarnings("unused")
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
     @Override
     public String toString() {
         return "Config{" +
                 "docsToProcessInParallel=" + docsToProcessInParallel +
                 ", groupsPerChunk=" + groupsPerChunk +
+                ", incremental=" + incremental +
                 ", useRegularSearch=" + useRegularSearch +
                 ", repetitions=" + repetitions +
                 ", annotatedField='" + annotatedField + '\'' +
@@ -155,6 +175,7 @@ class Config {
     public String show() {
         return "docsToProcessInParallel: " + docsToProcessInParallel + "\n" +
                 "groupsPerChunk: " + groupsPerChunk + "\n" +
+                "incremental: " + incremental + "\n" +
                 "useRegularSearch: " + useRegularSearch + "\n" +
                 "repetitions: " + repetitions + "\n" +
                 "annotatedField: '" + annotatedField + "\n" +
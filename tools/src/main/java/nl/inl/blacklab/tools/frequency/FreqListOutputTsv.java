@@ -36,7 +36,7 @@ class FreqListOutputTsv implements FreqListOutput {
                     .withEscape('\\')
                     .withQuoteMode(QuoteMode.NONE);
 
-    static void writeGroupRecord(MatchSensitivity[] sensitivity, Terms[] terms, CSVPrinter csv, GroupIdHash groupId, int hits) throws IOException {
+    static void writeGroupRecord(MatchSensitivity[] sensitivity, Terms[] terms, CSVPrinter csv, GroupIdHash groupId, long hits) throws IOException {
         List<String> record = new ArrayList<>();
         // - annotation values
         int[] tokenIds = groupId.getTokenIds();
@@ -53,6 +53,20 @@ class FreqListOutputTsv implements FreqListOutput {
         csv.printRecord(record);
     }
 
+    /**
+     * Write a group record from a chunk file.
+     *
+     * @param csv where to write
+     * @param group annotation values followed by metadata values
+     * @param hits group size
+     */
+    static void writeGroupRecord(CSVPrinter csv, String[] group, long hits) throws IOException {
+        List<String> record = new ArrayList<>(group.length + 1);
+        Collections.addAll(record, group);
+        record.add(Long.toString(hits));
+        csv.printRecord(record);
+    }
+
     /**
      * Write HitGroups result.
      *
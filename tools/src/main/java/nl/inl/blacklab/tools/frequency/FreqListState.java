@@ -0,0 +1,215 @@
+package nl.inl.blacklab.tools.frequency;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.util.StringHelper;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+
+/**
+ * Progress of an incremental frequency list, stored in its state directory.
+ *
+ * Records which chunk files contain the counts for which index segment. Lucene segments
+ * never change (except for deletions), so the counts for a segment stay valid as long as
+ * the segment exists and has the same number of documents to count. This allows us to
+ * resume after an interruption, and to only count segments that were added since the
+ * previous run.
+ */
+class FreqListState {
+
+    /** Name of the file the state is stored in */
+    private static final String STATE_FILE_NAME = "state.json";
+
+    /** Increment when the state or chunk file format changes */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Progress for a single index segment. */
+    static class SegmentState {
+        /** Number of documents to count in this segment (live documents, excluding the index metadata document) */
+        @JsonProperty
+        private int numberOfDocs;
+
+        /** Number of (live) documents counted so far */
+        @JsonProperty
+        private int docsDone;
+
+        /** Have all documents been counted? */
+        @JsonProperty
+        private boolean complete;
+
+        /** Chunk files containing the counts for this segment */
+        @JsonProperty
+        private List<String> chunks = new ArrayList<>();
+
+        public int getDocsDone() {
+            return docsDone;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public List<String> getChunks() {
+            return chunks;
+        }
+
+        /**
+         * Record progress after writing a chunk file.
+         *
+         * @param chunk chunk file written, or null if there were no counts to write
+         * @param docsDone number of documents counted so far
+         * @param complete whether all documents have been counted
+         */
+        public void addChunk(String chunk, int docsDone, boolean complete) {
+            if (chunk != null)
+                chunks.add(chunk);
+            this.docsDone = docsDone;
+            this.complete = complete;
+        }
+    }
+
+    @JsonProperty
+    private int formatVersion = FORMAT_VERSION;
+
+    /** Describes what is being counted; if this changes, we have to start over */
+    @JsonProperty
+    private String description;
+
+    /** Progress per segment, keyed by segment id */
+    @JsonProperty
+    private Map<String, SegmentState> segments = new LinkedHashMap<>();
+
+    @SuppressWarnings("unused") // used by Jackson
+    private FreqListState() {
+    }
+
+    private FreqListState(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Open the state stored in a directory, or start over.
+     *
+     * If there's no (usable) state for this description, we start over, deleting any files
+     * in the directory. Otherwise, counts for segments that no longer exist or have had
+     * documents deleted since are discarded, as are any chunk files from an interrupted write.
+     *
+     * We don't simply compare the number of deleted documents, because the index metadata
+     * document is replaced whenever documents are added.
+     *
+     * @param dir state directory (will be created if it doesn't exist)
+     * @param description describes what we're counting
+     * @param numberOfDocsPerSegment number of documents to count per segment id
+     * @return state
+     */
+    static FreqListState open(File dir, String description, Map<String, Integer> numberOfDocsPerSegment) {
+        if (!dir.exists() && !dir.mkdir())
+            throw new BlackLabRuntimeException("Could not create state dir: " + dir);
+        File stateFile = new File(dir, STATE_FILE_NAME);
+        FreqListState state = null;
+        if (stateFile.exists()) {
+            try {
+                state = new ObjectMapper().readValue(stateFile, FreqListState.class);
+            } catch (IOException e) {
+                System.out.println("  Could not read " + stateFile + ", starting over (" + e.getMessage() + ")");
+            }
+        }
+        if (state != null && (state.formatVersion != FORMAT_VERSION || !description.equals(state.description))) {
+            System.out.println("  Configuration changed since previous run, starting over");
+            state = null;
+        }
+        if (state == null)
+            state = new FreqListState(description);
+
+        // Discard counts for segments that are gone or have changed
+        state.segments.entrySet().removeIf(e -> {
+            Integer numberOfDocs = numberOfDocsPerSegment.get(e.getKey());
+            return numberOfDocs == null || numberOfDocs != e.getValue().numberOfDocs;
+        });
+
+        // Delete any files we don't need anymore (e.g. chunks for discarded segments)
+        Set<String> keep = new HashSet<>(state.chunkFileNames());
+        keep.add(STATE_FILE_NAME);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file: files) {
+                if (!keep.contains(file.getName()) && !file.delete())
+                    System.err.println("Could not delete: " + file);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Get a unique id for an index segment.
+     *
+     * @param lrc segment
+     * @return unique id
+     */
+    static String segmentId(LeafReaderContext lrc) {
+        LeafReader reader = FilterLeafReader.unwrap(lrc.reader());
+        if (!(reader instanceof SegmentReader))
+            throw new BlackLabRuntimeException("Cannot determine segment id for " + reader);
+        return StringHelper.idToString(((SegmentReader) reader).getSegmentInfo().info.getId());
+    }
+
+    /**
+     * Get the progress for a segment.
+     *
+     * @param segmentId segment id
+     * @param numberOfDocs number of documents to count in this segment
+     * @return progress for this segment
+     */
+    SegmentState segment(String segmentId, int numberOfDocs) {
+        return segments.computeIfAbsent(segmentId, __ -> {
+            SegmentState segmentState = new SegmentState();
+            segmentState.numberOfDocs = numberOfDocs;
+            return segmentState;
+        });
+    }
+
+    /**
+     * Get the chunk files for all segments.
+     *
+     * @return chunk file names
+     */
+    List<String> chunkFileNames() {
+        List<String> chunks = new ArrayList<>();
+        segments.values().forEach(s -> chunks.addAll(s.chunks));
+        return chunks;
+    }
+
+    /**
+     * Save the state to the directory.
+     *
+     * @param dir state directory
+     */
+    void write(File dir) {
+        File stateFile = new File(dir, STATE_FILE_NAME);
+        File newStateFile = new File(dir, STATE_FILE_NAME + ".new");
+        try {
+            // Write to a new file first, so we always have a consistent state file
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(newStateFile, this);
+            Files.move(newStateFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new BlackLabRuntimeException("Could not write " + stateFile, e);
+        }
+    }
+}
@@ -1,30 +1,27 @@
 package nl.inl.blacklab.tools.frequency;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
-import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.Bits;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.ErrorOpeningIndex;
@@ -164,16 +161,35 @@ public class FrequencyTool {
         List<String> annotationNames = freqList.getAnnotations();
         List<Annotation> annotations = annotationNames.stream().map(annotatedField::annotation).collect(Collectors.toList());
         List<String> metadataFields = freqList.getMetadataFields();
-        final List<Integer> docIds = new ArrayList<>();
-        index.forEachDocument((__, id) -> docIds.add(id));
-
-        // Create tmp dir for the chunk files
-        File tmpDir = new File(outputDir, "tmp");
-        if (!tmpDir.exists() && !tmpDir.mkdir())
-            throw new RuntimeException("Could not create tmp dir: " + tmpDir);
+        Terms[] terms = annotations.stream()
+                .map(annotation -> index.annotationForwardIndex(annotation).terms())
+                .toArray(Terms[]::new);
+        MatchSensitivity[] sensitivity = new MatchSensitivity[terms.length];
+        Arrays.fill(sensitivity, MatchSensitivity.INSENSITIVE);
+        List<LeafReaderContext> leaves = index.reader().leaves();
+
+        // In incremental mode, we keep the chunk files and our progress per segment in a state dir,
+        // so we can resume after an interruption and only need to count new segments next time.
+        // Otherwise, we use a tmp dir for the chunk files that we delete when we're done.
+        boolean incremental = config.isIncremental();
+        File chunkDir = incremental ? new File(outputDir, reportName + ".state") : new File(outputDir, "tmp");
+        int metadataDocId = index.metadata().metadataDocId();
+        FreqListState state = null;
+        if (incremental) {
+            String description = config.getAnnotatedField() + " " + annotationNames + " " + metadataFields +
+                    (config.isCompressTempFiles() ? " compressed" : "");
+            Map<String, Integer> numberOfDocsPerSegment = new HashMap<>();
+            for (LeafReaderContext lrc: leaves)
+                numberOfDocsPerSegment.put(FreqListState.segmentId(lrc), docsToCount(lrc, metadataDocId).size());
+            state = FreqListState.open(chunkDir, description, numberOfDocsPerSegment);
+        } else if (!chunkDir.exists() && !chunkDir.mkdir()) {
+            throw new RuntimeException("Could not create tmp dir: " + chunkDir);
+        }
 
         // Process the documents in parallel runs. After each run, check the size of the grouping,
         // and write it as a sorted chunk file if it exceeds the configured size.
+        // In incremental mode, we also write a chunk file at the end of each segment, so each
+        // chunk file only contains counts for one segment.
         // At the end we will merge all the chunks to get the final result.
         List<File> chunkFiles = new ArrayList<>();
         final int docsToProcessInParallel = config.getDocsToProcessInParallel();
@@ -184,101 +200,164 @@ public class FrequencyTool {
         // ConcurrentMap because we're counting in parallel.
         ConcurrentMap<GroupIdHash, OccurrenceCounts> occurrences = null;
 
-        for (int rep = 0; rep < config.getRepetitions(); rep++) { // FOR DEBUGGING
-
-            for (int i = 0; i < docIds.size(); i += docsToProcessInParallel) {
-                int runEnd = Math.min(i + docsToProcessInParallel, docIds.size());
-                List<Integer> docIdsInChunk = docIds.subList(i, runEnd);
-
-                // Make sure we have a map
-                if (occurrences == null) {
-                    // NOTE: we looked at ConcurrentSkipListMap which keeps entries in sorted order,
-                    //       but it was faster to use a HashMap and sort it afterwards.
-                    occurrences = new ConcurrentHashMap<>();
+        // (repetitions are for debugging/benchmarking; in incremental mode, segments are only counted once)
+        int repetitions = incremental ? 1 : Math.max(1, config.getRepetitions());
+        for (int rep = 0; rep < repetitions; rep++) { // FOR DEBUGGING
+            for (LeafReaderContext lrc: leaves) {
+                final List<Integer> docIds = docsToCount(lrc, metadataDocId);
+                FreqListState.SegmentState segmentState = incremental ?
+                        state.segment(FreqListState.segmentId(lrc), docIds.size()) : null;
+                if (segmentState != null && segmentState.isComplete()) {
+                    System.out.println("  Segment " + lrc.ord + " was counted in a previous run");
+                    continue;
+                }
+                int start = segmentState == null ? 0 : segmentState.getDocsDone();
+                if (start > 0)
+                    System.out.println("  Resuming segment " + lrc.ord + " at doc " + start);
+                if (segmentState != null && start >= docIds.size()) {
+                    // Nothing (left) to count in this segment
+                    segmentState.addChunk(null, docIds.size(), true);
+                    state.write(chunkDir);
                 }
 
-                // Process current run of documents and add to grouping
-                CalcTokenFrequencies.get(index, annotations, metadataFields, docIdsInChunk, occurrences);
+                for (int i = start; i < docIds.size(); i += docsToProcessInParallel) {
+                    int runEnd = Math.min(i + docsToProcessInParallel, docIds.size());
+                    List<Integer> docIdsInChunk = docIds.subList(i, runEnd);
 
-                System.out.println("  Processed docs " + i + "-" + runEnd + ", " + occurrences.size() + " entries");
+                    // Make sure we have a map
+                    if (occurrences == null) {
+                        // NOTE: we looked at ConcurrentSkipListMap which keeps entries in sorted order,
+                        //       but it was faster to use a HashMap and sort it afterwards.
+                        occurrences = new ConcurrentHashMap<>();
+                    }
 
-                // If the grouping has gotten too large, write it to file so we don't run out of memory.
-                boolean groupingTooLarge = occurrences.size() > config.getGroupsPerChunk();
-                boolean isFinalRun = rep == config.getRepetitions() - 1 && runEnd >= docIds.size();
-                if (groupingTooLarge || isFinalRun) {
+                    // Process current run of documents and add to grouping
+                    CalcTokenFrequencies.get(index, annotations, metadataFields, docIdsInChunk, occurrences);
 
-                    if (isFinalRun && chunkNumber == 0) {
-                        // There's only one chunk. We can skip writing intermediate file and write result directly.
-                        FreqListOutput.TSV.write(index, annotatedField, reportName, annotationNames, occurrences, outputDir, gzip);
-                        occurrences = null;
-                    } else if (groupingTooLarge || isFinalRun) {
-                        // Sort our map now.
-                        SortedMap<GroupIdHash, OccurrenceCounts> sorted = new TreeMap<>(occurrences);
+                    System.out.println("  Processed docs " + (lrc.docBase + i) + "-" + (lrc.docBase + runEnd) + ", " +
+                            occurrences.size() + " entries");
 
+                    // If the grouping has gotten too large, write it to file so we don't run out of memory.
+                    boolean groupingTooLarge = occurrences.size() > config.getGroupsPerChunk();
+                    boolean endOfSegment = runEnd >= docIds.size();
+                    if (groupingTooLarge || incremental && endOfSegment) {
                         // Write next chunk file.
                         chunkNumber++;
-                        String chunkName = reportName + chunkNumber;
-                        File chunkFile = new File(tmpDir, chunkName + ".chunk");
-                        System.out.println("  Writing " + chunkFile);
-                        writeChunkFile(chunkFile, sorted, config.isCompressTempFiles());
+                        String chunkName = incremental ? FreqListState.segmentId(lrc) + "-" +
+                                segmentState.getChunks().size() + ".chunk" : reportName + chunkNumber + ".chunk";
+                        File chunkFile = new File(chunkDir, chunkName);
+                        writeChunkFile(chunkFile, occurrences, terms, sensitivity, config.isCompressTempFiles());
                         occurrences = null; // free memory, allocate new on next iteration
                         chunkFiles.add(chunkFile);
+                        if (incremental) {
+                            // Remember our progress, so we can resume from here if we're interrupted
+                            segmentState.addChunk(chunkName, runEnd, endOfSegment);
+                            state.write(chunkDir);
+                        }
                     }
                 }
             }
         }
 
-        // Did we write intermediate chunk files that have to be merged?
-        if (chunkNumber > 0) {
-            // Yes, merge all the chunk files. Because they are sorted, this will consume very little memory,
+        if (!incremental && chunkFiles.isEmpty()) {
+            // There's only one chunk. We can skip writing intermediate file and write result directly.
+            FreqListOutput.TSV.write(index, annotatedField, reportName, annotationNames,
+                    occurrences == null ? Collections.emptyMap() : occurrences, outputDir, gzip);
+        } else {
+            if (occurrences != null) {
+                // Write the remaining counts as the final chunk file
+                File chunkFile = new File(chunkDir, reportName + (chunkNumber + 1) + ".chunk");
+                writeChunkFile(chunkFile, occurrences, terms, sensitivity, config.isCompressTempFiles());
+                chunkFiles.add(chunkFile);
+            }
+            if (incremental) {
+                // Merge the counts for all segments, including those from previous runs
+                chunkFiles = state.chunkFileNames().stream().map(name -> new File(chunkDir, name))
+                        .collect(Collectors.toList());
+            }
+
+            // Merge all the chunk files. Because they are sorted, this will consume very little memory,
             // even if the final output file is huge.
-            Terms[] terms = annotationNames.stream()
-                    .map(name -> index.annotationForwardIndex(annotatedField.annotation(name)).terms())
-                    .toArray(Terms[]::new);
-            MatchSensitivity[] sensitivity = new MatchSensitivity[terms.length];
-            Arrays.fill(sensitivity, MatchSensitivity.INSENSITIVE);
-            mergeChunkFiles(chunkFiles, outputDir, reportName, gzip, terms, sensitivity, config.isCompressTempFiles());
+            mergeChunkFiles(chunkFiles, outputDir, reportName, gzip, config.isCompressTempFiles());
         }
 
-        // Remove chunk files
-        for (File chunkFile: chunkFiles) {
-            if (!chunkFile.delete())
-                System.err.println("Could not delete: " + chunkFile);
+        if (!incremental) {
+            // Remove chunk files
+            for (File chunkFile: chunkFiles) {
+                if (!chunkFile.delete())
+                    System.err.println("Could not delete: " + chunkFile);
+            }
+            if (!chunkDir.delete())
+                System.err.println("Could not delete: " + chunkDir);
         }
-        if (!tmpDir.delete())
-            System.err.println("Could not delete: " + tmpDir);
     }
 
-    private static void writeChunkFile(File chunkFile, Map<GroupIdHash, OccurrenceCounts> occurrences, boolean compress) {
-        try (FileOutputStream fileOutputStream = new FileOutputStream(chunkFile)) {
-             OutputStream gzipOutputStream = compress ? new GZIPOutputStream(fileOutputStream) : fileOutputStream;
-             try {
-                 try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(gzipOutputStream)) {
-
-                     // Write keys and values in sorted order, so we can merge later
-                     objectOutputStream.writeInt(occurrences.size()); // start with number of groups
-                     occurrences.forEach((key, value) -> {
-                         try {
-                             objectOutputStream.writeObject(key);
-                             objectOutputStream.writeObject(value);
-                         } catch (IOException e) {
-                             throw new RuntimeException();
-                         }
-                     });
-                 }
-             } finally {
-                 if (compress)
-                     gzipOutputStream.close();
-             }
+    /**
+     * Get the documents to count in a segment.
+     *
+     * @param lrc segment
+     * @param metadataDocId id of the index metadata document, which we skip
+     * @return (global) ids of live documents in this segment
+     */
+    private static List<Integer> docsToCount(LeafReaderContext lrc, int metadataDocId) {
+        List<Integer> docIds = new ArrayList<>();
+        Bits liveDocs = lrc.reader().getLiveDocs();
+        for (int i = 0; i < lrc.reader().maxDoc(); i++) {
+            int docId = lrc.docBase + i;
+            if ((liveDocs == null || liveDocs.get(i)) && docId != metadataDocId)
+                docIds.add(docId);
+        }
+        return docIds;
+    }
 
+    /**
+     * Write counts to a chunk file, sorted by the group values as they will appear in the output.
+     *
+     * @param chunkFile file to write
+     * @param occurrences counts to write
+     * @param terms terms for each annotation
+     * @param sensitivity sensitivity for each annotation
+     * @param compress whether to compress the file
+     */
+    private static void writeChunkFile(File chunkFile, Map<GroupIdHash, OccurrenceCounts> occurrences, Terms[] terms,
+            MatchSensitivity[] sensitivity, boolean compress) {
+        System.out.println("  Writing " + chunkFile);
+
+        // Look up each term string only once. (Several threads may fill in the same
+        // entry, but that's harmless; they will all store an equal string)
+        String[][] termStrings = new String[terms.length][];
+        for (int i = 0; i < terms.length; i++)
+            termStrings[i] = new String[terms[i].numberOfTerms()];
+
+        ChunkFile.Record[] records = occurrences.entrySet().parallelStream().map(e -> {
+            int[] tokenIds = e.getKey().getTokenIds();
+            String[] metadataValues = e.getKey().getMetadataValues();
+            int numMetadataValues = metadataValues == null ? 0 : metadataValues.length;
+            String[] group = new String[tokenIds.length + numMetadataValues];
+            for (int i = 0; i < tokenIds.length; i++) {
+                String term = termStrings[i][tokenIds[i]];
+                if (term == null) {
+                    term = sensitivity[i].desensitize(terms[i].get(tokenIds[i]));
+                    termStrings[i][tokenIds[i]] = term;
+                }
+                group[i] = term;
+            }
+            for (int i = 0; i < numMetadataValues; i++)
+                group[tokenIds.length + i] = StringUtils.defaultString(metadataValues[i]);
+            return new ChunkFile.Record(group, e.getValue().hits, e.getValue().docs);
+        }).toArray(ChunkFile.Record[]::new);
+
+        try {
+            ChunkFile.write(chunkFile, records, compress);
         } catch (IOException e) {
-            throw new RuntimeException();
+            throw new BlackLabRuntimeException("Error writing chunk file " + chunkFile, e);
         }
     }
 
     // Merge the sorted subgroupings that were written to disk, writing the resulting TSV as we go.
     // This takes very little memory even if the final output file is huge.
-    private static void mergeChunkFiles(List<File> chunkFiles, File outputDir, String reportName, boolean gzip, Terms[] terms, MatchSensitivity[] sensitivity, boolean chunksCompressed) {
+    private static void mergeChunkFiles(List<File> chunkFiles, File outputDir, String reportName, boolean gzip,
+            boolean chunksCompressed) {
         File outputFile = new File(outputDir, reportName + ".tsv" + (gzip ? ".gz" : ""));
         System.out.println("  Merging " + chunkFiles.size() + " chunk files to produce " + outputFile);
         try (OutputStream outputStream = new FileOutputStream(outputFile)) {
@@ -287,84 +366,11 @@ public class FrequencyTool {
                 stream = new GZIPOutputStream(stream);
             try (Writer w = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
                  CSVPrinter csv = new CSVPrinter(w, FreqListOutputTsv.TAB_SEPARATED_FORMAT)) {
-                int n = chunkFiles.size();
-                InputStream[] inputStreams = new InputStream[n];
-                InputStream[] gzipInputStreams = new InputStream[n];
-                ObjectInputStream[] chunks = new ObjectInputStream[n];
-                int[] numGroups = new int[n]; // groups per chunk file
-
-                // These hold the index, key and value for the current group from every chunk file
-                int[] index = new int[n];
-                GroupIdHash[] key = new GroupIdHash[n];
-                OccurrenceCounts[] value = new OccurrenceCounts[n];
-
-                try {
-                    int chunksExhausted = 0;
-                    for (int i = 0; i < n; i++) {
-                        File chunkFile = chunkFiles.get(i);
-                        InputStream fis = new FileInputStream(chunkFile);
-                        inputStreams[i] = fis;
-                        InputStream gis = chunksCompressed ? new GZIPInputStream(fis) : fis;
-                        gzipInputStreams[i] = gis;
-                        ObjectInputStream ois = new ObjectInputStream(gis);
-                        numGroups[i] = ois.readInt();
-                        chunks[i] = ois;
-                        // Initialize index, key and value with first group from each file
-                        index[i] = 0;
-                        key[i] = numGroups[i] > 0 ? (GroupIdHash) ois.readObject() : null;
-                        value[i] = numGroups[i] > 0 ? (OccurrenceCounts) ois.readObject() : null;
-                        if (numGroups[i] == 0)
-                            chunksExhausted++;
-                    }
-
-                    // Now, keep merging the "lowest" keys together and advance them,
-                    // until we run out of groups.
-                    while (chunksExhausted < n) {
-                        // Find lowest key value; we will merge that group next
-                        GroupIdHash nextGroupToMerge = null;
-                        for (int j = 0; j < n; j++) {
-                            if (nextGroupToMerge == null || key[j] != null && key[j].compareTo(nextGroupToMerge) < 0)
-                                nextGroupToMerge = key[j];
-                        }
-
-                        // Merge all groups with the lowest value,
-                        // and advance those chunk files to the next group
-                        int hits = 0, docs = 0;
-                        for (int j = 0; j < n; j++) {
-                            if (key[j] != null && key[j].equals(nextGroupToMerge)) {
-                                // Add to merged counts
-                                hits += value[j].hits;
-                                docs += value[j].docs;
-                                // Advance to next group in this chunk
-                                index[j]++;
-                                boolean noMoreGroupsInChunk = index[j] >= numGroups[j];
-                                key[j] = noMoreGroupsInChunk ? null : (GroupIdHash) chunks[j].readObject();
-                                value[j] = noMoreGroupsInChunk ? null : (OccurrenceCounts) chunks[j].readObject();
-                                if (noMoreGroupsInChunk)
-                                    chunksExhausted++;
-                            }
-                        }
-
-                        // Finally, write the merged group to the output file.
-                        if (nextGroupToMerge != null)
-                            FreqListOutputTsv.writeGroupRecord(sensitivity, terms, csv, nextGroupToMerge, hits);
-                    }
-
-                } catch (ClassNotFoundException e) {
-                    throw new RuntimeException();
-                } finally {
-                    for (ObjectInputStream chunk: chunks)
-                        chunk.close();
-                    if (chunksCompressed) {
-                        for (InputStream gis : gzipInputStreams)
-                            gis.close();
-                    }
-                    for (InputStream fis: inputStreams)
-                        fis.close();
-                }
+                ChunkFile.merge(chunkFiles, chunksCompressed,
+                        record -> FreqListOutputTsv.writeGroupRecord(csv, record.getGroup(), record.getHits()));
             }
         } catch (IOException e) {
-            throw new RuntimeException();
+            throw new BlackLabRuntimeException("Error writing output for " + reportName, e);
         }
     }
 
@@ -1,12 +1,11 @@
 package nl.inl.blacklab.tools.frequency;
 
-import java.io.Serializable;
 import java.util.Arrays;
 
 /**
  * Precalculated hashcode for group id, to save time while grouping and sorting.
  */
-class GroupIdHash implements Comparable<GroupIdHash>, Serializable {
+class GroupIdHash {
     private final int[] tokenIds;
     private final int[] tokenSortPositions;
     private final String[] metadataValues;
@@ -45,14 +44,4 @@ class GroupIdHash implements Comparable<GroupIdHash>, Serializable {
                 Arrays.equals(((GroupIdHash) obj).tokenSortPositions, this.tokenSortPositions) &&
                 Arrays.equals(((GroupIdHash) obj).metadataValues, this.metadataValues);
     }
-
-    @Override
-    public int compareTo(GroupIdHash other) {
-        int cmp = Integer.compare(hash, other.hash);
-        if (cmp == 0)
-            cmp = Arrays.compare(tokenSortPositions, other.tokenSortPositions);
-        if (cmp == 0)
-            cmp = Arrays.compare(metadataValues, other.metadataValues);
-        return cmp;
-    }
 }
@@ -1,15 +1,13 @@
 package nl.inl.blacklab.tools.frequency;
 
-import java.io.Serializable;
-
 /**
  * Counts of hits and docs while grouping.
  */
-final class OccurrenceCounts implements Serializable {
-    public int hits;
+final class OccurrenceCounts {
+    public long hits;
     public int docs;
 
-    public OccurrenceCounts(int hits, int docs) {
+    public OccurrenceCounts(long hits, int docs) {
         this.hits = hits;
         this.docs = docs;
     }
@@ -0,0 +1,80 @@
+package nl.inl.blacklab.tools.frequency;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.inl.util.UtilsForTesting;
+
+public class TestChunkFile {
+
+    private UtilsForTesting.TestDir testDir;
+
+    @Before
+    public void setUp() {
+        testDir = UtilsForTesting.createBlackLabTestDir("ChunkFile");
+    }
+
+    @After
+    public void tearDown() {
+        testDir.close();
+    }
+
+    private static ChunkFile.Record record(long hits, long docs, String... group) {
+        return new ChunkFile.Record(group, hits, docs);
+    }
+
+    private File write(String name, boolean compress, ChunkFile.Record... records) throws IOException {
+        File file = new File(testDir.file(), name);
+        ChunkFile.write(file, records, compress);
+        return file;
+    }
+
+    /** Merge chunk files and return the records as strings like "group|hits|docs" */
+    private static List<String> merge(boolean compressed, File... files) throws IOException {
+        List<String> result = new ArrayList<>();
+        ChunkFile.merge(List.of(files), compressed, r ->
+                result.add(String.join(" ", r.getGroup()) + "|" + r.getHits() + "|" + r.getDocs()));
+        return result;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (boolean compress: List.of(false, true)) {
+            File file = write("a.chunk", compress,
+                    record(3, 1, "the", "1900"),
+                    record(1, 1, "été", ""),
+                    record(2, 2, "cat", "1900"));
+            Assert.assertEquals(List.of("cat 1900|2|2", "the 1900|3|1", "été |1|1"), merge(compress, file));
+        }
+    }
+
+    @Test
+    public void testMergeDuplicates() throws IOException {
+        // Duplicates within a file are combined when writing...
+        File a = write("a.chunk", false,
+                record(1, 1, "cat"),
+                record(2, 1, "the"),
+                record(4, 2, "cat"));
+        // ...and duplicates between files when merging
+        File b = write("b.chunk", false,
+                record(1, 1, "dog"),
+                record(10, 3, "the"));
+        Assert.assertEquals(List.of("cat|5|3", "dog|1|1", "the|12|4"), merge(false, a, b));
+    }
+
+    @Test
+    public void testEmptyChunks() throws IOException {
+        File empty = write("empty.chunk", false);
+        Assert.assertEquals(List.of(), merge(false, empty));
+        File a = write("a.chunk", false, record(1, 1, "cat"));
+        Assert.assertEquals(List.of("cat|1|1"), merge(false, empty, a, write("empty2.chunk", false)));
+        Assert.assertEquals(List.of(), merge(false));
+    }
+}
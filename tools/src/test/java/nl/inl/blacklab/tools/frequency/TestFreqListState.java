@@ -0,0 +1,89 @@
+package nl.inl.blacklab.tools.frequency;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.inl.util.UtilsForTesting;
+
+public class TestFreqListState {
+
+    private static final String DESCRIPTION = "contents [word] [year]";
+
+    private UtilsForTesting.TestDir testDir;
+
+    private File stateDir;
+
+    @Before
+    public void setUp() {
+        testDir = UtilsForTesting.createBlackLabTestDir("FreqListState");
+        stateDir = new File(testDir.file(), "list.state");
+    }
+
+    @After
+    public void tearDown() {
+        testDir.close();
+    }
+
+    /** Write a partial state: segment a is complete, segment b is halfway */
+    private void writePartialState() throws IOException {
+        FreqListState state = FreqListState.open(stateDir, DESCRIPTION, Map.of("a", 10, "b", 20));
+        createChunk("a-0.chunk");
+        state.segment("a", 10).addChunk("a-0.chunk", 10, true);
+        createChunk("b-0.chunk");
+        state.segment("b", 20).addChunk("b-0.chunk", 8, false);
+        state.write(stateDir);
+        createChunk("b-1.chunk"); // interrupted before we could record this chunk
+    }
+
+    private void createChunk(String name) throws IOException {
+        ChunkFile.write(new File(stateDir, name), new ChunkFile.Record[0], false);
+    }
+
+    private boolean chunkExists(String name) {
+        return new File(stateDir, name).exists();
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        writePartialState();
+        FreqListState state = FreqListState.open(stateDir, DESCRIPTION, Map.of("a", 10, "b", 20));
+        Assert.assertTrue(state.segment("a", 10).isComplete());
+        FreqListState.SegmentState b = state.segment("b", 20);
+        Assert.assertFalse(b.isComplete());
+        Assert.assertEquals(8, b.getDocsDone());
+        Assert.assertEquals(List.of("a-0.chunk", "b-0.chunk"), state.chunkFileNames());
+        // The chunk we didn't record was deleted; we'll count those documents again
+        Assert.assertFalse(chunkExists("b-1.chunk"));
+
+        // A new segment starts from the beginning
+        Assert.assertEquals(0, state.segment("c", 5).getDocsDone());
+    }
+
+    @Test
+    public void testRecountChangedSegment() throws IOException {
+        writePartialState();
+        // Documents were deleted from segment a, and segment b was merged away
+        FreqListState state = FreqListState.open(stateDir, DESCRIPTION, Map.of("a", 9, "c", 30));
+        Assert.assertEquals(List.of(), state.chunkFileNames());
+        Assert.assertFalse(state.segment("a", 9).isComplete());
+        Assert.assertEquals(0, state.segment("a", 9).getDocsDone());
+        Assert.assertFalse(chunkExists("a-0.chunk"));
+        Assert.assertFalse(chunkExists("b-0.chunk"));
+    }
+
+    @Test
+    public void testDescriptionChanged() throws IOException {
+        writePartialState();
+        FreqListState state = FreqListState.open(stateDir, "contents [lemma] [year]", Map.of("a", 10, "b", 20));
+        Assert.assertEquals(List.of(), state.chunkFileNames());
+        Assert.assertFalse(state.segment("a", 10).isComplete());
+        Assert.assertFalse(chunkExists("a-0.chunk"));
+    }
+}
@@ -0,0 +1,88 @@
+package nl.inl.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Lock for a thread that is producing results, that other threads can wait on
+ * without polling.
+ *
+ * One thread at a time may hold the lock to produce more results (e.g. fetch hits).
+ * Other threads that need results don't want to block until that thread is completely
+ * done, because they may only need a few results. Instead, they wait until either
+ * the lock becomes available or the producer signals progress, and then check if
+ * they have what they need.
+ *
+ * This replaces sleeping in a loop, which adds latency and keeps threads busy.
+ */
+@ThreadSafe
+public class ProgressLock {
+
+    /** Held by the thread producing results */
+    private final ReentrantLock producerLock = new ReentrantLock();
+
+    /** Protects the progress condition */
+    private final ReentrantLock progressLock = new ReentrantLock();
+
+    /** Signalled whenever progress is made or the producer lock is released */
+    private final Condition progress = progressLock.newCondition();
+
+    /** How many threads are waiting for progress? (so we can avoid locking if there's none) */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Acquire the lock, unless the results we need become available first.
+     *
+     * @param done checks if we already have the results we need
+     * @return true if we acquired the lock (call {@link #unlock()} when done),
+     *   false if we have the results we need
+     * @throws InterruptedException if we were interrupted while waiting
+     */
+    public boolean lockUnless(BooleanSupplier done) throws InterruptedException {
+        if (producerLock.tryLock())
+            return true;
+        progressLock.lock();
+        waiting.incrementAndGet();
+        try {
+            // NOTE: we check while holding progressLock, so we can't miss a signal
+            while (true) {
+                if (done.getAsBoolean())
+                    return false;
+                if (producerLock.tryLock())
+                    return true;
+                progress.await();
+            }
+        } finally {
+            waiting.decrementAndGet();
+            progressLock.unlock();
+        }
+    }
+
+    /**
+     * Release the lock and wake up any waiting threads.
+     */
+    public void unlock() {
+        producerLock.unlock();
+        signalProgress();
+    }
+
+    /**
+     * Wake up waiting threads so they can check if the results they need are available.
+     *
+     * Cheap if no threads are waiting.
+     */
+    public void signalProgress() {
+        if (waiting.get() == 0)
+            return;
+        progressLock.lock();
+        try {
+            progress.signalAll();
+        } finally {
+            progressLock.unlock();
+        }
+    }
+}
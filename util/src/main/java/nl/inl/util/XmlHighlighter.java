@@ -163,6 +163,16 @@ public class XmlHighlighter {
      */
     private static final String endHighlightTag = "</hl>";
 
+    /**
+     * Regex for finding all XML tags.
+     * Group 1 indicates if this is an open or close tag
+     * Group 2 is the tag name
+     */
+    private static final Pattern XML_TAGS = Pattern.compile("<(?![!?])\\s*(/?)\\s*([^>\\s]+)(\\s+[^>]*)?>");
+
+    /** Empty highlight tags that may arise during highlighting */
+    private static final Pattern EMPTY_HIGHLIGHT_TAGS = Pattern.compile(startHighlightTag + "(\\s*)" + endHighlightTag);
+
     /** How deep are we inside highlighting tags? */
     private int inHighlightTag;
 
@@ -220,15 +230,20 @@ public class XmlHighlighter {
                 continue; // skip tag
             }
             if (addVisibleChars) {
-                String visibleChars = xmlContent.substring(positionInContent, tag.start);
-                if (visibleCharsAdded + visibleChars.length() >= stopAfterChars) {
-                    visibleChars = StringUtils.abbreviate(visibleChars, "", stopAfterChars - visibleCharsAdded);
-                    if (visibleChars.length() < tag.start - positionInContent)
+                int visibleLength = tag.start - positionInContent;
+                if (visibleCharsAdded + visibleLength >= stopAfterChars) {
+                    String visibleChars = StringUtils.abbreviate(xmlContent.substring(positionInContent, tag.start),
+                            "", stopAfterChars - visibleCharsAdded);
+                    if (visibleChars.length() < visibleLength)
                         wasCut = true;
                     addVisibleChars = false;
+                    b.append(visibleChars);
+                    visibleCharsAdded += visibleChars.length();
+                } else {
+                    // (append directly from the content, no need to copy the text first)
+                    b.append(xmlContent, positionInContent, tag.start);
+                    visibleCharsAdded += visibleLength;
                 }
-                b.append(visibleChars);
-                visibleCharsAdded += visibleChars.length();
             } else {
                 if (positionInContent < tag.start) {
                     wasCut = true;
@@ -237,7 +252,7 @@ public class XmlHighlighter {
             processTag(xmlContent, tag);
             positionInContent = tag.end;
         }
-        b.append(xmlContent.substring(positionInContent));
+        b.append(xmlContent, positionInContent, xmlContent.length());
         final String optionalEllipsis = wasCut ? "..." : "";
         return b.toString().trim() + optionalEllipsis;
     }
@@ -254,7 +269,7 @@ public class XmlHighlighter {
             startHighlight(tag);
             break;
         case EXISTING_TAG:
-            existingTag(tag, xmlContent.substring(tag.start, tag.end));
+            existingTag(tag, xmlContent.subSequence(tag.start, tag.end));
             break;
         case HIGHLIGHT_END:
             endHighlight();
@@ -300,7 +315,7 @@ public class XmlHighlighter {
      * @param tag where the tag occurs
      * @param str the existing tag encountered.
      */
-    private void existingTag(TagLocation tag, String str) {
+    private void existingTag(TagLocation tag, CharSequence str) {
         boolean suspendHighlighting = false;
 
         if (inHighlightTag > 0) {
@@ -376,13 +391,7 @@ public class XmlHighlighter {
      */
     private List<TagLocation> makeTagList(String elementContent) {
         List<TagLocation> tags = new ArrayList<>();
-
-        // Regex for finding all XML tags.
-        // Group 1 indicates if this is an open or close tag
-        // Group 2 is the tag name
-        Pattern xmlTags = Pattern.compile("<(?![!?])\\s*(/?)\\s*([^>\\s]+)(\\s+[^>]*)?>");
-
-        Matcher m = xmlTags.matcher(elementContent);
+        Matcher m = XML_TAGS.matcher(elementContent);
         List<TagLocation> openTagStack = new ArrayList<>(); // keep track of open tags
         int fixStartTagObjectNum = -1; // when adding start tags to fix well-formedness, number backwards (for correct sorting)
         while (m.find()) {
@@ -517,11 +526,10 @@ public class XmlHighlighter {
         // taking care to mainting well-formedness around existing tags
         String highlighted = highlightInternal(partialContent, tags, -1);
 
-        if (removeEmptyHlTags) {
+        if (removeEmptyHlTags && highlighted.contains(startHighlightTag)) {
             // Because of the way the highlighting (and maintaining of well-formedness) occurs,
             // empty highlight tags may have arisen. Remove these.
-            highlighted = highlighted.replaceAll(startHighlightTag + "(\\s*)" + endHighlightTag,
-                    "$1");
+            highlighted = EMPTY_HIGHLIGHT_TAGS.matcher(highlighted).replaceAll("$1");
         }
 
         return highlighted;
@@ -0,0 +1,63 @@
+package nl.inl.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestProgressLock {
+
+    @Test
+    public void testLockWhenFree() throws InterruptedException {
+        ProgressLock lock = new ProgressLock();
+        Assert.assertTrue(lock.lockUnless(() -> false));
+        lock.unlock();
+        Assert.assertTrue(lock.lockUnless(() -> true));
+        lock.unlock();
+    }
+
+    @Test
+    public void testWaitForProgress() throws Exception {
+        ProgressLock lock = new ProgressLock();
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            try {
+                lock.lockUnless(() -> false);
+                locked.countDown();
+                release.await();
+                done.set(true);
+                lock.signalProgress();
+                lock.unlock();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Assert.assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        // Waiter should return without the lock when the producer signals that we have what we need
+        CountDownLatch waiting = new CountDownLatch(1);
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return lock.lockUnless(() -> {
+                    waiting.countDown();
+                    return done.get();
+                });
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Assert.assertTrue(waiting.await(10, TimeUnit.SECONDS));
+        release.countDown();
+        Assert.assertFalse(waiter.get(10, TimeUnit.SECONDS));
+        producer.get(10, TimeUnit.SECONDS);
+
+        // Lock is free again
+        Assert.assertTrue(lock.lockUnless(() -> false));
+        lock.unlock();
+    }
+}
@@ -40,6 +40,9 @@ public class BLSConfigCache {
     /** How much memory to target when removing jobs from the cache (megabytes). */
     int targetFreeMemMegs = -1;
 
+    /** Maximum estimated size of all cached results (megabytes), or -1 for no limit. */
+    int maxCacheSizeMegs = -1;
+
     /** How much memory must be available to start a search (megabytes). */
     int minFreeMemForSearchMegs = -1;
 
@@ -104,6 +107,15 @@ public class BLSConfigCache {
         this.targetFreeMemMegs = targetFreeMemMegs;
     }
 
+    public int getMaxCacheSizeMegs() {
+        return maxCacheSizeMegs;
+    }
+
+    @SuppressWarnings("unused")
+    public void setMaxCacheSizeMegs(int maxCacheSizeMegs) {
+        this.maxCacheSizeMegs = maxCacheSizeMegs;
+    }
+
     public int getMinFreeMemForSearchMegs() {
         if (minFreeMemForSearchMegs < 0)
             setDefaultMinFreeMemForSearchMegs();
@@ -25,9 +25,21 @@ public class BLSConfigPerformance {
     /** How many threads a single search job may use. */
     int maxThreadsPerSearch = -1;
 
+    /** How many heavy search jobs (e.g. counting or grouping many hits) may be running at the same time. */
+    int maxConcurrentHeavySearches = -1;
+
+    /** From what estimated cost (roughly: number of hits to process) is a count/group/sort considered heavy? */
+    long heavySearchMinCost = 1_000_000;
+
+    /** After how long in the queue does a heavy search get priority over interactive searches? (seconds) */
+    int maxHeavySearchQueueSec = 10;
+
     /** When to abort a count that no client has asked for (seconds). */
     int abandonedCountAbortTimeSec = 30;
 
+    /** Run searches on virtual threads? (requires Java 21+) */
+    boolean useVirtualThreads = false;
+
     /** How many running jobs one logged-in user may have. */
     int maxRunningJobsPerUser = 10;
 
@@ -49,6 +61,42 @@ public class BLSConfigPerformance {
         this.maxConcurrentSearches = maxConcurrentSearches;
     }
 
+    public int getMaxConcurrentHeavySearches() {
+        if (maxConcurrentHeavySearches < 0)
+            setDefaultMaxConcurrentHeavySearches();
+        return maxConcurrentHeavySearches;
+    }
+
+    private void setDefaultMaxConcurrentHeavySearches() {
+        int n = Math.max(1, getMaxConcurrentSearches() / 2);
+        logger.debug("performance.maxConcurrentHeavySearches not configured, setting it to max(1, " +
+                "maxConcurrentSearches / 2) == " + n);
+        maxConcurrentHeavySearches = n;
+    }
+
+    @SuppressWarnings("unused")
+    public void setMaxConcurrentHeavySearches(int maxConcurrentHeavySearches) {
+        this.maxConcurrentHeavySearches = maxConcurrentHeavySearches;
+    }
+
+    public long getHeavySearchMinCost() {
+        return heavySearchMinCost;
+    }
+
+    @SuppressWarnings("unused")
+    public void setHeavySearchMinCost(long heavySearchMinCost) {
+        this.heavySearchMinCost = heavySearchMinCost;
+    }
+
+    public int getMaxHeavySearchQueueSec() {
+        return maxHeavySearchQueueSec;
+    }
+
+    @SuppressWarnings("unused")
+    public void setMaxHeavySearchQueueSec(int maxHeavySearchQueueSec) {
+        this.maxHeavySearchQueueSec = maxHeavySearchQueueSec;
+    }
+
     public int getMaxThreadsPerSearch() {
         if (maxThreadsPerSearch < 0)
             setDefaultMaxThreadsPerSearch();
@@ -102,4 +150,13 @@ public class BLSConfigPerformance {
         this.abandonedCountAbortTimeSec = abandonedCountAbortTimeSec;
     }
 
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    @SuppressWarnings("unused")
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
 }
\ No newline at end of file
@@ -3,7 +3,8 @@ package nl.inl.blacklab.server.datastream;
 public enum DataFormat {
     XML,
     JSON,
-    CSV;
+    CSV,
+    BINARY;
 
     /**
      * Returns the desired content type for the output. This is based on the
@@ -17,6 +18,8 @@ public enum DataFormat {
             return "application/xml";
         case CSV:
             return "text/csv";
+        case BINARY:
+            return "application/x-blacklab-binary";
         default:
             return "application/json";
         }
@@ -36,6 +39,8 @@ public enum DataFormat {
             return DataFormat.JSON;
         if (typeString.equalsIgnoreCase("csv"))
             return DataFormat.CSV;
+        if (typeString.equalsIgnoreCase("binary"))
+            return DataFormat.BINARY;
         return defaultValue;
     }
 }
@@ -2,11 +2,13 @@ package nl.inl.blacklab.server.datastream;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.server.lib.BinaryResponseWriter;
 import nl.inl.blacklab.server.util.WebserviceUtil;
 
 public interface DataStream {
@@ -291,6 +293,14 @@ public interface DataStream {
         plain(csv);
     }
 
+    /**
+     * Output a full response in the compact binary format. Subclasses may choose to embed it in their
+     * response format, or to stream it directly to the client.
+     */
+    default void binary(BinaryResponseWriter.Content content) {
+        plain(Base64.getEncoder().encodeToString(BinaryResponseWriter.toByteArray(content)));
+    }
+
     /**
      * Output a full XSLT document. Subclasses may choose to embed it in their response format.
      */
@@ -31,6 +31,7 @@ import nl.inl.blacklab.server.exceptions.InternalServerError;
 import nl.inl.blacklab.server.exceptions.ServiceUnavailable;
 import nl.inl.blacklab.server.lib.User;
 import nl.inl.blacklab.server.search.SearchManager;
+import nl.inl.util.VersionFile;
 
 /**
  * A wrapper of sorts around {@link BlackLabIndex}, which is the main blacklab-core
@@ -83,14 +84,18 @@ public class Index {
     private final SearchManager searchMan;
 
     /**
-     * Only one of these can be set at a time. The index is closed and cleared
-     * when an indexer is requested. Running searches are cancelled when this
-     * happens. The Indexer is cleared the first time a search is started after it
-     * the Indexer has finished indexing (meaning close() has been called on it). In
+     * For the classic external index format, only one of these can be set at a time.
+     * The index is closed and cleared when an indexer is requested. Running searches are
+     * cancelled when this happens. The Indexer is cleared the first time a search is started
+     * after it the Indexer has finished indexing (meaning close() has been called on it). In
      * addition, while an index is still running, no new Indexers can be created.
+     *
+     * For the integrated index format, we can keep searching while indexing. When the
+     * Indexer has finished, the index is reopened so the new documents become visible
+     * (see {@link #supportsReopen()}).
      */
-    private BlackLabIndex index;
-    private Indexer indexer;
+    private volatile BlackLabIndex index;
+    private volatile Indexer indexer;
 
     /** List of users who may access this index (read-only). */
     private List<String> shareWithUsers = new ArrayList<>();
@@ -196,9 +201,27 @@ public class Index {
     // TODO index should not have references to it held for longer times outside of this class
     //   (references should ideally never leave a synchronized(Index) block... [this might not be possible due to simultaneous searches]
     //   (this is a large job)
-    public synchronized BlackLabIndex blIndex() throws InternalServerError, ServiceUnavailable {
-        openForSearching();
-        return index;
+    public BlackLabIndex blIndex() throws InternalServerError, ServiceUnavailable {
+        BlackLabIndex openIndex = searchableIndex();
+        if (openIndex != null)
+            return openIndex;
+        return openForSearching();
+    }
+
+    /**
+     * Return the open index if we can search it without doing anything else first.
+     *
+     * That is the case if there's no indexer we might need to clean up, or if the indexer
+     * is still running (we only have an open index while indexing if we support reopening).
+     *
+     * @return the open index, or null if we need to call {@link #openForSearching()}
+     */
+    private BlackLabIndex searchableIndex() {
+        BlackLabIndex openIndex = index;
+        Indexer currentIndexer = indexer;
+        if (openIndex != null && (currentIndexer == null || currentIndexer.isOpen()))
+            return openIndex;
+        return null;
     }
 
     /**
@@ -210,14 +233,24 @@ public class Index {
      * @throws InternalServerError if index couldn't be opened
      * @throws IndexVersionMismatch if the index was too old or too new to open by this versio of BlackLab
      */
-    public synchronized IndexMetadata getIndexMetadata() {
+    public IndexMetadata getIndexMetadata() {
+        BlackLabIndex openIndex = searchableIndex();
+        if (openIndex != null)
+            return openIndex.metadata();
+        return getIndexMetadataSlow();
+    }
+
+    private IndexMetadata getIndexMetadataSlow() {
         try {
-            openForSearching();
+            return openForSearching().metadata();
         } catch (ServiceUnavailable e) {
             // swallow, we're apparently still busy indexing something,
             // this isn't a problem, we'll just use the Indexer's index to get the structure instead
         }
+        return getIndexerMetadata();
+    }
 
+    private synchronized IndexMetadata getIndexerMetadata() {
         if (this.index != null)
             return this.index.metadata();
         else if (this.indexer != null)
@@ -228,8 +261,9 @@ public class Index {
                 "Index in invalid state, openForSearching didn't throw unrecoverable error yet there is no BlackLabIndex and no Indexer");
     }
 
-    public synchronized IndexStatus getStatus() throws BlsException {
-        if (this.indexer != null && this.indexer.isOpen())
+    public IndexStatus getStatus() throws BlsException {
+        Indexer currentIndexer = indexer;
+        if (currentIndexer != null && currentIndexer.isOpen())
             return IndexStatus.INDEXING;
 
         return this.blIndex().isEmpty() ? IndexStatus.EMPTY : IndexStatus.AVAILABLE;
@@ -240,20 +274,35 @@ public class Index {
      * open Indexer, checks whether the Indexer has finished (i.e. Indexer.close()
      * has been called), and cleans it up if so.
      *
+     * If the index was reopened to make newly indexed documents visible, we do that
+     * outside our monitor, so other requests for this index can continue searching the
+     * previous version in the meantime.
+     *
+     * @return the opened index
      * @throws ServiceUnavailable if the index could not be opened due to currently
      *             ongoing indexing
      * @throws InternalServerError if there was some other error opening the index
      */
-    private synchronized void openForSearching() throws ServiceUnavailable, ErrorOpeningIndex {
-        cleanupClosedIndexerOrThrow();
-
-        if (this.index != null)
-            return;
-
-        //logger.debug("    Opening index '" + id + "', dir = " + dir);
-        index = searchMan.blackLabInstance().open(this.dir);
-        index.setCache(searchMan.getBlackLabCache());
-        //logger.debug("Done opening index '" + id + "'");
+    private BlackLabIndex openForSearching() throws ServiceUnavailable, ErrorOpeningIndex {
+        BlackLabIndex openIndex;
+        boolean reopen;
+        synchronized (this) {
+            boolean indexerFinished = cleanupClosedIndexerOrThrow();
+            if (this.index == null) {
+                //logger.debug("    Opening index '" + id + "', dir = " + dir);
+                index = searchMan.blackLabInstance().open(this.dir);
+                index.setCache(searchMan.getBlackLabCache());
+                //logger.debug("Done opening index '" + id + "'");
+                return index;
+            }
+            openIndex = index;
+            reopen = indexerFinished && supportsReopen();
+        }
+        if (reopen) {
+            // Make the newly indexed documents visible
+            openIndex.reopenIfChanged();
+        }
+        return openIndex;
     }
 
     /**
@@ -262,27 +311,40 @@ public class Index {
      * be/has been cleaned up, ServiceUnavailable will be thrown. It is up to the
      * user to close the returned Indexer.
      *
-     * Note that this will lock this index for searching until the Indexer has been
-     * closed again.
+     * Note that for the classic external index format, this will lock this index for
+     * searching until the Indexer has been closed again. The integrated format can be
+     * searched while indexing; new documents become visible when the Indexer has been closed.
      *
      * @return the indexer
      * @throws InternalServerError when the index cannot be opened for some reason
      * @throws ServiceUnavailable when there is already an Indexer on this Index
      *             that's still processing
      */
-    public synchronized Indexer createIndexer() throws InternalServerError, ServiceUnavailable {
-        cleanupClosedIndexerOrThrow();
-        close(); // Close any BlackLabIndex that is still in search mode
-        try {
-            BlackLabIndexWriter indexWriter = searchMan.blackLabInstance()
-                    .openForWriting(this.dir, false);
-            this.indexer = Indexer.create(indexWriter);
-            indexer.setNumberOfThreadsToUse(BlackLab.config().getIndexing().getNumberOfThreads());
-        } catch (Exception e) {
-            throw new InternalServerError("Could not open index '" + id + "'", "INTERR_OPENING_INDEXWRITER", e);
+    public Indexer createIndexer() throws InternalServerError, ServiceUnavailable {
+        BlackLabIndex indexToReopen = null;
+        Indexer newIndexer;
+        synchronized (this) {
+            if (cleanupClosedIndexerOrThrow() && this.index != null && supportsReopen())
+                indexToReopen = index;
+            if (this.indexer != null)
+                throw new ServiceUnavailable("Index '" + id + "' is currently indexing a file, please try again later.");
+            if (!supportsReopen())
+                close(); // Close any BlackLabIndex that is still in search mode
+            try {
+                BlackLabIndexWriter indexWriter = searchMan.blackLabInstance()
+                        .openForWriting(this.dir, false);
+                newIndexer = Indexer.create(indexWriter);
+                newIndexer.setNumberOfThreadsToUse(BlackLab.config().getIndexing().getNumberOfThreads());
+                this.indexer = newIndexer;
+            } catch (Exception e) {
+                throw new InternalServerError("Could not open index '" + id + "'", "INTERR_OPENING_INDEXWRITER", e);
+            }
         }
-
-        return indexer;
+        if (indexToReopen != null) {
+            // Make the documents from the previous indexer visible (outside our monitor, see openForSearching())
+            indexToReopen.reopenIfChanged();
+        }
+        return newIndexer;
     }
 
     /**
@@ -329,17 +391,36 @@ public class Index {
      * when Index.close() is called), instead we just check if it's been closed when
      * a BlackLabIndex or Indexer is requested.
      *
-     * @throws ServiceUnavailable when the current indexer is still indexing
+     * If the index supports reopening, we can keep searching while the indexer is running.
+     *
+     * @return true if a finished indexer was cleaned up
+     * @throws ServiceUnavailable when the current indexer is still indexing and we can't search
      */
-    private synchronized void cleanupClosedIndexerOrThrow() throws ServiceUnavailable {
+    private synchronized boolean cleanupClosedIndexerOrThrow() throws ServiceUnavailable {
         if (this.indexer == null)
-            return;
+            return false;
 
-        if (this.indexer.isOpen())
+        if (this.indexer.isOpen()) {
+            if (supportsReopen())
+                return false; // we can search the last commit while indexing
             throw new ServiceUnavailable("Index '" + id + "' is currently indexing a file, please try again later.");
+        }
 
         // close() was already called on the indexer externally
         this.indexer = null;
+        return true;
+    }
+
+    /**
+     * Can we search this index while indexing, and reopen it afterwards?
+     *
+     * Only the integrated index format supports this; the classic external format
+     * has separate files that are only consistent when the index is closed.
+     *
+     * @return true if the index can be reopened
+     */
+    private boolean supportsReopen() {
+        return !searchMan.config().isSolr() && !VersionFile.exists(dir);
     }
 
     //---------------------
@@ -8,12 +8,11 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
@@ -81,7 +80,21 @@ public class IndexManager {
      */
     private DocIndexerFactoryUserFormats userFormatManager;
 
-    private final Map<String, Index> indices = new HashMap<>();
+    /**
+     * All indices we know about, by id.
+     *
+     * Lookups and listings don't lock; they just read this map. Modifications (scanning for
+     * indices, creating or deleting an index) synchronize on this IndexManager.
+     * The filesystem monitor rescans when directories are added, so new indices
+     * are picked up without having to scan on every request.
+     */
+    private final Map<String, Index> indices = new ConcurrentHashMap<>();
+
+    /** Users whose private indices we've scanned for (cleared when directories are added) */
+    private final Set<String> scannedUsers = ConcurrentHashMap.newKeySet();
+
+    /** When did we last scan the collections dirs for public indices? */
+    private volatile long lastPublicScanTime = 0;
 
     public IndexManager(SearchManager searchMan, BLSConfig blsConfig) throws ConfigurationException {
         this.searchMan = searchMan;
@@ -131,6 +144,7 @@ public class IndexManager {
 
         if (!blsConfig.isSolr())
             checkAnyIndexesAvailable();
+        loadPublicIndices();
         List<File> allDirs = new ArrayList<>(collectionsDirs);
         // Since userCollectionsDir is initialized as null, and might still be null here, check for nullity
         if (userCollectionsDir != null)
@@ -179,18 +193,40 @@ public class IndexManager {
      * @param indexId the index we want to check for
      * @return true iff the index exists
      */
-    public synchronized boolean indexExists(String indexId) throws BlsException {
+    public boolean indexExists(String indexId) throws BlsException {
+        return findIndex(indexId) != null;
+    }
+
+    /**
+     * Find the Index with this id.
+     *
+     * Doesn't lock if the index is already known. If not, checks if it was added recently.
+     *
+     * @param indexId index to find
+     * @return the index, or null if not found
+     * @throws IndexNotFound if the index id is invalid
+     */
+    private Index findIndex(String indexId) throws IndexNotFound {
+        Index index = indices.get(indexId);
+        if (index != null)
+            return index;
         try {
-            if (!indices.containsKey(indexId)) {
-                if (Index.isUserIndex(indexId))
-                    loadUserIndices(Index.getUserId(indexId));
-                else
-                    loadPublicIndices();
+            if (Index.isUserIndex(indexId)) {
+                String userId = Index.getUserId(indexId);
+                // Indices we create are registered right away, and the monitor clears scannedUsers
+                // when directories are added, so we only need to scan if we haven't yet.
+                if (!scannedUsers.contains(userId))
+                    loadUserIndices(userId);
+            } else if (System.currentTimeMillis() - lastPublicScanTime >= REMOVED_INDICES_MONITOR_CHECK_IN_MS) {
+                // The monitor should have picked up new indices, but it may not have run yet.
+                // (don't scan more often than the monitor does; requests for unknown indices
+                //  shouldn't all hit the filesystem)
+                loadPublicIndices();
             }
-            return indices.containsKey(indexId);
         } catch (IllegalIndexName e) {
             throw new IndexNotFound(e.getMessage());
         }
+        return indices.get(indexId);
     }
 
     /**
@@ -346,7 +382,7 @@ public class IndexManager {
 
         // Everything seems ok. Delete the index.
         logger.debug("Deleting user index " + index.getId());
-        indices.remove(indexId);
+        indices.remove(indexId, index);
         index.close();
 
         // Cant guarantee this will work, but may as well try
@@ -368,33 +404,20 @@ public class IndexManager {
      * @return the Index, never null
      * @throws IndexNotFound when the index could not be found
      */
-    public synchronized Index getIndex(String indexId) throws IndexNotFound {
-        try {
-            if (!indices.containsKey(indexId)) {
-                if (Index.isUserIndex(indexId))
-                    loadUserIndices(Index.getUserId(indexId));
-                else
-                    loadPublicIndices();
-            }
-
-            Index index = indices.get(indexId);
-            if (index == null)
-                throw new IndexNotFound(indexId);
-
-            return index;
-        } catch (IllegalIndexName e) {
-            throw new IndexNotFound(e.getMessage());
-        }
+    public Index getIndex(String indexId) throws IndexNotFound {
+        Index index = findIndex(indexId);
+        if (index == null)
+            throw new IndexNotFound(indexId);
+        return index;
     }
 
     /**
-     * Get all public indices plus all indices owned by this user. Attempts to load
-     * any new public indices and indices owned by this user.
+     * Get all public indices plus all indices owned by this user.
      *
      * @param userId the user
      * @return the list of indices
      */
-    public synchronized List<Index> getAllAvailableIndices(String userId) {
+    public List<Index> getAllAvailableIndices(String userId) {
         List<Index> availableIndices = new ArrayList<>();
         availableIndices.addAll(getAvailablePrivateIndices(userId));
         availableIndices.addAll(getAvailablePublicIndices());
@@ -404,43 +427,36 @@ public class IndexManager {
     }
 
     /**
-     * Return the list of private indices available for searching. Attempts to load
-     * any new indices for this user.
+     * Return the list of private indices available for searching. Loads this user's
+     * indices if we haven't done so yet.
      *
      * @param userId the user
      * @return the list of indices
      */
-    public synchronized Collection<Index> getAvailablePrivateIndices(String userId) {
+    public Collection<Index> getAvailablePrivateIndices(String userId) {
         if (userId == null)
             return Collections.emptyList();
 
-        loadUserIndices(userId);
-
-        Set<Index> availableIndices = new HashSet<>();
-        for (Index i : indices.values()) {
-            if (userId.equals(i.getUserId()))
-                availableIndices.add(i);
-        }
+        if (!scannedUsers.contains(userId))
+            loadUserIndices(userId);
 
-        return availableIndices;
+        return indices.values().stream()
+                .filter(i -> userId.equals(i.getUserId()))
+                .collect(Collectors.toSet());
     }
 
     /**
-     * Return the list of public indices available for searching. Attempts to load
-     * any new public indices.
+     * Return the list of public indices available for searching.
+     *
+     * Doesn't scan the filesystem; new indices are picked up by the monitor
+     * (see {@link #startRemovedIndicesMonitor(List, long)}).
      *
      * @return the list of indices
      */
-    public synchronized Collection<Index> getAvailablePublicIndices() {
-        Set<Index> availableIndices = new HashSet<>();
-
-        loadPublicIndices();
-        for (Index i : indices.values()) {
-            if (!i.isUserIndex())
-                availableIndices.add(i);
-        }
-
-        return availableIndices;
+    public Collection<Index> getAvailablePublicIndices() {
+        return indices.values().stream()
+                .filter(i -> !i.isUserIndex())
+                .collect(Collectors.toSet());
     }
 
     /**
@@ -452,94 +468,93 @@ public class IndexManager {
         if (collectionsDirs == null)
             return;
 
-        synchronized (indices) {
-            logger.debug("Looking for indices in collectionsDirs...");
-            for (File collection : collectionsDirs) {
-                logger.debug("Scanning collectionsDir: " + collection);
-                // A file filter that accepts all directories (and files) except the userCollectionsDir,
-                // so if the userCollectionsDir is inside a collectionsDir, it is not suddenly made public
-                IOFileFilter notUserDirFilter = new IOFileFilter() {
-                    @Override
-                    public boolean accept(File pathName) {
-                        try {
-                            if (userCollectionsDir == null)
-                                return true;
-                            return !pathName.getCanonicalPath().equals(userCollectionsDir.getCanonicalPath());
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }
-
-                    @Override
-                    public boolean accept(File pathName, String fileName) {
-                        return accept(new File(pathName, fileName));
-                    }
-                };
-                IOFileFilter symlinkToDirFilter = new IOFileFilter() {
-                    @Override
-                    public boolean accept(File pathName) {
-                        try {
-                            Path indexPath = pathName.toPath().toRealPath();
-                            return Files.isDirectory(indexPath);
-                        } catch (IOException e) {
-                            throw BlackLabRuntimeException.wrap(e);
-                        }
-                    }
-
-                    @Override
-                    public boolean accept(File pathName, String fileName) {
-                        return accept(new File(pathName, fileName));
+        lastPublicScanTime = System.currentTimeMillis();
+        logger.debug("Looking for indices in collectionsDirs...");
+        for (File collection : collectionsDirs) {
+            logger.debug("Scanning collectionsDir: " + collection);
+            // A file filter that accepts all directories (and files) except the userCollectionsDir,
+            // so if the userCollectionsDir is inside a collectionsDir, it is not suddenly made public
+            IOFileFilter notUserDirFilter = new IOFileFilter() {
+                @Override
+                public boolean accept(File pathName) {
+                    try {
+                        if (userCollectionsDir == null)
+                            return true;
+                        return !pathName.getCanonicalPath().equals(userCollectionsDir.getCanonicalPath());
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
                     }
-                };
-                for (File subDir : FileUtils.listFilesAndDirs(collection, symlinkToDirFilter,
-                        notUserDirFilter /* can't filter on name yet, or it will only recurse into dirs with that name */)) {
+                }
 
-                    Path indexPath; // follow symlinks
+                @Override
+                public boolean accept(File pathName, String fileName) {
+                    return accept(new File(pathName, fileName));
+                }
+            };
+            IOFileFilter symlinkToDirFilter = new IOFileFilter() {
+                @Override
+                public boolean accept(File pathName) {
                     try {
-                        indexPath = subDir.toPath().toRealPath();
+                        Path indexPath = pathName.toPath().toRealPath();
+                        return Files.isDirectory(indexPath);
                     } catch (IOException e) {
                         throw BlackLabRuntimeException.wrap(e);
                     }
-                    if (/*!subDir.getName().equals("index") ||*/ !Files.isReadable(indexPath) || !BlackLabIndex.isIndex(indexPath)) {
-                        // Not readable or not an index.
-                        // Warn about this only if this directory is a direct subdir of a collection dir.
-                        // (otherwise we get warnings about all forward index directories)
-                        if (indexPath.toFile().getParentFile().equals(collection)) {
-                            if (!Files.isReadable(indexPath))
-                                logger.debug("  Cannot read direct subdir of collection dir: " + indexPath);
-                            else
-                                logger.debug("  Direct subdir of collection dir not recognized as an index: " + indexPath);
-                        }
-                        continue;
-                    }
+                }
 
-                    String indexName = subDir.getName();
-                    if (indexName.equals("index")) {
-                        // Not a very useful name; the parent directory usually contains the index name in this case
-                        indexName = subDir.getAbsoluteFile().getParentFile().getName();
-                        if (indices.containsKey(indexName))
-                            continue;
+                @Override
+                public boolean accept(File pathName, String fileName) {
+                    return accept(new File(pathName, fileName));
+                }
+            };
+            for (File subDir : FileUtils.listFilesAndDirs(collection, symlinkToDirFilter,
+                    notUserDirFilter /* can't filter on name yet, or it will only recurse into dirs with that name */)) {
 
-                        logger.warn("Found index directory named 'index': " + subDir);
-                        logger.warn("Replacing this with the parent directory name (" + indexName
-                                + "), but note that this behaviour is deprecated.");
+                Path indexPath; // follow symlinks
+                try {
+                    indexPath = subDir.toPath().toRealPath();
+                } catch (IOException e) {
+                    throw BlackLabRuntimeException.wrap(e);
+                }
+                if (/*!subDir.getName().equals("index") ||*/ !Files.isReadable(indexPath) || !BlackLabIndex.isIndex(indexPath)) {
+                    // Not readable or not an index.
+                    // Warn about this only if this directory is a direct subdir of a collection dir.
+                    // (otherwise we get warnings about all forward index directories)
+                    if (indexPath.toFile().getParentFile().equals(collection)) {
+                        if (!Files.isReadable(indexPath))
+                            logger.debug("  Cannot read direct subdir of collection dir: " + indexPath);
+                        else
+                            logger.debug("  Direct subdir of collection dir not recognized as an index: " + indexPath);
                     }
-                    if (indices.containsKey(indexName)) {
-                        // Index was already loaded, or name collision
-                        File otherDir = indices.get(indexName).getDir();
-                        if (!otherDir.equals(subDir)) {
-                            logger.warn("  Skipping subdir " + subDir + " because another index (" + otherDir + ") is named '" + indexName + "' as well.");
-                        }
+                    continue;
+                }
+
+                String indexName = subDir.getName();
+                if (indexName.equals("index")) {
+                    // Not a very useful name; the parent directory usually contains the index name in this case
+                    indexName = subDir.getAbsoluteFile().getParentFile().getName();
+                    if (indices.containsKey(indexName))
                         continue;
-                    }
 
-                    try {
-                        logger.debug("Index found: " + indexName + " (" + subDir + ")");
-                        indices.put(indexName, new Index(indexName, subDir, searchMan));
-                    } catch (Exception e) {
-                        logger.info("Error while loading index " + indexName + " at location " + subDir + "; "
-                                + e.getMessage());
+                    logger.warn("Found index directory named 'index': " + subDir);
+                    logger.warn("Replacing this with the parent directory name (" + indexName
+                            + "), but note that this behaviour is deprecated.");
+                }
+                if (indices.containsKey(indexName)) {
+                    // Index was already loaded, or name collision
+                    File otherDir = indices.get(indexName).getDir();
+                    if (!otherDir.equals(subDir)) {
+                        logger.warn("  Skipping subdir " + subDir + " because another index (" + otherDir + ") is named '" + indexName + "' as well.");
                     }
+                    continue;
+                }
+
+                try {
+                    logger.debug("Index found: " + indexName + " (" + subDir + ")");
+                    indices.put(indexName, new Index(indexName, subDir, searchMan));
+                } catch (Exception e) {
+                    logger.info("Error while loading index " + indexName + " at location " + subDir + "; "
+                            + e.getMessage());
                 }
             }
         }
@@ -550,12 +565,25 @@ public class IndexManager {
      * to the {@link IndexManager#indices} list. Indices that are already loaded are
      * skipped.
      *
+     * The user is only marked as scanned when we're done, so callers that check
+     * {@link #scannedUsers} without locking don't skip indices that are still being registered.
+     *
      * @param userId the user for which to load indices
      */
     private synchronized void loadUserIndices(String userId) {
+        if (scannedUsers.contains(userId))
+            return; // another thread scanned while we were waiting for the lock
         File userDir = getUserCollectionDir(userId);
         if (userDir == null)
             return;
+        try {
+            scanUserDir(userId, userDir);
+        } finally {
+            scannedUsers.add(userId);
+        }
+    }
+
+    private void scanUserDir(String userId, File userDir) {
 
         /*
          * User indices are stored as a flat list of directories inside the user's private directory like so:
@@ -593,7 +621,11 @@ public class IndexManager {
     }
 
     /**
-     * Starts a monitor to remove references to indices whose physical file was removed
+     * Starts a monitor to keep our list of indices up to date.
+     *
+     * Removes references to indices whose physical file was removed, and scans for new
+     * indices when directories are added.
+     *
      * @param directories to monitor
      * @param pollingIntervalInMs how ofter to monitor the directories
      * @return the monitor
@@ -605,6 +637,9 @@ public class IndexManager {
             .map(FileAlterationObserver::new)
             .collect(Collectors.toList());
         FileAlterationListenerAdaptor listener = new FileAlterationListenerAdaptor() {
+            /** Were directories created since the last scan? */
+            private boolean directoriesCreated;
+
             @Override
             public void onDirectoryDelete(File directory) {
                 logger.info("Directory deleted: {}", directory.getAbsolutePath());
@@ -614,10 +649,26 @@ public class IndexManager {
                         .findFirst();
                     indexToDelete.ifPresent(i -> {
                         logger.info("Deleting index {}, {}", i.getId(), i.getDir().getAbsolutePath());
-                        indices.remove(i.getId()).close();
+                        indices.remove(i.getId(), i);
+                        i.close();
                     });
                 }
             }
+
+            @Override
+            public void onDirectoryCreate(File directory) {
+                // May be a new index (or part of one); rescan when this check is done
+                directoriesCreated = true;
+            }
+
+            @Override
+            public void onStop(FileAlterationObserver observer) {
+                if (directoriesCreated) {
+                    directoriesCreated = false;
+                    scannedUsers.clear();
+                    loadPublicIndices();
+                }
+            }
         };
         observers.forEach(o -> {
             o.addListener(listener);
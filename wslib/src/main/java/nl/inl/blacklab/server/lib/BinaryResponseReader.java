@@ -0,0 +1,263 @@
+package nl.inl.blacklab.server.lib;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reference decoder for the compact binary response format (<code>outputformat=binary</code>).
+ *
+ * Only depends on java.io, so clients may simply copy this class. The format is:
+ *
+ * <pre>
+ * response  := "BLBF" version:u8 section* END
+ * section   := type:u8 length:i32 payload[length]
+ * string    := length:i32 utf8[length]
+ * </pre>
+ *
+ * All numbers are big-endian. Arrays are written as columns: all values of the first
+ * array, then all values of the second, etc. Readers skip section types they don't know.
+ *
+ * Large results are written in batches, so a response may contain many sections of each
+ * type. A response that doesn't end with END was cut off (e.g. because of an error while
+ * streaming it); reading it results in an {@link java.io.EOFException}.
+ *
+ * <ul>
+ *   <li>TERMS: <code>n:i32 string[n]</code>. Adds strings to the response's term dictionary;
+ *       the first string added gets id 0, etc. Each TERMS section only contains the new terms used
+ *       by the section(s) following it, so the dictionary grows as the response is read.</li>
+ *   <li>DOCS: <code>n:i32 docId:i32[n] pid:string[n]</code>. Persistent ids of the documents
+ *       the hits in the following HITS section occur in, if they weren't given before.</li>
+ *   <li>HITS: <code>n:i32 doc:i32[n] start:i32[n] end:i32[n]</code>.</li>
+ *   <li>CONTEXTS (follows the HITS section it belongs to): <code>numAnnotations:i32 annotation:string[numAnnotations]
+ *       n:i32 left:i32[n] match:i32[n] right:i32[n]</code>, then for each annotation the term
+ *       ids for the context tokens of all hits (<code>sum(left + match + right)</code> values).</li>
+ *   <li>GROUPS: <code>numProperties:i32 property:string[numProperties] n:i32 identity:string[n]
+ *       numValues:i32[n]</code>, then the term ids of all group values (<code>sum(numValues)</code>),
+ *       then <code>hits:i64[n] docs:i64[n]</code>.</li>
+ * </ul>
+ */
+public class BinaryResponseReader implements Closeable {
+
+    /** Identifies the format */
+    public static final byte[] MAGIC = { 'B', 'L', 'B', 'F' };
+
+    /** Format version; increment when making incompatible changes */
+    public static final int VERSION = 1;
+
+    public static final int END = 0;
+
+    public static final int TERMS = 1;
+
+    public static final int DOCS = 2;
+
+    public static final int HITS = 3;
+
+    public static final int CONTEXTS = 4;
+
+    public static final int GROUPS = 5;
+
+    /** Document ids and their persistent ids. */
+    public static class Docs {
+        public int[] docIds;
+
+        public String[] pids;
+    }
+
+    /** Hits as (doc, start, end) columns. */
+    public static class Hits {
+        public int[] docs;
+
+        public int[] starts;
+
+        public int[] ends;
+    }
+
+    /** Context tokens for each hit. */
+    public static class Contexts {
+        public String[] annotations;
+
+        /** Number of tokens before, in, and after the match, per hit */
+        public int[] left, match, right;
+
+        /** Term ids per annotation, for the context tokens of all hits */
+        public int[][] termIds;
+
+        /** Offset of each hit's first token in termIds */
+        public int[] offsets;
+    }
+
+    /** Group identities and counts. */
+    public static class Groups {
+        public String[] properties;
+
+        /** Serialized group identities (e.g. for use with the viewgroup parameter) */
+        public String[] identities;
+
+        /** Term ids of the group values, per group */
+        public int[][] values;
+
+        public long[] hits;
+
+        public long[] docs;
+    }
+
+    private final DataInputStream in;
+
+    private final List<String> terms = new ArrayList<>();
+
+    /**
+     * Start reading a response.
+     *
+     * @param in response to read
+     */
+    public BinaryResponseReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        byte[] magic = new byte[MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IOException("Not a BlackLab binary response");
+        int version = this.in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported binary response version " + version);
+    }
+
+    /**
+     * Look up a term in the dictionary.
+     *
+     * @param termId term id
+     * @return the term
+     */
+    public String term(int termId) {
+        return terms.get(termId);
+    }
+
+    /**
+     * Read the next section.
+     *
+     * Term dictionary sections are handled here, so you can look up the terms for
+     * any section returned using {@link #term(int)}.
+     *
+     * @return a {@link Docs}, {@link Hits}, {@link Contexts} or {@link Groups} object,
+     *   or null at the end of the response
+     */
+    public Object next() throws IOException {
+        while (true) {
+            int type = in.readUnsignedByte();
+            if (type == END)
+                return null;
+            int length = in.readInt();
+            switch (type) {
+            case TERMS:
+                int n = in.readInt();
+                for (int i = 0; i < n; i++)
+                    terms.add(readString());
+                break;
+            case DOCS:
+                return readDocs();
+            case HITS:
+                return readHits();
+            case CONTEXTS:
+                return readContexts();
+            case GROUPS:
+                return readGroups();
+            default:
+                // Unknown section type, skip it
+                while (length > 0) {
+                    int skipped = in.skipBytes(length);
+                    if (skipped == 0)
+                        throw new IOException("Unexpected end of binary response");
+                    length -= skipped;
+                }
+            }
+        }
+    }
+
+    private Docs readDocs() throws IOException {
+        Docs docs = new Docs();
+        int n = in.readInt();
+        docs.docIds = readInts(n);
+        docs.pids = readStrings(n);
+        return docs;
+    }
+
+    private Hits readHits() throws IOException {
+        Hits hits = new Hits();
+        int n = in.readInt();
+        hits.docs = readInts(n);
+        hits.starts = readInts(n);
+        hits.ends = readInts(n);
+        return hits;
+    }
+
+    private Contexts readContexts() throws IOException {
+        Contexts contexts = new Contexts();
+        contexts.annotations = readStrings(in.readInt());
+        int n = in.readInt();
+        contexts.left = readInts(n);
+        contexts.match = readInts(n);
+        contexts.right = readInts(n);
+        contexts.offsets = new int[n];
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            contexts.offsets[i] = total;
+            total += contexts.left[i] + contexts.match[i] + contexts.right[i];
+        }
+        contexts.termIds = new int[contexts.annotations.length][];
+        for (int i = 0; i < contexts.annotations.length; i++)
+            contexts.termIds[i] = readInts(total);
+        return contexts;
+    }
+
+    private Groups readGroups() throws IOException {
+        Groups groups = new Groups();
+        groups.properties = readStrings(in.readInt());
+        int n = in.readInt();
+        groups.identities = readStrings(n);
+        int[] numValues = readInts(n);
+        groups.values = new int[n][];
+        for (int i = 0; i < n; i++)
+            groups.values[i] = readInts(numValues[i]);
+        groups.hits = readLongs(n);
+        groups.docs = readLongs(n);
+        return groups;
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String[] readStrings(int n) throws IOException {
+        String[] strings = new String[n];
+        for (int i = 0; i < n; i++)
+            strings[i] = readString();
+        return strings;
+    }
+
+    private int[] readInts(int n) throws IOException {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++)
+            values[i] = in.readInt();
+        return values;
+    }
+
+    private long[] readLongs(int n) throws IOException {
+        long[] values = new long[n];
+        for (int i = 0; i < n; i++)
+            values[i] = in.readLong();
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,223 @@
+package nl.inl.blacklab.server.lib;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
+
+/**
+ * Writes a response in the compact binary format.
+ *
+ * See {@link BinaryResponseReader} for a description of the format. Strings that occur
+ * many times, such as context words and group values, are stored once in the term
+ * dictionary and referred to by id.
+ *
+ * Sections are written to the output stream as soon as they're complete, so a large
+ * response is never kept in memory as a whole. Callers should therefore write large
+ * results in batches (see {@link WriteBinary}). Before each section, we write the terms
+ * that were added to the dictionary since the previous section, so clients can decode
+ * each section as it arrives.
+ */
+public class BinaryResponseWriter {
+
+    /** Writes a complete binary response to a stream. */
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Produce a complete binary response in memory.
+     *
+     * Only meant for when we can't stream the response, e.g. when it has to be
+     * embedded in another response format.
+     *
+     * @param content response to produce
+     * @return the response
+     */
+    public static byte[] toByteArray(Content content) {
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            content.writeTo(buf);
+            return buf.toByteArray();
+        } catch (IOException e) {
+            // (can't happen, we're writing to memory)
+            throw BlackLabRuntimeException.wrap(e);
+        }
+    }
+
+    /** Where to write the response */
+    private final DataOutputStream out;
+
+    /** Term ids by term */
+    private final Object2IntOpenHashMap<String> termIds = new Object2IntOpenHashMap<>();
+
+    /** Terms added since we last wrote a term dictionary section */
+    private final List<String> newTerms = new ArrayList<>();
+
+    /** Reused buffer for the payload of the section we're writing */
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+    /**
+     * Start writing a response.
+     *
+     * @param out where to write the response
+     */
+    public BinaryResponseWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.write(BinaryResponseReader.MAGIC);
+        this.out.writeByte(BinaryResponseReader.VERSION);
+        termIds.defaultReturnValue(-1);
+    }
+
+    /**
+     * Get the id for a term, adding it to the dictionary if necessary.
+     *
+     * @param term term
+     * @return term id
+     */
+    public int termId(String term) {
+        int id = termIds.getInt(term);
+        if (id < 0) {
+            id = termIds.size();
+            termIds.put(term, id);
+            newTerms.add(term);
+        }
+        return id;
+    }
+
+    /** Writes the payload of a section. */
+    @FunctionalInterface
+    private interface SectionPayload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void section(int type, SectionPayload writePayload) throws IOException {
+        if (type != BinaryResponseReader.TERMS && !newTerms.isEmpty()) {
+            // Make sure the client knows the terms this section refers to
+            section(BinaryResponseReader.TERMS, dictOut -> {
+                dictOut.writeInt(newTerms.size());
+                for (String term: newTerms)
+                    writeString(dictOut, term);
+            });
+            newTerms.clear();
+        }
+        payload.reset();
+        writePayload.write(new DataOutputStream(payload));
+        out.writeByte(type);
+        out.writeInt(payload.size());
+        payload.writeTo(out);
+    }
+
+    /**
+     * Write the persistent ids of documents.
+     *
+     * @param docIds document ids
+     * @param pids persistent ids
+     */
+    public void docs(int[] docIds, String[] pids) throws IOException {
+        section(BinaryResponseReader.DOCS, out -> {
+            out.writeInt(docIds.length);
+            writeInts(out, docIds);
+            for (String pid: pids)
+                writeString(out, pid);
+        });
+    }
+
+    /**
+     * Write hits.
+     *
+     * @param docs document id per hit
+     * @param starts start position per hit
+     * @param ends end position per hit
+     */
+    public void hits(int[] docs, int[] starts, int[] ends) throws IOException {
+        section(BinaryResponseReader.HITS, out -> {
+            out.writeInt(docs.length);
+            writeInts(out, docs);
+            writeInts(out, starts);
+            writeInts(out, ends);
+        });
+    }
+
+    /**
+     * Write the contexts for the hits in the preceding hits section.
+     *
+     * @param annotations annotations we have context tokens for
+     * @param left number of tokens before the match, per hit
+     * @param match number of tokens in the match, per hit
+     * @param right number of tokens after the match, per hit
+     * @param termIds per annotation, term ids for the context tokens of all hits
+     */
+    public void contexts(String[] annotations, int[] left, int[] match, int[] right, int[][] termIds)
+            throws IOException {
+        section(BinaryResponseReader.CONTEXTS, out -> {
+            out.writeInt(annotations.length);
+            for (String annotation: annotations)
+                writeString(out, annotation);
+            out.writeInt(left.length);
+            writeInts(out, left);
+            writeInts(out, match);
+            writeInts(out, right);
+            for (int[] ids: termIds)
+                writeInts(out, ids);
+        });
+    }
+
+    /**
+     * Write groups.
+     *
+     * @param properties names of the properties we grouped on
+     * @param identities serialized group identities
+     * @param values per group, term ids of the group values
+     * @param hits number of hits per group
+     * @param docs number of documents per group
+     */
+    public void groups(String[] properties, String[] identities, int[][] values, long[] hits, long[] docs)
+            throws IOException {
+        section(BinaryResponseReader.GROUPS, out -> {
+            out.writeInt(properties.length);
+            for (String property: properties)
+                writeString(out, property);
+            out.writeInt(identities.length);
+            for (String identity: identities)
+                writeString(out, identity);
+            for (int[] groupValues: values)
+                out.writeInt(groupValues.length);
+            for (int[] groupValues: values)
+                writeInts(out, groupValues);
+            for (long n: hits)
+                out.writeLong(n);
+            for (long n: docs)
+                out.writeLong(n);
+        });
+    }
+
+    /**
+     * Finish the response and flush the output stream.
+     *
+     * Clients use the end marker written here to tell a complete response from one
+     * that was cut off.
+     */
+    public void finish() throws IOException {
+        out.writeByte(BinaryResponseReader.END);
+        out.flush();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value: values)
+            out.writeInt(value);
+    }
+}
@@ -115,6 +115,8 @@ public interface QueryParams {
 
     boolean getIncludeTokenCount();
 
+    boolean getIncludeSortKeys();
+
     boolean getCsvIncludeSummary();
 
     boolean getCsvDeclareSeparator();
@@ -319,6 +319,11 @@ public abstract class QueryParamsAbstract implements QueryParams {
         return getBool(WebserviceParameter.INCLUDE_TOKEN_COUNT);
     }
 
+    @Override
+    public boolean getIncludeSortKeys() {
+        return getBool(WebserviceParameter.INCLUDE_SORT_KEYS);
+    }
+
     @Override
     public boolean getCsvIncludeSummary() {
         return getBool(WebserviceParameter.CSV_INCLUDE_SUMMARY);
@@ -0,0 +1,164 @@
+package nl.inl.blacklab.server.lib;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.inl.blacklab.forwardindex.AnnotationForwardIndex;
+import nl.inl.blacklab.resultproperty.DocProperty;
+import nl.inl.blacklab.resultproperty.DocPropertyId;
+import nl.inl.blacklab.resultproperty.HitProperty;
+import nl.inl.blacklab.resultproperty.HitPropertyDoc;
+import nl.inl.blacklab.resultproperty.HitPropertyDocumentDecade;
+import nl.inl.blacklab.resultproperty.HitPropertyDocumentId;
+import nl.inl.blacklab.resultproperty.HitPropertyHitPosition;
+import nl.inl.blacklab.resultproperty.PropertyValue;
+import nl.inl.blacklab.resultproperty.PropertyValueContextWord;
+import nl.inl.blacklab.resultproperty.PropertyValueContextWords;
+import nl.inl.blacklab.resultproperty.PropertyValueDecade;
+import nl.inl.blacklab.resultproperty.PropertyValueInt;
+import nl.inl.blacklab.resultproperty.PropertyValueString;
+import nl.inl.blacklab.search.BlackLab;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.blacklab.search.results.DocResult;
+import nl.inl.blacklab.search.results.Hits;
+
+/**
+ * Keys for merging sorted results from several BLS nodes.
+ *
+ * BlackLab sorts on values that only mean something within one index, such as
+ * term sort positions and document ids. If a corpus is split over several nodes,
+ * the proxy merges each node's sorted results, so each result gets a key per sort
+ * property that can be compared between nodes. Comparing these keys one by one
+ * using {@link String#compareTo(String)} gives the order BlackLab sorted in,
+ * including reversed properties.
+ *
+ * A key consists of the symbols 0-9 and a-h: '2' to 'h' are the hexadecimal digits
+ * of a collation key or number, '1' ends a token (for context properties) and '0'
+ * ends the key. For reversed properties, each symbol is replaced by its mirror
+ * image ('0' by 'h', '1' by 'g', etc.). This works because no key is the start of
+ * another key.
+ *
+ * The key is empty for a property that can't be compared between nodes, such as
+ * hit position or document id. Results that are equal up to that property should
+ * stay in the order their node returned them in.
+ */
+public class SortKeys {
+
+    private static final String SYMBOLS = "0123456789abcdefgh";
+
+    private static final int END_OF_KEY = 0;
+
+    private static final int END_OF_TOKEN = 1;
+
+    private static final int FIRST_DIGIT = 2;
+
+    /** Key for a property that can't be compared between nodes */
+    private static final String NO_KEY = "";
+
+    /** Key that sorts after all others regardless of sort direction (BlackLab sorts a missing year last) */
+    private static final String LAST = "i";
+
+    private SortKeys() {
+    }
+
+    /**
+     * Get the sort keys for a hit.
+     *
+     * @param hits hits the sort property was copied with
+     * @param sortProp the property the hits were sorted by (must have been copied with the hits)
+     * @param hitIndex index of the hit in the hits the property was copied with
+     * @return sort key per sort property
+     */
+    public static List<String> forHit(Hits hits, HitProperty sortProp, long hitIndex) {
+        List<String> keys = new ArrayList<>();
+        for (HitProperty prop: sortProp.propsList()) {
+            boolean reverse = sortProp.isCompound() && sortProp.isReverse() ? !prop.isReverse() : prop.isReverse();
+            if (prop instanceof HitPropertyHitPosition || prop instanceof HitPropertyDoc
+                    || prop instanceof HitPropertyDocumentId) {
+                keys.add(NO_KEY);
+            } else {
+                PropertyValue value = prop.get(hitIndex);
+                List<Annotation> annotations = prop.needsContext();
+                List<MatchSensitivity> sensitivities = prop.getSensitivities();
+                if (value instanceof PropertyValueDecade && (long) value.value() == HitPropertyDocumentDecade.UNKNOWN_VALUE)
+                    keys.add(LAST);
+                else if (annotations != null && !annotations.isEmpty()) {
+                    // (term ids refer to the forward index that goes with the index reader the hits were found with)
+                    AnnotationForwardIndex afi = hits.queryInfo().annotationForwardIndex(annotations.get(0));
+                    keys.add(key(afi, sensitivities.get(0), value, reverse));
+                } else
+                    keys.add(key(null, null, value, reverse));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Get the sort keys for a document result.
+     *
+     * @param sortProp the property the documents were sorted by
+     * @param doc the document result
+     * @return sort key per sort property
+     */
+    public static List<String> forDoc(DocProperty sortProp, DocResult doc) {
+        List<String> keys = new ArrayList<>();
+        for (DocProperty prop: sortProp.propsList()) {
+            boolean reverse = sortProp.isCompound() && sortProp.isReverse() ? !prop.isReverse() : prop.isReverse();
+            if (prop instanceof DocPropertyId) {
+                keys.add(NO_KEY);
+            } else {
+                PropertyValue value = prop.get(doc);
+                if (value instanceof PropertyValueDecade && (long) value.value() == HitPropertyDocumentDecade.UNKNOWN_VALUE)
+                    keys.add(LAST);
+                else
+                    keys.add(key(null, null, value, reverse));
+            }
+        }
+        return keys;
+    }
+
+    private static String key(AnnotationForwardIndex afi, MatchSensitivity sensitivity, PropertyValue value,
+            boolean reverse) {
+        StringBuilder key = new StringBuilder();
+        if (value instanceof PropertyValueContextWords || value instanceof PropertyValueContextWord) {
+            // Tokens, compared using the collator the forward index used to determine the term sort order
+            int[] termIds = value instanceof PropertyValueContextWords ? ((PropertyValueContextWords) value).value() :
+                    new int[] { ((PropertyValueContextWord) value).value() };
+            Collator collator = afi.collators().get(sensitivity);
+            for (int termId: termIds) {
+                // (a missing token sorts first, so it has an empty key)
+                if (termId >= 0)
+                    appendDigits(key, collator.getCollationKey(afi.terms().get(termId)).toByteArray());
+                key.append(SYMBOLS.charAt(END_OF_TOKEN));
+            }
+        } else if (value instanceof PropertyValueInt) {
+            long number = ((PropertyValueInt) value).value() ^ Long.MIN_VALUE; // (so negative numbers sort first)
+            byte[] bytes = new byte[Long.BYTES];
+            for (int i = bytes.length - 1; i >= 0; i--) {
+                bytes[i] = (byte) number;
+                number >>>= 8;
+            }
+            appendDigits(key, bytes);
+        } else if (value instanceof PropertyValueString) {
+            // Same collator PropertyValueString uses
+            appendDigits(key, BlackLab.defaultCollator().getCollationKey(((PropertyValueString) value).value()).toByteArray());
+        } else {
+            return NO_KEY; // can't be compared between nodes
+        }
+        key.append(SYMBOLS.charAt(END_OF_KEY));
+        if (reverse) {
+            for (int i = 0; i < key.length(); i++)
+                key.setCharAt(i, SYMBOLS.charAt(SYMBOLS.length() - 1 - SYMBOLS.indexOf(key.charAt(i))));
+        }
+        return key.toString();
+    }
+
+    private static void appendDigits(StringBuilder key, byte[] bytes) {
+        for (byte b: bytes) {
+            key.append(SYMBOLS.charAt(FIRST_DIGIT + ((b >> 4) & 0xF)));
+            key.append(SYMBOLS.charAt(FIRST_DIGIT + (b & 0xF)));
+        }
+    }
+}
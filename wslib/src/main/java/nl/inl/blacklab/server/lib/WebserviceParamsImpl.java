@@ -667,6 +667,11 @@ public class WebserviceParamsImpl implements WebserviceParams {
         return params.getIncludeTokenCount();
     }
 
+    @Override
+    public boolean getIncludeSortKeys() {
+        return params.getIncludeSortKeys();
+    }
+
     @Override
     public boolean getCsvIncludeSummary() {
         return params.getCsvIncludeSummary();
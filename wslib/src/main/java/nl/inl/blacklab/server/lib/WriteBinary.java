@@ -0,0 +1,165 @@
+package nl.inl.blacklab.server.lib;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.Kwic;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.results.ContextSize;
+import nl.inl.blacklab.search.results.Hit;
+import nl.inl.blacklab.search.results.HitGroup;
+import nl.inl.blacklab.search.results.HitGroups;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.Kwics;
+import nl.inl.blacklab.server.lib.results.ResultHitsCsv;
+import nl.inl.blacklab.server.lib.results.WebserviceOperations;
+
+/**
+ * Utility methods for writing responses in the compact binary format.
+ *
+ * Meant for bulk exports, so like CSV, this uses the hits or groups for the export
+ * (see {@link ResultHitsCsv}). See {@link BinaryResponseReader} for the format.
+ *
+ * Results are written in batches of {@link #BATCH_SIZE}, so we only need to keep one
+ * batch (and its contexts) in memory, and the client can start decoding right away.
+ */
+public class WriteBinary {
+
+    /** Maximum number of hits or groups per section */
+    static final int BATCH_SIZE = 10_000;
+
+    private WriteBinary() {
+    }
+
+    public static BinaryResponseWriter.Content hitsGroupsResponse(ResultHitsCsv resultHitsCsv) {
+        return out -> {
+            BinaryResponseWriter writer = new BinaryResponseWriter(out);
+            writeGroups(writer, resultHitsCsv.getGroups(), BATCH_SIZE);
+            writer.finish();
+        };
+    }
+
+    public static BinaryResponseWriter.Content hitsResponse(ResultHitsCsv resultHitsCsv) {
+        WebserviceParams params = resultHitsCsv.getParams();
+        return out -> {
+            BinaryResponseWriter writer = new BinaryResponseWriter(out);
+            writeHits(writer, params.blIndex(), resultHitsCsv.getHits(), params.contextSettings().size(),
+                    resultHitsCsv.getAnnotationsToWrite(), BATCH_SIZE);
+            writer.finish();
+        };
+    }
+
+    /**
+     * Write groups in batches.
+     *
+     * @param writer where to write the groups
+     * @param groups groups to write
+     * @param batchSize maximum number of groups per section
+     */
+    static void writeGroups(BinaryResponseWriter writer, HitGroups groups, int batchSize) throws IOException {
+        String[] properties = groups.groupCriteria().propNames().toArray(new String[0]);
+        List<String> identities = new ArrayList<>();
+        List<int[]> values = new ArrayList<>();
+        LongArrayList hits = new LongArrayList();
+        LongArrayList docs = new LongArrayList();
+        for (HitGroup group: groups) {
+            identities.add(group.identity().serialize());
+            values.add(group.identity().propValues().stream().mapToInt(writer::termId).toArray());
+            hits.add(group.size());
+            docs.add(group.storedResults().docsStats().countedTotal());
+            if (identities.size() == batchSize)
+                writeGroupsBatch(writer, properties, identities, values, hits, docs);
+        }
+        if (!identities.isEmpty())
+            writeGroupsBatch(writer, properties, identities, values, hits, docs);
+    }
+
+    private static void writeGroupsBatch(BinaryResponseWriter writer, String[] properties, List<String> identities,
+            List<int[]> values, LongArrayList hits, LongArrayList docs) throws IOException {
+        writer.groups(properties, identities.toArray(new String[0]), values.toArray(new int[0][]),
+                hits.toLongArray(), docs.toLongArray());
+        identities.clear();
+        values.clear();
+        hits.clear();
+        docs.clear();
+    }
+
+    /**
+     * Write hits, their documents and their contexts in batches.
+     *
+     * @param writer where to write the hits
+     * @param index index the hits are from
+     * @param hits hits to write
+     * @param contextSize how much context to write for each hit
+     * @param annotationsToWrite annotations to write context tokens for
+     * @param batchSize maximum number of hits per section
+     */
+    static void writeHits(BinaryResponseWriter writer, BlackLabIndex index, Hits hits, ContextSize contextSize,
+            List<Annotation> annotationsToWrite, int batchSize) throws IOException {
+        IntOpenHashSet docsSeen = new IntOpenHashSet();
+        List<Annotation> annotations = null;
+        for (long first = 0; ; first += batchSize) {
+            Hits batch = hits.window(first, batchSize);
+            if (batch.size() == 0)
+                break;
+
+            IntArrayList docs = new IntArrayList();
+            IntArrayList starts = new IntArrayList();
+            IntArrayList ends = new IntArrayList();
+            IntArrayList left = new IntArrayList();
+            IntArrayList match = new IntArrayList();
+            IntArrayList right = new IntArrayList();
+            IntArrayList[] contextTermIds = null;
+            IntArrayList docIds = new IntArrayList();
+            List<String> pids = new ArrayList<>();
+            Kwics kwics = batch.kwics(contextSize);
+            for (Hit hit: batch) {
+                docs.add(hit.doc());
+                starts.add(hit.start());
+                ends.add(hit.end());
+                if (docsSeen.add(hit.doc())) {
+                    // Only write each document's pid once per response
+                    docIds.add(hit.doc());
+                    pids.add(WebserviceOperations.getDocumentPid(index, hit.doc(), null));
+                }
+
+                Kwic kwic = kwics.get(hit);
+                if (annotations == null) {
+                    // All hits have context for the same annotations
+                    annotations = new ArrayList<>(kwic.annotations());
+                    annotations.retainAll(annotationsToWrite);
+                }
+                if (contextTermIds == null) {
+                    contextTermIds = new IntArrayList[annotations.size()];
+                    for (int i = 0; i < contextTermIds.length; i++)
+                        contextTermIds[i] = new IntArrayList();
+                }
+                int length = kwic.tokens().size() / kwic.annotations().size(); // context length in tokens
+                left.add(kwic.hitStart());
+                match.add(kwic.hitEnd() - kwic.hitStart());
+                right.add(length - kwic.hitEnd());
+                for (int i = 0; i < contextTermIds.length; i++) {
+                    for (String token: kwic.tokens(annotations.get(i)))
+                        contextTermIds[i].add(writer.termId(token));
+                }
+            }
+
+            if (!docIds.isEmpty())
+                writer.docs(docIds.toIntArray(), pids.toArray(new String[0]));
+            writer.hits(docs.toIntArray(), starts.toIntArray(), ends.toIntArray());
+            int[][] termIds = new int[contextTermIds.length][];
+            for (int i = 0; i < termIds.length; i++)
+                termIds[i] = contextTermIds[i].toIntArray();
+            writer.contexts(annotations.stream().map(Annotation::name).toArray(String[]::new),
+                    left.toIntArray(), match.toIntArray(), right.toIntArray(), termIds);
+
+            if (batch.size() < batchSize)
+                break;
+        }
+    }
+}
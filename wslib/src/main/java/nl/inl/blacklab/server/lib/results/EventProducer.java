@@ -0,0 +1,18 @@
+package nl.inl.blacklab.server.lib.results;
+
+/**
+ * Produces events for an {@link EventSink} over time, e.g. progress of a running count.
+ *
+ * Instead of blocking a thread until there's something to report, the server calls
+ * {@link #sendEvents()} periodically.
+ */
+public interface EventProducer {
+
+    /**
+     * Send any events that are due.
+     *
+     * @return true if we're done (there are no more events or the client is no longer listening)
+     */
+    boolean sendEvents();
+
+}
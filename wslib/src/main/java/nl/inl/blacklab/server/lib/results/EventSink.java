@@ -0,0 +1,22 @@
+package nl.inl.blacklab.server.lib.results;
+
+import java.util.function.Consumer;
+
+/**
+ * Destination for a stream of events, e.g. Server-Sent Events.
+ *
+ * Used to push progress to a client over a single connection, instead of having the client
+ * poll for it.
+ */
+public interface EventSink {
+
+    /**
+     * Send an event.
+     *
+     * @param name event name
+     * @param data writes the event data (a single value, usually a map)
+     * @return true if the event was sent, false if the client is no longer listening
+     */
+    boolean send(String name, Consumer<ResponseStreamer> data);
+
+}
@@ -0,0 +1,60 @@
+package nl.inl.blacklab.server.lib.results;
+
+import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.search.results.ResultsStats;
+
+/**
+ * Sends "progress" events while hits are being counted, and a "done" event with the totals.
+ *
+ * See {@link WebserviceRequestHandler#opHitsProgress(nl.inl.blacklab.server.lib.WebserviceParams, EventSink)}.
+ */
+class HitsProgressEvents implements EventProducer {
+
+    private final ResultHits resultHits;
+
+    private final EventSink events;
+
+    /** Number of hits counted when we last sent an event */
+    private long lastHitsCounted;
+
+    HitsProgressEvents(ResultHits resultHits, EventSink events) {
+        this.resultHits = resultHits;
+        this.events = events;
+        lastHitsCounted = resultHits.getHitsStats().countedSoFar();
+    }
+
+    @Override
+    public boolean sendEvents() {
+        // A client is still following the counts, so they shouldn't be aborted as abandoned
+        resultHits.updateCountsLastAccess();
+
+        ResultsStats hitsStats = resultHits.getHitsStats();
+        ResultsStats docsStats = resultHits.getDocsStats();
+        boolean countFailed = false;
+        try {
+            if (!hitsStats.done()) {
+                long hitsCounted = hitsStats.countedSoFar();
+                if (hitsCounted == lastHitsCounted)
+                    return false;
+                lastHitsCounted = hitsCounted;
+                ResultSummaryNumHits progress = WebserviceOperations.numResultsSummaryHits(hitsStats, docsStats,
+                        false, false, null);
+                // (if the client went away, the count will be aborted if nobody else needs it)
+                return !events.send("progress", rs -> summaryEvent(rs, progress));
+            }
+        } catch (InterruptedSearch e) {
+            // Our count was probably aborted.
+            countFailed = true;
+        }
+        ResultSummaryNumHits totals = WebserviceOperations.numResultsSummaryHits(hitsStats, docsStats,
+                !countFailed, countFailed, null);
+        events.send("done", rs -> summaryEvent(rs, totals));
+        return true;
+    }
+
+    private static void summaryEvent(ResponseStreamer rs, ResultSummaryNumHits summary) {
+        rs.getDataStream().startMap().startEntry("summary").startMap();
+        rs.summaryNumHits(summary);
+        rs.getDataStream().endMap().endEntry().endMap();
+    }
+}
@@ -18,6 +18,7 @@ import nl.inl.blacklab.exceptions.InvalidQuery;
 import nl.inl.blacklab.index.DocIndexerFactory;
 import nl.inl.blacklab.index.annotated.AnnotationSensitivities;
 import nl.inl.blacklab.resultproperty.DocProperty;
+import nl.inl.blacklab.resultproperty.HitProperty;
 import nl.inl.blacklab.resultproperty.PropertyValue;
 import nl.inl.blacklab.search.BlackLab;
 import nl.inl.blacklab.search.BlackLabIndex;
@@ -62,6 +63,7 @@ import nl.inl.blacklab.server.exceptions.BlsException;
 import nl.inl.blacklab.server.index.Index;
 import nl.inl.blacklab.server.lib.ConcordanceContext;
 import nl.inl.blacklab.server.lib.ResultIndexMetadata;
+import nl.inl.blacklab.server.lib.SortKeys;
 import nl.inl.blacklab.server.lib.SearchTimings;
 import nl.inl.blacklab.server.lib.WebserviceParams;
 import nl.inl.blacklab.webservice.WebserviceParameter;
@@ -333,7 +335,16 @@ public class ResponseStreamer {
         nl.inl.blacklab.server.lib.WebserviceParams params = result.getParams();
         Hits hits = result.getHits();
 
+        HitProperty sortProp = null;
+        if (params.getIncludeSortKeys()) {
+            // Keys the proxy needs to merge our sorted hits with those from other nodes
+            sortProp = HitProperty.deserialize(hits, params.getSortProps().orElse(null));
+            if (sortProp != null)
+                sortProp = sortProp.copyWith(hits);
+        }
+
         ds.startEntry("hits").startList();
+        long hitIndex = 0;
         for (Hit hit : hits) {
             ds.startItem("hit");
             {
@@ -346,16 +357,20 @@ public class ResponseStreamer {
                                 "MISSING CAPTURE GROUP: " + docPid + ", query: " + params.getPattern());
                 }
 
+                List<String> sortKeys = sortProp == null ? null :
+                        SortKeys.forHit(hits, sortProp, hitIndex);
                 hit(ds, params, result.getConcordanceContext(), result.getAnnotationsToWrite(), hit, docPid,
-                        capturedGroups);
+                        capturedGroups, sortKeys);
             }
             ds.endItem();
+            hitIndex++;
         }
         ds.endList().endEntry();
     }
 
     private static void hit(DataStream ds, nl.inl.blacklab.server.lib.WebserviceParams params, ConcordanceContext concordanceContext,
-            Collection<Annotation> annotationsToList, Hit hit, String docPid, Map<String, Span> capturedGroups) {
+            Collection<Annotation> annotationsToList, Hit hit, String docPid, Map<String, Span> capturedGroups,
+            List<String> sortKeys) {
         ds.startMap();
         if (docPid != null) {
             // Add basic hit info
@@ -403,6 +418,8 @@ public class ResponseStreamer {
                 ds.startEntry("match").contextList(c.annotations(), annotationsToList, c.match()).endEntry();
             }
         }
+        if (sortKeys != null)
+            ds.startEntry("sortKeys").value(sortKeys).endEntry();
         ds.endMap();
     }
 
@@ -766,6 +783,9 @@ public class ResponseStreamer {
             }
             ds.endEntry();
 
+            if (result.getSortKeys() != null)
+                ds.startEntry("sortKeys").value(result.getSortKeys()).endEntry();
+
             // Snippets
             Collection<Annotation> annotationsToList = result.getAnnotationsToList();
             if (result.numberOfHitsToShow() > 0) {
@@ -27,10 +27,12 @@ public class ResultDocResult {
     private final List<Kwic> kwicsToShow;
     private final Collection<Annotation> annotationsToList;
     private final long numberOfHits;
+    private final List<String> sortKeys;
 
     public ResultDocResult(Collection<MetadataField> metadataFieldsToList,
-            WebserviceParams params, Collection<Annotation> annotationsToList, DocResult dr) {
+            WebserviceParams params, Collection<Annotation> annotationsToList, DocResult dr, List<String> sortKeys) {
         this.annotationsToList = annotationsToList;
+        this.sortKeys = sortKeys;
         // Find pid
         BlackLabIndex index = params.blIndex();
         Document document = index.luceneDoc(dr.docId());
@@ -96,4 +98,9 @@ public class ResultDocResult {
     public Collection<Annotation> getAnnotationsToList() {
         return annotationsToList;
     }
+
+    /** Keys for merging sorted results from several nodes (see {@link nl.inl.blacklab.server.lib.SortKeys}), or null */
+    public List<String> getSortKeys() {
+        return sortKeys;
+    }
 }
@@ -24,6 +24,7 @@ import nl.inl.blacklab.server.exceptions.BadRequest;
 import nl.inl.blacklab.server.index.Index;
 import nl.inl.blacklab.server.lib.WebserviceParams;
 import nl.inl.blacklab.server.lib.SearchTimings;
+import nl.inl.blacklab.server.lib.SortKeys;
 
 public class ResultDocsResponse {
     private final Collection<Annotation> annotationsToList;
@@ -65,9 +66,15 @@ public class ResultDocsResponse {
             Map<DocProperty, DocGroups> counts = params.facets().execute().countsPerFacet();
             facetInfo = WebserviceOperations.getFacetInfo(counts);
         }
+        DocProperty sortProp = null;
+        if (params.getIncludeSortKeys()) {
+            // Keys the proxy needs to merge our sorted documents with those from other nodes
+            sortProp = DocProperty.deserialize(index, params.getSortProps().orElse(""));
+        }
         docResults = new ArrayList<>();
         for (DocResult dr: window) {
-            docResults.add(new ResultDocResult(metadataFieldsToList, params, getAnnotationsToList(), dr));
+            List<String> sortKeys = sortProp == null ? null : SortKeys.forDoc(sortProp, dr);
+            docResults.add(new ResultDocResult(metadataFieldsToList, params, getAnnotationsToList(), dr, sortKeys));
         }
     }
 
@@ -48,6 +48,8 @@ import nl.inl.blacklab.searches.SearchCount;
 import nl.inl.blacklab.searches.SearchEmpty;
 import nl.inl.blacklab.searches.SearchHitGroupsFromHits;
 import nl.inl.blacklab.searches.SearchHits;
+import nl.inl.blacklab.searches.SearchHitsSorted;
+import nl.inl.blacklab.searches.SearchHitsWindow;
 import nl.inl.blacklab.server.exceptions.BadRequest;
 import nl.inl.blacklab.server.exceptions.BlsException;
 import nl.inl.blacklab.server.index.Index;
@@ -72,8 +74,14 @@ public class ResultHits {
 
     private final boolean viewingGroup;
 
+    /** Wait until all hits have been counted before returning? */
+    private final boolean waitForTotal;
+
     private final SearchCacheEntry<?> cacheEntry;
 
+    /** Doc count (if we're not viewing a group) */
+    private SearchCacheEntry<ResultsStats> docCountCacheEntry;
+
     private SearchCacheEntry<Hits> cacheEntryWindow;
 
     private long kwicTimeMs;
@@ -102,9 +110,14 @@ public class ResultHits {
 
     private ResultListOfHits listOfHits;
 
-    @SuppressWarnings("unchecked")
     ResultHits(WebserviceParams params, boolean includeIndexStatus) {
+        this(params, includeIndexStatus, params.getWaitForTotal());
+    }
+
+    @SuppressWarnings("unchecked")
+    ResultHits(WebserviceParams params, boolean includeIndexStatus, boolean waitForTotal) {
         this.params = params;
+        this.waitForTotal = waitForTotal;
         indexStatus = null;
         if (includeIndexStatus) {
             IndexManager indexMan = params.getIndexManager();
@@ -116,7 +129,6 @@ public class ResultHits {
         String viewGroup = params.getViewGroup().orElse("");
 
         viewingGroup = groupBy.length() > 0 && viewGroup.length() > 0;
-        boolean waitForTotal = params.getWaitForTotal();
         try {
             if (viewingGroup) {
                 // We're viewing a single group. Get the hits from the grouping results.
@@ -130,6 +142,12 @@ public class ResultHits {
                 // Regular hits request.
                 // Create the search objects
                 SearchHits searchHits = params.hitsSample();
+                SearchHits searchWindow = params.hitsWindow();
+                if (searchWindow instanceof SearchHitsWindow && ((SearchHitsWindow) searchWindow).selectsTopHits()) {
+                    // The window will select its hits from the unsorted hits, so don't sort them all.
+                    // (the unsorted hits have the same counts, and we don't need their order)
+                    searchHits = ((SearchHitsSorted) searchHits).source();
+                }
                 SearchCount searchHitCount = searchHits.hitCount();
                 SearchCount searchDocCount = searchHits.docCount();
                 // Start the search.
@@ -140,7 +158,8 @@ public class ResultHits {
                 hits = searchHits.execute();
                 try {
                     hitsStats = ((SearchCacheEntry<ResultsStats>) cacheEntry).peek();
-                    docsStats = searchDocCount.executeAsync().peek();
+                    docCountCacheEntry = searchDocCount.executeAsync();
+                    docsStats = docCountCacheEntry.peek();
                     // Wait until all hits have been counted.
                     if (waitForTotal) {
                         hitsStats.countedTotal();
@@ -367,7 +386,7 @@ public class ResultHits {
         SearchTimings searchTimings = getSearchTimings();
         summaryNumHits = WebserviceOperations.numResultsSummaryHits(
                 getHitsStats(), getDocsStats(),
-                params.getWaitForTotal(), searchTimings.getCountTime() < 0, null);
+                waitForTotal, searchTimings.getCountTime() < 0, null);
         summaryCommonFields = WebserviceOperations.summaryCommonFields(params,
                 getIndexStatus(), searchTimings, null, window.windowStats());
         listOfHits = WebserviceOperations.listOfHits(params, window, getConcordanceContext(),
@@ -399,6 +418,17 @@ public class ResultHits {
         return params.hasFacets();
     }
 
+    /**
+     * Let the cache know a client is still interested in the counts.
+     *
+     * Running counts no client has asked about for a while are aborted.
+     */
+    public void updateCountsLastAccess() {
+        cacheEntry.updateLastAccess();
+        if (docCountCacheEntry != null)
+            docCountCacheEntry.updateLastAccess();
+    }
+
     public ResultsStats getHitsStats() {
         return hitsStats;
     }
@@ -15,9 +15,11 @@ import nl.inl.blacklab.search.indexmetadata.IndexMetadata;
 import nl.inl.blacklab.search.indexmetadata.MetadataField;
 import nl.inl.blacklab.searches.SearchCache;
 import nl.inl.blacklab.server.exceptions.BadRequest;
+import nl.inl.blacklab.server.lib.BinaryResponseWriter;
 import nl.inl.blacklab.server.lib.Response;
 import nl.inl.blacklab.server.lib.ResultIndexMetadata;
 import nl.inl.blacklab.server.lib.WebserviceParams;
+import nl.inl.blacklab.server.lib.WriteBinary;
 import nl.inl.blacklab.server.lib.WriteCsv;
 import nl.inl.blacklab.webservice.WebserviceParameter;
 
@@ -29,6 +31,9 @@ import nl.inl.blacklab.webservice.WebserviceParameter;
  */
 public class WebserviceRequestHandler {
 
+    /** How often to check for progress when pushing progress events (ms) */
+    public static final long PROGRESS_EVENT_INTERVAL_MS = 250;
+
     /**
      * Show information about a field in a corpus.
      *
@@ -110,6 +115,47 @@ public class WebserviceRequestHandler {
         }
     }
 
+    /**
+     * Can we stream progress events for this hits request?
+     *
+     * Only regular hits requests (not groups or collocations) report progress while counting.
+     *
+     * @param params parameters
+     * @return true if we can use {@link #opHitsProgress(WebserviceParams, EventSink)}
+     */
+    public static boolean canStreamHitsProgress(WebserviceParams params) {
+        return !params.isCalculateCollocations() && !shouldReturnListOfGroups(params);
+    }
+
+    /**
+     * Find hits, pushing progress events to the client while counting.
+     * <p>
+     * Sends a "hits" event with the regular response (as if waitfortotal=false) as soon as
+     * the requested page is available. The returned producer then sends a "progress" event
+     * with the hit and document counts so far whenever these change, and finally a "done"
+     * event with the totals. This saves the client from re-requesting the hits to get live
+     * counts.
+     * <p>
+     * The caller should call {@link EventProducer#sendEvents()} periodically (e.g. every
+     * {@link #PROGRESS_EVENT_INTERVAL_MS} ms) instead of blocking a thread while counting.
+     *
+     * @param params parameters
+     * @param events where to send events
+     * @return producer for the remaining events, or null if the client is no longer listening
+     */
+    public static EventProducer opHitsProgress(WebserviceParams params, EventSink events) {
+        ResultHits resultHits = new ResultHits(params, true, false);
+        resultHits.finishSearch();
+        boolean sent = events.send("hits", rs -> {
+            try {
+                rs.hitsResponse(resultHits, params.apiCompatibility() == ApiVersion.V3);
+            } catch (InvalidQuery e) {
+                throw new BadRequest("INVALID_QUERY", e.getMessage());
+            }
+        });
+        return sent ? new HitsProgressEvents(resultHits, events) : null;
+    }
+
     /**
      * Find or group documents.
      *
@@ -280,6 +326,17 @@ public class WebserviceRequestHandler {
         rs.getDataStream().csv(csv);
     }
 
+    public static void opHitsBinary(WebserviceParams params, ResponseStreamer rs) throws InvalidQuery {
+        ResultHitsCsv result = WebserviceOperations.hitsCsv(params);
+        BinaryResponseWriter.Content content;
+        if (result.getGroups() != null && !result.isViewGroup()) {
+            content = WriteBinary.hitsGroupsResponse(result);
+        } else {
+            content = WriteBinary.hitsResponse(result);
+        }
+        rs.getDataStream().binary(content);
+    }
+
     public static void opInputFormatXslt(WebserviceParams params, ResponseStreamer rs) {
         Optional<String> inputFormat = params.getInputFormat();
         if (!inputFormat.isPresent())
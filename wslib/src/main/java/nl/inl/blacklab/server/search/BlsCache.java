@@ -8,23 +8,44 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
+import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import nl.inl.blacklab.codec.ContentStoreBlockCache;
 import nl.inl.blacklab.exceptions.ServerOverloaded;
 import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.lucene.QueryRewriteCache;
 import nl.inl.blacklab.search.results.SearchResult;
 import nl.inl.blacklab.searches.Search;
 import nl.inl.blacklab.searches.SearchCache;
 import nl.inl.blacklab.searches.SearchCacheEntry;
+import nl.inl.blacklab.searches.SearchCollocations;
 import nl.inl.blacklab.searches.SearchCount;
+import nl.inl.blacklab.searches.SearchDocGroups;
+import nl.inl.blacklab.searches.SearchDocsSampled;
+import nl.inl.blacklab.searches.SearchDocsSorted;
+import nl.inl.blacklab.searches.SearchFacets;
+import nl.inl.blacklab.searches.SearchHitGroups;
+import nl.inl.blacklab.searches.SearchHitsSampled;
+import nl.inl.blacklab.searches.SearchHitsSorted;
 import nl.inl.blacklab.server.config.BLSConfig;
 import nl.inl.blacklab.server.config.BLSConfigCache;
 import nl.inl.blacklab.server.util.BlsUtils;
 
+/**
+ * Our main search cache.
+ *
+ * Also manages load: searches are queued if the server is too busy, and started
+ * as soon as there's capacity for them. There are two "lanes": heavy searches
+ * (counting, grouping or sorting many hits) may only use part of the available
+ * capacity (maxConcurrentHeavySearches), so cheap interactive searches can still
+ * start right away while a heavy search is running.
+ */
 public class BlsCache implements SearchCache {
 
     private static final Logger logger = LogManager.getLogger(BlsCache.class);
@@ -35,9 +56,6 @@ public class BlsCache implements SearchCache {
     /** Bytes in one gigabyte */
     private static final long ONE_GB_BYTES = ONE_MB_BYTES * 1_000;
 
-    /** Very rough measure of how large result objects are, based on a Hit (3 ints + 12 bytes object overhead) */
-    public static final int SIZE_OF_HIT = 24;
-
     /**
      * Returns the amount of memory that can still be allocated before we get the
      * OutOfMemory exception.
@@ -92,16 +110,38 @@ public class BlsCache implements SearchCache {
 
     private final int maxConcurrentSearches;
 
+    /** How many heavy searches may run at the same time */
+    private final int maxConcurrentHeavySearches;
+
+    /** From what estimated cost is a search that processes all hits considered heavy? */
+    private final long heavySearchMinCost;
+
+    /** After how long in the queue does a heavy search get priority? (ms) */
+    private final long maxHeavySearchQueueMs;
+
     /** Abort an abandoned count after how much time? (s) */
     private final int abandonedCountAbortTimeSec;
 
     protected final Map<Search<?>, BlsCacheEntry<? extends SearchResult>> searches = new HashMap<>();
 
+    /** Cached searches other searches may derive their results from, by superset key (see {@link Search#supersetKey()}) */
+    private final Map<Object, List<BlsCacheEntry<?>>> searchesBySupersetKey = new HashMap<>();
+
+    /**
+     * Searches removed from the cache because their index was reopened, but still running.
+     *
+     * We keep track of these until they finish, so they still count towards the
+     * concurrent search limits.
+     */
+    private final List<BlsCacheEntry<?>> outdatedSearches = new ArrayList<>();
+
     protected final boolean trace;
 
     private final boolean cacheDisabled;
 
-    private Comparator<BlsCacheEntry<?>> worthinessComparator;
+    /** Most worthy searches first (see {@link BlsCacheEntry#calculateWorthiness()}) */
+    private static final Comparator<BlsCacheEntry<?>> WORTHINESS_DESC =
+            Comparator.comparingLong((BlsCacheEntry<?> e) -> e.worthiness()).reversed();
 
     private long cacheSizeBytes;
 
@@ -109,19 +149,20 @@ public class BlsCache implements SearchCache {
 
     private String previousCacheStatsMessage = "";
 
+    /** Number of cache hits and misses per type of search (e.g. SearchHitGroups) */
+    private final Map<String, long[]> hitsAndMissesPerType = new TreeMap<>();
+
     public BlsCache(BLSConfig blsConfig, @SuppressWarnings("unused") ExecutorService executorService) {
         this.config = blsConfig.getCache();
         this.maxConcurrentSearches = blsConfig.getPerformance().getMaxConcurrentSearches();
+        this.maxConcurrentHeavySearches = blsConfig.getPerformance().getMaxConcurrentHeavySearches();
+        this.heavySearchMinCost = blsConfig.getPerformance().getHeavySearchMinCost();
+        this.maxHeavySearchQueueMs = blsConfig.getPerformance().getMaxHeavySearchQueueSec() * 1000L;
         this.abandonedCountAbortTimeSec = blsConfig.getPerformance().getAbandonedCountAbortTimeSec();
         this.trace = blsConfig.getLog().getTrace().isCache();
         cacheDisabled = config.getMaxJobAgeSec() == 0 || config.getMaxNumberOfJobs() == 0;
 
         if (!cacheDisabled) {
-            worthinessComparator = (o1, o2) -> {
-                long result = o2.worthiness() - o1.worthiness();
-                return result == 0 ? 0 : (result < 0 ? -1 : 1);
-            };
-
             cleanupThread = new CleanupSearchesThread();
             cleanupThread.setDaemon(true); // don't prevent JVM from exiting.
             cleanupThread.start();
@@ -146,7 +187,7 @@ public class BlsCache implements SearchCache {
      * @param index the index
      */
     @Override
-    public void removeSearchesForIndex(BlackLabIndex index) {
+    public synchronized void removeSearchesForIndex(BlackLabIndex index) {
         // Iterate over the entries and remove the ones in the specified index
         traceInfo("Remove searches for index: " + index.name());
         Iterator<Entry<Search<?>, BlsCacheEntry<? extends SearchResult>>> it = searches.entrySet().iterator();
@@ -154,9 +195,48 @@ public class BlsCache implements SearchCache {
             Entry<Search<?>, BlsCacheEntry<? extends SearchResult>> entry = it.next();
             if (entry.getValue().search().queryInfo().index() == index) {
                 entry.getValue().cancel(true);
+                entry.getValue().release();
                 it.remove();
+                removeFromSupersetIndex(entry.getValue());
             }
         }
+        outdatedSearches.removeIf(entry -> {
+            boolean remove = entry.search().queryInfo().index() == index;
+            if (remove) {
+                entry.cancel(true);
+                entry.release();
+            }
+            return remove;
+        });
+    }
+
+    /**
+     * Remove searches that were started on a previous index reader.
+     *
+     * Searches that haven't been started yet stay in the cache; they will use the new reader.
+     * Finished searches are released, so the previous reader can be closed once nothing
+     * else uses it. Running searches are not cancelled: clients already waiting for them get
+     * their results, but new requests will start a new search. Until they finish, they still
+     * count towards the concurrent search limits; they are released when they're done.
+     *
+     * @param index index that was reopened
+     */
+    @Override
+    public synchronized void indexReopened(BlackLabIndex index) {
+        traceInfo("Remove outdated searches for reopened index: " + index.name());
+        long currentGeneration = index.readerGeneration();
+        searches.values().removeIf(entry -> {
+            boolean outdated = entry.search().queryInfo().index() == index &&
+                    entry.wasStarted() && entry.readerGeneration() < currentGeneration;
+            if (outdated) {
+                removeFromSupersetIndex(entry);
+                if (entry.isRunning())
+                    outdatedSearches.add(entry);
+                else
+                    entry.release();
+            }
+            return outdated;
+        });
     }
 
     /**
@@ -168,65 +248,133 @@ public class BlsCache implements SearchCache {
     public synchronized void clear(boolean cancelRunning) {
         for (BlsCacheEntry<? extends SearchResult> cachedSearch : searches.values()) {
             cachedSearch.cancel(true);
+            cachedSearch.release();
+        }
+        for (BlsCacheEntry<?> outdatedSearch : outdatedSearches) {
+            outdatedSearch.cancel(true);
+            outdatedSearch.release();
         }
         searches.clear();
+        outdatedSearches.clear();
+        searchesBySupersetKey.clear();
         traceInfo("Cache cleared.");
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    public synchronized <R extends SearchResult> BlsCacheEntry<R> getAsync(Search<R> search, boolean allowQueue) {
+    public <R extends SearchResult> BlsCacheEntry<R> getAsync(Search<R> search, boolean allowQueue) {
         //if (trace) logger.debug("getFromCache({}, allowQueue={})", search, allowQueue);
-        BlsCacheEntry<R> future;
         boolean useCache = search.queryInfo().useCache() && !cacheDisabled;
-        future = useCache ? (BlsCacheEntry<R>) searches.get(search) : null;
-        if (future == null) {
-            logger.info("not found in cache, starting search: " + search);
-            int numQueued = numberOfQueuedSearches();
-            if (numQueued >= config.getMaxQueuedSearches()) {
-                logger.warn("Can't start new search, too many queued searches (numQueued = " + numQueued + ", maxQueuedSearches = " + config.getMaxQueuedSearches() + ")");
-                throw new ServerOverloaded("The server is too busy right now (" + numQueued + " searches queued). Please try again later.");
-            }
+        if (useCache) {
+            BlsCacheEntry<R> future = getExisting(search, allowQueue);
+            if (future != null)
+                return future;
+        }
+        // Not in cache. Estimate the cost before taking the cache lock, as this looks up
+        // term statistics in the index.
+        long cost = search.estimatedCost();
+        return addEntry(search, allowQueue, useCache, cost);
+    }
 
-            // Create the cache entry.
-            // Note that all entries start "queued" (i.e. the search itself hasn't been started yet).
-            // We will see if it can be started below.
-            future = new BlsCacheEntry<>(search);
-            if (useCache)
-                searches.put(search, future);
-
-            // Can we start the search, or should it remain queued for now?
-            if (!allowQueue || !useCache) {
-                // No queueing allowed (i.e. subtask required by another subtask). Start the search right away.
-                // (we also do this if you bypass the cache, because then queueing doesn't work)
-                if (!allowQueue)
-                    traceInfo("-- STARTING: {} (TOP-LEVEL SEARCH)", search);
-                else
-                    traceInfo("-- STARTING: {} (NOT USING CACHE)", search);
-                future.start();
-            } else {
-                // Queueing is allowed.
-                // The new search hasn't been started yet (therefore it is "queued").
-                // Check if it (or an older queued search) can be started now.
-                startSearchIfPossible(false);
-                if (future.wasStarted()) {
-                    traceInfo("-- STARTING: {} (QUEUEING NOT NECESSARY)", search);
-                } else {
-                    traceInfo("-- QUEUEING: {}", search);
-                }
-            }
-        } else {
-            // Already in cache.
+    /**
+     * Find a search in the cache and mark it as accessed.
+     *
+     * @param search search to find
+     * @param allowQueue if false, start the search if it was still queued
+     * @return the cache entry, or null if not found
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized <R extends SearchResult> BlsCacheEntry<R> getExisting(Search<R> search, boolean allowQueue) {
+        BlsCacheEntry<R> future = (BlsCacheEntry<R>) searches.get(search);
+        if (future != null) {
+            countHitOrMiss(search, true);
             traceInfo("-- FOUND:    {}", search);
             future.updateLastAccess();
             // If another running search needs this search, but it was queued, start it now.
             if (!allowQueue && !future.wasStarted())
                 future.start();
         }
+        return future;
+    }
+
+    /**
+     * Add a new entry for a search to the cache and start or queue it.
+     *
+     * @param search search to add
+     * @param allowQueue may the search be queued?
+     * @param useCache should the entry be stored in the cache?
+     * @param cost estimated cost of the search
+     * @return the cache entry
+     */
+    private synchronized <R extends SearchResult> BlsCacheEntry<R> addEntry(Search<R> search, boolean allowQueue,
+            boolean useCache, long cost) {
+        if (useCache) {
+            // Another thread may have added it while we were estimating the cost
+            BlsCacheEntry<R> future = getExisting(search, allowQueue);
+            if (future != null)
+                return future;
+            countHitOrMiss(search, false);
+        }
+        logger.info("not found in cache, starting search: " + search);
+        int numQueued = numberOfQueuedSearches();
+        if (numQueued >= config.getMaxQueuedSearches()) {
+            logger.warn("Can't start new search, too many queued searches (numQueued = " + numQueued + ", maxQueuedSearches = " + config.getMaxQueuedSearches() + ")");
+            throw new ServerOverloaded("The server is too busy right now (" + numQueued + " searches queued). Please try again later.");
+        }
+
+        // Create the cache entry.
+        // Note that all entries start "queued" (i.e. the search itself hasn't been started yet).
+        // We will see if it can be started below.
+        BlsCacheEntry<R> future = new BlsCacheEntry<>(search, cost, isHeavy(search, cost), this::searchFinished);
+        if (useCache) {
+            searches.put(search, future);
+            Object supersetKey = search.supersetKey();
+            if (supersetKey != null)
+                searchesBySupersetKey.computeIfAbsent(supersetKey, k -> new ArrayList<>()).add(future);
+        }
+
+        // Can we start the search, or should it remain queued for now?
+        if (!allowQueue || !useCache) {
+            // No queueing allowed (i.e. subtask required by another subtask). Start the search right away.
+            // (we also do this if you bypass the cache, because then queueing doesn't work)
+            if (!allowQueue)
+                traceInfo("-- STARTING: {} (TOP-LEVEL SEARCH)", search);
+            else
+                traceInfo("-- STARTING: {} (NOT USING CACHE)", search);
+            future.start();
+        } else {
+            // Queueing is allowed.
+            // The new search hasn't been started yet (therefore it is "queued").
+            // Check if it (or an older queued search) can be started now.
+            startQueuedSearches(false);
+            if (future.wasStarted()) {
+                traceInfo("-- STARTING: {} (QUEUEING NOT NECESSARY)", search);
+            } else {
+                traceInfo("-- QUEUEING: {}", search);
+            }
+        }
         //traceCacheStats("   CACHE AFTER GET", false);
         return future;
     }
 
+    private void countHitOrMiss(Search<?> search, boolean found) {
+        long[] hitsAndMisses = hitsAndMissesPerType.computeIfAbsent(search.getClass().getSimpleName(), k -> new long[2]);
+        hitsAndMisses[found ? 0 : 1]++;
+    }
+
+    /**
+     * Get the number of cache hits and misses per type of search.
+     *
+     * Only searches that may use the cache are counted.
+     *
+     * @return map of search type (e.g. SearchHitGroups) to hits and misses
+     */
+    public synchronized Map<String, Map<String, Long>> getHitsAndMissesPerType() {
+        Map<String, Map<String, Long>> result = new TreeMap<>();
+        hitsAndMissesPerType.forEach((type, hitsAndMisses) ->
+                result.put(type, Map.of("hits", hitsAndMisses[0], "misses", hitsAndMisses[1])));
+        return result;
+    }
+
     synchronized String getCacheStats() {
         if (trace) {
             Map<String, Integer> counts = getCountsPerStatus();
@@ -271,31 +419,72 @@ public class BlsCache implements SearchCache {
         }
     }
 
+    @Override
+    synchronized public SearchResult getIfFinished(Search<?> search) {
+        BlsCacheEntry<?> entry = searches.get(search);
+        return entry == null ? null : entry.resultIfFinished();
+    }
+
+    @Override
+    public SearchResult findFinishedResult(Object supersetKey, BiPredicate<Search<?>, SearchResult> test) {
+        // Check the candidates without holding the cache lock; the test may have to look at all results
+        for (BlsCacheEntry<?> entry: finishedSearchesWithSupersetKey(supersetKey)) {
+            SearchResult result = entry.resultIfFinished();
+            if (test.test(entry.search(), result)) {
+                synchronized (this) {
+                    entry.updateLastAccess();
+                }
+                traceInfo("-- SUPERSET: {}", entry);
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private synchronized List<BlsCacheEntry<?>> finishedSearchesWithSupersetKey(Object supersetKey) {
+        List<BlsCacheEntry<?>> entries = searchesBySupersetKey.getOrDefault(supersetKey, List.of());
+        return entries.stream().filter(e -> e.resultIfFinished() != null).collect(Collectors.toList());
+    }
+
+    private void removeFromSupersetIndex(BlsCacheEntry<?> entry) {
+        Object supersetKey = entry.search().supersetKey();
+        if (supersetKey != null) {
+            List<BlsCacheEntry<?>> entries = searchesBySupersetKey.get(supersetKey);
+            if (entries != null) {
+                entries.remove(entry);
+                if (entries.isEmpty())
+                    searchesBySupersetKey.remove(supersetKey);
+            }
+        }
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     synchronized public <R extends SearchResult> BlsCacheEntry<R> remove(Search<R> search) {
         BlsCacheEntry<R> future = (BlsCacheEntry<R>) searches.remove(search);
-        if (future != null)
+        if (future != null) {
+            removeFromSupersetIndex(future);
+            future.release();
             traceInfo("-- REMOVED:  {} ({} searches left)", search, searches.size());
+        }
         return future;
     }
 
     /**
-     * Estimate number of result objects (e.g. Hits) in cache.
+     * Estimate the total heap size of the results in cache.
      *
-     * This may not be accurate because Hits are sometimes but not always duplicated
-     * between tasks (e.g. gather, sort, group). It gives a rough estimate though
-     * that we can use to decide when to clean up.
+     * This may overestimate a little because some data (e.g. captured groups) may be
+     * shared between results (e.g. gather, sort, group). It gives a reasonable estimate
+     * though that we can use to decide when to clean up.
      *
-     * @return estimate of number of Hits in cache
+     * @return estimated cache size in bytes
      */
-    private synchronized long estimateResultObjectsInCache() {
-        // Estimate the total cache size
-        long resultsObjectsInCache = 0;
+    private synchronized long estimateCacheSizeBytes() {
+        long bytes = 0;
         for (BlsCacheEntry<?> search : searches.values()) {
-            resultsObjectsInCache += search.numberOfStoredHits();
+            bytes += search.ramBytesUsed();
         }
-        return resultsObjectsInCache;
+        return bytes;
     }
 
     void traceInfo(String msg, Object... params) {
@@ -305,7 +494,46 @@ public class BlsCache implements SearchCache {
     }
 
     public synchronized int numberOfRunningSearches() {
-        return (int) searches.values().stream().filter(SearchCacheEntry::isRunning).count();
+        return (int) (searches.values().stream().filter(SearchCacheEntry::isRunning).count() +
+                outdatedSearches.stream().filter(SearchCacheEntry::isRunning).count());
+    }
+
+    private synchronized int numberOfRunningHeavySearches() {
+        return (int) (searches.values().stream().filter(s -> s.isHeavy() && s.isRunning()).count() +
+                outdatedSearches.stream().filter(s -> s.isHeavy() && s.isRunning()).count());
+    }
+
+    /**
+     * Should this search be scheduled as a heavy search?
+     *
+     * Searches that need to process all hits (counting, grouping, sorting, sampling)
+     * are heavy if their estimated cost is at least heavySearchMinCost. Searches that
+     * only need a window of hits are never heavy, because hits are fetched lazily.
+     *
+     * @param search search to check
+     * @param cost estimated cost of the search, or -1 if unknown
+     * @return true if the search is heavy
+     */
+    private boolean isHeavy(Search<?> search, long cost) {
+        if (cost < heavySearchMinCost)
+            return false;
+        for (Search<?> s = search; s != null; s = s.source()) {
+            if (s instanceof SearchCount || s instanceof SearchHitGroups || s instanceof SearchDocGroups ||
+                    s instanceof SearchFacets || s instanceof SearchCollocations || s instanceof SearchHitsSorted ||
+                    s instanceof SearchDocsSorted || s instanceof SearchHitsSampled || s instanceof SearchDocsSampled)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called by a cache entry when its search task finishes.
+     *
+     * This frees up capacity, so we start queued searches right away
+     * instead of waiting for the cleanup thread.
+     */
+    private void searchFinished() {
+        startQueuedSearches(true);
     }
 
     private synchronized int numberOfQueuedSearches() {
@@ -313,38 +541,62 @@ public class BlsCache implements SearchCache {
     }
 
     /**
-     * If we can start another search, finds the oldest queued search and start it.
+     * Start queued searches, as far as the current load allows.
+     *
+     * Queued searches are started in the order they were submitted. Interactive
+     * searches are started first, as many as capacity allows. At most one heavy
+     * search is started per call, to give it a little time to start its subtasks
+     * and allocate memory before we decide on the next one.
      *
-     * @param report if true (and trace is on), report the search we started
+     * A heavy search that has been queued longer than maxHeavySearchQueueSec goes
+     * first, and while it can't start, no interactive searches are started either.
+     * That way, capacity frees up for it even if interactive searches keep arriving.
+     *
+     * @param report if true (and trace is on), report the searches we started
      */
-    synchronized void startSearchIfPossible(boolean report) {
-        // Is server load low enough to start a search?
-        if (canStartAnotherSearch()) {
-            // Find the oldest queued search and start it.
-            // Only start one per iteration (give it a little time to start its subtasks)
-
-            // Sort the searches based on descending "worthiness"
-            List<BlsCacheEntry<?>> searches = new ArrayList<>(this.searches.values());
-            for (BlsCacheEntry<?> s : searches)
-                s.calculateWorthiness(); // calculate once before sorting so we don't run into Comparable contract issues because of threading
-            searches.sort(worthinessComparator);
-
-            // Find & start oldest queued search
-            BlsCacheEntry<?> search1 = searches.stream().filter(s -> !s.wasStarted()).findFirst().orElse(null);
-            if (search1 != null) {
-                if (report)
-                    traceInfo("-- UNQUEUE:  {}", search1);
-                search1.start();
-            }
+    synchronized void startQueuedSearches(boolean report) {
+        List<BlsCacheEntry<?>> queued = searches.values().stream()
+                .filter(s -> !s.wasStarted())
+                .sorted(Comparator.comparingLong(BlsCacheEntry::id))
+                .collect(Collectors.toList());
+        BlsCacheEntry<?> oldestHeavy = queued.stream().filter(BlsCacheEntry::isHeavy).findFirst().orElse(null);
+        boolean startedHeavy = false;
+        if (oldestHeavy != null && oldestHeavy.timeSinceCreationMs() > maxHeavySearchQueueMs) {
+            if (!canStartAnotherSearch(true))
+                return; // wait until there's room for this one
+            if (report)
+                traceInfo("-- UNQUEUE (HEAVY, WAITED LONG):  {}", oldestHeavy);
+            oldestHeavy.start();
+            startedHeavy = true;
+        }
+        for (BlsCacheEntry<?> search: queued) {
+            if (search.isHeavy())
+                continue;
+            if (!canStartAnotherSearch(false))
+                break;
+            if (report)
+                traceInfo("-- UNQUEUE:  {}", search);
+            search.start();
+        }
+        for (BlsCacheEntry<?> search: queued) {
+            if (!search.isHeavy() || search.wasStarted())
+                continue;
+            if (startedHeavy || !canStartAnotherSearch(true))
+                break;
+            if (report)
+                traceInfo("-- UNQUEUE (HEAVY):  {}", search);
+            search.start();
+            startedHeavy = true;
         }
     }
 
     /**
      * See if server load is low enough that we can start (unqueue) another search.
      *
+     * @param heavy whether we want to start a heavy search
      * @return true if we can start a search, false if it's still too busy
      */
-    private boolean canStartAnotherSearch() {
+    private boolean canStartAnotherSearch(boolean heavy) {
         int runningSearches = numberOfRunningSearches();
         if (runningSearches == 0)
             return true;
@@ -352,6 +604,8 @@ public class BlsCache implements SearchCache {
         int minFreeMemForSearchMegs = config.getMinFreeMemForSearchMegs();
         boolean enoughMemory = freeMemory / ONE_MB_BYTES >= minFreeMemForSearchMegs;
         boolean threadsAvailable = runningSearches < maxConcurrentSearches;
+        if (heavy)
+            threadsAvailable = threadsAvailable && numberOfRunningHeavySearches() < maxConcurrentHeavySearches;
         return enoughMemory && threadsAvailable;
     }
 
@@ -360,15 +614,29 @@ public class BlsCache implements SearchCache {
      * Remove older finished searches from cache. Start a queued search if load is low enough.
      */
     synchronized void updateCache() {
-        long resultsObjectsInCache = estimateResultObjectsInCache();
-        cacheSizeBytes = resultsObjectsInCache * SIZE_OF_HIT;
+        cacheSizeBytes = estimateCacheSizeBytes();
+
+        // Forget outdated searches that have finished; abort the ones that are taking too long
+        int maxSearchTimeSec = config.getMaxSearchTimeSec();
+        outdatedSearches.removeIf(search -> {
+            if (search.isRunning() && search.timeUserWaitedMs() > maxSearchTimeSec * 1000L) {
+                traceInfo("-- ABORT (outdated, taking too long): {}", search);
+                search.setReason("Running search aborted because it took longer than " +
+                        BlsUtils.describeIntervalSec(maxSearchTimeSec) + ". This is done to ease server load.");
+                search.cancel(true);
+            }
+            if (!search.isDone())
+                return false;
+            search.release();
+            return true;
+        });
 
         List<BlsCacheEntry<?>> searches = new ArrayList<>(this.searches.values());
 
         // Sort the searches based on descending "worthiness"
         for (BlsCacheEntry<?> s : searches)
             s.calculateWorthiness(); // calculate once before sorting so we don't run into Comparable contract issues because of threading
-        searches.sort(worthinessComparator);
+        searches.sort(WORTHINESS_DESC);
 
         //------------------
         // STEP 1: remove least worthy, finished searches from cache
@@ -376,7 +644,6 @@ public class BlsCache implements SearchCache {
         // Abort searches that are taking too long (longer than maxSearchTimeSec)
         for (int i = searches.size() - 1; i >= 0; i--) {
             BlsCacheEntry<?> search = searches.get(i);
-            int maxSearchTimeSec = config.getMaxSearchTimeSec();
             if (search.isRunning() && search.timeUserWaitedMs() > maxSearchTimeSec * 1000L) {
                 // Search is taking too long. Cancel it.
                 traceInfo("Search is taking too long (time " + (search.timeUserWaitedMs()/1000) + "s > max time " + maxSearchTimeSec + "s)");
@@ -394,9 +661,12 @@ public class BlsCache implements SearchCache {
         // Look at completed searches.
         // Get rid of completed searches that haven't been accessed in a while (maxJobAgeSec).
         // If we're low on memory, remove searches so they will be garbage collected (targetFreeMemMegs).
+        // If the cache is larger than allowed, remove searches until it isn't (maxCacheSizeMegs).
         boolean checkLastAccessTime = config.getMaxJobAgeSec() >= 0;
         long freeMegs = getFreeMemory() / ONE_MB_BYTES;
         long memoryToFreeUpMegs = config.getTargetFreeMemMegs() - freeMegs;
+        long maxCacheSizeBytes = config.getMaxCacheSizeMegs() < 0 ? Long.MAX_VALUE : config.getMaxCacheSizeMegs() * ONE_MB_BYTES;
+        long cacheBytesToFreeUp = cacheSizeBytes - maxCacheSizeBytes;
         for (int i = searches.size() - 1; i >= 0; i--) {
             BlsCacheEntry<?> search = searches.get(i);
             if (!search.isDone())
@@ -411,7 +681,7 @@ public class BlsCache implements SearchCache {
                 // Finished search.
                 isSearchTooOld = checkLastAccessTime && search.timeUnusedMs() > config.getMaxJobAgeSec() * 1000L;
             }
-            if (isSearchTooOld || memoryToFreeUpMegs > 0) {
+            if (isSearchTooOld || memoryToFreeUpMegs > 0 || cacheBytesToFreeUp > 0) {
                 // Search is too old or cache is too big. Keep removing searches until that's no
                 // longer the case
                 // logger.debug("Remove from cache: " + search);
@@ -420,6 +690,10 @@ public class BlsCache implements SearchCache {
                     traceInfo("Not enough free mem (free " + freeMegs + "M < min free "
                             + config.getTargetFreeMemMegs() + "M)");
                     reason = "free up memory";
+                } else if (cacheBytesToFreeUp > 0) {
+                    traceInfo("Cache too large (size " + cacheSizeBytes / ONE_MB_BYTES + "M > max size "
+                            + config.getMaxCacheSizeMegs() + "M)");
+                    reason = "cache too large";
                 } else {
                     traceInfo("Searchjob too old (age " + (int)(search.timeUnusedMs()/1000) + "s > max age "
                             + config.getMaxJobAgeSec() + "s)");
@@ -428,7 +702,10 @@ public class BlsCache implements SearchCache {
                 traceInfo("-- REMOVE ({}): {}", reason, search);
                 remove(search.search());
 
-                memoryToFreeUpMegs -= search.numberOfStoredHits() * SIZE_OF_HIT / ONE_MB_BYTES; // NB very rough guess, but ok
+                long searchSizeBytes = search.ramBytesUsed();
+                memoryToFreeUpMegs -= searchSizeBytes / ONE_MB_BYTES;
+                cacheBytesToFreeUp -= searchSizeBytes;
+                cacheSizeBytes -= searchSizeBytes;
                 searches.remove(i);
             }
         }
@@ -461,7 +738,8 @@ public class BlsCache implements SearchCache {
         }
 
         // See if we can start a queued search
-        startSearchIfPossible(true);
+        // (normally this happens when another search finishes, but we may have freed up memory)
+        startQueuedSearches(true);
 
         // Report the cache status (if it changed)
         traceCacheStats();
@@ -470,25 +748,47 @@ public class BlsCache implements SearchCache {
     @Override
     public Map<String, Object> getStatus() {
         Map<String, Integer> counts = getCountsPerStatus();
-        return Map.of(
-            "targetFreeMemMegs", config.getTargetFreeMemMegs(),
-            "minFreeMemForSearchMegs", config.getMinFreeMemForSearchMegs(),
-            "maxQueuedSearches", config.getMaxQueuedSearches(),
-            "maxSearchTimeSec", config.getMaxSearchTimeSec(),
-            "maxJobAgeSec", config.getMaxJobAgeSec(),
-            "maxSearchAgeSec", config.getMaxJobAgeSec(),
-            "sizeBytes", cacheSizeBytes,
-            "numberOfSearches", searches.size(),
-            "freeMemory", getFreeMemory(),
-            "countsPerStatus", Map.of(
+        return Map.ofEntries(
+            Map.entry("targetFreeMemMegs", config.getTargetFreeMemMegs()),
+            Map.entry("minFreeMemForSearchMegs", config.getMinFreeMemForSearchMegs()),
+            Map.entry("maxCacheSizeMegs", config.getMaxCacheSizeMegs()),
+            Map.entry("maxQueuedSearches", config.getMaxQueuedSearches()),
+            Map.entry("maxConcurrentSearches", maxConcurrentSearches),
+            Map.entry("maxConcurrentHeavySearches", maxConcurrentHeavySearches),
+            Map.entry("maxHeavySearchQueueSec", maxHeavySearchQueueMs / 1000),
+            Map.entry("maxSearchTimeSec", config.getMaxSearchTimeSec()),
+            Map.entry("maxJobAgeSec", config.getMaxJobAgeSec()),
+            Map.entry("maxSearchAgeSec", config.getMaxJobAgeSec()),
+            Map.entry("sizeBytes", cacheSizeBytes),
+            Map.entry("numberOfSearches", searches.size()),
+            Map.entry("freeMemory", getFreeMemory()),
+            Map.entry("countsPerStatus", Map.of(
                 "queued", counts.get("queued"),
                 "running", counts.get("running"),
                 "finished", counts.get("finished"),
                 "cancelled", counts.get("cancelled")
-            )
+            )),
+            Map.entry("hitsAndMissesPerType", getHitsAndMissesPerType()),
+            Map.entry("filterCachePerIndex", getFilterCacheStatus()),
+            Map.entry("contentStoreBlockCache", ContentStoreBlockCache.get().getStatus()),
+            Map.entry("queryRewriteCache", QueryRewriteCache.get().getStatus())
         );
     }
 
+    /**
+     * Get the status of the filter cache of each index we have searches for.
+     *
+     * @return filter cache status per index name
+     */
+    private synchronized Map<String, Object> getFilterCacheStatus() {
+        Map<String, Object> status = new TreeMap<>();
+        for (Search<?> search: searches.keySet()) {
+            BlackLabIndex index = search.queryInfo().index();
+            status.computeIfAbsent(index.name(), k -> index.filterCache().getStatus());
+        }
+        return status;
+    }
+
     @Override
     public List<Map<String, Object>> getContents(boolean includeDebugInfo) {
         return searches.values().stream().map(e -> e.getInfo(includeDebugInfo)).collect(Collectors.toList());
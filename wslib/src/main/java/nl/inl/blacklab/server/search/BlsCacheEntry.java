@@ -5,6 +5,7 @@ import java.io.StringWriter;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -12,9 +13,12 @@ import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.ThreadContext;
+import org.apache.lucene.index.IndexReader;
 
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.exceptions.InterruptedSearch;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.results.Results;
 import nl.inl.blacklab.search.results.SearchResult;
 import nl.inl.blacklab.searches.Search;
 import nl.inl.blacklab.searches.SearchCacheEntry;
@@ -22,9 +26,6 @@ import nl.inl.blacklab.searches.SearchCount;
 
 public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
 
-    /** When waiting for the task to complete, poll how often? (ms) */
-    static final int POLLING_TIME_MS = 100;
-
     /** id for the next job started */
     private static Long nextEntryId = 0L;
 
@@ -50,6 +51,15 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
     /** Our search */
     private final Search<T> search;
 
+    /** Estimated cost of our search (see {@link Search#estimatedCost()}), or -1 if unknown */
+    private final long estimatedCost;
+
+    /** Should this search be scheduled as a heavy search? (see {@link BlsCache}) */
+    private final boolean heavy;
+
+    /** Called when our search task finishes, so the cache can start queued searches. May be null. */
+    private final Runnable onFinished;
+
 
     // OUTCOMES
 
@@ -79,11 +89,17 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
     private final long createTime;
 
     /** When was this entry last accessed (ms) */
-    private long lastAccessTime;
+    private volatile long lastAccessTime;
 
     /** When did we finish or cancel our task? (ms; set by thread) */
     private long doneTime = 0;
 
+    /** Released when our task finishes or is cancelled, so waiting threads don't have to poll */
+    private final CountDownLatch doneSignal = new CountDownLatch(1);
+
+    /** Has our task finished? (set by thread, before onFinished is called) */
+    private volatile boolean finished = false;
+
     /** Worthiness of this search in the cache, once calculated */
     private long worthiness = 0;
 
@@ -98,13 +114,42 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
     /** Was this cancelled? (future is set to null in that case, to free the memory, so we need this status) */
     private boolean cancelled = false;
 
+    /** Index reader generation this search was started on (see {@link nl.inl.blacklab.search.BlackLabIndex#readerGeneration()}) */
+    private long readerGeneration = -1;
+
+    /**
+     * Index reader our result uses, which we keep open until this entry is released.
+     *
+     * Our result keeps using this reader (and its forward indexes) even if the index is
+     * reopened (see {@link nl.inl.blacklab.search.results.QueryInfo#reader()}).
+     */
+    private IndexReader reader = null;
+
+    /** Has this entry been released? (removed from the cache; we shouldn't hold on to a reader anymore) */
+    private boolean released = false;
+
     /**
      * Construct a cache entry.
      *
      * @param search the search
      */
     public BlsCacheEntry(Search<T> search) {
+        this(search, -1, false, null);
+    }
+
+    /**
+     * Construct a cache entry.
+     *
+     * @param search the search
+     * @param estimatedCost estimated cost of the search, or -1 if unknown
+     * @param heavy whether this search should be scheduled as a heavy search
+     * @param onFinished called when the search task finishes (may be null)
+     */
+    public BlsCacheEntry(Search<T> search, long estimatedCost, boolean heavy, Runnable onFinished) {
         this.search = search;
+        this.estimatedCost = estimatedCost;
+        this.heavy = heavy;
+        this.onFinished = onFinished;
         id = getNextEntryId();
         createTime = lastAccessTime = now();
     }
@@ -117,6 +162,7 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
         if (future != null)
             throw new RuntimeException("Search already started");
         started = true;
+        readerGeneration = search.queryInfo().index().readerGeneration();
         final String requestId = ThreadContext.get("requestId");
         peekValue = search.peekObject(this);
         future = search.queryInfo().index().blackLab().searchExecutorService().submit(() -> {
@@ -133,8 +179,22 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
         // keep track of processing time, taking child searches into account
         // (child searches already in cache will add their original processing time)
         timer().start();
+        // Make sure the index reader stays open while we use it, even if the index is reopened
+        // (we keep it open until this entry is removed from the cache, see release())
+        BlackLabIndex index = search.queryInfo().index();
+        IndexReader reader = null;
         try {
+            reader = index.acquireReader();
             result = search.executeInternal(this);
+            if (result instanceof Results) {
+                // Keep the reader our result uses open (if the index was reopened before our
+                // search started, that may not be the one we acquired)
+                IndexReader resultReader = ((Results<?, ?>) result).queryInfo().reader();
+                if (resultReader != reader && resultReader.tryIncRef()) {
+                    index.releaseReader(reader);
+                    reader = resultReader;
+                }
+            }
         } catch (Throwable e) {
 
             if (e instanceof InterruptedSearch) {
@@ -151,12 +211,50 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
             //  as they "should".
             exceptionThrown = e;
         } finally {
+            if (reader != null)
+                holdReader(reader);
 
             // Stop keeping track of processing time for this task.
             timer().stop();
 
             // Record the time the task was done, for e.g. cache management.
             doneTime = now();
+            finished = true;
+            doneSignal.countDown();
+        }
+
+        // Let the cache know there's capacity for another search
+        if (onFinished != null)
+            onFinished.run();
+    }
+
+    /**
+     * Keep the index reader our result uses open until we're released.
+     *
+     * If the search failed, was cancelled or we were released already, the reader is
+     * released right away.
+     *
+     * @param reader reader we acquired
+     */
+    private synchronized void holdReader(IndexReader reader) {
+        if (released || cancelled || exceptionThrown != null)
+            search.queryInfo().index().releaseReader(reader);
+        else
+            this.reader = reader;
+    }
+
+    /**
+     * Release the resources this entry holds on to.
+     *
+     * Called when the entry is removed from the cache. Releases the index reader our
+     * result uses, so it can be closed if the index has been reopened. Should only be
+     * called when the result won't be used anymore.
+     */
+    public synchronized void release() {
+        released = true;
+        if (reader != null) {
+            search.queryInfo().index().releaseReader(reader);
+            reader = null;
         }
     }
 
@@ -168,6 +266,14 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
         return search;
     }
 
+    public long estimatedCost() {
+        return estimatedCost;
+    }
+
+    public boolean isHeavy() {
+        return heavy;
+    }
+
     public long worthiness() {
         return worthiness;
     }
@@ -187,7 +293,7 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
      */
     @Override
     public boolean isDone() {
-        return future != null && future.isDone() || cancelled;
+        return finished || future != null && future.isDone() || cancelled;
     }
 
     /**
@@ -261,10 +367,8 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
     public T get(long time, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
         // Wait until result available
         long ms = unit.toMillis(time);
-        while (ms > 0 && !isDone() && !isCancelled()) {
-            Thread.sleep(POLLING_TIME_MS);
-            ms -= POLLING_TIME_MS;
-        }
+        if (!isDone() && !isCancelled())
+            doneSignal.await(ms, TimeUnit.MILLISECONDS);
         if (isCancelled()) {
             InterruptedSearch interruptedSearch = InterruptedSearch.cancelled();
             interruptedSearch.setCacheEntry(this);
@@ -280,6 +384,7 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
     /**
      * Set the last accessed time to now.
      */
+    @Override
     public void updateLastAccess() {
         this.lastAccessTime = now();
     }
@@ -305,7 +410,7 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
             // - the smaller, the worthier
 
             // Size score from 1-100; 1M per unit, so 100 corresponds to 100M or larger
-            long sizeScore = Math.max(1, Math.min(100, numberOfStoredHits() * BlsCache.SIZE_OF_HIT / 1000000));
+            long sizeScore = Math.max(1, Math.min(100, ramBytesUsed() / 1000000));
 
             // Run time score from 1-10000; 0.03s per unit, so 10000 corresponds to 5 minutes or longer
             long runTimeScore = Math.max(1, Math.min(10000, timeUserWaitedMs() * 10 / 300));
@@ -350,6 +455,7 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
             this.result = null;
 
             doneTime = now();
+            doneSignal.countDown();
         }
         return result;
     }
@@ -358,12 +464,33 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
         return exceptionThrown != null;
     }
 
+    /**
+     * Get our result if the search finished successfully, without waiting.
+     *
+     * @return the result, or null if the search hasn't finished successfully (yet)
+     */
+    public T resultIfFinished() {
+        return finished && !isCancelled() && exceptionThrown == null ? result : null;
+    }
+
     public long numberOfStoredHits() {
         if (result == null)
             return 0;
         return result.numberOfResultObjects();
     }
 
+    /**
+     * Estimate the heap size of our result.
+     *
+     * @return estimated size in bytes, or 0 if there's no result (yet)
+     */
+    public long ramBytesUsed() {
+        T theResult = result; // avoid race with cancel()
+        if (theResult == null)
+            return 0;
+        return theResult.ramBytesUsed();
+    }
+
     public String status() {
         if (!wasStarted())
             return "queued";
@@ -377,6 +504,8 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
     public Map<String, Object> getInfo(boolean includeDebugInfo) {
         Map<String, Object> stats = new HashMap<>();
         stats.put("type", search instanceof SearchCount ? "count" : "search");
+        stats.put("lane", heavy ? "heavy" : "interactive");
+        stats.put("estimatedCost", estimatedCost);
         stats.put("status", status());
         if (exceptionThrown != null) {
              stats.put("exceptionThrown", exceptionThrown.getClass().getSimpleName());
@@ -384,6 +513,7 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
         if (!StringUtils.isEmpty(reason))
             stats.put("cancelReason", reason);
         stats.put("numberOfStoredHits", numberOfStoredHits());
+        stats.put("sizeBytes", ramBytesUsed());
         stats.put("processingTime", timer().time() / 1000.0);
         stats.put("userWaitTime", timeUserWaitedMs() / 1000.0);
         stats.put("notAccessedFor", timeSinceLastAccessMs() / 1000.0);
@@ -444,6 +574,15 @@ public class BlsCacheEntry<T extends SearchResult> extends SearchCacheEntry<T> {
         return started;
     }
 
+    /**
+     * Get the index reader generation this search was started on.
+     *
+     * @return reader generation, or -1 if the search hasn't been started yet
+     */
+    public long readerGeneration() {
+        return readerGeneration;
+    }
+
     /**
      * Set reason the search was cancelled or could not complete.
      *
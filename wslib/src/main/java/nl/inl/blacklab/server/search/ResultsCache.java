@@ -7,14 +7,18 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.ThreadContext;
+import org.apache.lucene.index.IndexReader;
 
 import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
 
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tags;
@@ -31,6 +35,15 @@ import nl.inl.blacklab.server.config.BLSConfig;
 public class ResultsCache implements SearchCache {
     private static final Logger logger = LogManager.getLogger(ResultsCache.class);
     private static final String CACHE_NAME_FOR_METRICS = "blacklab-results-cache";
+
+    /** Cache entries are weighed in units of this many bytes (Caffeine weights are ints) */
+    private static final int WEIGHT_UNIT_BYTES = 1024;
+
+    /** Weigh cache entries by their estimated heap size */
+    private static final Weigher<SearchInfoWrapper, SearchResult> RESULTS_WEIGHER =
+            (search, results) -> (int) Math.min(Integer.MAX_VALUE, results.ramBytesUsed() / WEIGHT_UNIT_BYTES);
+
+    private final BLSConfig config;
     private final ExecutorService threadPool;
     private final AsyncLoadingCache<SearchInfoWrapper, SearchResult> searchCache;
     private final ConcurrentHashMap<Search<? extends SearchResult>, Future<CacheEntryWithResults<? extends SearchResult>>> runningJobs = new ConcurrentHashMap<>();
@@ -137,6 +150,7 @@ public class ResultsCache implements SearchCache {
     }
 
     public ResultsCache(BLSConfig config, ExecutorService threadPool)  {
+        this.config = config;
         this.threadPool = threadPool;
 
         CacheLoader<SearchInfoWrapper, SearchResult> cacheLoader = searchWrapper -> {
@@ -145,7 +159,17 @@ public class ResultsCache implements SearchCache {
             Future<CacheEntryWithResults<? extends SearchResult>> job = runningJobs.computeIfAbsent(searchWrapper.getSearch(), (search) -> ResultsCache.this.threadPool.submit(() -> {
                 ThreadContext.put("requestId", requestId);
                 final long startTime = System.currentTimeMillis();
-                SearchResult results = search.executeInternal(null);
+                // Make sure the index reader stays open while the search runs, even if the index is reopened.
+                // NOTE: unlike BlsCache, we don't hold on to the reader while the results are cached, so
+                // after this, they rely on the index's own reference to the reader (until it's reopened).
+                BlackLabIndex index = search.queryInfo().index();
+                IndexReader reader = index.acquireReader();
+                SearchResult results;
+                try {
+                    results = search.executeInternal(null);
+                } finally {
+                    index.releaseReader(reader);
+                }
                 ThreadContext.remove("requestId");
                 return new CacheEntryWithResults<>(results, System.currentTimeMillis() - startTime);
             }));
@@ -159,12 +183,22 @@ public class ResultsCache implements SearchCache {
         };
 
         int maxSize = config.getCache().getMaxNumberOfJobs();
-        logger.info("Creating cache with maxSize:{}", maxSize);
-        searchCache = Caffeine.newBuilder()
+        int maxCacheSizeMegs = config.getCache().getMaxCacheSizeMegs();
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
             .recordStats()
-            .maximumSize(maxSize)
-            .initialCapacity(maxSize / 10)
-            .buildAsync(cacheLoader);
+            .initialCapacity(maxSize / 10);
+        if (maxCacheSizeMegs >= 0) {
+            // Evict based on (estimated) memory use.
+            // NOTE: results are weighed when they are added, so results that are still
+            // being filled in the background (e.g. hits from a query) may be underestimated.
+            logger.info("Creating cache with maxCacheSizeMegs:{}", maxCacheSizeMegs);
+            builder.maximumWeight(maxCacheSizeMegs * (1_000_000L / WEIGHT_UNIT_BYTES))
+                   .weigher(RESULTS_WEIGHER);
+        } else {
+            logger.info("Creating cache with maxSize:{}", maxSize);
+            builder.maximumSize(maxSize);
+        }
+        searchCache = builder.buildAsync(cacheLoader);
         CaffeineCacheMetrics.monitor(Metrics.globalRegistry, searchCache, CACHE_NAME_FOR_METRICS);
         Metrics.globalRegistry.gaugeMapSize("blacklab-job-queue", Tags.empty(), runningJobs);
     }
@@ -178,6 +212,23 @@ public class ResultsCache implements SearchCache {
         }
     }
 
+    @Override
+    public SearchResult getIfFinished(Search<?> search) {
+        // (the synchronous view doesn't wait for searches that are still running)
+        return searchCache.synchronous().asMap().get(new SearchInfoWrapper(search, null));
+    }
+
+    @Override
+    public SearchResult findFinishedResult(Object supersetKey, BiPredicate<Search<?>, SearchResult> test) {
+        // (the synchronous view only contains searches that have completed successfully)
+        return searchCache.synchronous().asMap().entrySet().stream()
+                .filter(e -> supersetKey.equals(e.getKey().getSearch().supersetKey()))
+                .filter(e -> test.test(e.getKey().getSearch(), e.getValue()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+
     @Override
     public <T extends SearchResult> SearchCacheEntry<T> remove(Search<T> search) {
         SearchInfoWrapper searchWrapper = new SearchInfoWrapper(search, null);
@@ -206,11 +257,26 @@ public class ResultsCache implements SearchCache {
 
     @Override
     public Map<String, Object> getStatus() {
-        return null;
+        Map<SearchInfoWrapper, SearchResult> contents = searchCache.synchronous().asMap();
+        return Map.of(
+            "maxNumberOfJobs", config.getCache().getMaxNumberOfJobs(),
+            "maxCacheSizeMegs", config.getCache().getMaxCacheSizeMegs(),
+            "sizeBytes", contents.values().stream().mapToLong(SearchResult::ramBytesUsed).sum(),
+            "numberOfSearches", contents.size(),
+            "numberOfRunningSearches", runningJobs.size()
+        );
     }
 
     @Override
     public List<Map<String, Object>> getContents(boolean includeDebugInfo) {
-        return null;
+        return searchCache.synchronous().asMap().entrySet().stream()
+                .map(e -> Map.<String, Object>of(
+                        "class", e.getKey().getSearch().getClass().getSimpleName(),
+                        "jobDesc", e.getKey().getSearch().toString(),
+                        "stats", Map.of(
+                                "numberOfStoredHits", e.getValue().numberOfResultObjects(),
+                                "sizeBytes", e.getValue().ramBytesUsed()
+                        )))
+                .collect(Collectors.toList());
     }
 }
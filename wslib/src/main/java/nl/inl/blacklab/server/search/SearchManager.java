@@ -7,9 +7,13 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import nl.inl.blacklab.codec.ContentStoreBlockCache;
 import nl.inl.blacklab.exceptions.BlackLabRuntimeException;
 import nl.inl.blacklab.search.BlackLab;
 import nl.inl.blacklab.search.BlackLabEngine;
+import nl.inl.blacklab.search.lucene.QueryRewriteCache;
 import nl.inl.blacklab.searches.SearchCache;
 import nl.inl.blacklab.server.config.BLSConfig;
 import nl.inl.blacklab.server.exceptions.ConfigurationException;
@@ -23,6 +27,10 @@ public class SearchManager {
 
     private static final Logger logger = LogManager.getLogger(SearchManager.class);
 
+    private static final String BLOCK_CACHE_NAME_FOR_METRICS = "blacklab-content-store-block-cache";
+
+    private static final String REWRITE_CACHE_NAME_FOR_METRICS = "blacklab-query-rewrite-cache";
+
     /** Our config */
     private BLSConfig config;
 
@@ -54,12 +62,20 @@ public class SearchManager {
 
         // Create BlackLab instance with the desired number of search threads
         int maxThreadsPerSearch = config.getPerformance().getMaxThreadsPerSearch();
-        blackLab = BlackLab.createEngine(maxThreadsPerSearch);
+        blackLab = BlackLab.createEngine(maxThreadsPerSearch, config.getPerformance().isUseVirtualThreads());
 
         // Create the cache
         String cacheClass = config.getCache().getImplementation();
         cache = createCache(cacheClass, config, blackLab.searchExecutorService());
 
+        // Report hit ratio etc. of the content store block cache (shared by all indexes)
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, ContentStoreBlockCache.get().cache(),
+                BLOCK_CACHE_NAME_FOR_METRICS);
+
+        // Report hit ratio etc. of the query rewrite cache (shared by all indexes)
+        CaffeineCacheMetrics.monitor(Metrics.globalRegistry, QueryRewriteCache.get().cache(),
+                REWRITE_CACHE_NAME_FOR_METRICS);
+
         // Find the indices
         indexMan = new IndexManager(this, config);
 
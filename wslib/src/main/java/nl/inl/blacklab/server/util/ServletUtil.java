@@ -78,6 +78,8 @@ public class ServletUtil {
         String accept = request.getHeader("Accept");
         //logger.debug("Accept: " + accept);
         if (accept != null && accept.length() > 0) {
+            if (accept.contains("x-blacklab-binary"))
+                return DataFormat.BINARY;
             if (accept.contains("json"))
                 return DataFormat.JSON;
             if (accept.contains("xml"))
@@ -0,0 +1,140 @@
+package nl.inl.blacklab.server.lib;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBinaryResponse {
+
+    private static int[] termIds(BinaryResponseWriter writer, String... terms) {
+        return Arrays.stream(terms).mapToInt(writer::termId).toArray();
+    }
+
+    private static String[] terms(BinaryResponseReader reader, int[] termIds, int offset, int length) {
+        return Arrays.stream(termIds, offset, offset + length).mapToObj(reader::term).toArray(String[]::new);
+    }
+
+    @Test
+    public void testHits() throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        BinaryResponseWriter writer = new BinaryResponseWriter(response);
+        writer.docs(new int[] { 3, 8 }, new String[] { "doc-a", "doc-b" });
+        writer.hits(new int[] { 3, 3, 8 }, new int[] { 1, 5, 0 }, new int[] { 2, 7, 1 });
+        int[][] contextTermIds = {
+                termIds(writer, "the", "quick", "brown", "fox", "jumps", "over", "the", "Force"),
+                termIds(writer, "the", "quick", "brown", "fox", "jump", "over", "the", "force")
+        };
+        writer.contexts(new String[] { "word", "lemma" }, new int[] { 1, 2, 0 }, new int[] { 1, 2, 1 },
+                new int[] { 1, 0, 0 }, contextTermIds);
+        writer.finish();
+
+        try (BinaryResponseReader reader = new BinaryResponseReader(new ByteArrayInputStream(response.toByteArray()))) {
+            BinaryResponseReader.Docs docs = (BinaryResponseReader.Docs) reader.next();
+            Assert.assertArrayEquals(new int[] { 3, 8 }, docs.docIds);
+            Assert.assertArrayEquals(new String[] { "doc-a", "doc-b" }, docs.pids);
+
+            BinaryResponseReader.Hits hits = (BinaryResponseReader.Hits) reader.next();
+            Assert.assertArrayEquals(new int[] { 3, 3, 8 }, hits.docs);
+            Assert.assertArrayEquals(new int[] { 1, 5, 0 }, hits.starts);
+            Assert.assertArrayEquals(new int[] { 2, 7, 1 }, hits.ends);
+
+            BinaryResponseReader.Contexts contexts = (BinaryResponseReader.Contexts) reader.next();
+            Assert.assertArrayEquals(new String[] { "word", "lemma" }, contexts.annotations);
+            Assert.assertArrayEquals(new int[] { 0, 3, 7 }, contexts.offsets);
+            // match of the second hit
+            int matchStart = contexts.offsets[1] + contexts.left[1];
+            Assert.assertArrayEquals(new String[] { "over", "the" },
+                    terms(reader, contexts.termIds[0], matchStart, contexts.match[1]));
+            Assert.assertArrayEquals(new String[] { "Force" },
+                    terms(reader, contexts.termIds[0], contexts.offsets[2], 1));
+            Assert.assertArrayEquals(new String[] { "force" },
+                    terms(reader, contexts.termIds[1], contexts.offsets[2], 1));
+
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testGroups() throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        BinaryResponseWriter writer = new BinaryResponseWriter(response);
+        int[][] values = { termIds(writer, "the", "1990"), termIds(writer, "fox", "1990") };
+        writer.groups(new String[] { "hit:word:i", "field:year" }, new String[] { "id1", "id2" }, values,
+                new long[] { 12, 3_000_000_000L }, new long[] { 2, 1 });
+        writer.finish();
+
+        try (BinaryResponseReader reader = new BinaryResponseReader(new ByteArrayInputStream(response.toByteArray()))) {
+            BinaryResponseReader.Groups groups = (BinaryResponseReader.Groups) reader.next();
+            Assert.assertArrayEquals(new String[] { "hit:word:i", "field:year" }, groups.properties);
+            Assert.assertArrayEquals(new String[] { "id1", "id2" }, groups.identities);
+            Assert.assertArrayEquals(new String[] { "fox", "1990" }, terms(reader, groups.values[1], 0, 2));
+            Assert.assertEquals(groups.values[0][1], groups.values[1][1]); // same term, same id
+            Assert.assertArrayEquals(new long[] { 12, 3_000_000_000L }, groups.hits);
+            Assert.assertArrayEquals(new long[] { 2, 1 }, groups.docs);
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testTermsAreAddedPerSection() throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        BinaryResponseWriter writer = new BinaryResponseWriter(response);
+        int[][] values1 = { termIds(writer, "cat") };
+        writer.groups(new String[] { "hit:word:i" }, new String[] { "id1" }, values1, new long[] { 1 }, new long[] { 1 });
+        int sizeAfterFirstSection = response.size();
+        int[][] values2 = { termIds(writer, "cat"), termIds(writer, "dog") };
+        writer.groups(new String[] { "hit:word:i" }, new String[] { "id1", "id2" }, values2, new long[] { 1, 2 },
+                new long[] { 1, 1 });
+        Assert.assertTrue("Sections are written right away", response.size() > sizeAfterFirstSection);
+        writer.finish();
+
+        try (BinaryResponseReader reader = new BinaryResponseReader(new ByteArrayInputStream(response.toByteArray()))) {
+            BinaryResponseReader.Groups groups = (BinaryResponseReader.Groups) reader.next();
+            Assert.assertEquals("cat", reader.term(groups.values[0][0]));
+            groups = (BinaryResponseReader.Groups) reader.next();
+            Assert.assertEquals("cat", reader.term(groups.values[0][0]));
+            Assert.assertEquals("dog", reader.term(groups.values[1][0]));
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testIncompleteResponse() throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        BinaryResponseWriter writer = new BinaryResponseWriter(response);
+        writer.hits(new int[] { 1 }, new int[] { 2 }, new int[] { 3 });
+        // (no finish(), e.g. because an error occurred while streaming)
+        try (BinaryResponseReader reader = new BinaryResponseReader(new ByteArrayInputStream(response.toByteArray()))) {
+            Assert.assertTrue(reader.next() instanceof BinaryResponseReader.Hits);
+            reader.next();
+        }
+    }
+
+    @Test
+    public void testSkipUnknownSection() throws IOException {
+        byte[] response = BinaryResponseWriter.toByteArray(out -> {
+            BinaryResponseWriter writer = new BinaryResponseWriter(out);
+            writer.hits(new int[] { 1 }, new int[] { 2 }, new int[] { 3 });
+            writer.finish();
+        });
+
+        // Insert a section of an unknown type before the end marker
+        byte[] withUnknown = Arrays.copyOf(response, response.length + 7);
+        System.arraycopy(new byte[] { 99, 0, 0, 0, 2, 42, 42, BinaryResponseReader.END }, 0, withUnknown,
+                response.length - 1, 8);
+        try (BinaryResponseReader reader = new BinaryResponseReader(new ByteArrayInputStream(withUnknown))) {
+            Assert.assertTrue(reader.next() instanceof BinaryResponseReader.Hits);
+            Assert.assertNull(reader.next());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotBinaryResponse() throws IOException {
+        new BinaryResponseReader(new ByteArrayInputStream("{\"summary\":{}}".getBytes()));
+    }
+}
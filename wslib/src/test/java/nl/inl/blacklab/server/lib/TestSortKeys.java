@@ -0,0 +1,117 @@
+package nl.inl.blacklab.server.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.resultproperty.DocProperty;
+import nl.inl.blacklab.resultproperty.HitProperty;
+import nl.inl.blacklab.search.BlackLab;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.BlackLabIndexWriter;
+import nl.inl.blacklab.search.results.DocResult;
+import nl.inl.blacklab.search.results.DocResults;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.search.results.Results;
+import nl.inl.util.UtilsForTesting;
+
+public class TestSortKeys {
+
+    private static final String[] TEST_DATA = {
+            "<doc pid='a' title='a'><w l='the'>The</w> <w l='quick'>quick</w> <w l='brown'>brown</w> <w l='fox'>fox</w></doc>",
+            "<doc pid='b' title='b'><w l='the'>the</w> <w l='lazy'>lazy</w> <w l='dog'>dog</w></doc>",
+    };
+
+    private static UtilsForTesting.TestDir testDir;
+
+    private static BlackLabIndex index;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        testDir = UtilsForTesting.createBlackLabTestDir("TestSortKeys");
+        BlackLabIndexWriter indexWriter = BlackLab.openForWriting(testDir.file(), true, "testformat", null,
+                BlackLabIndex.IndexType.INTEGRATED);
+        Indexer indexer = Indexer.create(indexWriter);
+        try {
+            for (int i = 0; i < TEST_DATA.length; i++)
+                indexer.index("test" + (i + 1), TEST_DATA[i].getBytes());
+        } finally {
+            indexer.close();
+        }
+        index = BlackLab.open(testDir.file());
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (index != null)
+            index.close();
+        if (testDir != null)
+            testDir.close();
+    }
+
+    private static Hits find(String pattern) throws InvalidQuery {
+        return index.find(CorpusQueryLanguageParser.parse(pattern).toQuery(QueryInfo.create(index)), null);
+    }
+
+    /** Sort all hits, and return the sort keys for each hit in sorted order */
+    private static List<List<String>> sortedHitKeys(String sortBy) throws InvalidQuery {
+        Hits hits = find("[]");
+        Hits sorted = hits.sort(HitProperty.deserialize(hits, sortBy));
+        HitProperty sortProp = HitProperty.deserialize(sorted, sortBy).copyWith(sorted);
+        List<List<String>> keys = new ArrayList<>();
+        for (long i = 0; i < sorted.size(); i++)
+            keys.add(SortKeys.forHit(sorted, sortProp, i));
+        return keys;
+    }
+
+    private static void assertKeysSorted(List<List<String>> keys) {
+        for (int i = 1; i < keys.size(); i++) {
+            Assert.assertTrue(keys.get(i - 1) + " <= " + keys.get(i),
+                    keys.get(i - 1).get(0).compareTo(keys.get(i).get(0)) <= 0);
+        }
+    }
+
+    @Test
+    public void testHitKeys() throws InvalidQuery {
+        List<List<String>> keys = sortedHitKeys("hit:word:i");
+        assertKeysSorted(keys);
+        // "brown", "dog", "fox", "lazy", "quick", "the" (x2, insensitive so equal)
+        Assert.assertEquals(6, keys.stream().distinct().count());
+        Assert.assertEquals(keys.get(5), keys.get(6));
+    }
+
+    @Test
+    public void testReversedHitKeys() throws InvalidQuery {
+        List<List<String>> keys = sortedHitKeys("-hit:word:s");
+        assertKeysSorted(keys);
+        // Case-sensitive: "The" and "the" are different
+        Assert.assertEquals(7, keys.stream().distinct().count());
+    }
+
+    @Test
+    public void testIndexSpecificProperty() throws InvalidQuery {
+        List<List<String>> keys = sortedHitKeys("hit:word:i,hitposition");
+        assertKeysSorted(keys);
+        Assert.assertTrue(keys.stream().allMatch(k -> k.size() == 2 && k.get(1).isEmpty()));
+    }
+
+    @Test
+    public void testDocKeys() throws InvalidQuery {
+        // (sorts by number of hits descending by default)
+        DocProperty sortProp = DocProperty.deserialize(index, "numhits");
+        DocResults docs = find("[]").perDocResults(Results.NO_LIMIT).sort(sortProp);
+        List<List<String>> keys = new ArrayList<>();
+        for (DocResult doc: docs)
+            keys.add(SortKeys.forDoc(sortProp, doc));
+        Assert.assertEquals(2, keys.size());
+        Assert.assertTrue(keys.get(0).get(0).compareTo(keys.get(1).get(0)) < 0);
+    }
+}
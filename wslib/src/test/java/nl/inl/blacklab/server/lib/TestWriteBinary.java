@@ -0,0 +1,136 @@
+package nl.inl.blacklab.server.lib;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import nl.inl.blacklab.exceptions.InvalidQuery;
+import nl.inl.blacklab.index.Indexer;
+import nl.inl.blacklab.queryParser.corpusql.CorpusQueryLanguageParser;
+import nl.inl.blacklab.resultproperty.HitPropertyHitText;
+import nl.inl.blacklab.search.BlackLab;
+import nl.inl.blacklab.search.BlackLabIndex;
+import nl.inl.blacklab.search.BlackLabIndexWriter;
+import nl.inl.blacklab.search.indexmetadata.Annotation;
+import nl.inl.blacklab.search.indexmetadata.MatchSensitivity;
+import nl.inl.blacklab.search.results.ContextSize;
+import nl.inl.blacklab.search.results.HitGroups;
+import nl.inl.blacklab.search.results.Hits;
+import nl.inl.blacklab.search.results.QueryInfo;
+import nl.inl.blacklab.server.lib.results.WebserviceOperations;
+import nl.inl.util.UtilsForTesting;
+
+public class TestWriteBinary {
+
+    private static final String[] TEST_DATA = {
+            "<doc pid='a' title='a'><w l='the'>The</w> <w l='quick'>quick</w> <w l='brown'>brown</w> <w l='fox'>fox</w></doc>",
+            "<doc pid='b' title='b'><w l='the'>the</w> <w l='lazy'>lazy</w> <w l='dog'>dog</w></doc>",
+    };
+
+    private static UtilsForTesting.TestDir testDir;
+
+    private static BlackLabIndex index;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        testDir = UtilsForTesting.createBlackLabTestDir("TestWriteBinary");
+        BlackLabIndexWriter indexWriter = BlackLab.openForWriting(testDir.file(), true, "testformat", null,
+                BlackLabIndex.IndexType.INTEGRATED);
+        Indexer indexer = Indexer.create(indexWriter);
+        try {
+            for (int i = 0; i < TEST_DATA.length; i++)
+                indexer.index("test" + (i + 1), TEST_DATA[i].getBytes());
+        } finally {
+            indexer.close();
+        }
+        index = BlackLab.open(testDir.file());
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (index != null)
+            index.close();
+        if (testDir != null)
+            testDir.close();
+    }
+
+    private static Hits find(String pattern) throws InvalidQuery {
+        return index.find(CorpusQueryLanguageParser.parse(pattern).toQuery(QueryInfo.create(index)), null);
+    }
+
+    @Test
+    public void testHitsInBatches() throws IOException, InvalidQuery {
+        Hits hits = find("[]");
+        Annotation word = index.mainAnnotatedField().mainAnnotation();
+        byte[] response = BinaryResponseWriter.toByteArray(out -> {
+            BinaryResponseWriter writer = new BinaryResponseWriter(out);
+            WriteBinary.writeHits(writer, index, hits, ContextSize.get(1), List.of(word), 3);
+            writer.finish();
+        });
+
+        Map<Integer, String> pids = new HashMap<>();
+        List<String> matches = new ArrayList<>();
+        int hitsSections = 0;
+        try (BinaryResponseReader reader = new BinaryResponseReader(new ByteArrayInputStream(response))) {
+            Object section;
+            BinaryResponseReader.Hits lastHits = null;
+            while ((section = reader.next()) != null) {
+                if (section instanceof BinaryResponseReader.Docs) {
+                    BinaryResponseReader.Docs docs = (BinaryResponseReader.Docs) section;
+                    for (int i = 0; i < docs.docIds.length; i++)
+                        Assert.assertNull("Each pid is written once", pids.put(docs.docIds[i], docs.pids[i]));
+                } else if (section instanceof BinaryResponseReader.Hits) {
+                    lastHits = (BinaryResponseReader.Hits) section;
+                    Assert.assertTrue(lastHits.docs.length <= 3);
+                    hitsSections++;
+                } else if (section instanceof BinaryResponseReader.Contexts) {
+                    BinaryResponseReader.Contexts contexts = (BinaryResponseReader.Contexts) section;
+                    Assert.assertArrayEquals(new String[] { "word" }, contexts.annotations);
+                    Assert.assertEquals(lastHits.docs.length, contexts.left.length);
+                    for (int i = 0; i < contexts.left.length; i++) {
+                        int matchStart = contexts.offsets[i] + contexts.left[i];
+                        String title = index.luceneDoc(lastHits.docs[i]).get("title");
+                        matches.add(title + ":" + reader.term(contexts.termIds[0][matchStart]));
+                    }
+                }
+            }
+        }
+        Assert.assertEquals(3, hitsSections);
+        Assert.assertEquals(2, pids.size());
+        for (Map.Entry<Integer, String> e: pids.entrySet())
+            Assert.assertEquals(WebserviceOperations.getDocumentPid(index, e.getKey(), null), e.getValue());
+        Assert.assertEquals(List.of("a:The", "a:quick", "a:brown", "a:fox", "b:the", "b:lazy", "b:dog"), matches);
+    }
+
+    @Test
+    public void testGroupsInBatches() throws IOException, InvalidQuery {
+        HitGroups groups = find("[]").group(new HitPropertyHitText(index, MatchSensitivity.INSENSITIVE), 0);
+        byte[] response = BinaryResponseWriter.toByteArray(out -> {
+            BinaryResponseWriter writer = new BinaryResponseWriter(out);
+            WriteBinary.writeGroups(writer, groups, 2);
+            writer.finish();
+        });
+
+        Map<String, Long> groupSizes = new HashMap<>();
+        try (BinaryResponseReader reader = new BinaryResponseReader(new ByteArrayInputStream(response))) {
+            Object section;
+            while ((section = reader.next()) != null) {
+                BinaryResponseReader.Groups batch = (BinaryResponseReader.Groups) section;
+                Assert.assertTrue(batch.identities.length <= 2);
+                for (int i = 0; i < batch.identities.length; i++)
+                    groupSizes.put(reader.term(batch.values[i][0]), batch.hits[i]);
+            }
+        }
+        Assert.assertEquals(6, groupSizes.size());
+        Assert.assertEquals(2L, (long) groupSizes.get("the"));
+        Assert.assertEquals(1L, (long) groupSizes.get("dog"));
+    }
+}